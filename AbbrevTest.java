@@ -0,0 +1,145 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static gitlet.GitletProcess.*;
+import static org.junit.Assert.*;
+
+/** Shortens commit ids to their shortest unique prefixes and resolves
+ *  prefixes back to commits, reporting those that are ambiguous, over the
+ *  layers of the commit graph of a history made in one batch.
+ *  @author Shreyansh Loharuka
+ */
+public class AbbrevTest {
+
+    /** Number of commits made after the initial commit. */
+    private static final int COMMITS = 40;
+
+    /** Ids of the commits of a log, whole or abbreviated. */
+    private static final Pattern COMMIT = Pattern.compile(
+            "^commit ([0-9a-f]+)$", Pattern.MULTILINE);
+
+    /** The working directory of the processes. */
+    private File _dir;
+
+    /** The ids of the commits of the repository, newest first. */
+    private List<String> _ids;
+
+    /** Create a repository of COMMITS commits after the initial one, the
+     *  Kth adding fK.txt. */
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        _dir = Files.createTempDirectory("gitlet-abbrev").toFile();
+        run(_dir, "init");
+        StringBuilder commands = new StringBuilder();
+        for (int i = 0; i < COMMITS; i += 1) {
+            Utils.writeContents(new File(_dir, "f" + i + ".txt"), i + "\n");
+            commands.append("add f").append(i).append(".txt\n")
+                .append("commit c").append(i).append("\n");
+        }
+        batch(_dir, commands.toString());
+        _ids = commits(run(_dir, "log"));
+        assertEquals(COMMITS + 1, _ids.size());
+    }
+
+    /** Remove the repository. */
+    @After
+    public void tearDown() {
+        delete(_dir);
+    }
+
+    /** The shortest unique prefix of each commit, in either case,
+     *  resolves to it, and the same prefix one digit shorter is shared
+     *  with another commit. */
+    @Test
+    public void prefixTest() {
+        CommitGraph graph = CommitGraph.open(new File(_dir, ".gitlet/graph"));
+        for (String id : _ids) {
+            int pos = graph.position(id);
+            String prefix = graph.abbrev(pos, 1);
+            assertTrue(id.startsWith(prefix));
+            assertEquals(pos, graph.resolve(prefix));
+            assertEquals(pos, graph.resolve(prefix.toUpperCase()));
+            assertEquals(pos, graph.resolve(id));
+            assertEquals(pos, graph.resolve(id.toUpperCase()));
+            if (prefix.length() > 1) {
+                try {
+                    graph.resolve(prefix.substring(0, prefix.length() - 1));
+                    fail("resolved an ambiguous prefix");
+                } catch (GitletException.Ambiguous excp) {
+                    assertEquals("More than one commit has that id prefix.",
+                            excp.getMessage());
+                }
+            }
+            assertEquals(graph.abbrev(pos, 4).length(),
+                    Math.max(4, prefix.length()));
+        }
+    }
+
+    /** log --abbrev shows the shortest unique prefixes of at least four
+     *  digits, which commands accept for whole ids, while prefixes shared
+     *  by two commits or by none are reported. */
+    @Test
+    public void commandTest() throws IOException, InterruptedException {
+        List<String> abbreviated = commits(run(_dir, "log", "--abbrev"));
+        assertEquals(_ids.size(), abbreviated.size());
+        for (int i = 0; i < _ids.size(); i += 1) {
+            String prefix = abbreviated.get(i);
+            assertTrue(prefix.length() >= 4 && prefix.length() < 40);
+            assertTrue(_ids.get(i).startsWith(prefix));
+        }
+        File f0 = new File(_dir, "f0.txt");
+        assertTrue(f0.delete());
+        run(_dir, "checkout", abbreviated.get(0).toUpperCase(), "--", "f0.txt");
+        assertEquals("0\n", Utils.readContentsAsString(f0));
+        assertTrue(f0.delete());
+        run(_dir, "checkout", _ids.get(0).toUpperCase(), "--", "f0.txt");
+        assertEquals("0\n", Utils.readContentsAsString(f0));
+
+        Set<String> seen = new HashSet<>();
+        String shared = null;
+        for (String id : _ids) {
+            if (!seen.add(id.substring(0, 1))) {
+                shared = id.substring(0, 1);
+            }
+        }
+        assertNotNull(shared);
+        assertTrue(run(_dir, "checkout", shared, "--", "f0.txt").contains(
+                "More than one commit has that id prefix."));
+        Set<String> pairs = new HashSet<>();
+        for (String id : _ids) {
+            pairs.add(id.substring(0, 2));
+        }
+        String missing = null;
+        for (int i = 0; missing == null; i += 1) {
+            String pair = String.format("%02x", i);
+            if (!pairs.contains(pair)) {
+                missing = pair;
+            }
+        }
+        assertTrue(run(_dir, "checkout", missing, "--", "f0.txt").contains(
+                "No commit with that id exists."));
+    }
+
+    /** Returns the ids, whole or abbreviated, of the commits in LOG. */
+    private static List<String> commits(String log) {
+        List<String> ids = new ArrayList<>();
+        Matcher matcher = COMMIT.matcher(log);
+        while (matcher.find()) {
+            ids.add(matcher.group(1));
+        }
+        return ids;
+    }
+
+}
@@ -0,0 +1,142 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static gitlet.GitletProcess.*;
+import static org.junit.Assert.*;
+
+/** Stages many paths in one add, and every file under the directories
+ *  among them, hashed in parallel, leaving out .gitlet and the files
+ *  already as staged or committed.
+ *  @author Shreyansh Loharuka
+ */
+public class AddTest {
+
+    /** Number of directories of the tree added whole. */
+    private static final int DIRS = 8;
+
+    /** Number of files in each of them and in each of their
+     *  subdirectories. */
+    private static final int FILES = 25;
+
+    /** The working directory of the processes. */
+    private File _dir;
+
+    /** Create a repository holding a.txt, d/b.txt and d/e/c.txt. */
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        _dir = Files.createTempDirectory("gitlet-add").toFile();
+        run(_dir, "init");
+        write("a.txt", "a\n");
+        write("d/b.txt", "b\n");
+        write("d/e/c.txt", "c\n");
+    }
+
+    /** Remove the repository. */
+    @After
+    public void tearDown() {
+        delete(_dir);
+    }
+
+    /** Each of many paths is staged, whether a file or a directory, and
+     *  nothing is if one of them does not exist. */
+    @Test
+    public void pathsTest() throws IOException, InterruptedException {
+        assertEquals("File does not exist.\n",
+                run(_dir, "add", "a.txt", "d", "nosuch.txt"));
+        assertEquals(List.of(), staged());
+        run(_dir, "add", "d/e/c.txt", "a.txt", "d/b.txt", "a.txt");
+        assertEquals(List.of("a.txt", "d/b.txt", "d/e/c.txt"), staged());
+    }
+
+    /** A directory stages the files under it and no others, paths are
+     *  taken in normal form, the working directory itself leaves out
+     *  .gitlet, and files already as committed are not staged, or
+     *  unstaged if they were. */
+    @Test
+    public void directoryTest() throws IOException, InterruptedException {
+        run(_dir, "add", "d");
+        assertEquals(List.of("d/b.txt", "d/e/c.txt"), staged());
+        run(_dir, "add", ".");
+        assertEquals(List.of("a.txt", "d/b.txt", "d/e/c.txt"), staged());
+        run(_dir, "commit", "first");
+        run(_dir, "add", ".");
+        assertEquals(List.of(), staged());
+
+        write("d/e/c.txt", "changed\n");
+        write("d/e/f.txt", "f\n");
+        run(_dir, "add", "d/e/../e/");
+        assertEquals(List.of("d/e/c.txt", "d/e/f.txt"), staged());
+        write("d/e/c.txt", "c\n");
+        run(_dir, "add", "./d");
+        assertEquals(List.of("d/e/f.txt"), staged());
+    }
+
+    /** A tree of many files is staged whole, each with its own
+     *  contents. */
+    @Test
+    public void treeTest() throws IOException, InterruptedException {
+        List<String> paths = new ArrayList<>(Arrays.asList(
+                "a.txt", "d/b.txt", "d/e/c.txt"));
+        for (int i = 0; i < DIRS; i += 1) {
+            for (int j = 0; j < FILES; j += 1) {
+                paths.add("t/" + i + "/f" + j + ".txt");
+                paths.add("t/" + i + "/s/f" + j + ".txt");
+            }
+        }
+        for (String path : paths) {
+            write(path, path + "\n");
+        }
+        Collections.sort(paths);
+        String initial = head();
+        run(_dir, "add", ".");
+        assertEquals(paths, staged());
+        run(_dir, "commit", "tree");
+        String tree = head();
+        run(_dir, "reset", initial);
+        for (String path : paths) {
+            assertFalse(path, new File(_dir, path).exists());
+        }
+        run(_dir, "reset", tree);
+        for (String path : paths) {
+            assertEquals(path + "\n", Utils.readContentsAsString(
+                    new File(_dir, path)));
+        }
+    }
+
+    /** Writes CONTENTS to the file at PATH in the working directory,
+     *  creating its directories. */
+    private void write(String path, String contents) {
+        File file = new File(_dir, path);
+        file.getParentFile().mkdirs();
+        Utils.writeContents(file, contents);
+    }
+
+    /** Returns the id of the head commit. */
+    private String head() {
+        return Codec.readRepository(new File(_dir, ".gitlet/pointers"))
+            .head();
+    }
+
+    /** Returns the paths of the staged files, in order. */
+    private List<String> staged() throws IOException, InterruptedException {
+        String status = run(_dir, "status");
+        int start = status.indexOf("=== Staged Files ===\n")
+            + "=== Staged Files ===\n".length();
+        if (status.startsWith("\n", start)) {
+            return List.of();
+        }
+        return Arrays.asList(status.substring(start,
+                status.indexOf("\n\n", start)).split("\n"));
+    }
+
+}
@@ -0,0 +1,168 @@
+package gitlet;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batch mode: runs the commands read from the standard input, one per
+ * line, in a single process. Arguments are separated by blanks, and may
+ * be quoted with double quotes, inside which backslash escapes the next
+ * character, or single quotes; outside quotes, backslash escapes the
+ * next character. Blank lines and lines starting with # are skipped.
+ *
+ * The commits of Journal are held, so that .gitlet/pointers, the index
+ * and the chain of the commit graph are written, and everything synced,
+ * once, at the end of the batch, or at each line reading checkpoint.
+ * Each command still reads them anew, from memory, and one that fails
+ * halfway leaves no trace in the next one. Objects, commits and layers
+ * of the commit graph are written as usual. Since held writes must not
+ * be overtaken by other processes, the lock of the repository is held
+ * alone from the first command run in it to the end of the batch.
+ *
+ * For each line, one JSON object is printed on a line of its own, with
+ * the line number, the command, its status, which is ok, error for the
+ * errors Gitlet reports, or failed for any other, and its output.
+ *
+ * Usage: java gitlet.Main --batch.
+ *
+ * @author Shreyansh Loharuka
+ */
+class Batch {
+
+    /**
+     * Runs the commands read from the standard input, printing the
+     * status of each.
+     */
+    static void run() throws IOException {
+        PrintStream stdout = System.out;
+        BufferedReader in = new BufferedReader(
+                new InputStreamReader(System.in));
+        Journal.hold(true);
+        LockFile lock = null;
+        try {
+            int number = 0;
+            for (String line = in.readLine(); line != null;
+                 line = in.readLine()) {
+                number += 1;
+                if (line.isBlank() || line.trim().startsWith("#")) {
+                    continue;
+                }
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                System.setOut(new PrintStream(output, true));
+                String status = "ok";
+                try {
+                    List<String> args = split(line);
+                    if (args.size() == 1 && args.get(0).equals("checkpoint")) {
+                        Journal.flush();
+                    } else {
+                        if (lock == null && Main.initialised()) {
+                            lock = LockFile.exclusive();
+                            Main.upgrade();
+                        }
+                        Main.run(false, args.toArray(new String[0]));
+                    }
+                } catch (GitletException excp) {
+                    status = "error";
+                    Main.report(excp);
+                } catch (IOException | RuntimeException excp) {
+                    status = "failed";
+                    excp.printStackTrace(System.out);
+                } finally {
+                    System.out.flush();
+                    System.setOut(stdout);
+                }
+                stdout.println("{\"line\":" + number + ",\"command\":"
+                        + quote(line.trim()) + ",\"status\":\"" + status
+                        + "\",\"output\":" + quote(output.toString()) + "}");
+            }
+        } finally {
+            Journal.flush();
+            Journal.hold(false);
+            if (lock != null) {
+                lock.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the arguments of LINE.
+     */
+    static List<String> split(String line) {
+        List<String> args = new ArrayList<>();
+        StringBuilder arg = null;
+        char quote = 0;
+        for (int i = 0; i < line.length(); i += 1) {
+            char c = line.charAt(i);
+            if (quote == '\'' && c != '\'') {
+                arg.append(c);
+            } else if (c == '\\' && quote != '\'') {
+                if (i + 1 == line.length()) {
+                    throw Utils.error("Trailing backslash.");
+                }
+                arg = arg == null ? new StringBuilder() : arg;
+                arg.append(line.charAt(++i));
+            } else if (c == '"' || c == '\'') {
+                if (quote == 0) {
+                    quote = c;
+                    arg = arg == null ? new StringBuilder() : arg;
+                } else if (quote == c) {
+                    quote = 0;
+                } else {
+                    arg.append(c);
+                }
+            } else if (Character.isWhitespace(c) && quote == 0) {
+                if (arg != null) {
+                    args.add(arg.toString());
+                    arg = null;
+                }
+            } else {
+                arg = arg == null ? new StringBuilder() : arg;
+                arg.append(c);
+            }
+        }
+        if (quote != 0) {
+            throw Utils.error("Unterminated quote.");
+        }
+        if (arg != null) {
+            args.add(arg.toString());
+        }
+        return args;
+    }
+
+    /**
+     * Returns S as a JSON string.
+     */
+    static String quote(String s) {
+        StringBuilder json = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i += 1) {
+            char c = s.charAt(i);
+            switch (c) {
+            case '"':
+                json.append("\\\"");
+                break;
+            case '\\':
+                json.append("\\\\");
+                break;
+            case '\n':
+                json.append("\\n");
+                break;
+            case '\t':
+                json.append("\\t");
+                break;
+            default:
+                if (c < 0x20) {
+                    json.append(String.format("\\u%04x", (int) c));
+                } else {
+                    json.append(c);
+                }
+            }
+        }
+        return json.append('"').toString();
+    }
+
+}
@@ -0,0 +1,149 @@
+package gitlet;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static gitlet.GitletProcess.*;
+import static org.junit.Assert.*;
+
+/** Splits the lines of batch mode into arguments, quotes its output as
+ *  JSON, and runs batches whose writes are held until a checkpoint.
+ *  @author Shreyansh Loharuka
+ */
+public class BatchTest {
+
+    /** The working directory of the processes. */
+    private File _dir;
+
+    /** Create a repository to work in. */
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        _dir = Files.createTempDirectory("gitlet-batch").toFile();
+        run(_dir, "init");
+    }
+
+    /** Remove the repository. */
+    @After
+    public void tearDown() {
+        delete(_dir);
+    }
+
+    /** Arguments are split at blanks, quoted with double quotes, which
+     *  backslash escapes within, or single quotes, which it does not,
+     *  and escaped by backslash outside quotes. */
+    @Test
+    public void splitTest() {
+        assertEquals(List.of("commit", "a message"),
+                Batch.split("  commit\t\"a message\"  "));
+        assertEquals(List.of("say \"hi\" \\ now"),
+                Batch.split("\"say \\\"hi\\\" \\\\ now\""));
+        assertEquals(List.of("a\\b \"c\""),
+                Batch.split("'a\\b \"c\"'"));
+        assertEquals(List.of("two words", "x"),
+                Batch.split("two\\ words x"));
+        assertEquals(List.of("ab cd", ""), Batch.split("a\"b c\"d ''"));
+        assertEquals(List.of(), Batch.split("   "));
+        for (String bad : new String[] {"commit \"open", "it's", "end\\"}) {
+            try {
+                Batch.split(bad);
+                fail("split " + bad);
+            } catch (GitletException excp) {
+                assertTrue(excp.getMessage().startsWith(
+                        bad.endsWith("\\") ? "Trailing" : "Unterminated"));
+            }
+        }
+    }
+
+    /** Quotes, backslashes and control characters are escaped in JSON
+     *  strings, and everything else is kept. */
+    @Test
+    public void quoteTest() {
+        assertEquals("\"\"", Batch.quote(""));
+        assertEquals("\"say \\\"hi\\\"\\\\\\n\\tdone\"",
+                Batch.quote("say \"hi\"\\\n\tdone"));
+        assertEquals("\"\\u0001\\u001f \u00e9\"",
+                Batch.quote("\u0001\u001f \u00e9"));
+    }
+
+    /** Each line run prints one JSON object with its number, command,
+     *  status and output; blank lines and comments are skipped. */
+    @Test
+    public void jsonTest() throws IOException, InterruptedException {
+        Utils.writeContents(new File(_dir, "a.txt"), "a\n");
+        Process process = start(_dir, List.of(), "--batch");
+        try (Writer in = new OutputStreamWriter(process.getOutputStream(),
+                StandardCharsets.UTF_8)) {
+            in.write("add a.txt\n\n# a comment\ncommit \"first one\"\n"
+                    + "checkout nosuch\ncommit \"open\nnosuch\nfind "
+                    + "'first one'\n");
+        }
+        String[] lines = output(process).split("\n");
+        assertEquals(0, process.exitValue());
+        assertEquals(6, lines.length);
+        assertEquals("{\"line\":1,\"command\":\"add a.txt\","
+                + "\"status\":\"ok\",\"output\":\"\"}", lines[0]);
+        assertEquals("{\"line\":4,\"command\":\"commit \\\"first one\\\"\","
+                + "\"status\":\"ok\",\"output\":\"\"}", lines[1]);
+        assertEquals("{\"line\":5,\"command\":\"checkout nosuch\","
+                + "\"status\":\"error\","
+                + "\"output\":\"No such branch exists.\\n\"}", lines[2]);
+        assertEquals("{\"line\":6,\"command\":\"commit \\\"open\","
+                + "\"status\":\"error\","
+                + "\"output\":\"Unterminated quote.\\n\"}", lines[3]);
+        assertEquals("{\"line\":7,\"command\":\"nosuch\","
+                + "\"status\":\"error\",\"output\":"
+                + "\"No command with that name exists.\\n\"}", lines[4]);
+        String id = run(_dir, "find", "first one").trim();
+        assertEquals("{\"line\":8,\"command\":\"find 'first one'\","
+                + "\"status\":\"ok\",\"output\":\"" + id + "\\n\"}",
+                lines[5]);
+    }
+
+    /** The pointers and index written by a batch are held until a
+     *  checkpoint, which writes them while the batch goes on. */
+    @Test
+    public void checkpointTest() throws IOException, InterruptedException {
+        File pointers = new File(_dir, ".gitlet/pointers");
+        String initial = Codec.readRepository(pointers).head();
+        Utils.writeContents(new File(_dir, "a.txt"), "a\n");
+        Process process = start(_dir, List.of(), "--batch");
+        BufferedReader out = new BufferedReader(new InputStreamReader(
+                process.getInputStream(), StandardCharsets.UTF_8));
+        try (Writer in = new OutputStreamWriter(process.getOutputStream(),
+                StandardCharsets.UTF_8)) {
+            in.write("add a.txt\ncommit first\n");
+            in.flush();
+            assertTrue(out.readLine().contains("\"status\":\"ok\""));
+            assertTrue(out.readLine().contains("\"status\":\"ok\""));
+            assertEquals(initial, Codec.readRepository(pointers).head());
+            assertEquals(0, Codec.readIndex(
+                    new File(_dir, ".gitlet/index")).entries().size());
+            in.write("checkpoint\n");
+            in.flush();
+            assertTrue(out.readLine().contains("\"status\":\"ok\""));
+            String head = Codec.readRepository(pointers).head();
+            assertNotEquals(initial, head);
+            assertEquals(1, Codec.readIndex(
+                    new File(_dir, ".gitlet/index")).entries().size());
+            assertFalse(new File(_dir, ".gitlet/journal").exists());
+            assertTrue(process.isAlive());
+            in.write("rm a.txt\ncommit second\n");
+        }
+        assertEquals(2, output(process).split("\n").length);
+        assertEquals(0, process.exitValue());
+        assertTrue(run(_dir, "log").contains("\nsecond\n"));
+        assertTrue(Codec.readIndex(
+                new File(_dir, ".gitlet/index")).entries().isEmpty());
+    }
+
+}
@@ -0,0 +1,117 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static gitlet.GitletProcess.*;
+import static org.junit.Assert.*;
+
+/** Counts the files checkout and reset write, remove and skip, of those
+ *  that differ between the two commits, skipping those the working
+ *  directory already holds as wanted.
+ *  @author Shreyansh Loharuka
+ */
+public class CheckoutTest {
+
+    /** The JVM options making checkout and reset print their counts. */
+    private static final List<String> VERBOSE =
+        List.of("-Dgitlet.verbose=true");
+
+    /** The working directory of the processes. */
+    private File _dir;
+
+    /** The id of the commit of a.txt, b.txt and c.txt, on branch other. */
+    private String _first;
+
+    /** The id of the commit on master changing a.txt, removing b.txt and
+     *  adding d.txt. */
+    private String _second;
+
+    /** Create a repository of the two commits, at the second. */
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        _dir = Files.createTempDirectory("gitlet-checkout").toFile();
+        run(_dir, "init");
+        write("a.txt", "a1\n");
+        write("b.txt", "b1\n");
+        write("c.txt", "c1\n");
+        run(_dir, "add", "a.txt", "b.txt", "c.txt");
+        run(_dir, "commit", "first");
+        _first = head();
+        run(_dir, "branch", "other");
+        write("a.txt", "a2\n");
+        write("d.txt", "d2\n");
+        run(_dir, "add", "a.txt", "d.txt");
+        run(_dir, "rm", "b.txt");
+        run(_dir, "commit", "second");
+        _second = head();
+    }
+
+    /** Remove the repository. */
+    @After
+    public void tearDown() {
+        delete(_dir);
+    }
+
+    /** Checkout writes the files that differ and removes those the
+     *  branch lacks, and skips those already as wanted, whether held or
+     *  already gone; files the same in both are not counted. */
+    @Test
+    public void checkoutTest() throws IOException, InterruptedException {
+        assertEquals("Wrote 2 files, removed 1, skipped 0.\n",
+                run(_dir, VERBOSE, "checkout", "other"));
+        check("a1\n", "b1\n", "c1\n", null);
+        write("a.txt", "a2\n");
+        assertTrue(new File(_dir, "b.txt").delete());
+        assertEquals("Wrote 1 files, removed 0, skipped 2.\n",
+                run(_dir, VERBOSE, "checkout", "master"));
+        check("a2\n", null, "c1\n", "d2\n");
+        assertEquals("", run(_dir, "checkout", "other"));
+        check("a1\n", "b1\n", "c1\n", null);
+    }
+
+    /** Reset counts alike, and leaves files it skipped as they are. */
+    @Test
+    public void resetTest() throws IOException, InterruptedException {
+        assertEquals("Wrote 2 files, removed 1, skipped 0.\n",
+                run(_dir, VERBOSE, "reset", _first));
+        check("a1\n", "b1\n", "c1\n", null);
+        write("a.txt", "a2\n");
+        write("b.txt", "b1\n");
+        assertEquals("Wrote 1 files, removed 1, skipped 1.\n",
+                run(_dir, VERBOSE, "reset", _second));
+        check("a2\n", null, "c1\n", "d2\n");
+        assertEquals("", run(_dir, "reset", _first));
+        check("a1\n", "b1\n", "c1\n", null);
+    }
+
+    /** Writes CONTENTS to the file NAME of the working directory. */
+    private void write(String name, String contents) {
+        Utils.writeContents(new File(_dir, name), contents);
+    }
+
+    /** Checks that a.txt, b.txt and so on hold CONTENTS in order, or
+     *  are missing where they are null. */
+    private void check(String... contents) {
+        for (int i = 0; i < contents.length; i += 1) {
+            File file = new File(_dir, (char) ('a' + i) + ".txt");
+            if (contents[i] == null) {
+                assertFalse(file.getName(), file.exists());
+            } else {
+                assertEquals(contents[i], Utils.readContentsAsString(file));
+            }
+        }
+    }
+
+    /** Returns the id of the head commit. */
+    private String head() {
+        return Codec.readRepository(new File(_dir, ".gitlet/pointers"))
+            .head();
+    }
+
+}
@@ -0,0 +1,189 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static gitlet.GitletProcess.*;
+import static org.junit.Assert.*;
+
+/** Cuts files into content-defined chunks with Chunker, and stores,
+ *  checks out and repacks chunked blobs in repositories whose Gitlet
+ *  processes chunk files of more than THRESHOLD bytes.
+ *  @author Shreyansh Loharuka
+ */
+public class ChunkTest {
+
+    /** Smallest file chunked by the Gitlet processes, in bytes. */
+    private static final int THRESHOLD = 64 * 1024;
+
+    /** Average chunk size of the Gitlet processes, in bytes. */
+    private static final int CHUNK_SIZE = 4096;
+
+    /** Size of the files chunked, in bytes. */
+    private static final int SIZE = 1000000;
+
+    /** The working directory of the processes. */
+    private File _dir;
+
+    /** Create a repository to work in. */
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        _dir = Files.createTempDirectory("gitlet-chunk").toFile();
+        gitlet("init");
+    }
+
+    /** Remove the repository. */
+    @After
+    public void tearDown() {
+        delete(_dir);
+    }
+
+    /** The chunks of a file are within their bounds and make up the
+     *  file, and an insertion near its start changes only the chunk it
+     *  falls in, since the cuts after it are found at the same bytes. */
+    @Test
+    public void nearbyChunksTest() throws IOException {
+        byte[] data = random(SIZE, 1);
+        List<byte[]> chunks = chunks(data);
+        ByteArrayOutputStream whole = new ByteArrayOutputStream();
+        for (int i = 0; i < chunks.size(); i += 1) {
+            int length = chunks.get(i).length;
+            assertTrue(length <= Chunker.MAX_SIZE);
+            assertTrue(i == chunks.size() - 1
+                    || length >= Chunker.MIN_SIZE);
+            whole.write(chunks.get(i));
+        }
+        assertArrayEquals(data, whole.toByteArray());
+
+        ByteArrayOutputStream edited = new ByteArrayOutputStream();
+        edited.write(data, 0, 1000);
+        edited.write(new byte[] {'e', 'd', 'i', 't'});
+        edited.write(data, 1000, data.length - 1000);
+        List<byte[]> after = chunks(edited.toByteArray());
+        Set<String> before = new HashSet<>();
+        for (byte[] chunk : chunks) {
+            before.add(Utils.sha1((Object) chunk));
+        }
+        int changed = 0;
+        for (byte[] chunk : after) {
+            if (!before.contains(Utils.sha1((Object) chunk))) {
+                changed += 1;
+            }
+        }
+        assertEquals(chunks.size(), after.size());
+        assertEquals(1, changed);
+    }
+
+    /** A chunked file is committed, removed, checked out and restored by
+     *  reset byte for byte, and a second version that inserts a few
+     *  bytes near its start adds only a chunk or two. */
+    @Test
+    public void chunkedRoundTripTest()
+        throws IOException, InterruptedException {
+        File big = new File(_dir, "big.bin");
+        byte[] data = random(SIZE, 2);
+        Files.write(big.toPath(), data);
+        String id = Utils.sha1(big);
+        gitlet("add", "big.bin");
+        gitlet("commit", "first");
+        String first = gitlet("find", "first").trim();
+        assertTrue(gitlet("count-objects").contains("chunked blobs: 1 "));
+        int chunks = countChunks();
+        assertTrue(chunks > 1);
+        assertTrue(big.delete());
+        gitlet("checkout", "--", "big.bin");
+        assertEquals(id, Utils.sha1(big));
+
+        byte[] edited = new byte[data.length + 1];
+        edited[0] = 'x';
+        System.arraycopy(data, 0, edited, 1, data.length);
+        Files.write(big.toPath(), edited);
+        gitlet("add", "big.bin");
+        gitlet("commit", "second");
+        assertTrue(countChunks() - chunks <= 2);
+        gitlet("reset", first);
+        assertEquals(id, Utils.sha1(big));
+        assertTrue(gitlet("status").contains(
+                "=== Modifications Not Staged For Commit ===\n\n"));
+    }
+
+    /** Chunked blobs are read back from a pack after repack. */
+    @Test
+    public void repackTest() throws IOException, InterruptedException {
+        File big = new File(_dir, "big.bin");
+        byte[] data = random(SIZE, 3);
+        Files.write(big.toPath(), data);
+        String firstId = Utils.sha1(big);
+        gitlet("add", "big.bin");
+        gitlet("commit", "first");
+        data[SIZE / 2] ^= 1;
+        Files.write(big.toPath(), data);
+        String secondId = Utils.sha1(big);
+        gitlet("add", "big.bin");
+        gitlet("commit", "second");
+        String first = gitlet("find", "first").trim();
+        gitlet("repack");
+        assertEquals(0, countChunks());
+        String counts = gitlet("count-objects");
+        assertTrue(counts, counts.contains("chunked blobs: 2 "));
+        assertTrue(counts, counts.contains("packs: 1 packs"));
+        gitlet("checkout", first, "--", "big.bin");
+        assertEquals(firstId, Utils.sha1(big));
+        assertTrue(big.delete());
+        gitlet("checkout", "--", "big.bin");
+        assertEquals(secondId, Utils.sha1(big));
+    }
+
+    /** Returns the chunks Chunker cuts DATA into. */
+    private static List<byte[]> chunks(byte[] data) throws IOException {
+        Chunker chunker = new Chunker(new ByteArrayInputStream(data));
+        List<byte[]> chunks = new ArrayList<>();
+        for (byte[] chunk = chunker.next(); chunk != null;
+             chunk = chunker.next()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    /** Returns SIZE pseudo-random bytes drawn from SEED. */
+    private static byte[] random(int size, long seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    /** Returns the number of loose chunks in the repository. */
+    private int countChunks() {
+        int count = 0;
+        File[] shards = new File(_dir, ".gitlet/chunks").listFiles();
+        if (shards != null) {
+            for (File shard : shards) {
+                File[] files = shard.listFiles();
+                count += files == null ? 0 : files.length;
+            }
+        }
+        return count;
+    }
+
+    /** Runs Gitlet with ARGS in the repository, chunking files of more
+     *  than THRESHOLD bytes, and returns its output once it has
+     *  succeeded. */
+    private String gitlet(String... args)
+        throws IOException, InterruptedException {
+        return run(_dir, List.of("-Dgitlet.chunking=true",
+                "-Dgitlet.chunkThreshold=" + THRESHOLD,
+                "-Dgitlet.chunkSize=" + CHUNK_SIZE), args);
+    }
+
+}
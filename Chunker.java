@@ -0,0 +1,175 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Splits a stream into chunks at boundaries chosen by its contents, with
+ * FastCDC, so that an edit moves only the boundaries near it and the
+ * chunks before and after it come out as they were. Large files stored
+ * as lists of such chunks, as ObjectStore does when chunking is on,
+ * share every chunk their versions have in common.
+ *
+ * A boundary follows each byte at which the Gear hash of the bytes
+ * before it, a rolling hash over at most the last 64 of them, has zero
+ * in every bit of a mask. No chunk is shorter than MIN_SIZE, whose bytes
+ * are not even hashed, or longer than MAX_SIZE. Before AVERAGE_SIZE the
+ * mask has one more bit than log2(AVERAGE_SIZE), and after it one less,
+ * which keeps the sizes of chunks close to AVERAGE_SIZE.
+ *
+ * Chunks are read one at a time into a buffer of MAX_SIZE bytes, so that
+ * a file of any size is split in the same memory.
+ *
+ * @author Shreyansh Loharuka
+ */
+class Chunker {
+
+    /**
+     * True if large blobs are stored as lists of chunks. It may be set
+     * with the gitlet.chunking system property. Chunked blobs are read
+     * whatever its value.
+     */
+    static final boolean ENABLED = Boolean.getBoolean("gitlet.chunking");
+
+    /**
+     * Smallest file, in bytes, stored as a list of chunks. It may be set
+     * with the gitlet.chunkThreshold system property.
+     */
+    static final long THRESHOLD = Long.getLong("gitlet.chunkThreshold",
+            1 << 20);
+
+    /**
+     * Usual size of a chunk, a power of two. It may be set with the
+     * gitlet.chunkSize system property, which is rounded down to one.
+     */
+    static final int AVERAGE_SIZE = Integer.highestOneBit(Math.max(256,
+            Integer.getInteger("gitlet.chunkSize", 64 * 1024)));
+
+    /**
+     * Size of the shortest chunks, but the last.
+     */
+    static final int MIN_SIZE = AVERAGE_SIZE / 4;
+
+    /**
+     * Size of the longest chunks.
+     */
+    static final int MAX_SIZE = AVERAGE_SIZE * 4;
+
+    /**
+     * Mask of the hash before AVERAGE_SIZE bytes.
+     */
+    private static final long MASK_SMALL = mask(bits() + 1);
+
+    /**
+     * Mask of the hash after AVERAGE_SIZE bytes.
+     */
+    private static final long MASK_LARGE = mask(bits() - 1);
+
+    /**
+     * Values added to the hash for each byte. They are drawn from a fixed
+     * seed, since the boundaries of chunks must be the same in every
+     * process.
+     */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(0x676974_6c6574L);
+        for (int b = 0; b < GEAR.length; b += 1) {
+            GEAR[b] = random.nextLong();
+        }
+    }
+
+    /**
+     * The stream split.
+     */
+    private final InputStream _in;
+
+    /**
+     * Bytes read but not yet returned in a chunk, at the start.
+     */
+    private final byte[] _buffer = new byte[MAX_SIZE];
+
+    /**
+     * Number of bytes in _buffer.
+     */
+    private int _length;
+
+    /**
+     * True once _in is exhausted.
+     */
+    private boolean _eof;
+
+    /**
+     * Initialise a chunker splitting IN.
+     */
+    Chunker(InputStream in) {
+        _in = in;
+    }
+
+    /**
+     * Returns the next chunk of the stream, or null at its end.
+     */
+    byte[] next() throws IOException {
+        while (!_eof && _length < MAX_SIZE) {
+            int n = _in.read(_buffer, _length, MAX_SIZE - _length);
+            if (n < 0) {
+                _eof = true;
+            } else {
+                _length += n;
+            }
+        }
+        if (_length == 0) {
+            return null;
+        }
+        int cut = cut(_buffer, _length);
+        byte[] chunk = Arrays.copyOf(_buffer, cut);
+        System.arraycopy(_buffer, cut, _buffer, 0, _length - cut);
+        _length -= cut;
+        return chunk;
+    }
+
+    /**
+     * Returns the length of the chunk starting DATA, of which LENGTH
+     * bytes are known.
+     */
+    static int cut(byte[] data, int length) {
+        if (length <= MIN_SIZE) {
+            return length;
+        }
+        int normal = Math.min(AVERAGE_SIZE, length);
+        int end = Math.min(MAX_SIZE, length);
+        long hash = 0;
+        int i = MIN_SIZE;
+        for (; i < normal; i += 1) {
+            hash = (hash << 1) + GEAR[data[i] & 0xff];
+            if ((hash & MASK_SMALL) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < end; i += 1) {
+            hash = (hash << 1) + GEAR[data[i] & 0xff];
+            if ((hash & MASK_LARGE) == 0) {
+                return i + 1;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Returns log2(AVERAGE_SIZE).
+     */
+    private static int bits() {
+        return Integer.numberOfTrailingZeros(AVERAGE_SIZE);
+    }
+
+    /**
+     * Returns a mask of the top N bits, those of the hash that depend on
+     * the most bytes.
+     */
+    private static long mask(int n) {
+        return -1L << (64 - n);
+    }
+
+}
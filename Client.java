@@ -0,0 +1,98 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A thin client of Daemon, forwarding its arguments to the daemon of the
+ * repository in the current directory and copying back its output. When
+ * no daemon is running, the command is run in this process instead.
+ *
+ * Usage: java gitlet.Client ARGS, with the same ARGS as Main.
+ *
+ * @author Shreyansh Loharuka
+ */
+public class Client {
+
+    /**
+     * Size of the buffer copying the output of the daemon.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Runs the command in ARGS through the daemon if there is one, or
+     * else directly. A command is never run again once sent, even if
+     * the daemon fails to answer.
+     */
+    public static void main(String... args) {
+        int status;
+        try {
+            status = forward(args);
+        } catch (IOException excp) {
+            System.err.println("Lost the daemon: " + excp.getMessage());
+            status = 1;
+        }
+        if (status < 0) {
+            Main.main(args);
+        } else if (status > 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Sends ARGS to the daemon of the repository and copies its output
+     * to the standard output and error. Returns the exit status it sends
+     * back, or -1 if no daemon is running. Throws IOException if the
+     * daemon fails once ARGS are sent.
+     */
+    static int forward(String... args) throws IOException {
+        if (!Daemon.SOCKET.exists()) {
+            return -1;
+        }
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(
+                    UnixDomainSocketAddress.of(Daemon.SOCKET.toPath()));
+        } catch (IOException excp) {
+            return -1;
+        }
+        try (channel) {
+            DataOutputStream out = new DataOutputStream(
+                    Channels.newOutputStream(channel));
+            out.writeInt(args.length);
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    Channels.newInputStream(channel)));
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (true) {
+                int kind = in.readUnsignedByte();
+                int length = in.readInt();
+                if (kind == Daemon.EXIT) {
+                    System.out.flush();
+                    return length;
+                }
+                OutputStream target = kind == Daemon.ERR
+                        ? System.err : System.out;
+                while (length > 0) {
+                    int n = in.read(buffer, 0, Math.min(length,
+                            buffer.length));
+                    if (n < 0) {
+                        throw new IOException("daemon closed connection");
+                    }
+                    target.write(buffer, 0, n);
+                    length -= n;
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,559 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary encoding of the Commit, Tree, Repository and Index metadata of a
+ * repository. Every record starts with a four byte magic number and a
+ * format version, followed by its fields in a fixed order. The fields a
+ * log needs come first in a commit so that they can be decoded without
+ * the tracked files. Since version 2 a commit names its root tree;
+ * commits of version 1 hold their whole map of tracked files. Since
+ * version 3 the staging area is kept in the index rather than in the
+ * repository.
+ *
+ * @author Shreyansh Loharuka
+ */
+class Codec {
+
+    /**
+     * Magic number starting an encoded commit.
+     */
+    static final int COMMIT_MAGIC = 0x474c5443;
+
+    /**
+     * Magic number starting an encoded repository.
+     */
+    static final int REPOSITORY_MAGIC = 0x474c5452;
+
+    /**
+     * Magic number starting an encoded tree.
+     */
+    static final int TREE_MAGIC = 0x474c5454;
+
+    /**
+     * Magic number starting an encoded index.
+     */
+    static final int INDEX_MAGIC = 0x474c5458;
+
+    /**
+     * First two bytes of a file written by Java serialization.
+     */
+    static final int LEGACY_MAGIC = 0xaced;
+
+    /**
+     * Current format version of commits and trees.
+     */
+    static final int VERSION = 2;
+
+    /**
+     * Current format version of repositories and indexes.
+     */
+    static final int REPOSITORY_VERSION = 3;
+
+    /**
+     * Tag of a commit holding a map of its tracked files.
+     */
+    private static final int FILE_MAP = 0;
+
+    /**
+     * Tag of a commit naming its root tree.
+     */
+    private static final int ROOT_TREE = 1;
+
+    /**
+     * Tag of a null id.
+     */
+    private static final int NULL_ID = 0;
+
+    /**
+     * Tag of an id held as the 20 raw bytes of a SHA-1.
+     */
+    private static final int SHA_ID = 1;
+
+    /**
+     * Tag of an id held as a string.
+     */
+    private static final int STRING_ID = 2;
+
+    /* COMMITS */
+
+    /**
+     * Returns the encoding of COMMIT.
+     */
+    static byte[] encode(Commit commit) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(COMMIT_MAGIC);
+            out.writeByte(VERSION);
+            writeId(out, commit.uID());
+            out.writeLong(commit.timestamp().getTime());
+            writeString(out, commit.logMessage());
+            List<String> parents = commit.parent();
+            if (parents == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(parents.size());
+                for (String parent : parents) {
+                    writeId(out, parent);
+                }
+            }
+            if (commit.hasTree()) {
+                out.writeByte(ROOT_TREE);
+                writeId(out, commit.tree());
+            } else {
+                out.writeByte(FILE_MAP);
+                writeMap(out, commit.fileNames(), false, true);
+            }
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException excp) {
+            throw Utils.error("Internal error encoding commit.");
+        }
+    }
+
+    /**
+     * Writes COMMIT, compressed, to FILE.
+     */
+    static void writeCommit(File file, Commit commit) {
+        File temp = Journal.temp(file.getName());
+        ObjectStore.write(temp, encode(commit));
+        Journal.move(temp, file);
+        Journal.written(file);
+    }
+
+    /**
+     * Returns the commit read from the stream IN, which is closed.
+     */
+    static Commit readCommit(InputStream in) {
+        return readCommit(in, true);
+    }
+
+    /**
+     * Returns the commit read from the stream IN, which is closed,
+     * without its tracked files. Only the uid, timestamp, message and
+     * parents are decoded.
+     */
+    static Commit readCommitHeader(InputStream in) {
+        return readCommit(in, false);
+    }
+
+    /**
+     * Returns the commit read from the stream STREAM, which is closed,
+     * decoding its tracked files only if FILES.
+     */
+    private static Commit readCommit(InputStream stream, boolean files) {
+        try (DataInputStream in = new DataInputStream(stream)) {
+            int version = readHeader(in, COMMIT_MAGIC);
+            String uid = readId(in);
+            Date timestamp = new Date(in.readLong());
+            String msg = readString(in);
+            List<String> parents = null;
+            int n = in.readInt();
+            if (n >= 0) {
+                parents = new ArrayList<>(n);
+                for (int i = 0; i < n; i += 1) {
+                    parents.add(readId(in));
+                }
+            }
+            if (!files) {
+                return new Commit(timestamp, msg, parents, uid, (String) null);
+            }
+            if (version >= 2 && in.readUnsignedByte() == ROOT_TREE) {
+                return new Commit(timestamp, msg, parents, uid, readId(in));
+            }
+            HashMap<String, String> fileNames = readMap(in, false, true);
+            return new Commit(timestamp, msg, parents, uid, fileNames);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /* TREES */
+
+    /**
+     * Returns the encoding of TREE.
+     */
+    static byte[] encode(Tree tree) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(TREE_MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(tree.entries().size());
+            for (Map.Entry<String, Tree.Entry> entry
+                    : tree.entries().entrySet()) {
+                out.writeByte(entry.getValue().type());
+                writeString(out, entry.getKey());
+                writeId(out, entry.getValue().id());
+            }
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException excp) {
+            throw Utils.error("Internal error encoding tree.");
+        }
+    }
+
+    /**
+     * Returns the tree read from the stream STREAM, which is closed.
+     */
+    static Tree readTree(InputStream stream) {
+        try (DataInputStream in = new DataInputStream(stream)) {
+            readHeader(in, TREE_MAGIC);
+            Tree tree = new Tree();
+            int n = in.readInt();
+            for (int i = 0; i < n; i += 1) {
+                int type = in.readUnsignedByte();
+                String name = readString(in);
+                tree.put(name, type, readId(in));
+            }
+            return tree;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /* REPOSITORY */
+
+    /**
+     * Returns the encoding of REPO.
+     */
+    static byte[] encode(Repository repo) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(REPOSITORY_MAGIC);
+            out.writeByte(REPOSITORY_VERSION);
+            writeId(out, repo.head());
+            writeString(out, repo.currentBranch());
+            writeMap(out, repo.branches(), false, true);
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException excp) {
+            throw Utils.error("Internal error encoding repository.");
+        }
+    }
+
+    /**
+     * Writes REPO to FILE at the next commit of Journal.
+     */
+    static void writeRepository(File file, Repository repo) {
+        Journal.write(file, encode(repo));
+    }
+
+    /**
+     * Returns the repository stored in FILE. The staging area held by
+     * repositories before version 3 is read for Index.upgrade.
+     */
+    static Repository readRepository(File file) {
+        try (DataInputStream in = open(file)) {
+            int version = readHeader(in, REPOSITORY_MAGIC,
+                    REPOSITORY_VERSION);
+            Repository repo = new Repository();
+            repo.setHead(readId(in));
+            repo.setCurrentBranch(readString(in));
+            repo.branches().putAll(readMap(in, false, true));
+            if (version < 3) {
+                repo.stageFiles().putAll(readMap(in, true, false));
+                repo.stageFilesNames().putAll(readMap(in, false, true));
+                repo.removedFiles().putAll(readMap(in, false, true));
+            }
+            return repo;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /* INDEX */
+
+    /**
+     * Returns the encoding of INDEX.
+     */
+    static byte[] encode(Index index) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(INDEX_MAGIC);
+            out.writeByte(REPOSITORY_VERSION);
+            out.writeInt(index.entries().size());
+            for (Map.Entry<String, Index.Entry> e
+                    : index.entries().entrySet()) {
+                Index.Entry entry = e.getValue();
+                writeString(out, e.getKey());
+                out.writeByte(entry.state());
+                out.writeInt(entry.mode());
+                out.writeLong(entry.size());
+                out.writeLong(entry.mtime());
+                out.writeLong(entry.ctime());
+                out.writeLong(entry.inode());
+                writeId(out, entry.id());
+            }
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException excp) {
+            throw Utils.error("Internal error encoding index.");
+        }
+    }
+
+    /**
+     * Returns the index stored in FILE.
+     */
+    static Index readIndex(File file) {
+        try (DataInputStream in = open(file)) {
+            readHeader(in, INDEX_MAGIC, REPOSITORY_VERSION);
+            Index index = new Index();
+            int n = in.readInt();
+            for (int i = 0; i < n; i += 1) {
+                String path = readString(in);
+                int state = in.readUnsignedByte();
+                int mode = in.readInt();
+                long size = in.readLong();
+                long mtime = in.readLong();
+                long ctime = in.readLong();
+                long inode = in.readLong();
+                index.entries().put(path, new Index.Entry(readId(in), state,
+                        mode, size, mtime, ctime, inode));
+            }
+            return index;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /* MIGRATION */
+
+    /**
+     * Returns true if FILE was written with Java serialization.
+     */
+    static boolean isLegacy(File file) {
+        try (DataInputStream in = open(file)) {
+            return in.readUnsignedShort() == LEGACY_MAGIC;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns true if the repository is still stored by Java
+     * serialization.
+     */
+    static boolean needsMigration() {
+        return isLegacy(new File(".gitlet/pointers"));
+    }
+
+    /**
+     * Converts a repository whose metadata was written with Java
+     * serialization to the current format. The contents embedded in old
+     * commits are moved to the blob store, and the staging area to the
+     * index.
+     */
+    static void migrate() {
+        File pointers = new File(".gitlet/pointers");
+        if (!needsMigration()) {
+            return;
+        }
+        Repository repo = Utils.readObject(pointers, Repository.class);
+        Map<String, String> head = new HashMap<>();
+        ObjectStore blobs = ObjectStore.blobs();
+        File[] commits = new File(".gitlet/commits").listFiles();
+        if (commits != null) {
+            for (File file : commits) {
+                if (!isLegacy(file)) {
+                    continue;
+                }
+                Commit commit = Utils.readObject(file, Commit.class);
+                if (commit.legacyFiles() != null) {
+                    for (Map.Entry<String, byte[]> blob
+                            : commit.legacyFiles().entrySet()) {
+                        blobs.put(blob.getKey(), blob.getValue());
+                    }
+                }
+                if (commit.uID().equals(repo.head())
+                        && commit.fileNames() != null) {
+                    head = commit.fileNames();
+                }
+                writeCommit(file, new Commit(commit));
+            }
+        }
+        Index.upgrade(repo, head);
+        writeRepository(pointers, repo);
+    }
+
+    /* FIELDS */
+
+    /**
+     * Returns a stream over the uncompressed contents of FILE, which may
+     * also be stored as it is, since every encoding starts with a magic
+     * number of its own, or over those held for it by Journal.
+     */
+    private static DataInputStream open(File file) throws IOException {
+        byte[] pending = Journal.pending(file);
+        if (pending != null) {
+            return new DataInputStream(new ByteArrayInputStream(pending));
+        }
+        return new DataInputStream(ObjectStore.open(file, true));
+    }
+
+    /**
+     * Checks that IN starts with MAGIC and a supported version of
+     * commits and trees, and returns the version.
+     */
+    private static int readHeader(DataInputStream in,
+                                  int magic) throws IOException {
+        return readHeader(in, magic, VERSION);
+    }
+
+    /**
+     * Checks that IN starts with MAGIC and a version no later than
+     * LATEST, and returns the version.
+     */
+    private static int readHeader(DataInputStream in, int magic,
+                                  int latest) throws IOException {
+        if (in.readInt() != magic) {
+            throw new IOException("not a gitlet object");
+        }
+        int version = in.readUnsignedByte();
+        if (version > latest) {
+            throw new IOException("unsupported format version " + version);
+        }
+        return version;
+    }
+
+    /**
+     * Writes the possibly null string S to OUT.
+     */
+    private static void writeString(DataOutputStream out,
+                                    String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Returns the possibly null string read from IN.
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[n];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes ID to OUT, packing it into 20 bytes if it is a SHA-1.
+     */
+    private static void writeId(DataOutputStream out,
+                                String id) throws IOException {
+        if (id == null) {
+            out.writeByte(NULL_ID);
+        } else if (isSha(id)) {
+            out.writeByte(SHA_ID);
+            out.write(Utils.toBytes(id));
+        } else {
+            out.writeByte(STRING_ID);
+            writeString(out, id);
+        }
+    }
+
+    /**
+     * Returns the id read from IN.
+     */
+    private static String readId(DataInputStream in) throws IOException {
+        switch (in.readUnsignedByte()) {
+        case NULL_ID:
+            return null;
+        case SHA_ID:
+            byte[] id = new byte[Utils.UID_BYTES];
+            in.readFully(id);
+            return Utils.hex(id, 0);
+        case STRING_ID:
+            return readString(in);
+        default:
+            throw new IOException("corrupt id");
+        }
+    }
+
+    /**
+     * Returns true if ID is a full lower-case SHA-1 hex numeral.
+     */
+    private static boolean isSha(String id) {
+        if (id.length() != Utils.UID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i += 1) {
+            char c = id.charAt(i);
+            if (!(c >= '0' && c <= '9') && !(c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the possibly null MAP to OUT. KEYIDS and VALUEIDS tell
+     * whether its keys and values are ids.
+     */
+    private static void writeMap(DataOutputStream out, Map<String, String> map,
+                                 boolean keyIds,
+                                 boolean valueIds) throws IOException {
+        if (map == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(map.size());
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            if (keyIds) {
+                writeId(out, entry.getKey());
+            } else {
+                writeString(out, entry.getKey());
+            }
+            if (valueIds) {
+                writeId(out, entry.getValue());
+            } else {
+                writeString(out, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Returns the possibly null map read from IN. KEYIDS and VALUEIDS
+     * tell whether its keys and values are ids.
+     */
+    private static HashMap<String, String> readMap(DataInputStream in,
+                                                   boolean keyIds,
+                                                   boolean valueIds)
+        throws IOException {
+        int n = in.readInt();
+        if (n < 0) {
+            return null;
+        }
+        HashMap<String, String> map = new HashMap<>();
+        for (int i = 0; i < n; i += 1) {
+            String key = keyIds ? readId(in) : readString(in);
+            String value = valueIds ? readId(in) : readString(in);
+            map.put(key, value);
+        }
+        return map;
+    }
+
+}
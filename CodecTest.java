@@ -0,0 +1,154 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static gitlet.GitletProcess.*;
+import static org.junit.Assert.*;
+
+/** Encodes and decodes commits and repositories with Codec, and opens a
+ *  repository whose metadata was written by Java serialization.
+ *  @author Shreyansh Loharuka
+ */
+public class CodecTest {
+
+    /** Directory of the files of the tests. */
+    private File _dir;
+
+    /** Create the directory of the tests. */
+    @Before
+    public void setUp() throws IOException {
+        _dir = Files.createTempDirectory("gitlet-codec").toFile();
+    }
+
+    /** Remove the directory of the tests. */
+    @After
+    public void tearDown() {
+        delete(_dir);
+    }
+
+    /** Commits with a tree or a map of files, and with any number of
+     *  parents, decode to what was encoded. */
+    @Test
+    public void commitRoundTripTest() {
+        String tree = Utils.sha1("tree");
+        List<String> parents = List.of(Utils.sha1("one"),
+                Utils.sha1("two"));
+        Commit merge = new Commit(new Date(1234567), "merge \u00e9", parents,
+                Utils.sha1("merge"), tree);
+        Commit read = Codec.readCommit(
+                new ByteArrayInputStream(Codec.encode(merge)));
+        assertEquals(merge.uID(), read.uID());
+        assertEquals(merge.timestamp(), read.timestamp());
+        assertEquals("merge \u00e9", read.logMessage());
+        assertEquals(parents, read.parent());
+        assertTrue(read.hasTree());
+        assertEquals(tree, read.tree());
+
+        HashMap<String, String> files = new HashMap<>();
+        files.put("a.txt", Utils.sha1("a"));
+        files.put("dir/b.txt", Utils.sha1("b"));
+        Commit initial = new Commit(new Date(0), "initial commit", null,
+                Utils.sha1("initial"), files);
+        read = Codec.readCommit(
+                new ByteArrayInputStream(Codec.encode(initial)));
+        assertNull(read.parent());
+        assertFalse(read.hasTree());
+        assertEquals(files, read.fileNames());
+        Commit header = Codec.readCommitHeader(
+                new ByteArrayInputStream(Codec.encode(initial)));
+        assertEquals(initial.uID(), header.uID());
+        assertEquals("initial commit", header.logMessage());
+    }
+
+    /** The head, current branch and branches of a repository decode to
+     *  what was encoded, from a plain or a compressed file. */
+    @Test
+    public void repositoryRoundTripTest() {
+        Repository repo = new Repository();
+        repo.setHead(Utils.sha1("head"));
+        repo.setCurrentBranch("topic");
+        repo.addNode("master", Utils.sha1("master"));
+        repo.addNode("topic", Utils.sha1("head"));
+        File plain = new File(_dir, "plain");
+        Utils.writeContents(plain, (Object) Codec.encode(repo));
+        File compressed = new File(_dir, "compressed");
+        ObjectStore.write(compressed, Codec.encode(repo));
+        for (File file : new File[] {plain, compressed}) {
+            Repository read = Codec.readRepository(file);
+            assertEquals(repo.head(), read.head());
+            assertEquals("topic", read.currentBranch());
+            assertEquals(repo.branches(), read.branches());
+            assertFalse(Codec.isLegacy(file));
+        }
+    }
+
+    /** A repository written by Java serialization, whose commits hold
+     *  the contents of their files, is migrated by the first command and
+     *  then worked in. */
+    @Test
+    public void migrationTest() throws Exception {
+        File gitlet = new File(_dir, ".gitlet");
+        File commits = new File(gitlet, "commits");
+        commits.mkdirs();
+        byte[] contents = "legacy contents\n".getBytes(
+                StandardCharsets.UTF_8);
+        String blob = Utils.sha1((Object) contents);
+        Commit initial = new Commit(new Date(0), "initial commit", null,
+                Utils.sha1("initial"), (HashMap<String, String>) null);
+        HashMap<String, String> names = new HashMap<>();
+        names.put("a.txt", blob);
+        Commit second = new Commit(new Date(1000), "second",
+                List.of(initial.uID()), Utils.sha1("second"), names);
+        HashMap<String, byte[]> files = new HashMap<>();
+        files.put(blob, contents);
+        Field field = Commit.class.getDeclaredField("_files");
+        field.setAccessible(true);
+        field.set(second, files);
+        Utils.writeObject(new File(commits, initial.uID()), initial);
+        Utils.writeObject(new File(commits, second.uID()), second);
+        Repository repo = new Repository();
+        repo.addNode("master", second.uID());
+        repo.addNode("other", initial.uID());
+        repo.setCurrentBranch("master");
+        repo.setHead(second.uID());
+        File pointers = new File(gitlet, "pointers");
+        Utils.writeObject(pointers, repo);
+        File a = new File(_dir, "a.txt");
+        Files.write(a.toPath(), contents);
+        assertTrue(Codec.isLegacy(pointers));
+
+        String log = run(_dir, "log");
+        assertTrue(log, log.contains("commit " + second.uID() + "\n"));
+        assertTrue(log.contains("\ninitial commit\n"));
+        assertFalse(Codec.isLegacy(pointers));
+        String id = second.uID();
+        File sharded = new File(commits, id.substring(0, 2) + "/"
+                + id.substring(2));
+        assertTrue(sharded.exists());
+        assertFalse(Codec.isLegacy(sharded));
+        assertTrue(run(_dir, "status").contains(
+                "=== Modifications Not Staged For Commit ===\n\n"));
+        assertTrue(a.delete());
+        run(_dir, "checkout", "--", "a.txt");
+        assertEquals("legacy contents\n", Utils.readContentsAsString(a));
+        run(_dir, "checkout", "other");
+        assertFalse(a.exists());
+        run(_dir, "checkout", "master");
+        Utils.writeContents(a, "new contents\n");
+        run(_dir, "add", "a.txt");
+        run(_dir, "commit", "third");
+        assertEquals(3, run(_dir, "log").split("===", -1).length - 1);
+    }
+
+}
@@ -1,8 +1,13 @@
 package gitlet;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
@@ -11,7 +16,13 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * A class handling all the commands input by the user.
@@ -20,188 +31,280 @@ import java.util.TreeMap;
  */
 public class Commands implements Serializable {
 
+    /**
+     * Fewest hex digits to which log --abbrev shortens an id.
+     */
+    static final int ABBREV = 4;
+
+    /**
+     * True if checkout and reset report how many files they wrote,
+     * removed and skipped. It may be set with the gitlet.verbose system
+     * property.
+     */
+    static final boolean VERBOSE = Boolean.getBoolean("gitlet.verbose");
+
+    /**
+     * The metadata of the repository as this command sees it.
+     */
+    private final Session _session = new Session();
+
+    /**
+     * Writes the metadata this command changed. Called once the command
+     * has succeeded.
+     */
+    void save() {
+        _session.save();
+    }
+
     /**
      * Initialises a gitlet repository.
      */
     void init() throws IOException {
-        try {
-            if (Files.exists(Paths.get(".gitlet"))) {
-                Utils.message("A Gitlet version-control "
-                        + "system already exists in the current directory.");
-                throw new GitletException();
+        if (Files.exists(Paths.get(".gitlet"))) {
+            throw new GitletException.AlreadyExists("A Gitlet version-control "
+                    + "system already exists in the current directory.");
+        } else {
+            Files.createDirectory(Paths.get(".gitlet"));
+            ObjectStore.markCompressed();
+            Date epoch = new Date(0);
+            String msg = "initial commit";
+            String uID = Utils.sha1(epoch.toString(), msg);
+            Commit first = new Commit(epoch, msg, null, uID,
+                    Tree.write(new HashMap<>()));
+
+            ObjectStore.commits().put(uID, Codec.encode(first));
+            CommitGraph.get().add(first);
+            MessageIndex.add(first);
+
+            Repository repository = new Repository();
+            repository.addNode("master", first.uID());
+            repository.setCurrentBranch("master");
+            repository.setHead(uID);
+            _session.create(repository);
+        }
+    }
+
+    /**
+     * Stages the files at PATHS, and every file under those of PATHS
+     * that are directories, to be committed later. The files are hashed
+     * and stored in parallel, a file being read only if its stat data no
+     * longer matches its entry in the index, and the index is written
+     * once at the end.
+     */
+    void add(List<String> paths) {
+        File workingDir = new File(System.getProperty("user.dir"));
+        Index index = _session.index();
+        TreeSet<String> files = new TreeSet<>();
+        for (String path : paths) {
+            path = normalize(path);
+            File file = new File(workingDir, path);
+            if (file.isFile()) {
+                files.add(path);
+            } else if (file.isDirectory()) {
+                Status.walk(file, path.isEmpty() ? "" : path + "/",
+                        index, files);
             } else {
-                Files.createDirectory(Paths.get(".gitlet"));
-                Date epoch = new Date(0);
-                String msg = "initial commit";
-                String uID = Utils.sha1(epoch.toString(), msg);
-                Commit first = new Commit(epoch, msg, null, null, uID, null);
-
-                File commits = new File(".gitlet/commits");
-                commits.mkdir();
-                File commit = new File(commits, uID);
-                Utils.writeObject(commit, first);
-
-                Repository repository = new Repository();
-                repository.addNode("master", first.uID());
-                repository.setCurrentBranch("master");
-                repository.setHead(uID);
-                File pointers = new File(".gitlet/pointers");
-                Utils.writeObject(pointers, repository);
+                throw new GitletException.NotFound("File does not exist.");
             }
-        } catch (GitletException e) {
-            System.exit(0);
+        }
+        HashMap<String, String> heads = new HashMap<>();
+        Commit head = null;
+        for (String path : files) {
+            Index.Entry entry = index.get(path);
+            if (entry == null) {
+                continue;
+            } else if (entry.state() == Index.ADDED) {
+                if (head == null) {
+                    head = idToCommit(_session.head());
+                }
+                heads.put(path, Tree.find(head.tree(), path));
+            } else {
+                heads.put(path, entry.id());
+            }
+        }
+        Pack.all();
+        ForkJoinPool pool = new ForkJoinPool(Status.THREADS);
+        List<Staged> staged;
+        try {
+            staged = pool.invoke(new AddTask(workingDir, index, heads,
+                    new ArrayList<>(files), new ConcurrentHashMap<>()));
+        } finally {
+            pool.shutdown();
+        }
+        boolean changed = false;
+        for (Staged file : staged) {
+            if (file._stat != null) {
+                index.record(file._path, file._id, file._state, file._stat);
+                changed = true;
+            }
+        }
+        if (changed) {
+            _session.indexChanged();
         }
     }
 
     /**
-     * Stages a file FILENAME that needs to be committed later.
+     * A file hashed by add.
      */
-    void add(String filename) throws IOException {
-        File workingDir = new File(System.getProperty("user.dir"));
-        File file = new File(workingDir, filename);
-        File pointers = new File(".gitlet/pointers");
-        Repository repo = Utils.readObject(pointers, Repository.class);
-        if (file.exists()) {
-            File stagingToAdd = new File(".gitlet/stagingToAdd");
-            File[] filesStaged = stagingToAdd.listFiles();
-            if (repo.stageFilesNames().containsKey(filename)) {
-                String old = repo.stageFilesNames().get(filename);
-                File oldFile = new File(stagingToAdd, old);
-                int ind = Arrays.asList(filesStaged).indexOf(oldFile);
-                File toRemove = Arrays.asList(filesStaged).get(ind);
-                toRemove.delete();
-                repo.stageFiles().remove(old);
-                repo.stageFilesNames().remove(filename);
+    private static class Staged {
+        /**
+         * The path of the file.
+         */
+        private final String _path;
+        /**
+         * The id of its blob.
+         */
+        private final String _id;
+        /**
+         * The state of its entry in the index.
+         */
+        private final int _state;
+        /**
+         * Its stat data, or null if its entry is unchanged.
+         */
+        private final Index.Entry _stat;
+
+        /**
+         * The file at PATH holding blob ID, to be recorded in STATE with
+         * stat data STAT unless it is null.
+         */
+        Staged(String path, String id, int state, Index.Entry stat) {
+            _path = path;
+            _id = id;
+            _state = state;
+            _stat = stat;
+        }
+    }
+
+    /**
+     * Hashes and stores the files staged by add, splitting them among
+     * the threads of a fork-join pool.
+     */
+    private static class AddTask extends RecursiveTask<List<Staged>> {
+        /**
+         * Number of files below which a task is not split.
+         */
+        static final int THRESHOLD = 64;
+        /**
+         * The working directory.
+         */
+        private final File _workingDir;
+        /**
+         * The index the files are staged into, only read by the tasks.
+         */
+        private final Index _index;
+        /**
+         * Ids of the blobs of the head commit, hashed from path, for the
+         * paths with an entry in the index.
+         */
+        private final Map<String, String> _heads;
+        /**
+         * The paths of the files handled by this task.
+         */
+        private final List<String> _paths;
+        /**
+         * Ids of the blobs stored so far, so that each is stored once.
+         */
+        private final ConcurrentHashMap<String, Boolean> _stored;
+
+        /**
+         * A task staging the files at PATHS under WORKINGDIR into INDEX,
+         * given the blobs HEADS of the head commit. STORED holds the ids
+         * of the blobs already stored.
+         */
+        AddTask(File workingDir, Index index, Map<String, String> heads,
+                List<String> paths,
+                ConcurrentHashMap<String, Boolean> stored) {
+            _workingDir = workingDir;
+            _index = index;
+            _heads = heads;
+            _paths = paths;
+            _stored = stored;
+        }
+
+        @Override
+        protected List<Staged> compute() {
+            int n = _paths.size();
+            if (n > THRESHOLD) {
+                AddTask left = new AddTask(_workingDir, _index, _heads,
+                        _paths.subList(0, n / 2), _stored);
+                AddTask right = new AddTask(_workingDir, _index, _heads,
+                        _paths.subList(n / 2, n), _stored);
+                left.fork();
+                List<Staged> staged = new ArrayList<>(right.compute());
+                staged.addAll(0, left.join());
+                return staged;
             }
-            byte[] data = Utils.readContents(file);
-            String id = Utils.sha1(data);
-            if (!stagingToAdd.exists()) {
-                stagingToAdd.mkdir();
+            List<Staged> staged = new ArrayList<>(n);
+            for (String path : _paths) {
+                staged.add(stage(path));
             }
-            File remove = new File(".gitlet/remove");
-            if (remove.exists()) {
-                if (repo.removedFiles().keySet().contains(filename)) {
-                    File fileToRemove = new File(remove,
-                            repo.removedFiles().get(filename));
-                    fileToRemove.delete();
-                    repo.removedFiles().remove(filename);
-                    Utils.writeObject(pointers, repo);
-                    return;
-                }
+            return staged;
+        }
+
+        /**
+         * Hashes the file at PATH, stores its blob if it is to be staged
+         * for addition, and returns the result.
+         */
+        private Staged stage(String path) {
+            File file = new File(_workingDir, path);
+            Index.Entry stat = Index.stat(file);
+            if (stat == null) {
+                throw new IllegalArgumentException("must be a normal file");
             }
-            File fileStage = new File(stagingToAdd, id);
-            Utils.writeContents(fileStage, data);
-            fileStage.createNewFile();
-            Commit head = idToCommit(repo.head());
-            if (head.fileNames() != null
-                    && head.fileNames().containsKey(filename)
-                    && head.fileNames().get(filename).equals(id)) {
-                if (repo.stageFilesNames().containsKey(filename)) {
-                    if (fileStage.exists()) {
-                        fileStage.delete();
-                    }
-                    repo.stageFiles().remove(
-                            repo.stageFilesNames().get(filename));
-                    repo.stageFilesNames().remove(filename);
-                }
-                Utils.writeObject(pointers, repo);
-                return;
+            String id = _index.cached(path, stat);
+            boolean hashed = id == null;
+            if (hashed) {
+                id = Utils.sha1(file);
             }
-            repo.addFileName(filename, id);
-            repo.addFile(id, filename);
-            Utils.writeObject(pointers, repo);
-        } else {
-            Utils.message("File does not exist.");
-            throw new GitletException();
+            Index.Entry entry = _index.get(path);
+            if (entry != null && entry.state() == Index.CLEAN
+                    && id.equals(entry.id())) {
+                return new Staged(path, id, Index.CLEAN,
+                        hashed ? stat : null);
+            }
+            if (id.equals(_heads.get(path))) {
+                return new Staged(path, id, Index.CLEAN, stat);
+            }
+            if (_stored.putIfAbsent(id, true) == null) {
+                ObjectStore.blobs().put(id, file);
+            }
+            return new Staged(path, id, Index.ADDED, stat);
         }
     }
 
     /**
      * Commits a file with the message.
-     * Takes in MSG,MERGEBRANCH.
-     */
-    void commit(String msg, String mergeBranch) {
-        File stage = new File(".gitlet/stagingToAdd");
-        File commits = new File(".gitlet/commits");
-        File pointers = new File(".gitlet/pointers");
-        File remove = new File(".gitlet/remove");
-        File[] filesToUntrack = remove.listFiles();
-        File[] filesToCommit = stage.listFiles();
-        Repository repo = Utils.readObject(pointers, Repository.class);
-        Commit parent = idToCommit(repo.head());
-        if ((!stage.exists() || filesToCommit.length == 0)
-                && (!remove.exists() || filesToUntrack.length == 0)) {
-            Utils.message("No changes added to the commit.");
-            throw new GitletException();
+     * Takes in MSG,MERGEBRANCH. Returns the new commit.
+     */
+    Commit commit(String msg, String mergeBranch) {
+        Repository repo = _session.repository();
+        Index index = _session.index();
+        if (!index.hasChanges()) {
+            throw new GitletException.Refused(
+                    "No changes added to the commit.");
         } else {
+            Commit parent = idToCommit(repo.head());
             List<String> parents = new ArrayList<>();
             parents.add(repo.head());
             if (!mergeBranch.equals("")) {
                 parents.add(repo.branches().get(mergeBranch));
             }
-            HashMap<String, byte[]> trackfiles = new HashMap<>();
-            HashMap<String, String> filesNames = new HashMap<>();
-            if (parent.files() != null && parent.fileNames() != null) {
-                trackfiles = new HashMap<>(parent.files());
-                filesNames = new HashMap<>(parent.fileNames());
-            }
-            for (File f : filesToCommit) {
-                byte[] contents = Utils.readContents(f);
-                if (!(trackfiles.containsKey(f.getName())
-                        && trackfiles.get(f) == contents)) {
-                    trackfiles.put(f.getName(), contents);
-                    filesNames.put(repo.stageFiles().get(f.getName()),
-                            f.getName());
-                }
-            }
-            if (repo.removedFiles() != null) {
-                for (String removal : repo.removedFiles().keySet()) {
-                    if (filesNames.containsKey(removal)) {
-                        trackfiles.remove(filesNames.get(removal));
-                        filesNames.remove(removal);
-                    }
-                }
-            }
+            String tree = Tree.update(parent.tree(), index.changes());
             Date curr = new Date();
             String uID = Utils.sha1(curr.toString(),
-                    msg, parents.toString(),
-                    trackfiles.toString(), filesNames.toString());
+                    msg, parents.toString(), tree);
             Commit commit = new Commit(curr,
-                    msg, parents, trackfiles, uID, filesNames);
-            File newCommit = new File(commits, uID);
-            Utils.writeObject(newCommit, commit);
+                    msg, parents, uID, tree);
+            ObjectStore.commits().put(uID, Codec.encode(commit));
+            CommitGraph.get().add(commit);
+            MessageIndex.add(commit);
             repo.addNode(repo.currentBranch(), uID);
             repo.setHead(uID);
-            repo.stageFiles().clear();
-            repo.stageFilesNames().clear();
-            clearStageToAdd();
-            repo.removedFiles().clear();
-            clearRemove();
-            Utils.writeObject(pointers, repo);
-        }
-    }
-
-    /**
-     * Clears the remove staging area.
-     */
-    public void clearRemove() {
-        File remove = new File(".gitlet/remove");
-        File[] toRemove = remove.listFiles();
-        if (toRemove != null && toRemove.length != 0) {
-            for (File file : toRemove) {
-                file.delete();
-            }
-        }
-    }
-
-    /**
-     * Clears the add staging area.
-     */
-    public void clearStageToAdd() {
-        File stage = new File(".gitlet/stagingToAdd");
-        File[] stageFiles = stage.listFiles();
-        for (File file : stageFiles) {
-            file.delete();
+            index.committed();
+            _session.indexChanged();
+            _session.repositoryChanged();
+            return commit;
         }
     }
 
@@ -215,53 +318,22 @@ public class Commands implements Serializable {
      * takes in FILENAME.
      */
     public void rm(String filename) throws IOException {
-        try {
-            File remove = new File(".gitlet/remove");
-            remove.mkdir();
-            File stage = new File(".gitlet/stagingToAdd");
-            File[] filesInStagingArea = stage.listFiles();
-            List<File> filesToCommit = null;
-            if (filesInStagingArea != null) {
-                filesToCommit = Arrays.asList(stage.listFiles());
-            }
-            File pointers = new File(".gitlet/pointers");
-            Repository repo = Utils.readObject(pointers, Repository.class);
-            Commit parent = idToCommit(repo.head());
-
-            if ((!repo.stageFiles().values().contains(filename)
-                    && !(parent.fileNames() != null
-                    && parent.fileNames().containsKey(filename)))) {
-                Utils.message("No reason to remove the file.");
-                throw new GitletException();
-            }
-            String sha = "";
-            if (repo.stageFilesNames().keySet().contains(filename)) {
-                for (File file : filesToCommit) {
-                    if (file.getName().equals(
-                            repo.stageFilesNames().get(filename))) {
-                        file.delete();
-                        break;
-                    }
-                }
-                repo.stageFiles().remove(repo.stageFilesNames().get(filename));
-                repo.stageFilesNames().get(filename);
-            }
-            if (parent.fileNames() != null
-                    && parent.fileNames().containsKey(filename)) {
-                for (String tracking : parent.fileNames().keySet()) {
-                    if (tracking != null && tracking.equals(filename)) {
-                        sha = parent.fileNames().get(tracking);
-                        File file = new File(remove, sha);
-                        file.createNewFile();
-                        Utils.restrictedDelete(filename);
-                    }
-                }
-                repo.addRemovedFile(filename, sha);
-            }
-            Utils.writeObject(pointers, repo);
-        } catch (GitletException e) {
-            System.exit(0);
+        filename = normalize(filename);
+        Index index = _session.index();
+        Commit parent = idToCommit(_session.head());
+        String sha = Tree.find(parent.tree(), filename);
+        Index.Entry entry = index.get(filename);
+        if ((entry == null || entry.state() != Index.ADDED)
+                && sha == null) {
+            throw new GitletException.Refused("No reason to remove the file.");
+        }
+        if (sha == null) {
+            index.remove(filename);
+        } else {
+            index.put(filename, sha, Index.REMOVED, null);
+            removeFromWorkingDir(filename);
         }
+        _session.indexChanged();
     }
 
     /**
@@ -270,18 +342,15 @@ public class Commands implements Serializable {
      * commit backwards along the commit tree until the initial commit,
      * following the first parent commit links,
      * ignoring any second parents found in merge commits.
+     * The first parents are followed in the commit graph. If ABBREV,
+     * ids are shown as their shortest unique prefixes.
      */
-    public void log() {
-        File pointers = new File(".gitlet/pointers");
-        Repository repo = Utils.readObject(pointers, Repository.class);
-        Commit first = idToCommit(repo.head());
-        while (first != null) {
-            displayCommitLog(first.uID(), first);
-            if (first.parent() != null) {
-                first = idToCommit(first.parent().get(0));
-            } else {
-                first = null;
-            }
+    public void log(boolean abbrev) {
+        CommitGraph graph = CommitGraph.get();
+        for (int pos = graph.require(_session.head()); pos != CommitGraph.NONE;
+             pos = graph.parent(pos, 0)) {
+            String id = graph.id(pos);
+            displayCommitLog(id, commitHeader(id), abbrev ? graph : null);
         }
     }
 
@@ -289,27 +358,35 @@ public class Commands implements Serializable {
      * Displays log for all commits ever.
      */
     public void globalLog() {
-        File commits = new File(".gitlet/commits");
-        File[] files = commits.listFiles();
-        for (File file : files) {
-            Commit commit = idToCommit(file.getName());
-            displayCommitLog(file.getName(), commit);
+        for (String id : ObjectStore.commits().ids()) {
+            Commit commit = commitHeader(id);
+            displayCommitLog(id, commit, null);
         }
     }
 
     /**
      * Disply the commit.
-     * Takes in ID,COM.
+     * Takes in ID,COM, and GRAPH, in which ids are abbreviated to their
+     * shortest unique prefixes, or null to show them whole.
      */
-    void displayCommitLog(String id, Commit com) {
+    void displayCommitLog(String id, Commit com, CommitGraph graph) {
         String pattern = "EEE MMM dd HH:mm:ss yyyy Z";
         SimpleDateFormat format = new SimpleDateFormat(pattern);
         String date = format.format(com.timestamp());
+        if (graph != null) {
+            id = graph.abbrev(graph.position(id), ABBREV);
+        }
         if (com.parent() != null && com.parent().size() > 1) {
             System.out.println("===");
             System.out.println("commit " + id);
             String short1 = com.parent().get(0).substring(0, 7);
             String short2 = com.parent().get(1).substring(0, 7);
+            if (graph != null) {
+                short1 = graph.abbrev(graph.position(com.parent().get(0)),
+                        ABBREV);
+                short2 = graph.abbrev(graph.position(com.parent().get(1)),
+                        ABBREV);
+            }
             System.out.println("Merge: " + short1 + " " + short2);
             System.out.println("Date: " + date);
             System.out.println(com.logMessage());
@@ -324,35 +401,52 @@ public class Commands implements Serializable {
     }
 
     /**
-     * Finds all commits with the message MSG.
+     * Finds all commits with the message MSG, through the message index.
      */
     public void find(String msg) {
-        File commits = new File(".gitlet/commits");
-        File[] files = commits.listFiles();
-        int count = 0;
-        for (File file : files) {
-            Commit commit = idToCommit(file.getName());
-            if (commit.logMessage().equals(msg)) {
-                count++;
-                Utils.message(commit.uID());
-            }
+        printFound(MessageIndex.get().exact(msg));
+    }
+
+    /**
+     * Finds all commits whose messages contain TEXT if OPTION is
+     * --substring, or hold the word TEXT if it is --token, ignoring case.
+     */
+    public void find(String option, String text) {
+        MessageIndex index = MessageIndex.get();
+        switch (option) {
+        case "--substring":
+            printFound(index.substring(text));
+            break;
+        case "--token":
+            printFound(index.token(text));
+            break;
+        default:
+            throw Utils.error("Incorrect operands.");
         }
-        if (count == 0) {
-            Utils.message("Found no commit with that message.");
-            throw new GitletException();
+    }
+
+    /**
+     * Prints the commit IDS found by find, or reports that there are none.
+     */
+    private void printFound(List<String> ids) {
+        if (ids.isEmpty()) {
+            throw new GitletException.NotFound(
+                    "Found no commit with that message.");
+        }
+        for (String id : ids) {
+            Utils.message(id);
         }
     }
 
     /**
-     * Displays what branches currently exist, and marks the current branch.
+     * Displays what branches currently exist, and marks the current branch,
+     * followed by the staged files and the state of the working directory.
      */
     public void status() {
-        File pointers = new File(".gitlet/pointers");
-        Repository repo = Utils.readObject(pointers, Repository.class);
+        GitletRepository.StatusReport report = statusReport();
         System.out.println("=== Branches ===");
-        TreeMap<String, String> sortedBranches = new TreeMap<>(repo.branches());
-        for (String branch : sortedBranches.keySet()) {
-            if (branch.equals(repo.currentBranch())) {
+        for (String branch : report.branches()) {
+            if (branch.equals(report.currentBranch())) {
                 System.out.println("*" + branch);
             } else {
                 System.out.println(branch);
@@ -360,55 +454,78 @@ public class Commands implements Serializable {
         }
         System.out.println();
         System.out.println("=== Staged Files ===");
-        TreeMap<String, String> sortedStage = new TreeMap<>(repo.stageFiles());
-        for (String staged : sortedStage.keySet()) {
-            System.out.println(repo.stageFiles().get(staged));
+        for (String staged : report.staged()) {
+            System.out.println(staged);
         }
         System.out.println();
         System.out.println("=== Removed Files ===");
-        TreeMap<String, String> sortedRemoved =
-                new TreeMap<>(repo.removedFiles());
-        for (String removed : sortedRemoved.keySet()) {
+        for (String removed : report.removed()) {
             System.out.println(removed);
         }
         System.out.println();
         System.out.println("=== Modifications Not Staged For Commit ===");
+        for (Map.Entry<String, String> modified
+                : report.modified().entrySet()) {
+            System.out.println(modified.getKey()
+                    + " (" + modified.getValue() + ")");
+        }
         System.out.println();
         System.out.println("=== Untracked Files ===");
-
+        for (String untracked : report.untracked()) {
+            System.out.println(untracked);
+        }
         System.out.println();
     }
 
+    /**
+     * Returns the branches, staged files and state of the working
+     * directory shown by status. The entries of the index it refreshes
+     * are saved only if the lock is held alone; under a shared lock,
+     * which status usually holds, the repository is not written, and
+     * the next command that writes refreshes them again.
+     */
+    GitletRepository.StatusReport statusReport() {
+        Repository repo = _session.repository();
+        Index index = _session.index();
+        Status state = Status.of(index);
+        if (state.refreshed() && LockFile.heldAlone()) {
+            _session.indexChanged();
+        }
+        return new GitletRepository.StatusReport(
+                new TreeMap<>(repo.branches()).keySet(), repo.currentBranch(),
+                index.paths(Index.ADDED), index.paths(Index.REMOVED),
+                state.modified(), state.untracked());
+    }
+
     /**
      * Checkout first 2 uses using ARGS.
      */
     void checkout(String[] args) {
-        try {
-            String id, filename;
-            if (args.length == 2 && args[0].equals("--")) {
-                id = getHead();
-                filename = args[1];
-            } else if (args.length == 3 && args[1].equals("--")) {
-                id = args[0];
-                filename = args[2];
-            } else {
-                Utils.message("Incorrect operands.");
-                throw new GitletException();
-            }
-            Commit commit = idToCommit(convertShortenedID(id));
-            if (commit.fileNames() != null
-                    && commit.fileNames().containsKey(filename)) {
-                File f = new File(filename);
-                String fileSha = commit.fileNames().get(filename);
-                byte[] contents = commit.files().get(fileSha);
-                String string = new String(contents);
-                Utils.writeContents(f, string);
-            } else {
-                Utils.message("File does not exist in that commit.");
-                throw new GitletException();
-            }
-        } catch (GitletException e) {
-            System.exit(0);
+        String id, filename;
+        if (args.length == 2 && args[0].equals("--")) {
+            id = _session.head();
+            filename = args[1];
+        } else if (args.length == 3 && args[1].equals("--")) {
+            id = args[0];
+            filename = args[2];
+        } else {
+            throw Utils.error("Incorrect operands.");
+        }
+        checkoutFile(id, filename);
+    }
+
+    /**
+     * Writes the version of FILENAME in the commit whose id is or starts
+     * with ID to the working directory, without staging it.
+     */
+    void checkoutFile(String id, String filename) {
+        Commit commit = idToCommit(convertShortenedID(id));
+        String fileSha = Tree.find(commit.tree(), normalize(filename));
+        if (fileSha != null) {
+            writeWorkingFile(normalize(filename), fileSha);
+        } else {
+            throw new GitletException.NotFound(
+                    "File does not exist in that commit.");
         }
     }
 
@@ -425,61 +542,30 @@ public class Commands implements Serializable {
      * Takes in BRANCHNAME.
      */
     void checkoutBranch(String branchName) {
-        try {
-            File pointers = new File(".gitlet/pointers");
-            Repository repo = Utils.readObject(pointers, Repository.class);
-            if (!repo.branches().containsKey(branchName)) {
-                Utils.message("No such branch exists.");
-                throw new GitletException();
-            }
-            if (repo.currentBranch().equals(branchName)) {
-                Utils.message("No need to checkout the current branch.");
-                throw new GitletException();
-            }
-            List<String> nameFilesInWorkingDir =
-                    Utils.plainFilenamesIn(System.getProperty("user.dir"));
-            Commit currBranch = idToCommit(repo.head());
-            String id = repo.branches().get(branchName);
-            Commit commit = idToCommit(id);
-            String[] otherFiles = new String[]{".DS_Store",
-                ".gitignore", "Makefile", "gitlet-design.txt", "proj3.iml"};
-            for (String file : nameFilesInWorkingDir) {
-                if (!Arrays.asList(otherFiles).contains(file)
-                        && (currBranch.fileNames() == null
-                        || !currBranch.fileNames().keySet().contains(file))
-                        && commit.fileNames() != null
-                        && commit.fileNames().keySet().contains(file)) {
-                    Utils.message("There is an untracked file in the way;"
-                            + " delete it or add it first.");
-                    throw new GitletException();
-                }
-            }
-            if (currBranch.fileNames() != null) {
-                for (String name : currBranch.fileNames().keySet()) {
-                    if ((commit.fileNames() == null
-                            || !commit.fileNames().containsKey(name))
-                            && name != null) {
-                        Utils.restrictedDelete(name);
-                    }
-                }
-            }
-            if (commit.fileNames() != null) {
-                for (String name : commit.fileNames().keySet()) {
-                    File workingDir = new File(System.getProperty("user.dir"));
-                    File f = new File(workingDir, name);
-                    String fileSha = commit.fileNames().get(name);
-                    byte[] contents = commit.files().get(fileSha);
-                    String string = new String(contents);
-                    Utils.writeContents(f, string);
-                }
-            }
-            repo.setHead(id);
-            repo.setCurrentBranch(branchName);
-            repo.stageFiles().clear();
-            Utils.writeObject(pointers, repo);
-        } catch (GitletException e) {
-            System.exit(0);
+        report(switchBranch(branchName));
+    }
+
+    /**
+     * Checks out BRANCHNAME as checkoutBranch does, and returns how many
+     * files it wrote, removed and skipped.
+     */
+    GitletRepository.CheckoutResult switchBranch(String branchName) {
+        Repository repo = _session.repository();
+        if (!repo.branches().containsKey(branchName)) {
+            throw new GitletException.NotFound("No such branch exists.");
+        }
+        if (repo.currentBranch().equals(branchName)) {
+            throw new GitletException.Refused(
+                    "No need to checkout the current branch.");
         }
+        Commit currBranch = idToCommit(repo.head());
+        String id = repo.branches().get(branchName);
+        Commit commit = idToCommit(id);
+        GitletRepository.CheckoutResult result = switchTo(currBranch, commit);
+        repo.setHead(id);
+        repo.setCurrentBranch(branchName);
+        _session.repositoryChanged();
+        return result;
     }
 
     /**
@@ -488,18 +574,13 @@ public class Commands implements Serializable {
      * Takes in BRANCHNAME.
      */
     public void branch(String branchName) {
-        try {
-            File pointers = new File(".gitlet/pointers");
-            Repository repo = Utils.readObject(pointers, Repository.class);
-            if (repo.branches().containsKey(branchName)) {
-                Utils.message("A branch with that name already exists.");
-                throw new GitletException();
-            } else {
-                repo.addNode(branchName, repo.head());
-                Utils.writeObject(pointers, repo);
-            }
-        } catch (GitletException e) {
-            System.exit(0);
+        Repository repo = _session.repository();
+        if (repo.branches().containsKey(branchName)) {
+            throw new GitletException.AlreadyExists(
+                    "A branch with that name already exists.");
+        } else {
+            repo.addNode(branchName, repo.head());
+            _session.repositoryChanged();
         }
     }
 
@@ -507,21 +588,16 @@ public class Commands implements Serializable {
      * Deletes the branch with the given name BRANCHNAME.
      */
     public void rmbranch(String branchName) {
-        try {
-            File pointers = new File(".gitlet/pointers");
-            Repository repo = Utils.readObject(pointers, Repository.class);
-            if (!repo.branches().containsKey(branchName)) {
-                Utils.message("A branch with that name does not exist.");
-                throw new GitletException();
-            } else if (repo.currentBranch().equals(branchName)) {
-                Utils.message("Cannot remove the current branch.");
-                throw new GitletException();
-            } else {
-                repo.branches().remove(branchName);
-                Utils.writeObject(pointers, repo);
-            }
-        } catch (GitletException e) {
-            System.exit(0);
+        Repository repo = _session.repository();
+        if (!repo.branches().containsKey(branchName)) {
+            throw new GitletException.NotFound(
+                    "A branch with that name does not exist.");
+        } else if (repo.currentBranch().equals(branchName)) {
+            throw new GitletException.Refused(
+                    "Cannot remove the current branch.");
+        } else {
+            repo.branches().remove(branchName);
+            _session.repositoryChanged();
         }
     }
 
@@ -530,151 +606,228 @@ public class Commands implements Serializable {
      * Takes in COMMID.
      */
     public void reset(String commId) {
-        File pointers = new File(".gitlet/pointers");
-        Repository repo = Utils.readObject(pointers, Repository.class);
+        report(resetTo(commId));
+    }
+
+    /**
+     * Resets to COMMID as reset does, and returns how many files it
+     * wrote, removed and skipped.
+     */
+    GitletRepository.CheckoutResult resetTo(String commId) {
+        Repository repo = _session.repository();
         String id = convertShortenedID(commId);
-        File commits = new File(".gitlet/commits");
-        if (!Utils.plainFilenamesIn(commits).contains(id)) {
-            Utils.message(" No commit with that id exists.");
-            throw new GitletException();
+        if (!ObjectStore.commits().contains(id)) {
+            throw new GitletException.NotFound(
+                    " No commit with that id exists.");
         }
-        File workingDir = new File(System.getProperty("user.dir"));
-        List<String> nameFilesInWorkingDir =
-                Utils.plainFilenamesIn(System.getProperty("user.dir"));
-        File[] filesInWorkingDir = workingDir.listFiles();
         Commit currBranch = idToCommit(repo.head());
         Commit commit = idToCommit(id);
-        String[] otherFiles = new String[]{".DS_Store",
-            ".gitignore", "Makefile", "gitlet-design.txt", "proj3.iml"};
-
-        for (String file : nameFilesInWorkingDir) {
-            if (!Arrays.asList(otherFiles).contains(file)
-                    && !currBranch.fileNames().keySet().contains(file)
-                    && commit.fileNames().keySet().contains(file)) {
-                Utils.message("There is an untracked file in the way;"
-                        + " delete it or add it first.");
-                throw new GitletException();
-            }
-        }
+        GitletRepository.CheckoutResult result = switchTo(currBranch, commit);
+        repo.setHead(id);
+        repo.addNode(repo.currentBranch(), id);
+        _session.repositoryChanged();
+        return result;
+    }
 
-        for (String name : commit.fileNames().keySet()) {
-            String[] args = new String[]{id, "--", name};
-            checkout(args);
+    /**
+     * Prints how many files a checkout or reset wrote, removed and
+     * skipped, as RESULT tells, if VERBOSE.
+     */
+    private void report(GitletRepository.CheckoutResult result) {
+        if (VERBOSE) {
+            Utils.message("Wrote %d files, removed %d, skipped %d.",
+                    result.written(), result.removed(), result.skipped());
         }
+    }
 
-        for (String name : currBranch.fileNames().keySet()) {
-            if (!commit.fileNames().containsKey(name)) {
-                Utils.restrictedDelete(name);
+    /**
+     * Replaces the files of CURRENT in the working directory by those of
+     * TARGET and moves the index to TARGET, clearing the staging area.
+     * Only the paths whose blobs differ between the trees of the two
+     * commits are touched, and of those only the files the working
+     * directory does not already hold: a file whose stat data matches
+     * the index, or whose contents hash to its blob in TARGET, is
+     * skipped. The rest are written together by WorkingTree. Returns how
+     * many files were written, removed and skipped.
+     */
+    private GitletRepository.CheckoutResult switchTo(Commit current,
+                                                     Commit target) {
+        TreeMap<String, String[]> changes =
+                Tree.diff(current.tree(), target.tree());
+        checkUntracked(changes);
+        File workingDir = new File(System.getProperty("user.dir"));
+        Index index = _session.index();
+        int removed = 0, skipped = 0;
+        for (Map.Entry<String, String[]> change : changes.entrySet()) {
+            if (change.getValue()[1] != null) {
+                continue;
+            } else if (removeFromWorkingDir(change.getKey())) {
+                removed += 1;
+            } else {
+                skipped += 1;
             }
         }
-        repo.setHead(id);
-        repo.addNode(repo.currentBranch(), id);
-        repo.stageFilesNames().clear();
-        repo.stageFiles().clear();
-        Utils.writeObject(pointers, repo);
+        List<String> paths = new ArrayList<>(), ids = new ArrayList<>();
+        for (Map.Entry<String, String[]> change : changes.entrySet()) {
+            String path = change.getKey(), id = change.getValue()[1];
+            if (id == null) {
+                continue;
+            } else if (index.holds(path, new File(workingDir, path), id)) {
+                skipped += 1;
+            } else {
+                paths.add(path);
+                ids.add(id);
+            }
+        }
+        WorkingTree.write(paths, ids);
+        index.switchTo(target.tree(), changes);
+        _session.indexChanged();
+        return new GitletRepository.CheckoutResult(paths.size(), removed,
+                skipped);
     }
 
     /**
-     * Merge the current branch with BRANCHNAME.
+     * Checks that none of the files that CHANGES, as returned by
+     * Tree.diff, would bring into the working directory are already
+     * there untracked.
      */
-    public void merge(String branchName) throws IOException {
-        File pointers = new File(".gitlet/pointers");
-        Repository repo = Utils.readObject(pointers, Repository.class);
-        mergeException(repo, branchName);
-        String splitPoint = splitPoint(
-                repo.branches().get(repo.currentBranch()),
-                repo.branches().get(branchName));
-        mergeHelper(branchName, repo, splitPoint);
-        Commit current = idToCommit(repo.branches().get(repo.currentBranch()));
-        Commit given = idToCommit(repo.branches().get(branchName));
-        Commit split = idToCommit(splitPoint);
-        boolean conflict = false;
-        if (split.fileNames() != null) {
-            for (String fileName : split.fileNames().keySet()) {
-                if (!given.fileNames().containsKey(fileName)
-                        && modified(fileName, current, split)) {
-                    conflict = mergeConflict(fileName, current, given, repo);
-                }
-                if (!current.fileNames().containsKey(fileName)
-                        && modified(fileName, given, split)) {
-                    conflict = mergeConflict(fileName, current, given, repo);
-                }
-                if (modified(fileName, given, split)
-                        && modified(fileName, current, split)) {
-                    conflict = mergeConflict(fileName, current, given, repo);
-                }
-                if (modified(fileName, given, split)
-                        && !modified(fileName, current, split)) {
-                    checkout(new String[]{repo.branches().get(branchName),
-                        "--", fileName});
-                    repo.stageFiles().put(fileName,
-                            given.fileNames().get(fileName));
-                    File stage = new File(".gitlet/stagingToAdd");
-                    File thisFile = new File(stage,
-                            given.fileNames().get(fileName));
-                    thisFile.createNewFile();
-                }
-                if (!modified(fileName, current, split)
-                        && !given.fileNames().containsKey(fileName)) {
-                    repo.addRemovedFile(fileName,
-                            given.fileNames().get(fileName));
-                    Utils.restrictedDelete(fileName);
-                }
+    private void checkUntracked(Map<String, String[]> changes) {
+        File workingDir = new File(System.getProperty("user.dir"));
+        for (Map.Entry<String, String[]> change : changes.entrySet()) {
+            if (change.getValue()[0] == null
+                    && new File(workingDir, change.getKey()).exists()) {
+                throw new GitletException.Refused(
+                        "There is an untracked file in the way;"
+                        + " delete it or add it first.");
             }
         }
-        conflict = mergeHelper2(given, current,
-                split, branchName, repo, conflict);
-        Utils.writeObject(pointers, repo);
-        mergeCommit(branchName, repo.currentBranch(), conflict);
     }
 
     /**
-     * Helps Merge reduce the lines.
-     * Takes in BRANCHNAME,REPO,SPLITPOINT.
+     * Writes the blob SHA to the file at PATH in the working directory,
+     * creating its directories as needed.
      */
-    public void mergeHelper(String branchName,
-                            Repository repo, String splitPoint) {
-        if (repo.branches().get(branchName).equals(splitPoint)) {
-            Utils.message("Given branch is an ancestor of the current branch.");
-            throw new GitletException();
+    private void writeWorkingFile(String path, String sha) {
+        File workingDir = new File(System.getProperty("user.dir"));
+        File file = new File(workingDir, path);
+        file.getParentFile().mkdirs();
+        ObjectStore.blobs().copyTo(sha, file);
+    }
+
+    /**
+     * Deletes the file at PATH from the working directory, along with any
+     * directories it leaves empty. Returns false if there was no file to
+     * delete.
+     */
+    private boolean removeFromWorkingDir(String path) {
+        File workingDir = new File(System.getProperty("user.dir"));
+        if (!new File(workingDir, ".gitlet").isDirectory()) {
+            throw new IllegalArgumentException("not .gitlet working directory");
         }
-        if (repo.branches().get(repo.currentBranch()).equals(splitPoint)) {
-            repo.addNode(repo.currentBranch(),
-                    repo.branches().get(branchName));
+        File file = new File(workingDir, path);
+        if (file.isDirectory() || !file.delete()) {
+            return false;
+        }
+        for (File dir = file.getParentFile(); !dir.equals(workingDir)
+                && dir.delete(); dir = dir.getParentFile()) {
+            continue;
+        }
+        return true;
+    }
+
+    /**
+     * Returns PATH relative to the working directory with '/' as
+     * separator, as files are named in commits.
+     */
+    static String normalize(String path) {
+        return Paths.get(path).normalize().toString()
+                .replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Merge the current branch with BRANCHNAME.
+     * Only the paths that changed since the split point on the given
+     * branch are visited, found by comparing trees, which are taken from
+     * the commit graph.
+     */
+    public void merge(String branchName) {
+        GitletRepository.MergeResult result = mergeBranch(branchName);
+        switch (result.outcome()) {
+        case UP_TO_DATE:
+            Utils.message("Given branch is an ancestor of the current branch.");
+            break;
+        case FAST_FORWARD:
             Utils.message("Current branch fast-forwarded.");
-            checkoutBranch(branchName);
-            throw new GitletException();
+            break;
+        default:
+            if (result.conflict()) {
+                Utils.message("Encountered a merge conflict.");
+            }
         }
     }
 
     /**
-     * Returns conflict and Helps Merge reduce the lines.
-     * Takes in GIVEN,CURRENT,SPLIT,BRANCHNAME,
-     * REPO,CONFLICT.
+     * Merges BRANCHNAME into the current branch as merge does, and
+     * returns the outcome.
      */
-    public boolean mergeHelper2(Commit given, Commit current,
-                                Commit split, String branchName,
-                                Repository repo,
-                                boolean conflict) throws IOException {
-        for (String fileName : given.fileNames().keySet()) {
-            if ((split.fileNames() == null
-                    || !split.fileNames().containsKey(fileName))
-                    && fileName != null) {
-                if (different(fileName, current, given)) {
-                    conflict = mergeConflict(fileName, current, given, repo);
-                    continue;
+    GitletRepository.MergeResult mergeBranch(String branchName) {
+        Repository repo = _session.repository();
+        mergeException(repo, branchName);
+        String splitPoint = splitPoint(
+                repo.branches().get(repo.currentBranch()),
+                repo.branches().get(branchName));
+        if (repo.branches().get(branchName).equals(splitPoint)) {
+            return new GitletRepository.MergeResult(
+                    GitletRepository.MergeResult.Outcome.UP_TO_DATE,
+                    repo.head(), false);
+        }
+        if (repo.branches().get(repo.currentBranch()).equals(splitPoint)) {
+            switchBranch(branchName);
+            return new GitletRepository.MergeResult(
+                    GitletRepository.MergeResult.Outcome.FAST_FORWARD,
+                    repo.branches().get(branchName), false);
+        }
+        CommitGraph graph = CommitGraph.get();
+        String current = graph.tree(graph.require(
+                repo.branches().get(repo.currentBranch())));
+        String given = graph.tree(graph.require(
+                repo.branches().get(branchName)));
+        String split = graph.tree(graph.require(splitPoint));
+        TreeMap<String, String[]> ours = Tree.diff(split, current);
+        TreeMap<String, String[]> theirs = Tree.diff(split, given);
+        File workingDir = new File(System.getProperty("user.dir"));
+        Index index = _session.index();
+        boolean conflict = false;
+        List<String> paths = new ArrayList<>(), ids = new ArrayList<>();
+        for (Map.Entry<String, String[]> change : theirs.entrySet()) {
+            String fileName = change.getKey();
+            String givenSha = change.getValue()[1];
+            if (ours.containsKey(fileName)) {
+                String currentSha = ours.get(fileName)[1];
+                if (!Objects.equals(currentSha, givenSha)
+                        && mergeFile(fileName, change.getValue()[0],
+                                currentSha, givenSha, index)) {
+                    conflict = true;
                 }
-                checkout(new String[]{
-                        repo.branches().get(branchName), "--", fileName});
-                repo.stageFiles().put(
-                        fileName, given.fileNames().get(fileName));
-                File stage = new File(".gitlet/stagingToAdd");
-                File thisFile = new File(stage,
-                        given.fileNames().get(fileName));
-                thisFile.createNewFile();
+            } else if (givenSha == null) {
+                index.put(fileName, change.getValue()[0], Index.REMOVED,
+                        null);
+                removeFromWorkingDir(fileName);
+            } else {
+                paths.add(fileName);
+                ids.add(givenSha);
             }
         }
-        return conflict;
+        WorkingTree.write(paths, ids);
+        for (int k = 0; k < paths.size(); k += 1) {
+            index.put(paths.get(k), ids.get(k), Index.ADDED,
+                    new File(workingDir, paths.get(k)));
+        }
+        _session.indexChanged();
+        Commit merged = mergeCommit(branchName, repo.currentBranch());
+        return new GitletRepository.MergeResult(
+                GitletRepository.MergeResult.Outcome.MERGED, merged.uID(),
+                conflict);
     }
 
     /**
@@ -683,232 +836,233 @@ public class Commands implements Serializable {
      */
     public void mergeException(Repository repo, String branchName) {
         if (!repo.branches().containsKey(branchName)) {
-            Utils.message("A branch with that name does not exist.");
-            throw new GitletException();
+            throw new GitletException.NotFound(
+                    "A branch with that name does not exist.");
         }
-        if (repo.stageFiles().size() != 0) {
-            Utils.message("You have uncommitted changes.");
-            throw new GitletException();
+        if (_session.index().hasChanges()) {
+            throw new GitletException.Refused("You have uncommitted changes.");
         }
         if (branchName.equals(repo.currentBranch())) {
-            Utils.message("Cannot merge a branch with itself.");
-            throw new GitletException();
-        }
-        List<String> nameFilesInWorkingDir = Utils.plainFilenamesIn(
-                System.getProperty("user.dir"));
-        Commit currBranch = idToCommit(repo.head());
-        String id = repo.branches().get(branchName);
-        Commit commit = idToCommit(id);
-        String[] otherFiles = new String[]{".DS_Store",
-            ".gitignore", "Makefile", "gitlet-design.txt", "proj3.iml"};
-        for (String file : nameFilesInWorkingDir) {
-            if (!Arrays.asList(otherFiles).contains(file)
-                    && !currBranch.fileNames().keySet().contains(file)
-                    && commit.fileNames().keySet().contains(file)) {
-                Utils.message("There is an untracked file in the way;"
-                        + " delete it or add it first.");
-                throw new GitletException();
-            }
+            throw new GitletException.Refused(
+                    "Cannot merge a branch with itself.");
         }
+        CommitGraph graph = CommitGraph.get();
+        checkUntracked(Tree.diff(graph.tree(graph.require(repo.head())),
+                graph.tree(graph.require(repo.branches().get(branchName)))));
     }
 
     /**
-     * Handle Merge Conflict and Return the merged file.
-     * Takes in FILENAME,CURRENT,GIVEN,REPO.
+     * Merges the versions CURRENTSHA and GIVENSHA of FILENAME, both
+     * changed since SPLITSHA, any of which may be null if the file was
+     * absent, by lines with Diff3. The result is written to the working
+     * directory and staged in INDEX. Returns true if it has conflicts.
+     * A file removed on one side, binary or too large to be held in
+     * memory is a conflict as a whole, streamed by mergeConflict.
      */
-    public boolean mergeConflict(String fileName, Commit current,
-                                 Commit given,
-                                 Repository repo) throws IOException {
-        String contentsOfCurrent = "", contentsOfGiven = "";
-        if (!current.fileNames().containsKey(fileName)
-                && !given.fileNames().containsKey(fileName)) {
-            return false;
-        }
-        if (!current.fileNames().containsKey(fileName)) {
-            contentsOfGiven = new String(
-                    given.files().get(given.fileNames().get(fileName)));
+    boolean mergeFile(String fileName, String splitSha, String currentSha,
+                      String givenSha, Index index) {
+        ObjectStore blobs = ObjectStore.blobs();
+        if (currentSha == null || givenSha == null
+                || !Diff3.fits(blobs.size(currentSha), blobs.size(givenSha),
+                        splitSha == null ? 0 : blobs.size(splitSha))) {
+            mergeConflict(fileName, currentSha, givenSha, index);
+            return true;
         }
-        if (!given.fileNames().containsKey(fileName)) {
-            contentsOfCurrent = new String(
-                    current.files().get(current.fileNames().get(fileName)));
+        byte[] split = splitSha == null ? new byte[0] : blobs.get(splitSha);
+        byte[] current = blobs.get(currentSha);
+        byte[] given = blobs.get(givenSha);
+        if (Diff3.binary(split) || Diff3.binary(current)
+                || Diff3.binary(given)) {
+            mergeConflict(fileName, currentSha, givenSha, index);
+            return true;
         }
-        if (different(fileName, current, given)) {
-            contentsOfGiven = new String(
-                    given.files().get(given.fileNames().get(fileName)));
-            contentsOfCurrent = new String(
-                    current.files().get(current.fileNames().get(fileName)));
-
+        File workingDir = new File(System.getProperty("user.dir"));
+        File file = new File(workingDir, fileName);
+        file.getParentFile().mkdirs();
+        int conflicts;
+        try (OutputStream out = new BufferedOutputStream(
+                new FileOutputStream(file), ObjectStore.BUFFER_SIZE)) {
+            conflicts = new Diff3(split, current, given).writeTo(out);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
         }
-        String contents = "<<<<<<< HEAD\n";
-        contents += contentsOfCurrent;
-        contents += "=======\n";
-        contents += contentsOfGiven + ">>>>>>>\n";
+        String shaOfFile = Utils.sha1(file);
+        blobs.put(shaOfFile, file);
+        index.put(fileName, shaOfFile, Index.ADDED, file);
+        return conflicts > 0;
+    }
 
+    /**
+     * Writes the conflicting versions CURRENTSHA and GIVENSHA of FILENAME,
+     * either of which may be null if the file was removed, to the
+     * working directory and stages the result in INDEX.
+     */
+    public void mergeConflict(String fileName, String currentSha,
+                              String givenSha, Index index) {
+        ObjectStore blobs = ObjectStore.blobs();
         File workingDir = new File(System.getProperty("user.dir"));
-        File[] workingDirFiles = workingDir.listFiles();
-        for (File file : workingDirFiles) {
-            if (file.getName().equals(fileName)) {
-                Utils.writeContents(file, contents);
-                String shaOfFile = Utils.sha1(Utils.readContents(file));
-                repo.stageFilesNames().put(fileName, shaOfFile);
-                repo.stageFiles().put(shaOfFile, fileName);
-                File stage = new File(".gitlet/stagingToAdd");
-                stage.mkdir();
-                File thisFile = new File(stage, shaOfFile);
-                thisFile.createNewFile();
-                break;
+        File file = new File(workingDir, fileName);
+        file.getParentFile().mkdirs();
+        try (OutputStream out = new BufferedOutputStream(
+                new FileOutputStream(file), ObjectStore.BUFFER_SIZE)) {
+            out.write("<<<<<<< HEAD\n".getBytes(StandardCharsets.UTF_8));
+            if (currentSha != null) {
+                try (InputStream in = blobs.open(currentSha)) {
+                    in.transferTo(out);
+                }
+            }
+            out.write("=======\n".getBytes(StandardCharsets.UTF_8));
+            if (givenSha != null) {
+                try (InputStream in = blobs.open(givenSha)) {
+                    in.transferTo(out);
+                }
             }
+            out.write(">>>>>>>\n".getBytes(StandardCharsets.UTF_8));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
         }
-        return true;
+        String shaOfFile = Utils.sha1(file);
+        blobs.put(shaOfFile, file);
+        index.put(fileName, shaOfFile, Index.ADDED, file);
     }
 
     /**
      * Merge commit special.
-     * Takes in GIVEN,CURRENT,CONFLICT.
+     * Takes in GIVEN,CURRENT. Returns the merge commit.
      */
-    public void mergeCommit(String given, String current, boolean conflict) {
-        if (conflict) {
-            Utils.message("Encountered a merge conflict.");
-        }
+    public Commit mergeCommit(String given, String current) {
         String msg = "Merged " + given + " into " + current + ".";
-        commit(msg, given);
+        return commit(msg, given);
     }
 
     /**
      * RETURNS the sha of the split point commit.
      * Takes in CURRBRANCH,MERGEBRANCH.
+     * The split point is a best common ancestor of both, found by
+     * MergeBase in the commit graph. After a criss-cross merge there may
+     * be several, of which the latest is used.
      */
     public String splitPoint(String currBranch, String mergeBranch) {
-        Commit current = idToCommit(currBranch);
-        Commit given = idToCommit(mergeBranch);
-
-        ArrayList<String> parentOfCurrent = new ArrayList<>();
-        ArrayList<String> parentOfGiven = new ArrayList<>();
-        ArrayList<String> commonAncestors = new ArrayList<>();
-        String parentCurr, parentFrom;
-        parentOfCurrent.add(currBranch);
-        parentOfGiven.add(mergeBranch);
-
-        parentOfCurrent = findParents(current, parentOfCurrent);
-        parentOfGiven = findParents(given, parentOfGiven);
-        for (String p : parentOfCurrent) {
-            if (parentOfGiven.contains(p)) {
-                commonAncestors.add(p);
-            }
-        }
-        for (String c : commonAncestors) {
-            int count = 0;
-            for (String a : commonAncestors) {
-                if (!a.equals(c)) {
-                    if (findParents(idToCommit(a),
-                            new ArrayList<String>()).contains(c)) {
-                        count++;
-                    }
-                }
-            }
-            if (count == 0) {
-                return c;
-            }
-        }
-        return "";
-
+        CommitGraph graph = CommitGraph.get();
+        List<Integer> bases = new MergeBase(graph).bases(
+                graph.require(currBranch), graph.require(mergeBranch));
+        return bases.isEmpty() ? "" : graph.id(bases.get(0));
     }
 
     /**
-     * Returns a list of all parents of a commit.
-     * Takes in BRANCH,PARENTS.
+     * Reports the number and size of the objects in the repository
+     * and the compression ratio achieved on them.
      */
-    public ArrayList<String> findParents(Commit branch,
-                                         ArrayList<String> parents) {
-        if (branch.parent() == null) {
-            return parents;
-        } else {
-            boolean second = false;
-            parents.add(branch.parent().get(0));
-            if (branch.parent().size() > 1) {
-                second = true;
-                parents.add(branch.parent().get(1));
-            }
-            Commit firstParent = idToCommit(branch.parent().get(0));
-            if (second) {
-                Commit secondParent = idToCommit(branch.parent().get(1));
-                parents.addAll(findParents(secondParent, parents));
-            }
-            parents.addAll(findParents(firstParent, parents));
-            return parents;
+    public void countObjects() {
+        countObjects("blobs", ObjectStore.blobs());
+        countObjects("trees", ObjectStore.trees());
+        countObjects("commits", ObjectStore.commits());
+        countChunks();
+        long stored = 0;
+        int count = 0;
+        for (Pack pack : Pack.all()) {
+            count += pack.count();
+            stored += pack.file().length();
         }
+        Utils.message("packs: %d packs, %d objects, %d bytes stored",
+                Pack.all().size(), count, stored);
+        CommitCache cache = CommitCache.get();
+        Utils.message("commit cache: %d commits, %d bytes, %d hits, "
+                + "%d misses", cache.size(), cache.weight(), cache.hits(),
+                cache.misses());
     }
 
     /**
-     * Returns true if file FILE has been modified in COMMIT since SPLITPOINT.
+     * Consolidates the loose commits and blobs into a pack.
      */
-    public boolean modified(String file, Commit commit, Commit splitPoint) {
-        if (commit.fileNames().containsKey(file)) {
-            String string = splitPoint.fileNames().get(file);
-            if (!commit.fileNames().get(file).equals(string)) {
-                return true;
+    public void repack() {
+        Pack pack = Pack.repack();
+        Utils.message("Packed %d objects into %d bytes.",
+                pack.count(), pack.file().length());
+    }
+
+    /**
+     * Reports the blobs stored as lists of chunks and how much sharing
+     * their chunks saves: the ratio of the bytes of those blobs to the
+     * bytes of the distinct chunks holding them. Nothing is reported if
+     * there are no chunks.
+     */
+    private void countChunks() {
+        ObjectStore blobs = ObjectStore.blobs();
+        ObjectStore chunks = ObjectStore.chunks();
+        List<String> chunkIds = chunks.ids();
+        if (chunkIds.isEmpty()) {
+            return;
+        }
+        long bytes = 0, listed = 0, unique = 0;
+        int count = 0;
+        for (String id : blobs.ids()) {
+            List<String> list = blobs.chunkIds(id);
+            if (list != null) {
+                bytes += blobs.size(id);
+                listed += list.size();
+                count++;
             }
-            return false;
         }
-        return false;
+        for (String id : chunkIds) {
+            unique += chunks.size(id);
+        }
+        double ratio = unique == 0 ? 1.0 : (double) bytes / unique;
+        Utils.message("chunked blobs: %d blobs, %d bytes, %d chunks, "
+                + "%d distinct chunks, %d bytes, dedup ratio %.2f",
+                count, bytes, listed, chunkIds.size(), unique, ratio);
+        countObjects("chunks", chunks);
     }
 
     /**
-     * Returns true if the file differs in the both the commits.
-     * Takes in FILE,BRANCH,COMMIT.
+     * Reports the loose objects in STORE under the heading KIND.
      */
-    public boolean different(String file, Commit branch, Commit commit) {
-        if (!commit.fileNames().containsKey(file)
-                || !branch.fileNames().containsKey(file)) {
-            return false;
-        }
-        if (commit.fileNames().containsKey(file)
-                && branch.fileNames().containsKey(file)) {
-            String string = branch.fileNames().get(file);
-            return !commit.fileNames().get(file).equals(string);
+    private void countObjects(String kind, ObjectStore store) {
+        long raw = 0, stored = 0;
+        int count = 0;
+        for (String id : store.ids()) {
+            File file = store.file(id);
+            if (file.exists() && !store.chunked(id)) {
+                raw += store.size(id);
+                stored += file.length();
+                count++;
+            }
         }
-        return false;
+        double ratio = stored == 0 ? 1.0 : (double) raw / stored;
+        Utils.message("%s: %d objects, %d bytes, %d bytes stored, "
+                + "ratio %.2f", kind, count, raw, stored, ratio);
     }
 
     /**
      * Convert and Returns a SHA1 UID to its corresponding commit.
      */
     public Commit idToCommit(String uid) {
-        File file = new File(".gitlet/commits/" + uid);
-        if (file.exists()) {
-            return Utils.readObject(file, Commit.class);
-        } else {
-            Utils.message("No commit with that id exists.");
-            throw new GitletException();
-        }
+        return CommitCache.get().commit(uid);
+    }
+
+    /**
+     * Returns the commit with id UID decoded without its tracked files,
+     * unless it is already cached whole.
+     */
+    public Commit commitHeader(String uid) {
+        return CommitCache.get().header(uid);
     }
 
     /**
      * Returns the commit which is the head.
      */
     public String getHead() {
-        File pointers = new File(".gitlet/pointers");
-        Repository repo = Utils.readObject(pointers, Repository.class);
-        return repo.head();
+        return _session.head();
     }
 
     /**
      * Returns the actual id from ID.
-     * Converts a shorter id to the actual one.
+     * Converts a whole or shorter id, in either case, to the actual one,
+     * which must be the only id starting with it, by binary search in the
+     * commit graph.
      */
     private String convertShortenedID(String id) {
-        if (id.length() == Utils.UID_LENGTH) {
-            return id;
-        }
-        File commits = new File(".gitlet/commits");
-        File[] prevCommits = commits.listFiles();
-
-        for (File file : prevCommits) {
-            if (file.getName().contains(id)) {
-                return file.getName();
-            }
-        }
-        Utils.message("No commit with that id exists.");
-        throw new GitletException();
+        CommitGraph graph = CommitGraph.get();
+        return graph.id(graph.resolve(id));
     }
 }
@@ -11,6 +11,12 @@ import java.util.List;
  * @author Shreyansh Loharuka
  */
 public class Commit implements Serializable {
+    /**
+     * Serialization id of the class, kept so that repositories written
+     * before the binary codec can still be migrated.
+     */
+    private static final long serialVersionUID = 1880099781280485758L;
+
     /**
      * Commit UID using sha1.
      */
@@ -32,26 +38,47 @@ public class Commit implements Serializable {
     private List<String> _parent;
 
     /**
-     * Files in the commit hashed from sha to contents.
+     * Files in the commit hashed from name to sha. Read from the tree
+     * when first needed, unless the commit predates trees. Volatile, as
+     * cached commits may be shared between threads.
      */
-    private HashMap<String, byte[]> _files;
+    private volatile HashMap<String, String> _fileNames;
+
+    /**
+     * Id of the root tree of the commit, or null if the commit
+     * predates trees.
+     */
+    private String _tree;
 
     /**
-     * Files in the commit hashed from name to sha.
+     * Contents of the files of a commit written before the blob store,
+     * hashed from sha to contents. Null in every other commit.
      */
-    private HashMap<String, String> _fileNames;
+    private HashMap<String, byte[]> _files;
 
     /**
      * Constructor initialising the commit with
-     * the MSG,FILENAMES,UID,TIMESTAMP,LOG,PARENT commit, and the FILES.
+     * the MSG,UID,TIMESTAMP,LOG and PARENT commit, and its root TREE.
+     * The contents of the files are kept in the blob store.
+     */
+    public Commit(Date timestamp, String msg, List<String> parent,
+                  String uID, String tree) {
+        _timestamp = timestamp;
+        _logMessage = msg;
+        _parent = parent;
+        _UID = uID;
+        _tree = tree;
+    }
+
+    /**
+     * Constructor initialising a commit from before trees with
+     * the MSG,FILENAMES,UID,TIMESTAMP,LOG and PARENT commit.
      */
     public Commit(Date timestamp, String msg, List<String> parent,
-                  HashMap<String, byte[]> files, String uID,
-                  HashMap<String, String> fileNames) {
+                  String uID, HashMap<String, String> fileNames) {
         _timestamp = timestamp;
         _logMessage = msg;
         _parent = parent;
-        _files = files;
         _UID = uID;
         _fileNames = fileNames;
     }
@@ -63,7 +90,9 @@ public class Commit implements Serializable {
         _timestamp = com._timestamp;
         _logMessage = com._logMessage;
         _parent = com._parent;
-        _files = com._files;
+        _UID = com._UID;
+        _fileNames = com._fileNames;
+        _tree = com._tree;
     }
 
     /**
@@ -73,13 +102,6 @@ public class Commit implements Serializable {
         return _UID;
     }
 
-    /**
-     * Returns the tracked files in the commit.
-     */
-    public HashMap<String, byte[]> files() {
-        return _files;
-    }
-
     /**
      * Returns the Parent of commit.
      */
@@ -105,7 +127,46 @@ public class Commit implements Serializable {
      * Returns the tracked files with names in the commit.
      */
     public HashMap<String, String> fileNames() {
+        if (_fileNames == null && _tree != null) {
+            HashMap<String, String> fileNames = new HashMap<>();
+            Tree.flatten(_tree, "", fileNames);
+            _fileNames = fileNames;
+        }
+        return _fileNames;
+    }
+
+    /**
+     * Returns the tracked files with names in the commit if they have
+     * been read, or null.
+     */
+    HashMap<String, String> loadedFileNames() {
         return _fileNames;
     }
 
+    /**
+     * Returns true if the commit names a root tree.
+     */
+    boolean hasTree() {
+        return _tree != null;
+    }
+
+    /**
+     * Returns the id of the root tree of the commit. For a commit from
+     * before trees, the trees holding its files are stored first.
+     */
+    public String tree() {
+        if (_tree == null) {
+            _tree = Tree.write(_fileNames == null
+                    ? new HashMap<>() : _fileNames);
+        }
+        return _tree;
+    }
+
+    /**
+     * Returns the file contents embedded in a legacy commit, or null.
+     */
+    HashMap<String, byte[]> legacyFiles() {
+        return _files;
+    }
+
 }
@@ -0,0 +1,263 @@
+package gitlet;
+
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded cache of decoded commits, shared by all the commands run in
+ * the process. Since commits are named by their contents they never
+ * change once stored, and need never be invalidated. Each commit is
+ * weighed by an estimate of the memory it holds, which grows once its
+ * tracked files are read from its tree, and the least recently used
+ * commits are dropped whenever the total weight goes over the bound.
+ *
+ * @author Shreyansh Loharuka
+ */
+class CommitCache {
+
+    /**
+     * Greatest total weight of the cached commits, in bytes. It may be
+     * set with the gitlet.commitCache system property; 0 disables the
+     * cache.
+     */
+    static final long CAPACITY = Long.getLong("gitlet.commitCache",
+            16L << 20);
+
+    /**
+     * Estimated weight of a commit apart from its strings and files.
+     */
+    private static final int OVERHEAD = 160;
+
+    /**
+     * Estimated weight of a tracked file apart from its path.
+     */
+    private static final int FILE_OVERHEAD = 160;
+
+    /**
+     * The cache of the process.
+     */
+    private static final CommitCache CACHE = new CommitCache(CAPACITY);
+
+    /**
+     * Cached commits by id, least recently used first.
+     */
+    private final LinkedHashMap<String, Cached> _commits;
+
+    /**
+     * Greatest total weight of the cached commits.
+     */
+    private final long _capacity;
+
+    /**
+     * Total weight of the cached commits.
+     */
+    private long _weight;
+
+    /**
+     * Number of lookups answered from the cache.
+     */
+    private long _hits;
+
+    /**
+     * Number of lookups that decoded a commit.
+     */
+    private long _misses;
+
+    /**
+     * Initialise an empty cache holding at most CAPACITY bytes.
+     */
+    CommitCache(long capacity) {
+        _commits = new LinkedHashMap<>(16, 0.75f, true);
+        _capacity = capacity;
+    }
+
+    /**
+     * Returns the cache of the process.
+     */
+    static CommitCache get() {
+        return CACHE;
+    }
+
+    /**
+     * Returns the commit with id UID, decoding it on a miss, or reports
+     * that there is none.
+     */
+    Commit commit(String uid) {
+        synchronized (this) {
+            Cached cached = _commits.get(uid);
+            if (cached != null) {
+                _hits += 1;
+                reweigh(cached);
+                return cached._commit;
+            }
+            _misses += 1;
+        }
+        Commit commit = Codec.readCommit(open(uid));
+        synchronized (this) {
+            Cached cached = _commits.get(uid);
+            if (cached != null) {
+                return cached._commit;
+            }
+            cached = new Cached(commit);
+            _commits.put(uid, cached);
+            _weight += cached._weight;
+            evict();
+        }
+        return commit;
+    }
+
+    /**
+     * Returns the commit with id UID, decoded without its tracked files
+     * unless it is cached, or reports that there is none. Commits decoded
+     * this way are not cached, so that walks of the whole history do not
+     * sweep the cache.
+     */
+    Commit header(String uid) {
+        synchronized (this) {
+            Cached cached = _commits.get(uid);
+            if (cached != null) {
+                _hits += 1;
+                return cached._commit;
+            }
+            _misses += 1;
+        }
+        return Codec.readCommitHeader(open(uid));
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     */
+    synchronized long hits() {
+        return _hits;
+    }
+
+    /**
+     * Returns the number of lookups that decoded a commit.
+     */
+    synchronized long misses() {
+        return _misses;
+    }
+
+    /**
+     * Returns the number of cached commits.
+     */
+    synchronized int size() {
+        return _commits.size();
+    }
+
+    /**
+     * Returns the total weight of the cached commits, in bytes.
+     */
+    synchronized long weight() {
+        return _weight;
+    }
+
+    /**
+     * Drops every cached commit and resets the counters.
+     */
+    synchronized void clear() {
+        _commits.clear();
+        _weight = 0;
+        _hits = 0;
+        _misses = 0;
+    }
+
+    /**
+     * Returns a stream of the stored commit UID, or reports that there is
+     * none.
+     */
+    private static InputStream open(String uid) {
+        ObjectStore commits = ObjectStore.commits();
+        if (!commits.contains(uid)) {
+            throw new GitletException.NotFound(
+                    "No commit with that id exists.");
+        }
+        return commits.open(uid);
+    }
+
+    /**
+     * Updates the weight of CACHED if the tracked files of its commit
+     * have been read since it was weighed.
+     */
+    private void reweigh(Cached cached) {
+        if (!cached._files && cached._commit.loadedFileNames() != null) {
+            _weight -= cached._weight;
+            cached.weigh();
+            _weight += cached._weight;
+            evict();
+        }
+    }
+
+    /**
+     * Drops the least recently used commits until the total weight is
+     * within the capacity.
+     */
+    private void evict() {
+        Iterator<Cached> commits = _commits.values().iterator();
+        while (_weight > _capacity && commits.hasNext()) {
+            _weight -= commits.next()._weight;
+            commits.remove();
+        }
+    }
+
+    /**
+     * Returns the estimated weight of COMMIT, counting its tracked files
+     * only if they have been read.
+     */
+    static long weigh(Commit commit) {
+        long weight = OVERHEAD + 2L * commit.logMessage().length();
+        List<String> parents = commit.parent();
+        if (parents != null) {
+            weight += parents.size() * (long) (OVERHEAD / 2
+                    + 2 * Utils.UID_LENGTH);
+        }
+        Map<String, String> files = commit.loadedFileNames();
+        if (files != null) {
+            for (String path : files.keySet()) {
+                weight += FILE_OVERHEAD + 2L * path.length();
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * A cached commit and its weight.
+     */
+    private static class Cached {
+
+        /**
+         * The commit.
+         */
+        private final Commit _commit;
+
+        /**
+         * Estimated weight of the commit, in bytes.
+         */
+        private long _weight;
+
+        /**
+         * True if the weight counts the tracked files of the commit.
+         */
+        private boolean _files;
+
+        /**
+         * Initialise an entry for COMMIT.
+         */
+        Cached(Commit commit) {
+            _commit = commit;
+            weigh();
+        }
+
+        /**
+         * Weighs the commit anew.
+         */
+        void weigh() {
+            _files = _commit.loadedFileNames() != null;
+            _weight = CommitCache.weigh(_commit);
+        }
+    }
+
+}
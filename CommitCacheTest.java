@@ -0,0 +1,191 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static gitlet.GitletProcess.*;
+import static org.junit.Assert.*;
+
+/** Caches decoded commits up to a total weight, dropping the least
+ *  recently used first and weighing commits anew once their files are
+ *  read. Since commits are read from the repository in the current
+ *  directory, the tests are run by Reader in a process of its own.
+ *  @author Shreyansh Loharuka
+ */
+public class CommitCacheTest {
+
+    /** Lengths of the messages of the commits made, so that the second
+     *  weighs more than the fourth, and the fifth more than the rest. */
+    private static final int[] LENGTHS = {10, 200, 20, 30, 4000};
+
+    /** Commits in a log. */
+    private static final Pattern COMMIT = Pattern.compile(
+            "^commit ([0-9a-f]{40})$", Pattern.MULTILINE);
+
+    /** The working directory of the processes. */
+    private File _dir;
+
+    /** The ids of the commits made, oldest first. */
+    private List<String> _ids;
+
+    /** Create a repository of a commit of a file per length of LENGTHS,
+     *  with a message of that length. */
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        _dir = Files.createTempDirectory("gitlet-cache").toFile();
+        run(_dir, "init");
+        for (int i = 0; i < LENGTHS.length; i += 1) {
+            Utils.writeContents(new File(_dir, "f" + i + ".txt"), i + "\n");
+            run(_dir, "add", "f" + i + ".txt");
+            run(_dir, "commit", String.valueOf(i).repeat(LENGTHS[i]));
+        }
+        _ids = new ArrayList<>();
+        Matcher matcher = COMMIT.matcher(run(_dir, "log"));
+        while (matcher.find()) {
+            _ids.add(0, matcher.group(1));
+        }
+        _ids.remove(0);
+        assertEquals(LENGTHS.length, _ids.size());
+    }
+
+    /** Remove the repository. */
+    @After
+    public void tearDown() {
+        delete(_dir);
+    }
+
+    /** Commits are dropped least recently used first, and only as many
+     *  as bring the weight within the capacity; one heavier than the
+     *  capacity is not kept, and lookups of headers add nothing. */
+    @Test
+    public void evictTest() throws IOException, InterruptedException {
+        read("evict");
+    }
+
+    /** A cached commit whose files are read weighs more when next looked
+     *  up, which may evict others; a capacity of 0 caches nothing. */
+    @Test
+    public void reweighTest() throws IOException, InterruptedException {
+        read("reweigh");
+    }
+
+    /** Runs the test NAME of Reader on the commits in _dir, checking
+     *  that it printed nothing, neither output nor the trace of a
+     *  failure. */
+    private void read(String name) throws IOException, InterruptedException {
+        List<String> args = new ArrayList<>(_ids);
+        args.add(0, name);
+        Process process = start(_dir, Reader.class.getName(), List.of(),
+                args.toArray(new String[0]));
+        String out = output(process);
+        assertEquals(out, "", out);
+        assertEquals(0, process.exitValue());
+    }
+
+    /** The tests of CommitCache, run on the commits of the repository in
+     *  the current directory. */
+    static class Reader {
+
+        /** Runs the test named ARGS[0] on the commits ARGS[1..]. */
+        public static void main(String[] args) {
+            String[] ids = new String[args.length - 1];
+            System.arraycopy(args, 1, ids, 0, ids.length);
+            switch (args[0]) {
+            case "evict":
+                evict(ids);
+                break;
+            case "reweigh":
+                reweigh(ids);
+                break;
+            default:
+                throw new IllegalArgumentException(args[0]);
+            }
+        }
+
+        /** Checks the evictions of a cache of three of the commits IDS. */
+        static void evict(String[] ids) {
+            long[] weights = weights(ids);
+            assertTrue(weights[3] < weights[1]);
+            long capacity = weights[0] + weights[1] + weights[2];
+            assertTrue(weights[4] > capacity);
+            CommitCache cache = new CommitCache(capacity);
+            for (int i = 0; i < 3; i += 1) {
+                assertEquals(ids[i], cache.commit(ids[i]).uID());
+            }
+            assertEquals(3, cache.size());
+            assertEquals(capacity, cache.weight());
+            assertEquals(3, cache.misses());
+
+            Commit first = cache.commit(ids[0]);
+            assertSame(first, cache.commit(ids[0]));
+            assertEquals(2, cache.hits());
+            cache.header(ids[3]);
+            assertEquals(3, cache.size());
+            assertEquals(4, cache.misses());
+            cache.commit(ids[3]);
+            assertEquals(3, cache.size());
+            assertEquals(weights[0] + weights[2] + weights[3],
+                    cache.weight());
+            cache.commit(ids[0]);
+            cache.commit(ids[2]);
+            cache.commit(ids[3]);
+            assertEquals(5, cache.misses());
+            cache.commit(ids[1]);
+            assertEquals(6, cache.misses());
+            assertEquals(2, cache.size());
+            assertEquals(weights[3] + weights[1], cache.weight());
+            assertSame(cache.commit(ids[1]), cache.commit(ids[1]));
+
+            cache.commit(ids[4]);
+            assertEquals(0, cache.size());
+            assertEquals(0, cache.weight());
+            cache.clear();
+            assertEquals(0, cache.hits() + cache.misses());
+        }
+
+        /** Checks the weights of commits of IDS whose files are read. */
+        static void reweigh(String[] ids) {
+            long[] weights = weights(ids);
+            CommitCache cache = new CommitCache(weights[3] + weights[2]
+                    + weights[2] / 2);
+            Commit third = cache.commit(ids[2]);
+            cache.commit(ids[3]);
+            assertEquals(2, cache.size());
+            assertEquals(3, third.fileNames().size());
+            assertEquals(weights[2] + weights[3], cache.weight());
+            cache.commit(ids[3]);
+            cache.commit(ids[2]);
+            long heavier = CommitCache.weigh(third);
+            assertTrue(heavier > weights[2] + weights[2] / 2);
+            assertEquals(1, cache.size());
+            assertEquals(heavier, cache.weight());
+            assertSame(third, cache.commit(ids[2]));
+
+            CommitCache none = new CommitCache(0);
+            assertEquals(ids[0], none.commit(ids[0]).uID());
+            assertEquals(0, none.size());
+            assertEquals(0, none.weight());
+        }
+
+        /** Returns the weights of the commits IDS, decoded anew, before
+         *  their files are read. */
+        static long[] weights(String[] ids) {
+            CommitCache all = new CommitCache(Long.MAX_VALUE);
+            long[] weights = new long[ids.length];
+            for (int i = 0; i < ids.length; i += 1) {
+                weights[i] = CommitCache.weigh(all.commit(ids[i]));
+            }
+            assertEquals(ids.length, all.size());
+            return weights;
+        }
+    }
+
+}
@@ -0,0 +1,770 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The commit graph of a repository: the parents, root tree, timestamp
+ * and generation number of every commit, so that history is walked
+ * without decoding commits. Commits are numbered by position: the
+ * graph is a chain of layers, each holding the ids of its commits in
+ * sorted order behind a 256-way fan-out table, followed by their trees
+ * and fixed-size records; a commit's position is its index in its layer
+ * plus the number of commits in the layers below. Layers are
+ * memory-mapped. Each new commit is added as a layer of its own, and
+ * the top layers are merged while the topmost holds fewer than
+ * MERGE_FACTOR times the commits of the one being added, so that the
+ * chain stays logarithmic in length.
+ *
+ * The generation number of a commit is one more than the greatest of
+ * its parents', or 1 for a root, so a commit can only be an ancestor of
+ * commits of greater generation.
+ *
+ * @author Shreyansh Loharuka
+ */
+class CommitGraph {
+
+    /**
+     * Directory holding the layers of the graph.
+     */
+    static final File GRAPH = new File(".gitlet/graph");
+
+    /**
+     * File listing the names of the layers, bottom first.
+     */
+    static final File CHAIN = new File(GRAPH, "chain");
+
+    /**
+     * Magic number starting a layer.
+     */
+    static final int MAGIC = 0x474c5447;
+
+    /**
+     * Current format version of layers.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Position standing for no commit.
+     */
+    static final int NONE = -1;
+
+    /**
+     * Ratio of the sizes of consecutive layers below which they are
+     * merged.
+     */
+    static final int MERGE_FACTOR = 2;
+
+    /**
+     * Length of the header of a layer.
+     */
+    private static final int HEADER = 16;
+
+    /**
+     * Length of the record of a commit: two parent positions, the
+     * generation number and the timestamp.
+     */
+    private static final int RECORD = 20;
+
+    /**
+     * The graph of the repository, loaded when first needed.
+     */
+    private static CommitGraph _graph;
+
+    /**
+     * Directory holding the layers of this graph.
+     */
+    private File _dir;
+
+    /**
+     * The layers of this graph, bottom first.
+     */
+    private List<Layer> _layers;
+
+    /**
+     * Number of commits in this graph.
+     */
+    private int _count;
+
+    /**
+     * Names of the layers of this graph, bottom first.
+     */
+    private List<String> _names;
+
+    /**
+     * Initialise the graph made of the layers listed in the chain of
+     * directory DIR.
+     */
+    private CommitGraph(File dir) {
+        _dir = dir;
+        _layers = new ArrayList<>();
+        _names = chain(dir);
+        for (String name : _names) {
+            Layer layer = new Layer(new File(dir, name));
+            _layers.add(layer);
+            _count += layer._count;
+        }
+    }
+
+    /**
+     * Returns the graph of the repository.
+     */
+    static synchronized CommitGraph get() {
+        if (_graph == null) {
+            _graph = new CommitGraph(GRAPH);
+        }
+        return _graph;
+    }
+
+    /**
+     * Forgets the graph loaded so far if its chain of layers has been
+     * replaced since, as by another process.
+     */
+    static synchronized void reload() {
+        if (_graph != null && !_graph._names.equals(chain(GRAPH))) {
+            _graph = null;
+        }
+    }
+
+    /**
+     * Returns the graph whose layers are in directory DIR.
+     */
+    static CommitGraph open(File dir) {
+        return new CommitGraph(dir);
+    }
+
+    /**
+     * Builds the graph of a repository made by older versions, unless it
+     * already has one.
+     */
+    static void upgrade() {
+        if (needsUpgrade()) {
+            build();
+        }
+    }
+
+    /**
+     * Returns true if the repository has no commit graph yet.
+     */
+    static boolean needsUpgrade() {
+        return !CHAIN.exists() && Journal.pending(CHAIN) == null;
+    }
+
+    /**
+     * Rebuilds the graph from every commit of the repository as a single
+     * layer.
+     */
+    static synchronized void build() {
+        ObjectStore commits = ObjectStore.commits();
+        List<Record> records = new ArrayList<>();
+        for (String id : commits.ids()) {
+            records.add(new Record(Codec.readCommit(commits.open(id))));
+        }
+        build(GRAPH, records);
+        _graph = null;
+    }
+
+    /**
+     * Writes to directory DIR a graph made of a single layer holding
+     * RECORDS, whose parents must all be among them.
+     */
+    static void build(File dir, List<Record> records) {
+        HashMap<String, Record> byId = new HashMap<>();
+        for (Record record : records) {
+            byId.put(record._id, record);
+        }
+        for (Record record : records) {
+            generation(record, byId);
+        }
+        dir.mkdirs();
+        String name = write(dir, new ArrayList<>(records), 0, null);
+        List<String> old = chain(dir);
+        Journal.write(new File(dir, CHAIN.getName()),
+                (name + "\n").getBytes(StandardCharsets.UTF_8));
+        for (String file : old) {
+            if (!file.equals(name)) {
+                Journal.delete(new File(dir, file));
+            }
+        }
+    }
+
+    /**
+     * Sets the generation number of RECORD, and those of its ancestors
+     * that are not set yet, from RECORDS, hashed by id.
+     */
+    private static void generation(Record record,
+                                   HashMap<String, Record> records) {
+        ArrayDeque<Record> stack = new ArrayDeque<>();
+        stack.push(record);
+        while (!stack.isEmpty()) {
+            Record top = stack.peek();
+            if (top._generation > 0) {
+                stack.pop();
+                continue;
+            }
+            int generation = 1;
+            boolean ready = true;
+            for (String parent : top._parents) {
+                Record p = records.get(parent);
+                if (p == null) {
+                    throw Utils.error("Missing commit %s.", parent);
+                } else if (p._generation == 0) {
+                    stack.push(p);
+                    ready = false;
+                } else {
+                    generation = Math.max(generation, p._generation + 1);
+                }
+            }
+            if (ready) {
+                top._generation = generation;
+                stack.pop();
+            }
+        }
+    }
+
+    /**
+     * Adds COMMIT, whose parents are already in the graph, as a new
+     * layer, merging the top layers as needed.
+     */
+    synchronized void add(Commit commit) {
+        if (position(commit.uID()) != NONE) {
+            return;
+        }
+        Record record = new Record(commit);
+        for (String parent : record._parents) {
+            int pos = require(parent);
+            record._generation = Math.max(record._generation,
+                    generation(pos) + 1);
+        }
+        record._generation = Math.max(record._generation, 1);
+        List<Record> layer = new ArrayList<>();
+        layer.add(record);
+        List<String> names = chain(_dir);
+        int merged = 0;
+        while (merged < _layers.size()) {
+            Layer top = _layers.get(_layers.size() - 1 - merged);
+            if (top._count >= MERGE_FACTOR * layer.size()) {
+                break;
+            }
+            for (int i = 0; i < top._count; i += 1) {
+                layer.add(record(top._base + i));
+            }
+            merged += 1;
+        }
+        int kept = _layers.size() - merged;
+        int base = kept == 0 ? 0 : _layers.get(kept - 1)._base
+                + _layers.get(kept - 1)._count;
+        _dir.mkdirs();
+        String name = write(_dir, layer, base, this);
+        StringBuilder chain = new StringBuilder();
+        for (int i = 0; i < kept; i += 1) {
+            chain.append(names.get(i)).append('\n');
+        }
+        chain.append(name).append('\n');
+        _names = new ArrayList<>(names.subList(0, kept));
+        _names.add(name);
+        Journal.write(new File(_dir, CHAIN.getName()),
+                chain.toString().getBytes(StandardCharsets.UTF_8));
+        for (int i = kept; i < names.size(); i += 1) {
+            if (!names.get(i).equals(name)) {
+                Journal.delete(new File(_dir, names.get(i)));
+            }
+        }
+        _layers.subList(kept, _layers.size()).clear();
+        Layer added = new Layer(new File(_dir, name));
+        _layers.add(added);
+        _count = added._base + added._count;
+    }
+
+    /**
+     * Returns the number of commits in the graph.
+     */
+    int count() {
+        return _count;
+    }
+
+    /**
+     * Returns the position of the commit with id ID, or NONE.
+     */
+    int position(String id) {
+        if (id == null || id.length() != Utils.UID_LENGTH) {
+            return NONE;
+        }
+        byte[] key = Utils.toBytes(id);
+        for (Layer layer : _layers) {
+            int pos = layer.position(key);
+            if (pos >= 0) {
+                return layer._base + pos;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Returns the position of the commit with id ID, rebuilding the graph
+     * if the commit was made without it.
+     */
+    int require(String id) {
+        int pos = position(id);
+        if (pos == NONE && ObjectStore.commits().contains(id)) {
+            build();
+            CommitGraph graph = get();
+            _layers = graph._layers;
+            _count = graph._count;
+            _names = graph._names;
+            pos = position(id);
+        }
+        if (pos == NONE) {
+            throw new GitletException.NotFound(
+                    "No commit with that id exists.");
+        }
+        return pos;
+    }
+
+    /**
+     * Returns the position of the only commit whose id starts with
+     * PREFIX, in either case, found by binary search in each layer, or
+     * reports that there is none or more than one. The graph is rebuilt if
+     * it misses commits made without it.
+     */
+    int resolve(String prefix) {
+        String lower = prefix.toLowerCase();
+        if (lower.length() == Utils.UID_LENGTH) {
+            return require(lower);
+        }
+        int[] found = matches(lower);
+        if (found[0] == 0 && !lower.isEmpty()
+                && !ObjectStore.commits().ids(lower).isEmpty()) {
+            build();
+            CommitGraph graph = get();
+            _layers = graph._layers;
+            _count = graph._count;
+            _names = graph._names;
+            found = matches(lower);
+        }
+        if (found[0] == 0) {
+            throw new GitletException.NotFound(
+                    "No commit with that id exists.");
+        }
+        if (found[0] > 1) {
+            throw new GitletException.Ambiguous(
+                    "More than one commit has that id prefix.");
+        }
+        return found[1];
+    }
+
+    /**
+     * Returns the shortest prefix of the id of the commit at POS, of at
+     * least MIN digits, that no other commit of the graph shares.
+     */
+    String abbrev(int pos, int min) {
+        String id = id(pos);
+        byte[] key = Utils.toBytes(id);
+        int length = min;
+        for (Layer layer : _layers) {
+            int index = layer.lowerBound(key, Utils.UID_LENGTH);
+            int self = pos - layer._base;
+            for (int other = index - 1; other <= index + 1; other += 1) {
+                if (other >= 0 && other < layer._count && other != self) {
+                    length = Math.max(length,
+                            layer.common(other, key) + 1);
+                }
+            }
+        }
+        return id.substring(0, Math.min(length, Utils.UID_LENGTH));
+    }
+
+    /**
+     * Returns the number of commits, up to 2, whose ids start with the
+     * lower-case hex numeral PREFIX, followed by the position of the
+     * first found.
+     */
+    private int[] matches(String prefix) {
+        int[] found = new int[2];
+        if (prefix.isEmpty() || prefix.length() > Utils.UID_LENGTH) {
+            return found;
+        }
+        byte[] key = new byte[Pack.ID_BYTES];
+        for (int i = 0; i < prefix.length(); i += 1) {
+            int digit = Character.digit(prefix.charAt(i), 16);
+            if (digit < 0) {
+                return found;
+            }
+            key[i / 2] |= i % 2 == 0 ? digit << 4 : digit;
+        }
+        for (Layer layer : _layers) {
+            int index = layer.lowerBound(key, prefix.length());
+            for (; index < layer._count && found[0] < 2
+                     && layer.common(index, key) >= prefix.length();
+                 index += 1) {
+                if (found[0] == 0) {
+                    found[1] = layer._base + index;
+                }
+                found[0] += 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the id of the commit at POS.
+     */
+    String id(int pos) {
+        Layer layer = layer(pos);
+        return layer.hex(layer.idsStart() + (pos - layer._base)
+                * Pack.ID_BYTES);
+    }
+
+    /**
+     * Returns the id of the root tree of the commit at POS.
+     */
+    String tree(int pos) {
+        Layer layer = layer(pos);
+        return layer.hex(layer.treesStart() + (pos - layer._base)
+                * Pack.ID_BYTES);
+    }
+
+    /**
+     * Returns the position of parent K, 0 or 1, of the commit at POS, or
+     * NONE if it has no such parent.
+     */
+    int parent(int pos, int k) {
+        Layer layer = layer(pos);
+        return layer._buf.getInt(layer.record(pos - layer._base) + 4 * k);
+    }
+
+    /**
+     * Returns the generation number of the commit at POS.
+     */
+    int generation(int pos) {
+        Layer layer = layer(pos);
+        return layer._buf.getInt(layer.record(pos - layer._base) + 8);
+    }
+
+    /**
+     * Returns the timestamp, in milliseconds, of the commit at POS.
+     */
+    long timestamp(int pos) {
+        Layer layer = layer(pos);
+        return layer._buf.getLong(layer.record(pos - layer._base) + 12);
+    }
+
+    /**
+     * Returns the layer holding position POS.
+     */
+    private Layer layer(int pos) {
+        for (int i = _layers.size() - 1; i >= 0; i -= 1) {
+            if (pos >= _layers.get(i)._base) {
+                return _layers.get(i);
+            }
+        }
+        throw new IllegalArgumentException("bad commit position " + pos);
+    }
+
+    /**
+     * Returns the record of the commit at POS.
+     */
+    private Record record(int pos) {
+        Record record = new Record(id(pos), tree(pos), timestamp(pos));
+        for (int k = 0; k < 2; k += 1) {
+            if (parent(pos, k) != NONE) {
+                record._parents.add(id(parent(pos, k)));
+            }
+        }
+        record._generation = generation(pos);
+        return record;
+    }
+
+    /**
+     * Returns the names of the layers listed in the chain of directory
+     * DIR, bottom first, as held by Journal if it is not yet written.
+     */
+    private static List<String> chain(File dir) {
+        List<String> names = new ArrayList<>();
+        File chain = new File(dir, CHAIN.getName());
+        byte[] held = Journal.pending(chain);
+        if (held != null || chain.exists()) {
+            byte[] text = held != null ? held : Utils.readContents(chain);
+            for (String name
+                    : new String(text, StandardCharsets.UTF_8).split("\n")) {
+                if (!name.isEmpty()) {
+                    names.add(name);
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Writes to directory DIR a layer holding RECORDS above BASE commits
+     * of GRAPH, which holds the parents not in RECORDS and may be null
+     * if there are none, and returns its name.
+     */
+    private static String write(File dir, List<Record> records, int base,
+                                CommitGraph graph) {
+        records.sort(Comparator.comparing(r -> r._id));
+        HashMap<String, Integer> local = new HashMap<>();
+        for (int i = 0; i < records.size(); i += 1) {
+            local.put(records.get(i)._id, base + i);
+        }
+        int[] fanout = new int[Pack.FANOUT];
+        for (Record record : records) {
+            fanout[Integer.parseInt(record._id.substring(0, 2), 16)] += 1;
+        }
+        for (int i = 1; i < Pack.FANOUT; i += 1) {
+            fanout[i] += fanout[i - 1];
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(bytes));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(records.size());
+            out.writeInt(base);
+            for (int count : fanout) {
+                out.writeInt(count);
+            }
+            for (Record record : records) {
+                out.write(Utils.toBytes(record._id));
+            }
+            for (Record record : records) {
+                out.write(Utils.toBytes(record._tree));
+            }
+            for (Record record : records) {
+                for (int k = 0; k < 2; k += 1) {
+                    if (k >= record._parents.size()) {
+                        out.writeInt(NONE);
+                        continue;
+                    }
+                    String parent = record._parents.get(k);
+                    Integer pos = local.get(parent);
+                    out.writeInt(pos != null ? pos : graph.require(parent));
+                }
+                out.writeInt(record._generation);
+                out.writeLong(record._timestamp);
+            }
+            out.close();
+            byte[] data = bytes.toByteArray();
+            String name = "graph-" + Utils.sha1(data) + ".graph";
+            File file = new File(dir, name);
+            File tmp = Journal.temp("graph");
+            try (FileOutputStream stream = new FileOutputStream(tmp)) {
+                stream.write(data);
+            }
+            Journal.move(tmp, file);
+            Journal.written(file);
+            return name;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * The fields of a commit written to a layer.
+     */
+    static class Record {
+        /**
+         * The id of the commit.
+         */
+        private String _id;
+        /**
+         * The id of its root tree.
+         */
+        private String _tree;
+        /**
+         * The ids of its parents.
+         */
+        private List<String> _parents;
+        /**
+         * Its timestamp, in milliseconds.
+         */
+        private long _timestamp;
+        /**
+         * Its generation number, or 0 if not known yet.
+         */
+        private int _generation;
+
+        /**
+         * The record of the commit with id ID, root tree TREE and
+         * timestamp TIMESTAMP, without parents.
+         */
+        Record(String id, String tree, long timestamp) {
+            this(id, tree, timestamp, new ArrayList<>());
+        }
+
+        /**
+         * The record of the commit with id ID, root tree TREE, timestamp
+         * TIMESTAMP and parents PARENTS.
+         */
+        Record(String id, String tree, long timestamp,
+               List<String> parents) {
+            _id = id;
+            _tree = tree;
+            _timestamp = timestamp;
+            _parents = parents;
+        }
+
+        /**
+         * The record of COMMIT, without generation number.
+         */
+        Record(Commit commit) {
+            this(commit.uID(), commit.tree(),
+                    commit.timestamp().getTime());
+            if (commit.parent() != null) {
+                _parents.addAll(commit.parent());
+            }
+        }
+    }
+
+    /**
+     * A memory-mapped layer of the graph.
+     */
+    private static class Layer {
+        /**
+         * The contents of the layer.
+         */
+        private MappedByteBuffer _buf;
+        /**
+         * Number of commits in the layer.
+         */
+        private int _count;
+        /**
+         * Number of commits in the layers below.
+         */
+        private int _base;
+
+        /**
+         * Initialise the layer stored in FILE.
+         */
+        Layer(File file) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                _buf = raf.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                        0, raf.length());
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            if (_buf.getInt(0) != MAGIC || _buf.getInt(4) > VERSION) {
+                throw new IllegalArgumentException("bad commit graph "
+                        + file.getName());
+            }
+            _count = _buf.getInt(8);
+            _base = _buf.getInt(12);
+        }
+
+        /**
+         * Returns the position in this layer of the id whose bytes are
+         * KEY, or -1 if absent.
+         */
+        int position(byte[] key) {
+            int first = key[0] & 0xff;
+            int lo = first == 0 ? 0 : _buf.getInt(HEADER + (first - 1) * 4);
+            int hi = _buf.getInt(HEADER + first * 4) - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = compare(idsStart() + mid * Pack.ID_BYTES, key);
+                if (c < 0) {
+                    lo = mid + 1;
+                } else if (c > 0) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Returns the index of the first id of this layer not below KEY,
+         * whose first DIGITS hex digits alone are significant.
+         */
+        int lowerBound(byte[] key, int digits) {
+            int first = key[0] & 0xff;
+            int last = digits == 1 ? first | 0x0f : first;
+            int lo = first == 0 ? 0 : _buf.getInt(HEADER + (first - 1) * 4);
+            int hi = _buf.getInt(HEADER + last * 4);
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (compare(idsStart() + mid * Pack.ID_BYTES, key) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * Returns the number of leading hex digits that the id at INDEX
+         * in this layer shares with KEY.
+         */
+        int common(int index, byte[] key) {
+            int start = idsStart() + index * Pack.ID_BYTES;
+            for (int i = 0; i < Pack.ID_BYTES; i += 1) {
+                int x = (_buf.get(start + i) ^ key[i]) & 0xff;
+                if (x != 0) {
+                    return 2 * i + (x >= 0x10 ? 0 : 1);
+                }
+            }
+            return Utils.UID_LENGTH;
+        }
+
+        /**
+         * Compares the id starting at offset START with KEY.
+         */
+        private int compare(int start, byte[] key) {
+            for (int i = 0; i < Pack.ID_BYTES; i += 1) {
+                int c = (_buf.get(start + i) & 0xff) - (key[i] & 0xff);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Returns the hex numeral of the id starting at offset START.
+         */
+        String hex(int start) {
+            byte[] id = new byte[Utils.UID_BYTES];
+            _buf.get(start, id);
+            return Utils.hex(id, 0);
+        }
+
+        /**
+         * Returns the offset of the first id.
+         */
+        int idsStart() {
+            return HEADER + Pack.FANOUT * 4;
+        }
+
+        /**
+         * Returns the offset of the first tree.
+         */
+        int treesStart() {
+            return idsStart() + _count * Pack.ID_BYTES;
+        }
+
+        /**
+         * Returns the offset of the record of the commit at position POS
+         * of this layer.
+         */
+        int record(int pos) {
+            return treesStart() + _count * Pack.ID_BYTES + pos * RECORD;
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static gitlet.GitletProcess.*;
+import static org.junit.Assert.*;
+
+/** Reads the commit graph written by Gitlet processes: the positions,
+ *  parents and generation numbers of the commits of a criss-cross merge,
+ *  and of a long history spread over several layers.
+ *  @author Shreyansh Loharuka
+ */
+public class CommitGraphTest {
+
+    /** Number of commits of the long history. */
+    private static final int COMMITS = 100;
+
+    /** Ids of the commits of a log. */
+    private static final Pattern COMMIT = Pattern.compile(
+            "^commit ([0-9a-f]{40})$", Pattern.MULTILINE);
+
+    /** The working directory of the processes. */
+    private File _dir;
+
+    /** Create a repository to work in. */
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        _dir = Files.createTempDirectory("gitlet-graph").toFile();
+        run(_dir, "init");
+    }
+
+    /** Remove the repository. */
+    @After
+    public void tearDown() {
+        delete(_dir);
+    }
+
+    /** The two merges of a criss-cross have the two commits after their
+     *  base as parents, in opposite orders, and the generation after
+     *  theirs; a graph rebuilt from the commits alone agrees. */
+    @Test
+    public void crissCrossTest() throws IOException, InterruptedException {
+        String initial = run(_dir, "find", "initial commit").trim();
+        write("base.txt", "base\n");
+        run(_dir, "add", "base.txt");
+        run(_dir, "commit", "base");
+        run(_dir, "branch", "other");
+        write("m.txt", "m\n");
+        run(_dir, "add", "m.txt");
+        run(_dir, "commit", "m1");
+        run(_dir, "checkout", "other");
+        write("o.txt", "o\n");
+        run(_dir, "add", "o.txt");
+        run(_dir, "commit", "o1");
+        run(_dir, "branch", "o1");
+        run(_dir, "merge", "master");
+        run(_dir, "checkout", "master");
+        run(_dir, "merge", "o1");
+        String[] ids = {
+            initial, run(_dir, "find", "base").trim(),
+            run(_dir, "find", "m1").trim(), run(_dir, "find", "o1").trim(),
+            run(_dir, "find", "Merged master into other.").trim(),
+            run(_dir, "find", "Merged o1 into master.").trim(),
+        };
+        int[] generations = {1, 2, 3, 3, 4, 4};
+        int[][] parents = {{-1, -1}, {0, -1}, {1, -1}, {1, -1}, {3, 2},
+                           {2, 3}};
+        for (int round = 0; round < 2; round += 1) {
+            CommitGraph graph = graph();
+            assertEquals(ids.length, graph.count());
+            for (int i = 0; i < ids.length; i += 1) {
+                int pos = graph.position(ids[i]);
+                assertEquals(ids[i], graph.id(pos));
+                assertEquals(generations[i], graph.generation(pos));
+                for (int k = 0; k < 2; k += 1) {
+                    int parent = graph.parent(pos, k);
+                    if (parents[i][k] < 0) {
+                        assertEquals(CommitGraph.NONE, parent);
+                    } else {
+                        assertEquals(ids[parents[i][k]], graph.id(parent));
+                    }
+                }
+            }
+            delete(new File(_dir, ".gitlet/graph"));
+            run(_dir, "status");
+        }
+    }
+
+    /** A long history, committed in one batch, is found whole in the
+     *  layers of the graph, which are merged as they are added so that
+     *  there are few of them. */
+    @Test
+    public void layersTest() throws IOException, InterruptedException {
+        StringBuilder commands = new StringBuilder();
+        for (int i = 0; i < COMMITS; i += 1) {
+            write("f" + i + ".txt", i + "\n");
+            commands.append("add f").append(i).append(".txt\n")
+                .append("commit c").append(i).append("\n");
+        }
+        batch(_dir, commands.toString());
+        List<String> log = new ArrayList<>();
+        Matcher matcher = COMMIT.matcher(run(_dir, "log"));
+        while (matcher.find()) {
+            log.add(matcher.group(1));
+        }
+        assertEquals(COMMITS + 1, log.size());
+        CommitGraph graph = graph();
+        assertEquals(COMMITS + 1, graph.count());
+        for (int i = 0; i < log.size(); i += 1) {
+            int pos = graph.position(log.get(i));
+            assertNotEquals(CommitGraph.NONE, pos);
+            assertEquals(log.size() - i, graph.generation(pos));
+            int parent = graph.parent(pos, 0);
+            if (i + 1 < log.size()) {
+                assertEquals(log.get(i + 1), graph.id(parent));
+            } else {
+                assertEquals(CommitGraph.NONE, parent);
+            }
+            assertEquals(CommitGraph.NONE, graph.parent(pos, 1));
+        }
+        File[] layers = new File(_dir, ".gitlet/graph").listFiles(
+            (dir, name) -> name.endsWith(".graph"));
+        assertTrue(layers.length <= 8);
+    }
+
+    /** Returns the commit graph of the repository. */
+    private CommitGraph graph() {
+        return CommitGraph.open(new File(_dir, ".gitlet/graph"));
+    }
+
+    /** Writes CONTENTS to the file at PATH in the repository. */
+    private void write(String path, String contents) {
+        Utils.writeContents(new File(_dir, path), contents);
+    }
+
+}
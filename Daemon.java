@@ -0,0 +1,301 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A process staying resident in a repository to run the commands of
+ * clients, so that they pay neither for starting a JVM nor for loading
+ * the commit graph, packs and commits again. It listens on the Unix
+ * domain socket .gitlet/daemon.sock, which Client connects to.
+ *
+ * A request is the number of arguments, as an int, followed by each
+ * argument as written by DataOutputStream.writeUTF; they are the ones
+ * Main.main would get. The answer is a sequence of frames, each a kind
+ * byte then an int: OUT or ERR frames give the length of the bytes that
+ * follow, to be written to the standard output or error of the client,
+ * and the last frame, EXIT, gives the status to exit with.
+ *
+ * Commands that only read the repository run concurrently; all others
+ * hold the repository alone, as LockFile arranges with the threads of
+ * the daemon and with other processes alike. The standard output of
+ * each command is routed to its own client.
+ *
+ * Usage: java gitlet.Main daemon, to serve the repository in the
+ * current directory until java gitlet.Main daemon --stop.
+ *
+ * @author Shreyansh Loharuka
+ */
+class Daemon {
+
+    /**
+     * Socket on which the daemon listens.
+     */
+    static final File SOCKET = new File(".gitlet/daemon.sock");
+
+    /**
+     * Kind of a frame of standard output.
+     */
+    static final int OUT = 'o';
+
+    /**
+     * Kind of a frame of standard error.
+     */
+    static final int ERR = 'e';
+
+    /**
+     * Kind of the frame ending an answer with an exit status.
+     */
+    static final int EXIT = 'x';
+
+    /**
+     * Number of threads serving clients. It may be set with the
+     * gitlet.daemon.threads system property.
+     */
+    static final int THREADS = Integer.getInteger("gitlet.daemon.threads",
+            Math.max(4, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * Streams to which the standard output of each thread is routed, or
+     * null for the standard output of the daemon.
+     */
+    private static final ThreadLocal<OutputStream> OUTPUT =
+            new ThreadLocal<>();
+
+    /**
+     * Streams to which the standard error of each thread is routed, or
+     * null for the standard error of the daemon.
+     */
+    private static final ThreadLocal<OutputStream> ERRORS =
+            new ThreadLocal<>();
+
+    /**
+     * The socket listened on.
+     */
+    private ServerSocketChannel _server;
+
+    /**
+     * Runs the daemon command ARGS: daemon alone serves the repository,
+     * and daemon --stop stops the daemon serving it.
+     */
+    static void main(String... args) throws IOException {
+        if (args.length == 2 && args[1].equals("--stop")) {
+            if (Client.forward(args) < 0) {
+                throw Utils.error("No daemon is running.");
+            }
+        } else if (args.length != 1) {
+            throw Utils.error("Incorrect operands.");
+        } else if (!Main.initialised()) {
+            throw new GitletException.NotFound(
+                    "Not in an initialized Gitlet directory.");
+        } else {
+            try (LockFile lock = LockFile.exclusive()) {
+                Main.upgrade();
+            }
+            new Daemon().serve();
+        }
+    }
+
+    /**
+     * Listens on SOCKET and serves clients until stopped.
+     */
+    void serve() throws IOException {
+        UnixDomainSocketAddress address =
+                UnixDomainSocketAddress.of(SOCKET.toPath());
+        if (SOCKET.exists()) {
+            try {
+                SocketChannel.open(address).close();
+                throw Utils.error("A daemon is already running.");
+            } catch (IOException excp) {
+                SOCKET.delete();
+            }
+        }
+        _server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        _server.bind(address);
+        System.setOut(new PrintStream(new Routed(OUTPUT, System.out),
+                true));
+        System.setErr(new PrintStream(new Routed(ERRORS, System.err),
+                true));
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            while (true) {
+                SocketChannel client = _server.accept();
+                pool.execute(() -> handle(client));
+            }
+        } catch (ClosedChannelException excp) {
+            pool.shutdown();
+            try {
+                pool.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            _server.close();
+            SOCKET.delete();
+        }
+    }
+
+    /**
+     * Reads a request from CLIENT, runs it and answers it.
+     */
+    private void handle(SocketChannel client) {
+        try (client) {
+            DataInputStream in = new DataInputStream(
+                    Channels.newInputStream(client));
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(
+                            Channels.newOutputStream(client)));
+            String[] args = new String[in.readInt()];
+            for (int i = 0; i < args.length; i += 1) {
+                args[i] = in.readUTF();
+            }
+            int status = run(args, out);
+            out.writeByte(EXIT);
+            out.writeInt(status);
+            out.flush();
+            if (args.length == 2 && args[0].equals("daemon")
+                    && args[1].equals("--stop")) {
+                _server.close();
+            }
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    /**
+     * Runs the command ARGS, writing its output as frames to OUT, and
+     * returns its exit status.
+     */
+    private int run(String[] args, DataOutputStream out) {
+        OUTPUT.set(new Frames(out, OUT));
+        ERRORS.set(new Frames(out, ERR));
+        try {
+            if (args.length > 0 && args[0].equals("daemon")) {
+                if (args.length != 2 || !args[1].equals("--stop")) {
+                    Utils.message("A daemon is already running.");
+                }
+            } else {
+                Main.run(false, args);
+            }
+            return 0;
+        } catch (GitletException excp) {
+            Main.report(excp);
+            return 0;
+        } catch (IOException | RuntimeException excp) {
+            excp.printStackTrace();
+            return 1;
+        } finally {
+            System.out.flush();
+            System.err.flush();
+            OUTPUT.remove();
+            ERRORS.remove();
+        }
+    }
+
+    /**
+     * A stream writing to the stream routed to the current thread, or to
+     * a default one.
+     */
+    private static class Routed extends OutputStream {
+
+        /**
+         * Streams routed to each thread.
+         */
+        private final ThreadLocal<OutputStream> _routes;
+
+        /**
+         * Stream written to by threads with no route.
+         */
+        private final OutputStream _default;
+
+        /**
+         * Initialise a stream writing to the stream in ROUTES for the
+         * current thread, or to DEFAULT.
+         */
+        Routed(ThreadLocal<OutputStream> routes, OutputStream dflt) {
+            _routes = routes;
+            _default = dflt;
+        }
+
+        /**
+         * Returns the stream of the current thread.
+         */
+        private OutputStream target() {
+            OutputStream route = _routes.get();
+            return route == null ? _default : route;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target().flush();
+        }
+    }
+
+    /**
+     * A stream writing its bytes as frames of one kind to a client.
+     */
+    private static class Frames extends OutputStream {
+
+        /**
+         * The stream to the client.
+         */
+        private final DataOutputStream _out;
+
+        /**
+         * Kind of the frames written.
+         */
+        private final int _kind;
+
+        /**
+         * Initialise a stream writing frames of KIND to OUT.
+         */
+        Frames(DataOutputStream out, int kind) {
+            _out = out;
+            _kind = kind;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > 0) {
+                _out.writeByte(_kind);
+                _out.writeInt(len);
+                _out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            _out.flush();
+        }
+    }
+
+}
@@ -0,0 +1,202 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static gitlet.GitletProcess.*;
+import static org.junit.Assert.*;
+
+/** Speaks the protocol of the daemon over its socket: the frames of an
+ *  answer, many clients at once, and stopping the daemon.
+ *  @author Shreyansh Loharuka
+ */
+public class DaemonTest {
+
+    /** Number of clients sending requests at once. */
+    private static final int CLIENTS = 8;
+
+    /** Status of the repository with nothing to report. */
+    private static final String CLEAN = "=== Branches ===\n*master\n\n"
+        + "=== Staged Files ===\n\n"
+        + "=== Removed Files ===\n\n"
+        + "=== Modifications Not Staged For Commit ===\n\n"
+        + "=== Untracked Files ===\n\n";
+
+    /** The working directory of the processes. */
+    private File _dir;
+
+    /** The socket of the daemon. */
+    private File _socket;
+
+    /** The process of the daemon. */
+    private Process _daemon;
+
+    /** Create a repository and start a daemon serving it. */
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        _dir = Files.createTempDirectory("gitlet-daemon").toFile();
+        _socket = new File(_dir, ".gitlet/daemon.sock");
+        run(_dir, "init");
+        _daemon = start(_dir, List.of(), "daemon");
+        long deadline = System.currentTimeMillis()
+            + TimeUnit.SECONDS.toMillis(WAIT);
+        while (!_socket.exists()) {
+            assertTrue(_daemon.isAlive());
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+    }
+
+    /** Stop the daemon, if a test left it running, and remove the
+     *  repository. */
+    @After
+    public void tearDown() throws IOException, InterruptedException {
+        if (_daemon.isAlive()) {
+            run(_dir, "daemon", "--stop");
+        }
+        output(_daemon);
+        delete(_dir);
+    }
+
+    /** An answer is frames of output and errors, each as long as it
+     *  says, ended by the exit status, after which the daemon closes
+     *  the connection. Errors of commands are output, as by Main. */
+    @Test
+    public void framesTest() throws IOException {
+        assertEquals(CLEAN, request("status"));
+        assertEquals("No such branch exists.\n",
+                request("checkout", "nosuch"));
+        assertEquals("No command with that name exists.\n",
+                request("nosuch"));
+        assertEquals("A daemon is already running.\n", request("daemon"));
+        try (SocketChannel channel = connect()) {
+            send(channel, "log");
+            DataInputStream in = receive(channel);
+            int kind = in.readUnsignedByte();
+            for (; kind != Daemon.EXIT; kind = in.readUnsignedByte()) {
+                assertEquals(Daemon.OUT, kind);
+                in.readNBytes(in.readInt());
+            }
+            assertEquals(0, in.readInt());
+            assertEquals(-1, in.read());
+        }
+    }
+
+    /** Clients adding and committing at once are served concurrently,
+     *  each getting the output of its own commands, and none of their
+     *  updates is lost. */
+    @Test
+    public void concurrentTest() throws Exception {
+        for (int i = 0; i < CLIENTS; i += 1) {
+            Utils.writeContents(new File(_dir, "f" + i + ".txt"),
+                    i + "\n");
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Future<String>> answers = new ArrayList<>();
+            for (int i = 0; i < CLIENTS; i += 1) {
+                String name = "f" + i + ".txt";
+                String branch = "b" + i;
+                answers.add(pool.submit(() -> request("add", name)
+                        + request("branch", branch)
+                        + request("find", "no such message")));
+            }
+            for (Future<String> answer : answers) {
+                assertEquals("Found no commit with that message.\n",
+                        answer.get(WAIT, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals("", request("commit", "all"));
+        String status = request("status");
+        for (int i = 0; i < CLIENTS; i += 1) {
+            assertTrue(status, status.contains("\nb" + i + "\n"));
+        }
+        assertTrue(status, status.endsWith(
+                "=== Staged Files ===\n\n=== Removed Files ===\n\n"
+                + "=== Modifications Not Staged For Commit ===\n\n"
+                + "=== Untracked Files ===\n\n"));
+        assertTrue(run(_dir, "log").contains("\nall\n"));
+    }
+
+    /** daemon --stop ends the daemon, which removes its socket, after
+     *  which commands run without it and stopping it is reported. */
+    @Test
+    public void stopTest() throws IOException, InterruptedException {
+        assertEquals("", run(_dir, "daemon", "--stop"));
+        output(_daemon);
+        assertEquals(0, _daemon.exitValue());
+        assertFalse(_socket.exists());
+        assertEquals("No daemon is running.\n",
+                run(_dir, "daemon", "--stop"));
+        assertEquals(CLEAN, run(_dir, "status"));
+    }
+
+    /** Sends ARGS to the daemon and returns the output of its answer,
+     *  once it has exited with status 0 without errors. */
+    private String request(String... args) throws IOException {
+        try (SocketChannel channel = connect()) {
+            send(channel, args);
+            DataInputStream in = receive(channel);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+            while (true) {
+                int kind = in.readUnsignedByte();
+                int length = in.readInt();
+                if (kind == Daemon.EXIT) {
+                    String errors = err.toString(StandardCharsets.UTF_8);
+                    assertEquals(errors, 0, length);
+                    assertEquals("", errors);
+                    return out.toString(StandardCharsets.UTF_8);
+                }
+                assertTrue(kind == Daemon.OUT || kind == Daemon.ERR);
+                (kind == Daemon.OUT ? out : err).write(
+                        in.readNBytes(length));
+            }
+        }
+    }
+
+    /** Returns a connection to the daemon. */
+    private SocketChannel connect() throws IOException {
+        return SocketChannel.open(
+                UnixDomainSocketAddress.of(_socket.toPath()));
+    }
+
+    /** Sends the request ARGS over CHANNEL. */
+    private static void send(SocketChannel channel, String... args)
+        throws IOException {
+        DataOutputStream out = new DataOutputStream(
+                Channels.newOutputStream(channel));
+        out.writeInt(args.length);
+        for (String arg : args) {
+            out.writeUTF(arg);
+        }
+        out.flush();
+    }
+
+    /** Returns a stream over the answer coming over CHANNEL. */
+    private static DataInputStream receive(SocketChannel channel) {
+        return new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(channel)));
+    }
+
+}
@@ -0,0 +1,201 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Deltas between two versions of an object. A delta holds the lengths of
+ * its base and target followed by a sequence of instructions, each either
+ * copying a range of the base or inserting literal bytes, that rebuild the
+ * target from the base.
+ *
+ * @author Shreyansh Loharuka
+ */
+class Delta {
+
+    /**
+     * Length of the blocks of the base that are indexed for matching.
+     */
+    static final int BLOCK = 16;
+
+    /**
+     * Instruction inserting literal bytes.
+     */
+    private static final int INSERT = 0;
+
+    /**
+     * Instruction copying a range of the base.
+     */
+    private static final int COPY = 1;
+
+    /**
+     * Multiplier of the rolling hash.
+     */
+    private static final int PRIME = 31;
+
+    /**
+     * PRIME raised to BLOCK - 1, which weighs the byte leaving the window
+     * of the rolling hash.
+     */
+    private static final int POWER;
+
+    static {
+        int power = 1;
+        for (int i = 1; i < BLOCK; i += 1) {
+            power *= PRIME;
+        }
+        POWER = power;
+    }
+
+    /**
+     * Returns a delta rebuilding TARGET from BASE.
+     */
+    static byte[] create(byte[] base, byte[] target) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(base.length);
+            out.writeInt(target.length);
+            int[] table = index(base);
+            int insertStart = 0;
+            int i = 0;
+            int h = target.length >= BLOCK ? hash(target, 0) : 0;
+            while (i + BLOCK <= target.length) {
+                int cand = table[slot(h, table.length)] - 1;
+                if (cand >= 0 && matches(base, cand, target, i)) {
+                    int len = BLOCK;
+                    while (cand + len < base.length && i + len < target.length
+                            && base[cand + len] == target[i + len]) {
+                        len += 1;
+                    }
+                    int back = 0;
+                    while (i - back > insertStart && cand - back > 0
+                            && base[cand - back - 1] == target[i - back - 1]) {
+                        back += 1;
+                    }
+                    insert(out, target, insertStart, i - back);
+                    out.writeByte(COPY);
+                    out.writeInt(cand - back);
+                    out.writeInt(len + back);
+                    i += len;
+                    insertStart = i;
+                    if (i + BLOCK <= target.length) {
+                        h = hash(target, i);
+                    }
+                } else {
+                    if (i + BLOCK < target.length) {
+                        h = (h - (target[i] & 0xff) * POWER) * PRIME
+                                + (target[i + BLOCK] & 0xff);
+                    }
+                    i += 1;
+                }
+            }
+            insert(out, target, insertStart, target.length);
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException excp) {
+            throw Utils.error("Internal error creating delta.");
+        }
+    }
+
+    /**
+     * Returns the target rebuilt by applying DELTA to BASE.
+     */
+    static byte[] apply(byte[] base, byte[] delta) {
+        try {
+            DataInputStream in =
+                    new DataInputStream(new ByteArrayInputStream(delta));
+            if (in.readInt() != base.length) {
+                throw new IOException("delta applied to the wrong base");
+            }
+            byte[] target = new byte[in.readInt()];
+            int pos = 0;
+            while (pos < target.length) {
+                int op = in.readUnsignedByte();
+                if (op == COPY) {
+                    int offset = in.readInt();
+                    int len = in.readInt();
+                    System.arraycopy(base, offset, target, pos, len);
+                    pos += len;
+                } else if (op == INSERT) {
+                    int len = in.readInt();
+                    in.readFully(target, pos, len);
+                    pos += len;
+                } else {
+                    throw new IOException("corrupt delta");
+                }
+            }
+            return target;
+        } catch (IOException | IndexOutOfBoundsException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * Returns a hash table from the hashes of the BLOCK-aligned blocks of
+     * BASE to one more than their offsets.
+     */
+    private static int[] index(byte[] base) {
+        int size = 1;
+        while (size < 2 * (base.length / BLOCK) + 1) {
+            size <<= 1;
+        }
+        int[] table = new int[size];
+        for (int i = 0; i + BLOCK <= base.length; i += BLOCK) {
+            table[slot(hash(base, i), size)] = i + 1;
+        }
+        return table;
+    }
+
+    /**
+     * Returns the hash of the BLOCK bytes of DATA starting at START.
+     */
+    private static int hash(byte[] data, int start) {
+        int h = 0;
+        for (int i = start; i < start + BLOCK; i += 1) {
+            h = h * PRIME + (data[i] & 0xff);
+        }
+        return h;
+    }
+
+    /**
+     * Returns the slot of hash H in a table of power-of-two SIZE.
+     */
+    private static int slot(int h, int size) {
+        return (h ^ (h >>> 16)) & (size - 1);
+    }
+
+    /**
+     * Returns true if the BLOCK bytes of BASE at CAND equal those of
+     * TARGET at POS.
+     */
+    private static boolean matches(byte[] base, int cand,
+                                   byte[] target, int pos) {
+        if (cand + BLOCK > base.length) {
+            return false;
+        }
+        for (int k = 0; k < BLOCK; k += 1) {
+            if (base[cand + k] != target[pos + k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes to OUT an instruction inserting the bytes of DATA from START
+     * to END, if there are any.
+     */
+    private static void insert(DataOutputStream out, byte[] data,
+                               int start, int end) throws IOException {
+        if (end > start) {
+            out.writeByte(INSERT);
+            out.writeInt(end - start);
+            out.write(data, start, end - start);
+        }
+    }
+
+}
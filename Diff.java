@@ -0,0 +1,268 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Common subsequences of two sequences of ints, found by Myers' O(ND)
+ * difference algorithm in its linear space form: the middle snake
+ * of an edit script is found by searching from both ends at once, and
+ * the two halves around it are solved in turn, so that only two arrays
+ * of diagonals are kept whatever the number of differences D.
+ *
+ * Before the search, elements that occur in only one of the sequences
+ * are set aside, since they can match nothing. This does not change the
+ * result, and keeps D small when a file is mostly rewritten, where the
+ * search would otherwise take time quadratic in its length. The
+ * elements that occur once in each sequence, and in the same order,
+ * are then matched first, as in patience diff, and the search is made
+ * only between them, so that its cost grows with the size of each
+ * change rather than with the length of the file times the number of
+ * changes. The result is then the longest common subsequence through
+ * those anchors, which in text, where a line found once in each file is
+ * almost always the same line, is the longest of all. Common prefixes
+ * and suffixes are matched without searching.
+ *
+ * @author Shreyansh Loharuka
+ */
+class Diff {
+
+    /**
+     * The first sequence, without the elements missing from the second.
+     */
+    private final int[] _a;
+
+    /**
+     * The second sequence, without the elements missing from the first.
+     */
+    private final int[] _b;
+
+    /**
+     * For each element of _a, the index in _b it is matched with, or -1.
+     */
+    private final int[] _matches;
+
+    /**
+     * Furthest x reached on each diagonal by the forward search.
+     */
+    private final int[] _forward;
+
+    /**
+     * Furthest distance from the end reached on each diagonal by the
+     * backward search.
+     */
+    private final int[] _backward;
+
+    /**
+     * Index in _forward and _backward of diagonal 0.
+     */
+    private final int _offset;
+
+    /**
+     * Initialise a search for the common subsequence of A and B.
+     */
+    private Diff(int[] a, int[] b) {
+        _a = a;
+        _b = b;
+        _matches = new int[a.length];
+        Arrays.fill(_matches, -1);
+        _offset = (a.length + b.length + 1) / 2 + 1;
+        _forward = new int[2 * _offset + 1];
+        _backward = new int[2 * _offset + 1];
+    }
+
+    /**
+     * Returns, for each element of A, the index of the element of B it is
+     * matched with in a common subsequence of A and B, or -1 if it is not
+     * in it. The elements of both are at least 0 and less than
+     * SYMBOLS.
+     */
+    static int[] matches(int[] a, int[] b, int symbols) {
+        int[] inA = new int[symbols], inB = new int[symbols];
+        for (int x : a) {
+            inA[x] += 1;
+        }
+        for (int y : b) {
+            inB[y] += 1;
+        }
+        int[] keptA = kept(a, inB), keptB = kept(b, inA);
+        int[] shortA = new int[keptA.length], shortB = new int[keptB.length];
+        for (int i = 0; i < keptA.length; i += 1) {
+            shortA[i] = a[keptA[i]];
+        }
+        for (int j = 0; j < keptB.length; j += 1) {
+            shortB[j] = b[keptB[j]];
+        }
+        Diff diff = new Diff(shortA, shortB);
+        int x = 0, y = 0;
+        for (int[] anchor : anchors(shortA, shortB, inA, inB)) {
+            diff.compare(x, anchor[0], y, anchor[1]);
+            diff._matches[anchor[0]] = anchor[1];
+            x = anchor[0] + 1;
+            y = anchor[1] + 1;
+        }
+        diff.compare(x, shortA.length, y, shortB.length);
+        int[] result = new int[a.length];
+        Arrays.fill(result, -1);
+        for (int i = 0; i < keptA.length; i += 1) {
+            if (diff._matches[i] >= 0) {
+                result[keptA[i]] = keptB[diff._matches[i]];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the longest run, in order, of the pairs of indices in A and
+     * B of the elements that occur once in each, by patience sorting.
+     * COUNTA and COUNTB give the number of times each element occurs in
+     * A and B.
+     */
+    private static List<int[]> anchors(int[] a, int[] b, int[] countA,
+                                       int[] countB) {
+        int[] inB = new int[countB.length];
+        for (int j = 0; j < b.length; j += 1) {
+            inB[b[j]] = j;
+        }
+        int[] tails = new int[a.length + 1];
+        int[] previous = new int[a.length];
+        int[] partner = new int[a.length];
+        int piles = 0;
+        for (int i = 0; i < a.length; i += 1) {
+            if (countA[a[i]] != 1 || countB[a[i]] != 1) {
+                continue;
+            }
+            int j = inB[a[i]];
+            partner[i] = j;
+            int low = 0, high = piles;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (partner[tails[mid]] < j) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == piles) {
+                piles += 1;
+            }
+        }
+        ArrayList<int[]> result = new ArrayList<>(piles);
+        for (int i = piles > 0 ? tails[piles - 1] : -1; i >= 0;
+             i = previous[i]) {
+            result.add(new int[] {i, partner[i]});
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Returns the indices of the elements of SEQUENCE that occur in the
+     * other sequence, whose number of each is given by PRESENT.
+     */
+    private static int[] kept(int[] sequence, int[] present) {
+        int count = 0;
+        for (int x : sequence) {
+            if (present[x] > 0) {
+                count += 1;
+            }
+        }
+        int[] result = new int[count];
+        count = 0;
+        for (int i = 0; i < sequence.length; i += 1) {
+            if (present[sequence[i]] > 0) {
+                result[count] = i;
+                count += 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Matches the elements of _a from ALO to AHI, exclusive, with those of
+     * _b from BLO to BHI.
+     */
+    private void compare(int aLo, int aHi, int bLo, int bHi) {
+        while (aLo < aHi && bLo < bHi && _a[aLo] == _b[bLo]) {
+            _matches[aLo] = bLo;
+            aLo += 1;
+            bLo += 1;
+        }
+        while (aLo < aHi && bLo < bHi && _a[aHi - 1] == _b[bHi - 1]) {
+            _matches[aHi - 1] = bHi - 1;
+            aHi -= 1;
+            bHi -= 1;
+        }
+        if (aLo == aHi || bLo == bHi) {
+            return;
+        }
+        int[] snake = middleSnake(aLo, aHi, bLo, bHi);
+        compare(aLo, snake[0], bLo, snake[1]);
+        for (int x = snake[0], y = snake[1]; x < snake[2]; x += 1, y += 1) {
+            _matches[x] = y;
+        }
+        compare(snake[2], aHi, snake[3], bHi);
+    }
+
+    /**
+     * Returns the start x and y and the end x and y of the middle snake of
+     * a shortest edit script from _a[ALO..AHI) to _b[BLO..BHI), whose
+     * first and last elements differ.
+     */
+    private int[] middleSnake(int aLo, int aHi, int bLo, int bHi) {
+        int n = aHi - aLo, m = bHi - bLo;
+        int delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        _forward[_offset + 1] = 0;
+        _backward[_offset + 1] = 0;
+        for (int d = 0; d <= (n + m + 1) / 2; d += 1) {
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || k != d && _forward[_offset + k - 1]
+                        < _forward[_offset + k + 1]) {
+                    x = _forward[_offset + k + 1];
+                } else {
+                    x = _forward[_offset + k - 1] + 1;
+                }
+                int y = x - k, x0 = x, y0 = y;
+                while (x < n && y < m && _a[aLo + x] == _b[bLo + y]) {
+                    x += 1;
+                    y += 1;
+                }
+                _forward[_offset + k] = x;
+                int back = delta - k;
+                if (odd && back >= 1 - d && back <= d - 1
+                        && x + _backward[_offset + back] >= n) {
+                    return new int[] {aLo + x0, bLo + y0, aLo + x, bLo + y};
+                }
+            }
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || k != d && _backward[_offset + k - 1]
+                        < _backward[_offset + k + 1]) {
+                    x = _backward[_offset + k + 1];
+                } else {
+                    x = _backward[_offset + k - 1] + 1;
+                }
+                int y = x - k, x0 = x, y0 = y;
+                while (x < n && y < m
+                        && _a[aHi - 1 - x] == _b[bHi - 1 - y]) {
+                    x += 1;
+                    y += 1;
+                }
+                _backward[_offset + k] = x;
+                int ahead = delta - k;
+                if (!odd && ahead >= -d && ahead <= d
+                        && x + _forward[_offset + ahead] >= n) {
+                    return new int[] {aHi - x, bHi - y, aHi - x0, bHi - y0};
+                }
+            }
+        }
+        throw new IllegalStateException("no middle snake");
+    }
+
+}
@@ -0,0 +1,358 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Three-way merge of text by lines, in the manner of diff3. Both sides
+ * are compared with the base by Diff, and the base is cut into stable
+ * runs, whose lines are matched in both sides, and the unstable chunks
+ * between them. A chunk changed on one side only takes that side, one
+ * changed alike on both takes either, and only a chunk changed
+ * differently on both is a conflict, written between the markers merge
+ * has always used. Lines common to both sides at the start and end of a
+ * conflict are written outside its markers, and a side whose last line
+ * has no newline is given one before the marker after it.
+ *
+ * Lines are compared byte for byte and end after each newline, so that
+ * any text merges to exactly the bytes of its lines, whatever its
+ * encoding. Files that look binary, with a NUL byte near their start,
+ * are not merged by lines; neither are files that do not fit, as told
+ * by fits, since they are held in memory with several ints for each of
+ * their lines.
+ *
+ * @author Shreyansh Loharuka
+ */
+class Diff3 {
+
+    /**
+     * Largest file, in bytes, merged by lines. It may be set with the
+     * gitlet.mergeLimit system property.
+     */
+    static final long LIMIT = Long.getLong("gitlet.mergeLimit", 64 << 20);
+
+    /**
+     * Fraction of the largest heap, as its inverse, that the files of a
+     * merge by lines may take together.
+     */
+    static final int MEMORY_SHARE = 8;
+
+    /**
+     * Number of bytes at the start of a file searched for a NUL byte.
+     */
+    static final int BINARY_PREFIX = 8000;
+
+    /**
+     * Markers written around the two sides of a conflict.
+     */
+    private static final byte[] START =
+        "<<<<<<< HEAD\n".getBytes(StandardCharsets.UTF_8),
+        MIDDLE = "=======\n".getBytes(StandardCharsets.UTF_8),
+        END = ">>>>>>>\n".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * A file split into lines.
+     */
+    private static class Lines {
+
+        /**
+         * The contents of the file.
+         */
+        private final byte[] _data;
+
+        /**
+         * Offset of the start of each line in _data, followed by the
+         * length of _data.
+         */
+        private int[] _starts;
+
+        /**
+         * Number of lines.
+         */
+        private int _size;
+
+        /**
+         * Number of each line, equal for equal lines of all the files.
+         */
+        private int[] _ids;
+
+        /**
+         * Split DATA into lines.
+         */
+        Lines(byte[] data) {
+            _data = data;
+            _starts = new int[data.length / 32 + 2];
+            for (int i = 0; i < data.length; i += 1) {
+                if (data[i] == '\n') {
+                    add(i + 1);
+                }
+            }
+            if (data.length > 0 && data[data.length - 1] != '\n') {
+                add(data.length);
+            }
+        }
+
+        /**
+         * Ends the last line at END.
+         */
+        private void add(int end) {
+            if (_size + 1 == _starts.length) {
+                _starts = Arrays.copyOf(_starts, _starts.length * 2);
+            }
+            _size += 1;
+            _starts[_size] = end;
+        }
+
+        /**
+         * Returns the number of lines.
+         */
+        int size() {
+            return _size;
+        }
+
+        /**
+         * Writes lines FROM to TO, exclusive, to OUT.
+         */
+        void write(int from, int to, OutputStream out) throws IOException {
+            out.write(_data, _starts[from], _starts[to] - _starts[from]);
+        }
+
+        /**
+         * Writes lines FROM to TO, exclusive, to OUT, ending the last with
+         * a newline if it has none, so that a marker written after them
+         * is on a line of its own.
+         */
+        void writeLines(int from, int to, OutputStream out)
+            throws IOException {
+            write(from, to, out);
+            if (to > from && _data[_starts[to] - 1] != '\n') {
+                out.write('\n');
+            }
+        }
+    }
+
+    /**
+     * The base and the two sides.
+     */
+    private final Lines _base, _ours, _theirs;
+
+    /**
+     * For each line of the base, the line of each side it is matched
+     * with, or -1.
+     */
+    private final int[] _inOurs, _inTheirs;
+
+    /**
+     * Number of conflicts written by the last call of writeTo.
+     */
+    private int _conflicts;
+
+    /**
+     * Initialise a merge of OURS and THEIRS, both derived from BASE.
+     */
+    Diff3(byte[] base, byte[] ours, byte[] theirs) {
+        _base = new Lines(base);
+        _ours = new Lines(ours);
+        _theirs = new Lines(theirs);
+        int symbols = number(new Lines[] {_base, _ours, _theirs});
+        _inOurs = Diff.matches(_base._ids, _ours._ids, symbols);
+        _inTheirs = Diff.matches(_base._ids, _theirs._ids, symbols);
+    }
+
+    /**
+     * Numbers the lines of FILES, the first of which is the base, so that
+     * equal lines have equal numbers and different lines different ones,
+     * and returns the number of distinct lines. Lines are found in an
+     * open addressing table of the first line with each content, whose
+     * slots hold its hash and number, so that no object is made for each
+     * line. Since most lines of a side follow the line of the base they
+     * follow in the base, each line of a side is first compared with the
+     * line after the base line last matched, which reads both files in
+     * order, and only looked up if it differs.
+     */
+    private static int number(Lines[] files) {
+        int total = 0;
+        for (Lines lines : files) {
+            total += lines.size();
+        }
+        int capacity = Integer.highestOneBit(Math.max(total, 1) * 2 + 1);
+        long[] slots = new long[capacity];
+        Lines[] owners = new Lines[total];
+        int[] indices = new int[total];
+        Lines base = files[0];
+        int count = 0;
+        for (Lines lines : files) {
+            lines._ids = new int[lines.size()];
+            int cursor = 0;
+            for (int i = 0; i < lines.size(); i += 1) {
+                if (lines != base && cursor < base.size()
+                        && equal(lines, i, base, cursor)) {
+                    lines._ids[i] = base._ids[cursor];
+                    cursor += 1;
+                    continue;
+                }
+                int hash = hash(lines._data, lines._starts[i],
+                        lines._starts[i + 1]);
+                int slot = (hash ^ hash >>> 16) & (capacity - 1);
+                while (true) {
+                    int number = (int) slots[slot] - 1;
+                    if (number < 0) {
+                        slots[slot] = (long) hash << 32 | count + 1;
+                        owners[count] = lines;
+                        indices[count] = i;
+                        lines._ids[i] = count;
+                        count += 1;
+                        break;
+                    }
+                    if ((int) (slots[slot] >>> 32) == hash
+                            && equal(lines, i, owners[number],
+                                    indices[number])) {
+                        lines._ids[i] = number;
+                        if (owners[number] == base) {
+                            cursor = indices[number] + 1;
+                        }
+                        break;
+                    }
+                    slot = (slot + 1) & (capacity - 1);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns true if line I of FIRST is line J of SECOND.
+     */
+    private static boolean equal(Lines first, int i, Lines second, int j) {
+        return Arrays.equals(first._data, first._starts[i],
+                first._starts[i + 1], second._data, second._starts[j],
+                second._starts[j + 1]);
+    }
+
+    /**
+     * Returns the hash of DATA from START to END, exclusive, that of
+     * Arrays.hashCode. Four bytes are taken at each step, which shortens
+     * the chain of multiplications each waits for.
+     */
+    private static int hash(byte[] data, int start, int end) {
+        int hash = 1, k = start;
+        for (; k + 3 < end; k += 4) {
+            hash = 923521 * hash + 29791 * data[k] + 961 * data[k + 1]
+                + 31 * data[k + 2] + data[k + 3];
+        }
+        for (; k < end; k += 1) {
+            hash = 31 * hash + data[k];
+        }
+        return hash;
+    }
+
+    /**
+     * Returns true if files of SIZES bytes may be merged by lines: none
+     * is larger than LIMIT, and together they take no more than a
+     * MEMORY_SHARE-th of the largest heap.
+     */
+    static boolean fits(long... sizes) {
+        long total = 0;
+        for (long size : sizes) {
+            if (size > LIMIT) {
+                return false;
+            }
+            total += size;
+        }
+        return total <= Runtime.getRuntime().maxMemory() / MEMORY_SHARE;
+    }
+
+    /**
+     * Returns true if DATA looks binary rather than text.
+     */
+    static boolean binary(byte[] data) {
+        for (int i = 0; i < Math.min(data.length, BINARY_PREFIX); i += 1) {
+            if (data[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes the merged file to OUT and returns the number of conflicts
+     * in it.
+     */
+    int writeTo(OutputStream out) throws IOException {
+        _conflicts = 0;
+        int o = 0, a = 0, b = 0;
+        int n = _base.size();
+        while (o < n || a < _ours.size() || b < _theirs.size()) {
+            int stable = 0;
+            while (o + stable < n && _inOurs[o + stable] == a + stable
+                    && _inTheirs[o + stable] == b + stable) {
+                stable += 1;
+            }
+            if (stable > 0) {
+                _base.write(o, o + stable, out);
+                o += stable;
+                a += stable;
+                b += stable;
+                continue;
+            }
+            int next = o;
+            while (next < n && (_inOurs[next] < 0 || _inTheirs[next] < 0)) {
+                next += 1;
+            }
+            int aEnd = next < n ? _inOurs[next] : _ours.size();
+            int bEnd = next < n ? _inTheirs[next] : _theirs.size();
+            chunk(o, next, a, aEnd, b, bEnd, out);
+            o = next;
+            a = aEnd;
+            b = bEnd;
+        }
+        return _conflicts;
+    }
+
+    /**
+     * Writes to OUT the merge of the unstable chunk of the base from line
+     * O to OEND, exclusive, which is lines A to AEND of our side and B to
+     * BEND of theirs.
+     */
+    private void chunk(int o, int oEnd, int a, int aEnd, int b, int bEnd,
+                       OutputStream out) throws IOException {
+        if (same(_base, o, oEnd, _ours, a, aEnd)) {
+            _theirs.write(b, bEnd, out);
+        } else if (same(_base, o, oEnd, _theirs, b, bEnd)
+                   || same(_ours, a, aEnd, _theirs, b, bEnd)) {
+            _ours.write(a, aEnd, out);
+        } else {
+            int head = 0;
+            while (a + head < aEnd && b + head < bEnd
+                   && _ours._ids[a + head] == _theirs._ids[b + head]) {
+                head += 1;
+            }
+            int tail = 0;
+            while (aEnd - tail > a + head && bEnd - tail > b + head
+                   && _ours._ids[aEnd - tail - 1]
+                       == _theirs._ids[bEnd - tail - 1]) {
+                tail += 1;
+            }
+            _ours.write(a, a + head, out);
+            out.write(START);
+            _ours.writeLines(a + head, aEnd - tail, out);
+            out.write(MIDDLE);
+            _theirs.writeLines(b + head, bEnd - tail, out);
+            out.write(END);
+            _ours.write(aEnd - tail, aEnd, out);
+            _conflicts += 1;
+        }
+    }
+
+    /**
+     * Returns true if lines X to XEND of FIRST are the lines Y to YEND of
+     * SECOND.
+     */
+    private static boolean same(Lines first, int x, int xEnd,
+                                Lines second, int y, int yEnd) {
+        return Arrays.equals(first._ids, x, xEnd, second._ids, y, yEnd);
+    }
+
+}
@@ -0,0 +1,184 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the three-way merge of Diff3 and of the matches of Diff.
+ *  @author Shreyansh Loharuka
+ */
+public class Diff3Test {
+
+    /** Lines of the base of most tests. */
+    private static final String BASE = "a\nb\nc\nd\ne\nf\ng\n";
+
+    /** Conflicts found by the last call of merge. */
+    private int _conflicts;
+
+    /** Returns the merge of OURS and THEIRS from BASE, setting
+     *  _conflicts. */
+    private String merge(String base, String ours, String theirs)
+        throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        _conflicts = new Diff3(bytes(base), bytes(ours), bytes(theirs))
+            .writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /** Returns the UTF-8 encoding of S. */
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Changes to different lines on each side are both kept. */
+    @Test
+    public void separateChangesTest() throws IOException {
+        assertEquals("A\nb\nc\nd\ne\nf\nG\n",
+                merge(BASE, "A\nb\nc\nd\ne\nf\ng\n",
+                        "a\nb\nc\nd\ne\nf\nG\n"));
+        assertEquals(0, _conflicts);
+        assertEquals("a\nc\nd\nx\ny\ne\nf\ng\n",
+                merge(BASE, "a\nc\nd\ne\nf\ng\n",
+                        "a\nb\nc\nd\nx\ny\ne\nf\ng\n"));
+        assertEquals(0, _conflicts);
+    }
+
+    /** A change on one side only, or the same on both, is taken. */
+    @Test
+    public void sameChangeTest() throws IOException {
+        String changed = "a\nb\nC\nd\nnew\ne\nf\ng\n";
+        assertEquals(changed, merge(BASE, changed, changed));
+        assertEquals(0, _conflicts);
+        assertEquals(changed, merge(BASE, BASE, changed));
+        assertEquals(changed, merge(BASE, changed, BASE));
+        assertEquals(0, _conflicts);
+    }
+
+    /** Lines changed differently on both sides are a conflict, marked
+     *  around the lines that differ only. */
+    @Test
+    public void conflictTest() throws IOException {
+        assertEquals("a\nb\n<<<<<<< HEAD\nours\n=======\ntheirs\n"
+                + ">>>>>>>\ne\nf\ng\n",
+                merge(BASE, "a\nb\nours\ne\nf\ng\n",
+                        "a\nb\ntheirs\ne\nf\ng\n"));
+        assertEquals(1, _conflicts);
+        assertEquals("a\nsame\n<<<<<<< HEAD\nx\n=======\ny\nz\n"
+                + ">>>>>>>\nend\ne\nf\ng\n",
+                merge(BASE, "a\nsame\nx\nend\ne\nf\ng\n",
+                        "a\nsame\ny\nz\nend\ne\nf\ng\n"));
+        assertEquals(1, _conflicts);
+        assertEquals("<<<<<<< HEAD\nA\n=======\nB\n>>>>>>>\nb\nc\nd\ne\nf\n"
+                + "<<<<<<< HEAD\n=======\nH\n>>>>>>>\n",
+                merge(BASE, "A\nb\nc\nd\ne\nf\n",
+                        "B\nb\nc\nd\ne\nf\nH\n"));
+        assertEquals(2, _conflicts);
+    }
+
+    /** Lines inserted at the start and at the end of the file merge. */
+    @Test
+    public void insertAtEndsTest() throws IOException {
+        assertEquals("first\n" + BASE + "last\n",
+                merge(BASE, "first\n" + BASE, BASE + "last\n"));
+        assertEquals(0, _conflicts);
+        assertEquals("x\n", merge("", "x\n", ""));
+        assertEquals("<<<<<<< HEAD\nx\n=======\ny\n>>>>>>>\n",
+                merge("", "x\n", "y\n"));
+        assertEquals(1, _conflicts);
+    }
+
+    /** A last line without a newline is a line of its own, kept as it
+     *  is, unless a conflict marker follows it. */
+    @Test
+    public void missingNewlineTest() throws IOException {
+        assertEquals("A\nb\nc", merge("a\nb\nc", "A\nb\nc", "a\nb\nc"));
+        assertEquals("A\nb\nC", merge("a\nb\nc", "A\nb\nc", "a\nb\nC"));
+        assertEquals(0, _conflicts);
+        assertEquals("A\nb\nc\n", merge("a\nb\nc", "A\nb\nc", "a\nb\nc\n"));
+        assertEquals(0, _conflicts);
+        assertEquals("a\n<<<<<<< HEAD\nx\n=======\ny\n>>>>>>>\n",
+                merge("a\nb", "a\nx", "a\ny"));
+        assertEquals(1, _conflicts);
+    }
+
+    /** Files with a NUL byte near their start are binary, and are not
+     *  merged by lines; nor are files too large for memory. */
+    @Test
+    public void binaryTest() {
+        assertTrue(Diff3.binary(new byte[] {'a', 0, 'b'}));
+        assertFalse(Diff3.binary(bytes(BASE)));
+        byte[] late = new byte[Diff3.BINARY_PREFIX + 1];
+        late[Diff3.BINARY_PREFIX] = 0;
+        for (int i = 0; i < Diff3.BINARY_PREFIX; i += 1) {
+            late[i] = 'x';
+        }
+        assertFalse(Diff3.binary(late));
+        assertTrue(Diff3.fits(1, 2, 3));
+        assertFalse(Diff3.fits(Diff3.LIMIT + 1, 0, 0));
+        assertFalse(Diff3.fits(Runtime.getRuntime().maxMemory(), 0, 0));
+    }
+
+    /** The matches of Diff pair equal elements in order, and are a
+     *  longest common subsequence where no element is unique. */
+    @Test
+    public void matchesTest() {
+        Random random = new Random(0);
+        for (int t = 0; t < 2000; t += 1) {
+            int[] a = new int[random.nextInt(20)];
+            int[] b = new int[random.nextInt(20)];
+            for (int i = 0; i < a.length; i += 1) {
+                a[i] = random.nextInt(3);
+            }
+            for (int j = 0; j < b.length; j += 1) {
+                b[j] = random.nextInt(3);
+            }
+            int[] matches = Diff.matches(a, b, 3);
+            int last = -1, length = 0;
+            for (int i = 0; i < a.length; i += 1) {
+                if (matches[i] >= 0) {
+                    assertTrue(matches[i] > last);
+                    assertEquals(a[i], b[matches[i]]);
+                    last = matches[i];
+                    length += 1;
+                }
+            }
+            if (!unique(a, b)) {
+                assertEquals(lcs(a, b), length);
+            }
+        }
+    }
+
+    /** Returns true if some element occurs once in A and once in B. */
+    private static boolean unique(int[] a, int[] b) {
+        for (int x = 0; x < 3; x += 1) {
+            int inA = 0, inB = 0;
+            for (int y : a) {
+                inA += y == x ? 1 : 0;
+            }
+            for (int y : b) {
+                inB += y == x ? 1 : 0;
+            }
+            if (inA == 1 && inB == 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the length of a longest common subsequence of A and B. */
+    private static int lcs(int[] a, int[] b) {
+        int[][] lengths = new int[a.length + 1][b.length + 1];
+        for (int i = a.length - 1; i >= 0; i -= 1) {
+            for (int j = b.length - 1; j >= 0; j -= 1) {
+                lengths[i][j] = a[i] == b[j] ? lengths[i + 1][j + 1] + 1
+                    : Math.max(lengths[i + 1][j], lengths[i][j + 1]);
+            }
+        }
+        return lengths[0][0];
+    }
+
+}
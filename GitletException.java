@@ -1,10 +1,12 @@
 package gitlet;
 
 /** General exception indicating a Gitlet error.  For fatal errors, the
- *  result of .getMessage() is the error message to be printed.
+ *  result of .getMessage() is the error message to be printed. The
+ *  nested subclasses tell apart the errors a caller of GitletRepository
+ *  may want to handle; any other is a GitletException itself.
  *  @author P. N. Hilfinger
  */
-class GitletException extends RuntimeException {
+public class GitletException extends RuntimeException {
 
 
     /** A GitletException with no message. */
@@ -17,4 +19,42 @@ class GitletException extends RuntimeException {
         super(msg);
     }
 
+    /** A commit, branch, file or repository that does not exist. */
+    public static class NotFound extends GitletException {
+
+        /** A NotFound with MSG as its message. */
+        NotFound(String msg) {
+            super(msg);
+        }
+    }
+
+    /** A branch or repository that already exists. */
+    public static class AlreadyExists extends GitletException {
+
+        /** An AlreadyExists with MSG as its message. */
+        AlreadyExists(String msg) {
+            super(msg);
+        }
+    }
+
+    /** A shortened commit id that more than one commit starts with. */
+    public static class Ambiguous extends GitletException {
+
+        /** An Ambiguous with MSG as its message. */
+        Ambiguous(String msg) {
+            super(msg);
+        }
+    }
+
+    /** An operation the state of the repository or of the working
+     *  directory does not allow, such as committing with nothing staged
+     *  or overwriting an untracked file. */
+    public static class Refused extends GitletException {
+
+        /** A Refused with MSG as its message. */
+        Refused(String msg) {
+            super(msg);
+        }
+    }
+
 }
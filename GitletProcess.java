@@ -0,0 +1,98 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/** Runs Gitlet in processes of its own, in the working directory of a
+ *  test, as the tests of its commands do, and removes what they leave.
+ *  @author Shreyansh Loharuka
+ */
+class GitletProcess {
+
+    /** Longest wait for a process, in seconds. */
+    static final int WAIT = 300;
+
+    /** Returns a process running Gitlet with ARGS in DIR, started with
+     *  the JVM options OPTIONS. */
+    static Process start(File dir, List<String> options, String... args)
+        throws IOException {
+        return start(dir, "gitlet.Main", options, args);
+    }
+
+    /** Returns a process running the class named MAIN with ARGS in DIR,
+     *  started with the JVM options OPTIONS. */
+    static Process start(File dir, String main, List<String> options,
+                         String... args) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"),
+                "bin/java").getPath());
+        command.addAll(options);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(main);
+        for (String arg : args) {
+            command.add(arg);
+        }
+        return new ProcessBuilder(command).directory(dir)
+                .redirectErrorStream(true).start();
+    }
+
+    /** Returns the output of PROCESS, once it has exited. */
+    static String output(Process process)
+        throws IOException, InterruptedException {
+        String out = new String(process.getInputStream().readAllBytes(),
+                StandardCharsets.UTF_8);
+        assertTrue(process.waitFor(WAIT, TimeUnit.SECONDS));
+        return out;
+    }
+
+    /** Runs Gitlet with ARGS in DIR and returns its output once it has
+     *  succeeded. */
+    static String run(File dir, String... args)
+        throws IOException, InterruptedException {
+        return run(dir, List.of(), args);
+    }
+
+    /** Runs Gitlet with ARGS in DIR, started with the JVM options
+     *  OPTIONS, and returns its output once it has succeeded. */
+    static String run(File dir, List<String> options, String... args)
+        throws IOException, InterruptedException {
+        Process process = start(dir, options, args);
+        String out = output(process);
+        assertEquals(out, 0, process.exitValue());
+        assertFalse(out, out.contains("Exception"));
+        return out;
+    }
+
+    /** Runs Gitlet in batch mode in DIR on the lines of INPUT, and
+     *  returns its output once every command has succeeded. */
+    static String batch(File dir, String input)
+        throws IOException, InterruptedException {
+        Process process = start(dir, List.of(), "--batch");
+        process.getOutputStream().write(
+                input.getBytes(StandardCharsets.UTF_8));
+        process.getOutputStream().close();
+        String out = output(process);
+        assertEquals(out, 0, process.exitValue());
+        assertFalse(out, out.contains("\"status\":\"error\""));
+        return out;
+    }
+
+    /** Delete FILE and everything under it. */
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+}
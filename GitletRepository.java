@@ -0,0 +1,665 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The Gitlet repository in the current directory, for programs embedding
+ * Gitlet rather than running it as a command. Each method does what the
+ * command of the same name does, but returns what the command would
+ * print as result objects or iterators, and throws the errors it would
+ * report as GitletExceptions, of the nested subclasses of GitletException
+ * for those a caller may want to handle. Nothing is printed, and the
+ * process is never exited.
+ *
+ * Paths are relative to the current directory, which is the working
+ * directory of the repository, as they are for the commands.
+ *
+ * Methods may be called from any number of threads. Those that only read
+ * the repository run concurrently, and all others one at a time, under
+ * the same LockFile as the commands of other processes; the caches of
+ * commits, the commit graph and packs are shared by all of them.
+ *
+ * @author Shreyansh Loharuka
+ */
+public final class GitletRepository {
+
+    /**
+     * Initialise a handle on the repository in the current directory.
+     */
+    private GitletRepository() {
+    }
+
+    /**
+     * Creates a repository in the current directory and returns it.
+     */
+    public static GitletRepository init() {
+        run(commands -> {
+            try {
+                commands.init();
+            } catch (IOException excp) {
+                throw new UncheckedIOException(excp);
+            }
+            return null;
+        });
+        return new GitletRepository();
+    }
+
+    /**
+     * Returns the repository in the current directory, first bringing it
+     * up to date with this version.
+     */
+    public static GitletRepository open() {
+        if (!Main.initialised()) {
+            throw new GitletException.NotFound(
+                    "Not in an initialized Gitlet directory.");
+        }
+        GitletRepository repo = new GitletRepository();
+        repo.write(commands -> {
+            Main.upgrade();
+            return null;
+        });
+        return repo;
+    }
+
+    /**
+     * Stages the files at PATHS, and every file under those of PATHS
+     * that are directories.
+     */
+    public void add(String... paths) {
+        write(commands -> {
+            commands.add(Arrays.asList(paths));
+            return null;
+        });
+    }
+
+    /**
+     * Commits the staged files with MESSAGE and returns the new commit.
+     */
+    public CommitInfo commit(String message) {
+        if (message.trim().isEmpty()) {
+            throw Utils.error("Please enter a commit message.");
+        }
+        return write(commands -> new CommitInfo(
+                commands.commit(message, "")));
+    }
+
+    /**
+     * Unstages the file at PATH, or stages its removal and deletes it if
+     * the head commit tracks it.
+     */
+    public void rm(String path) {
+        write(commands -> {
+            try {
+                commands.rm(path);
+            } catch (IOException excp) {
+                throw new UncheckedIOException(excp);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Returns the commits from the head back to the initial commit,
+     * following first parents. They are read as they are iterated over,
+     * from the history as it was when log was called, each under the
+     * lock, so that a repack meanwhile does not lose them.
+     */
+    public Iterator<CommitInfo> log() {
+        return read(() -> {
+            CommitGraph graph = CommitGraph.get();
+            return new History(graph, graph.require(pointers().head()));
+        });
+    }
+
+    /**
+     * Returns every commit ever made, in no particular order. They are
+     * read as they are iterated over, each under the lock.
+     */
+    public Iterator<CommitInfo> globalLog() {
+        List<String> ids = read(() -> ObjectStore.commits().ids());
+        Iterator<String> iter = ids.iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return iter.hasNext();
+            }
+
+            @Override
+            public CommitInfo next() {
+                return info(iter.next());
+            }
+        };
+    }
+
+    /**
+     * Returns the ids of the commits whose message is MESSAGE.
+     */
+    public List<String> find(String message) {
+        return read(() -> MessageIndex.get().exact(message));
+    }
+
+    /**
+     * Returns the ids of the commits whose message contains TEXT,
+     * ignoring case.
+     */
+    public List<String> findSubstring(String text) {
+        return read(() -> MessageIndex.get().substring(text));
+    }
+
+    /**
+     * Returns the ids of the commits whose message holds the word WORD,
+     * ignoring case.
+     */
+    public List<String> findToken(String word) {
+        return read(() -> MessageIndex.get().token(word));
+    }
+
+    /**
+     * Returns the branches, staged files and state of the working
+     * directory.
+     */
+    public StatusReport status() {
+        return locked(true, () -> run(Commands::statusReport));
+    }
+
+    /**
+     * Checks out the head of BRANCH, which becomes the current branch,
+     * and returns how many files were written, removed and skipped.
+     */
+    public CheckoutResult checkout(String branch) {
+        return write(commands -> commands.switchBranch(branch));
+    }
+
+    /**
+     * Writes the version of the file at PATH in the head commit to the
+     * working directory.
+     */
+    public void checkoutFile(String path) {
+        write(commands -> {
+            commands.checkoutFile(commands.getHead(), path);
+            return null;
+        });
+    }
+
+    /**
+     * Writes the version of the file at PATH in the commit whose id is or
+     * starts with COMMIT to the working directory.
+     */
+    public void checkoutFile(String commit, String path) {
+        write(commands -> {
+            commands.checkoutFile(commit, path);
+            return null;
+        });
+    }
+
+    /**
+     * Creates a branch named NAME at the head commit.
+     */
+    public void branch(String name) {
+        write(commands -> {
+            commands.branch(name);
+            return null;
+        });
+    }
+
+    /**
+     * Deletes the branch named NAME.
+     */
+    public void removeBranch(String name) {
+        write(commands -> {
+            commands.rmbranch(name);
+            return null;
+        });
+    }
+
+    /**
+     * Checks out the commit whose id is or starts with COMMIT, moves the
+     * current branch to it, and returns how many files were written,
+     * removed and skipped.
+     */
+    public CheckoutResult reset(String commit) {
+        return write(commands -> commands.resetTo(commit));
+    }
+
+    /**
+     * Merges BRANCH into the current branch and returns the outcome.
+     */
+    public MergeResult merge(String branch) {
+        return write(commands -> commands.mergeBranch(branch));
+    }
+
+    /**
+     * Returns the id of the head commit.
+     */
+    public String head() {
+        return read(() -> pointers().head());
+    }
+
+    /**
+     * Returns the name of the current branch.
+     */
+    public String currentBranch() {
+        return read(() -> pointers().currentBranch());
+    }
+
+    /**
+     * Returns the id of the head of each branch, by name, in order of
+     * name.
+     */
+    public Map<String, String> branches() {
+        return read(() -> Collections.unmodifiableMap(
+                new TreeMap<>(pointers().branches())));
+    }
+
+    /**
+     * Returns the branches and head of the repository.
+     */
+    private static Repository pointers() {
+        return Codec.readRepository(Session.POINTERS);
+    }
+
+    /**
+     * Returns the commit with id ID, read under the shared lock from the
+     * packs and loose objects as they are now, since the iterators of
+     * log and globalLog reach it after the lock they were made under was
+     * released, and a repack since may have moved it.
+     */
+    private static CommitInfo info(String id) {
+        return locked(true, () -> new CommitInfo(
+                CommitCache.get().header(id)));
+    }
+
+    /**
+     * Returns the result of OPERATION, run with the lock shared.
+     */
+    private <T> T read(Supplier<T> operation) {
+        return locked(true, operation);
+    }
+
+    /**
+     * Returns the result of OPERATION, run with the lock held alone on
+     * the commands of a new session, whose changes are saved if it
+     * succeeds.
+     */
+    private <T> T write(Function<Commands, T> operation) {
+        return locked(false, () -> run(operation));
+    }
+
+    /**
+     * Returns the result of OPERATION, run on the commands of a new
+     * session, whose changes are saved if it succeeds.
+     */
+    private static <T> T run(Function<Commands, T> operation) {
+        Commands commands = new Commands();
+        T result = operation.apply(commands);
+        commands.save();
+        return result;
+    }
+
+    /**
+     * Returns the result of OPERATION, run holding the lock of the
+     * repository, shared if SHARED, on the repository as last written
+     * by any process.
+     */
+    private static <T> T locked(boolean shared, Supplier<T> operation) {
+        try (LockFile lock = shared ? LockFile.shared()
+                : LockFile.exclusive()) {
+            CommitGraph.reload();
+            Pack.reload();
+            return operation.get();
+        }
+    }
+
+    /**
+     * The commits of log, read from the commit graph.
+     */
+    private static class History implements Iterator<CommitInfo> {
+
+        /**
+         * The commit graph walked.
+         */
+        private final CommitGraph _graph;
+
+        /**
+         * Position of the next commit, or NONE at the end.
+         */
+        private int _pos;
+
+        /**
+         * Initialise the first-parent history in GRAPH of the commit at
+         * POS.
+         */
+        History(CommitGraph graph, int pos) {
+            _graph = graph;
+            _pos = pos;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return _pos != CommitGraph.NONE;
+        }
+
+        @Override
+        public CommitInfo next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String id = _graph.id(_pos);
+            _pos = _graph.parent(_pos, 0);
+            return info(id);
+        }
+    }
+
+    /**
+     * A commit, as shown by log.
+     */
+    public static final class CommitInfo {
+
+        /**
+         * Id of the commit.
+         */
+        private final String _id;
+
+        /**
+         * Ids of its parents, the first one first.
+         */
+        private final List<String> _parents;
+
+        /**
+         * Time it was made, in milliseconds since the epoch.
+         */
+        private final long _timestamp;
+
+        /**
+         * Its message.
+         */
+        private final String _message;
+
+        /**
+         * Initialise the information shown about COMMIT.
+         */
+        CommitInfo(Commit commit) {
+            _id = commit.uID();
+            _parents = commit.parent() == null ? List.of()
+                    : List.copyOf(commit.parent());
+            _timestamp = commit.timestamp().getTime();
+            _message = commit.logMessage();
+        }
+
+        /**
+         * Returns the id of the commit.
+         */
+        public String id() {
+            return _id;
+        }
+
+        /**
+         * Returns the ids of its parents, the first one first, none for
+         * the initial commit and two for a merge.
+         */
+        public List<String> parents() {
+            return _parents;
+        }
+
+        /**
+         * Returns the time it was made.
+         */
+        public Date timestamp() {
+            return new Date(_timestamp);
+        }
+
+        /**
+         * Returns its message.
+         */
+        public String message() {
+            return _message;
+        }
+
+        @Override
+        public String toString() {
+            return _id + " " + _message;
+        }
+    }
+
+    /**
+     * The state of the repository, as shown by status.
+     */
+    public static final class StatusReport {
+
+        /**
+         * Names of the branches, in order.
+         */
+        private final List<String> _branches;
+
+        /**
+         * Name of the current branch.
+         */
+        private final String _current;
+
+        /**
+         * Paths of the files staged for addition, in order.
+         */
+        private final List<String> _staged;
+
+        /**
+         * Paths of the files staged for removal, in order.
+         */
+        private final List<String> _removed;
+
+        /**
+         * Kind of change, modified or deleted, of each tracked file
+         * changed but not staged, by path, in order.
+         */
+        private final Map<String, String> _modified;
+
+        /**
+         * Paths of the untracked files, in order.
+         */
+        private final List<String> _untracked;
+
+        /**
+         * Initialise a report of BRANCHES, of which CURRENT is the
+         * current one, the files STAGED and REMOVED, and the files
+         * MODIFIED and UNTRACKED in the working directory.
+         */
+        StatusReport(Collection<String> branches, String current,
+                     List<String> staged, List<String> removed,
+                     Map<String, String> modified,
+                     Collection<String> untracked) {
+            _branches = List.copyOf(branches);
+            _current = current;
+            _staged = List.copyOf(staged);
+            _removed = List.copyOf(removed);
+            _modified = Collections.unmodifiableMap(
+                    new TreeMap<>(modified));
+            _untracked = Collections.unmodifiableList(
+                    new ArrayList<>(untracked));
+        }
+
+        /**
+         * Returns the names of the branches, in order.
+         */
+        public List<String> branches() {
+            return _branches;
+        }
+
+        /**
+         * Returns the name of the current branch.
+         */
+        public String currentBranch() {
+            return _current;
+        }
+
+        /**
+         * Returns the paths of the files staged for addition, in order.
+         */
+        public List<String> staged() {
+            return _staged;
+        }
+
+        /**
+         * Returns the paths of the files staged for removal, in order.
+         */
+        public List<String> removed() {
+            return _removed;
+        }
+
+        /**
+         * Returns the kind of change, modified or deleted, of each
+         * tracked file changed but not staged, by path, in order.
+         */
+        public Map<String, String> modified() {
+            return _modified;
+        }
+
+        /**
+         * Returns the paths of the untracked files, in order.
+         */
+        public List<String> untracked() {
+            return _untracked;
+        }
+
+        /**
+         * Returns true if nothing is staged, changed or untracked.
+         */
+        public boolean clean() {
+            return _staged.isEmpty() && _removed.isEmpty()
+                    && _modified.isEmpty() && _untracked.isEmpty();
+        }
+    }
+
+    /**
+     * The outcome of a checkout or reset: how many of the files that
+     * differ between the two commits it wrote, removed or found already
+     * as wanted.
+     */
+    public static final class CheckoutResult {
+
+        /**
+         * Number of files written to the working directory.
+         */
+        private final int _written;
+
+        /**
+         * Number of files removed from the working directory.
+         */
+        private final int _removed;
+
+        /**
+         * Number of files that differ between the two commits but that
+         * the working directory already held as wanted.
+         */
+        private final int _skipped;
+
+        /**
+         * Initialise the outcome of a checkout that wrote WRITTEN files,
+         * removed REMOVED and skipped SKIPPED.
+         */
+        CheckoutResult(int written, int removed, int skipped) {
+            _written = written;
+            _removed = removed;
+            _skipped = skipped;
+        }
+
+        /**
+         * Returns the number of files written.
+         */
+        public int written() {
+            return _written;
+        }
+
+        /**
+         * Returns the number of files removed.
+         */
+        public int removed() {
+            return _removed;
+        }
+
+        /**
+         * Returns the number of files skipped, being already as wanted.
+         */
+        public int skipped() {
+            return _skipped;
+        }
+    }
+
+    /**
+     * The outcome of a merge.
+     */
+    public static final class MergeResult {
+
+        /**
+         * The ways a merge may end.
+         */
+        public enum Outcome {
+            /** The given branch was already merged: nothing changed. */
+            UP_TO_DATE,
+            /** The given branch was checked out, being ahead. */
+            FAST_FORWARD,
+            /** A merge commit was made. */
+            MERGED
+        }
+
+        /**
+         * How the merge ended.
+         */
+        private final Outcome _outcome;
+
+        /**
+         * Id of the head commit after the merge.
+         */
+        private final String _head;
+
+        /**
+         * True if some files conflicted.
+         */
+        private final boolean _conflict;
+
+        /**
+         * Initialise the outcome of a merge that ended as OUTCOME, at the
+         * commit HEAD, with conflicts if CONFLICT.
+         */
+        MergeResult(Outcome outcome, String head, boolean conflict) {
+            _outcome = outcome;
+            _head = head;
+            _conflict = conflict;
+        }
+
+        /**
+         * Returns how the merge ended.
+         */
+        public Outcome outcome() {
+            return _outcome;
+        }
+
+        /**
+         * Returns the id of the head commit after the merge, which is the
+         * merge commit if one was made.
+         */
+        public String head() {
+            return _head;
+        }
+
+        /**
+         * Returns true if some files conflicted, in which case they were
+         * committed with both versions marked.
+         */
+        public boolean conflict() {
+            return _conflict;
+        }
+    }
+
+}
@@ -0,0 +1,251 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static gitlet.GitletProcess.*;
+import static org.junit.Assert.*;
+
+/** Embeds Gitlet through GitletRepository, which returns what the
+ *  commands print as result objects and reports their errors as the
+ *  nested subclasses of GitletException, printing nothing. Since the
+ *  repository is the one in the current directory, each test is run by
+ *  Embedder in a process of its own.
+ *  @author Shreyansh Loharuka
+ */
+public class GitletRepositoryTest {
+
+    /** The working directory of the processes. */
+    private File _dir;
+
+    /** Create a directory to work in. */
+    @Before
+    public void setUp() throws IOException {
+        _dir = Files.createTempDirectory("gitlet-embed").toFile();
+    }
+
+    /** Remove the directory. */
+    @After
+    public void tearDown() {
+        delete(_dir);
+    }
+
+    /** Commits, the log, find, status, branches, checkouts and merges
+     *  are returned as result objects. */
+    @Test
+    public void resultsTest() throws IOException, InterruptedException {
+        embed("results");
+    }
+
+    /** Errors are thrown as the nested GitletException of their kind,
+     *  with the messages the commands print. */
+    @Test
+    public void errorsTest() throws IOException, InterruptedException {
+        embed("errors");
+    }
+
+    /** Runs the test NAME of Embedder in _dir, checking that it printed
+     *  nothing, neither output nor the trace of a failure. */
+    private void embed(String name) throws IOException, InterruptedException {
+        Process process = start(_dir, Embedder.class.getName(), List.of(),
+                name);
+        String out = output(process);
+        assertEquals(out, "", out);
+        assertEquals(0, process.exitValue());
+    }
+
+    /** The tests of GitletRepository, run in the repository of the
+     *  current directory. */
+    static class Embedder {
+
+        /** Runs the test named ARGS[0]. */
+        public static void main(String[] args) {
+            switch (args[0]) {
+            case "results":
+                results();
+                break;
+            case "errors":
+                errors();
+                break;
+            default:
+                throw new IllegalArgumentException(args[0]);
+            }
+        }
+
+        /** Checks the result objects of the operations. */
+        static void results() {
+            GitletRepository repo = GitletRepository.init();
+            String initial = repo.head();
+            assertEquals("master", repo.currentBranch());
+            assertTrue(repo.status().clean());
+
+            Utils.writeContents(new File("a.txt"), "a\n");
+            assertEquals(List.of("a.txt"), repo.status().untracked());
+            repo.add("a.txt");
+            assertEquals(List.of("a.txt"), repo.status().staged());
+            GitletRepository.CommitInfo first = repo.commit("first one");
+            assertEquals("first one", first.message());
+            assertEquals(List.of(initial), first.parents());
+            assertEquals(first.id(), repo.head());
+
+            List<String> messages = new ArrayList<>();
+            for (Iterator<GitletRepository.CommitInfo> iter = repo.log();
+                 iter.hasNext();) {
+                messages.add(iter.next().message());
+            }
+            assertEquals(List.of("first one", "initial commit"), messages);
+            int all = 0;
+            for (Iterator<GitletRepository.CommitInfo> iter =
+                     repo.globalLog(); iter.hasNext(); iter.next()) {
+                all += 1;
+            }
+            assertEquals(2, all);
+            assertEquals(List.of(first.id()), repo.find("first one"));
+            assertEquals(List.of(first.id()), repo.findSubstring("FIRST O"));
+            assertEquals(List.of(first.id()), repo.findToken("one"));
+            assertEquals(List.of(), repo.find("first"));
+
+            Utils.writeContents(new File("a.txt"), "changed\n");
+            assertEquals(Map.of("a.txt", "modified"),
+                    repo.status().modified());
+            repo.checkoutFile("a.txt");
+            assertEquals("a\n", Utils.readContentsAsString(new File("a.txt")));
+            repo.rm("a.txt");
+            assertEquals(List.of("a.txt"), repo.status().removed());
+            assertFalse(new File("a.txt").exists());
+            repo.checkoutFile(first.id(), "a.txt");
+            repo.add("a.txt");
+            assertTrue(repo.status().clean());
+
+            repo.branch("other");
+            Map<String, String> branches = new HashMap<>();
+            branches.put("master", first.id());
+            branches.put("other", first.id());
+            assertEquals(branches, repo.branches());
+            assertEquals(List.of("master", "other"),
+                    repo.status().branches());
+            GitletRepository.CheckoutResult result = repo.checkout("other");
+            assertEquals("other", repo.status().currentBranch());
+            assertEquals(0, result.written() + result.removed()
+                    + result.skipped());
+            Utils.writeContents(new File("b.txt"), "b\n");
+            repo.add("b.txt");
+            String second = repo.commit("second").id();
+            repo.checkout("master");
+            assertFalse(new File("b.txt").exists());
+
+            GitletRepository.MergeResult merge = repo.merge("other");
+            assertEquals(GitletRepository.MergeResult.Outcome.FAST_FORWARD,
+                    merge.outcome());
+            assertEquals(second, merge.head());
+            assertFalse(merge.conflict());
+            assertEquals("b\n", Utils.readContentsAsString(new File("b.txt")));
+            assertEquals("other", repo.currentBranch());
+            assertEquals(GitletRepository.MergeResult.Outcome.UP_TO_DATE,
+                    repo.merge("master").outcome());
+            repo.removeBranch("master");
+            assertEquals(List.of("other"), List.copyOf(
+                    repo.branches().keySet()));
+            assertEquals(second, GitletRepository.open().head());
+        }
+
+        /** Checks the exceptions thrown for errors. */
+        static void errors() {
+            expect(GitletException.NotFound.class,
+                    "Not in an initialized Gitlet directory.",
+                    GitletRepository::open);
+            GitletRepository repo = GitletRepository.init();
+            expect(GitletException.AlreadyExists.class,
+                    "A Gitlet version-control system already exists in "
+                    + "the current directory.", GitletRepository::init);
+            expect(GitletException.class, "Please enter a commit message.",
+                    () -> repo.commit(" "));
+            expect(GitletException.Refused.class,
+                    "No changes added to the commit.",
+                    () -> repo.commit("nothing"));
+            expect(GitletException.NotFound.class, "File does not exist.",
+                    () -> repo.add("nosuch.txt"));
+            expect(GitletException.Refused.class,
+                    "No reason to remove the file.",
+                    () -> repo.rm("nosuch.txt"));
+            expect(GitletException.NotFound.class, "No such branch exists.",
+                    () -> repo.checkout("nosuch"));
+            expect(GitletException.Refused.class,
+                    "No need to checkout the current branch.",
+                    () -> repo.checkout("master"));
+            expect(GitletException.AlreadyExists.class,
+                    "A branch with that name already exists.",
+                    () -> repo.branch("master"));
+            expect(GitletException.NotFound.class,
+                    "A branch with that name does not exist.",
+                    () -> repo.removeBranch("nosuch"));
+            expect(GitletException.Refused.class,
+                    "Cannot remove the current branch.",
+                    () -> repo.removeBranch("master"));
+            expect(GitletException.Refused.class,
+                    "Cannot merge a branch with itself.",
+                    () -> repo.merge("master"));
+
+            repo.branch("other");
+            for (int i = 0; i < 16; i += 1) {
+                Utils.writeContents(new File("f" + i + ".txt"), i + "\n");
+                repo.add("f" + i + ".txt");
+                repo.commit("c" + i);
+            }
+            String shared = null;
+            Map<String, String> first = new HashMap<>();
+            for (Iterator<GitletRepository.CommitInfo> iter = repo.log();
+                 iter.hasNext();) {
+                String digit = iter.next().id().substring(0, 1);
+                if (first.put(digit, digit) != null) {
+                    shared = digit;
+                }
+            }
+            String prefix = shared;
+            expect(GitletException.Ambiguous.class,
+                    "More than one commit has that id prefix.",
+                    () -> repo.checkoutFile(prefix, "f0.txt"));
+            expect(GitletException.NotFound.class,
+                    "No commit with that id exists.",
+                    () -> repo.checkoutFile("0".repeat(40), "f0.txt"));
+            expect(GitletException.NotFound.class,
+                    "File does not exist in that commit.",
+                    () -> repo.checkoutFile("nosuch.txt"));
+
+            Utils.writeContents(new File("f0.txt"), "changed\n");
+            repo.add("f0.txt");
+            expect(GitletException.Refused.class,
+                    "You have uncommitted changes.",
+                    () -> repo.merge("other"));
+            repo.commit("changed");
+            repo.checkout("other");
+            Utils.writeContents(new File("f0.txt"), "untracked\n");
+            expect(GitletException.Refused.class,
+                    "There is an untracked file in the way; delete it or "
+                    + "add it first.", () -> repo.checkout("master"));
+        }
+
+        /** Checks that OPERATION throws an exception of exactly the class
+         *  KIND with MESSAGE as its message. */
+        static void expect(Class<? extends GitletException> kind,
+                           String message, Runnable operation) {
+            try {
+                operation.run();
+                fail("no " + kind.getSimpleName() + ": " + message);
+            } catch (GitletException excp) {
+                assertEquals(kind, excp.getClass());
+                assertEquals(message, excp.getMessage().trim());
+            }
+        }
+    }
+
+}
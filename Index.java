@@ -0,0 +1,578 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The index of a repository: one entry per tracked path, in path order,
+ * holding the id of the blob the next commit will record for it and the
+ * stat data of the working file it was last hashed from. An entry whose
+ * blob is that of the head commit is clean; one staged for addition is
+ * added, and one staged for removal keeps the blob of the head commit.
+ * While the stat data of a working file matches its entry, the cached id
+ * is trusted and the file is not read again. Entries whose file was
+ * modified no earlier than the index itself was written are racy: the
+ * file could have changed again within the resolution of its timestamp,
+ * so they are always rehashed, and are checked again before the index
+ * is rewritten.
+ *
+ * @author Shreyansh Loharuka
+ */
+class Index {
+
+    /**
+     * File holding the index.
+     */
+    static final File INDEX = new File(".gitlet/index");
+
+    /**
+     * State of an entry holding the blob of the head commit.
+     */
+    static final int CLEAN = 0;
+
+    /**
+     * State of an entry staged for addition.
+     */
+    static final int ADDED = 1;
+
+    /**
+     * State of an entry staged for removal.
+     */
+    static final int REMOVED = 2;
+
+    /**
+     * Mask of the file type in unix mode bits.
+     */
+    private static final int S_IFMT = 0170000;
+
+    /**
+     * File type of a regular file in unix mode bits.
+     */
+    private static final int S_IFREG = 0100000;
+
+    /**
+     * Entries of this index, hashed from path to entry in path order.
+     */
+    private TreeMap<String, Entry> _entries;
+
+    /**
+     * Modification time, in nanoseconds, of the index file when it was
+     * read, or Long.MIN_VALUE if there was none.
+     */
+    private long _written;
+
+    /**
+     * Initialise an empty index.
+     */
+    Index() {
+        _entries = new TreeMap<>();
+        _written = Long.MIN_VALUE;
+    }
+
+    /**
+     * Returns the index of the current repository. In batch mode, it may
+     * be read from the contents held for the index file, in which case
+     * it counts as written when the file was, as entries made since were
+     * never checked against a later write.
+     */
+    static Index read() {
+        if (!INDEX.exists() && Journal.pending(INDEX) == null) {
+            return new Index();
+        }
+        Index index = Codec.readIndex(INDEX);
+        if (INDEX.exists()) {
+            try {
+                index._written = nanos(
+                        Files.getLastModifiedTime(INDEX.toPath()));
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Writes this index to the current repository at the next commit of
+     * Journal. Racy entries read with the index whose file no longer
+     * holds their blob have their stat data cleared, since the new index
+     * would make them trusted.
+     */
+    void write() {
+        File workingDir = new File(System.getProperty("user.dir"));
+        for (Map.Entry<String, Entry> e : _entries.entrySet()) {
+            Entry entry = e.getValue();
+            if (entry._fresh || entry._size < 0 || entry._mtime < _written) {
+                continue;
+            }
+            File file = new File(workingDir, e.getKey());
+            Entry stat = stat(file);
+            if (stat != null && entry.sameStat(stat)
+                    && !entry._id.equals(Utils.sha1(file))) {
+                entry._size = -1;
+            }
+        }
+        Journal.write(INDEX, Codec.encode(this));
+    }
+
+    /**
+     * Returns the entries of this index, in path order.
+     */
+    TreeMap<String, Entry> entries() {
+        return _entries;
+    }
+
+    /**
+     * Returns the entry for PATH, or null.
+     */
+    Entry get(String path) {
+        return _entries.get(path);
+    }
+
+    /**
+     * Returns the id of the contents of FILE, tracked at PATH, taken from
+     * the entry for PATH if the stat data of FILE still matches it, or
+     * null if FILE must be hashed.
+     */
+    String cached(String path, File file) {
+        return cached(path, stat(file));
+    }
+
+    /**
+     * Returns the id of the file tracked at PATH whose stat data is STAT,
+     * which may be null if it is missing, if the entry for PATH can be
+     * trusted, or null.
+     */
+    String cached(String path, Entry stat) {
+        return cached(_entries.get(path), stat);
+    }
+
+    /**
+     * Returns the id held by ENTRY, an entry of this index or null, if it
+     * can be trusted for a file whose stat data is STAT, or null.
+     */
+    String cached(Entry entry, Entry stat) {
+        if (entry == null || entry._state == REMOVED) {
+            return null;
+        }
+        if (stat == null || !entry.sameStat(stat)
+                || entry._mtime >= _written) {
+            return null;
+        }
+        return entry._id;
+    }
+
+    /**
+     * Returns the id of the contents of FILE, tracked at PATH, reading
+     * FILE only if its stat data does not match the entry for PATH.
+     */
+    String hash(String path, File file) {
+        String id = cached(path, file);
+        if (id == null) {
+            id = Utils.sha1(file);
+        }
+        return id;
+    }
+
+    /**
+     * Returns true if FILE, tracked at PATH, already holds blob ID, as
+     * told by its entry if the stat data of FILE still matches it, or by
+     * hashing FILE if it has the size of ID.
+     */
+    boolean holds(String path, File file, String id) {
+        Entry stat = stat(file);
+        if (stat == null) {
+            return false;
+        }
+        String cached = cached(path, stat);
+        if (cached != null) {
+            return cached.equals(id);
+        }
+        return stat._size == ObjectStore.blobs().size(id)
+                && id.equals(Utils.sha1(file));
+    }
+
+    /**
+     * Records that PATH holds blob ID in STATE, with the stat data of
+     * FILE, which may be null if it is not known to hold ID.
+     */
+    void put(String path, String id, int state, File file) {
+        Entry entry = file == null ? null : stat(file);
+        if (entry == null) {
+            entry = new Entry();
+        }
+        entry._id = id;
+        entry._state = state;
+        entry._fresh = true;
+        _entries.put(path, entry);
+    }
+
+    /**
+     * Records that PATH holds blob ID in STATE, with stat data STAT taken
+     * before the file was found to hold ID.
+     */
+    void record(String path, String id, int state, Entry stat) {
+        Entry entry = new Entry(id, state, stat._mode, stat._size,
+                stat._mtime, stat._ctime, stat._inode);
+        entry._fresh = true;
+        _entries.put(path, entry);
+    }
+
+    /**
+     * Replaces the stat data of the entry for PATH by STAT, taken from a
+     * file found to still hold its blob.
+     */
+    void refresh(String path, Entry stat) {
+        Entry entry = _entries.get(path);
+        entry._mode = stat._mode;
+        entry._size = stat._size;
+        entry._mtime = stat._mtime;
+        entry._ctime = stat._ctime;
+        entry._inode = stat._inode;
+        entry._fresh = true;
+    }
+
+    /**
+     * Drops the entry for PATH.
+     */
+    void remove(String path) {
+        _entries.remove(path);
+    }
+
+    /**
+     * Returns true if any path is staged for addition or removal.
+     */
+    boolean hasChanges() {
+        for (Entry entry : _entries.values()) {
+            if (entry._state != CLEAN) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the paths in STATE, in path order.
+     */
+    List<String> paths(int state) {
+        List<String> paths = new ArrayList<>();
+        for (Map.Entry<String, Entry> entry : _entries.entrySet()) {
+            if (entry.getValue()._state == state) {
+                paths.add(entry.getKey());
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Returns the staged changes, hashed from path to the id of the blob
+     * to record or to null for a removal, as taken by Tree.update.
+     */
+    HashMap<String, String> changes() {
+        HashMap<String, String> changes = new HashMap<>();
+        for (Map.Entry<String, Entry> entry : _entries.entrySet()) {
+            switch (entry.getValue()._state) {
+            case ADDED:
+                changes.put(entry.getKey(), entry.getValue()._id);
+                break;
+            case REMOVED:
+                changes.put(entry.getKey(), null);
+                break;
+            default:
+                break;
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Marks the staged changes as committed.
+     */
+    void committed() {
+        _entries.values().removeIf(entry -> entry._state == REMOVED);
+        for (Entry entry : _entries.values()) {
+            entry._state = CLEAN;
+        }
+    }
+
+    /**
+     * Moves this index to the tree with id TO once CHANGES, the paths
+     * differing from the current tree as returned by Tree.diff, have
+     * been written to the working directory. Staged changes are
+     * dropped.
+     */
+    void switchTo(String to, Map<String, String[]> changes) {
+        File workingDir = new File(System.getProperty("user.dir"));
+        for (String path : new ArrayList<>(_entries.keySet())) {
+            if (_entries.get(path)._state != CLEAN) {
+                String id = Tree.find(to, path);
+                if (id == null) {
+                    _entries.remove(path);
+                } else {
+                    put(path, id, CLEAN, null);
+                }
+            }
+        }
+        for (Map.Entry<String, String[]> change : changes.entrySet()) {
+            String path = change.getKey();
+            String id = change.getValue()[1];
+            if (id == null) {
+                _entries.remove(path);
+            } else {
+                put(path, id, CLEAN, new File(workingDir, path));
+            }
+        }
+    }
+
+    /**
+     * Returns an index holding FILES, hashed from path to blob id,
+     * without stat data.
+     */
+    static Index of(Map<String, String> files) {
+        Index index = new Index();
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            index.put(file.getKey(), file.getValue(), CLEAN, null);
+        }
+        return index;
+    }
+
+    /**
+     * Returns true if the repository has no index yet.
+     */
+    static boolean needsUpgrade() {
+        return !INDEX.exists();
+    }
+
+    /**
+     * Builds the index of a repository whose staging area was kept in
+     * its pointers and in the stagingToAdd and remove directories by
+     * older versions, unless it already has one.
+     */
+    static void upgrade() {
+        if (!needsUpgrade()) {
+            return;
+        }
+        File pointers = new File(".gitlet/pointers");
+        Repository repo = Codec.readRepository(pointers);
+        Commit head = Codec.readCommit(ObjectStore.commits()
+                .open(repo.head()));
+        upgrade(repo, head.fileNames());
+        Codec.writeRepository(pointers, repo);
+    }
+
+    /**
+     * Writes the index holding HEAD, the files of the head commit, with
+     * the staging area kept by older versions in REPO, and the
+     * stagingToAdd and remove directories, applied. The staging area is
+     * then cleared from REPO and the directories are removed.
+     */
+    static void upgrade(Repository repo, Map<String, String> head) {
+        Index index = of(head);
+        ObjectStore blobs = ObjectStore.blobs();
+        ObjectStore staging = ObjectStore.staging();
+        for (Map.Entry<String, String> staged
+                : repo.stageFilesNames().entrySet()) {
+            String id = staged.getValue();
+            if (staging.file(id).length() > 0) {
+                blobs.copyFrom(staging, id);
+            }
+            if (blobs.contains(id)) {
+                index.put(staged.getKey(), id, ADDED, null);
+            }
+        }
+        for (String removed : repo.removedFiles().keySet()) {
+            Entry entry = index.get(removed);
+            if (entry != null) {
+                entry._state = REMOVED;
+            }
+        }
+        index.write();
+        repo.stageFiles().clear();
+        repo.stageFilesNames().clear();
+        repo.removedFiles().clear();
+        for (File dir : new File[] {ObjectStore.STAGING,
+            new File(".gitlet/remove")}) {
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            dir.delete();
+        }
+    }
+
+    /**
+     * Returns an entry without id holding the stat data of FILE, or null
+     * if it is not a regular file.
+     */
+    static Entry stat(File file) {
+        Path path = file.toPath();
+        try {
+            Entry entry = new Entry();
+            try {
+                Map<String, Object> attrs = Files.readAttributes(path,
+                        "unix:mode,size,lastModifiedTime,ctime,ino",
+                        LinkOption.NOFOLLOW_LINKS);
+                entry._mode = (Integer) attrs.get("mode");
+                entry._size = (Long) attrs.get("size");
+                entry._mtime = nanos((FileTime) attrs.get("lastModifiedTime"));
+                entry._ctime = nanos((FileTime) attrs.get("ctime"));
+                entry._inode = (Long) attrs.get("ino");
+                if ((entry._mode & S_IFMT) != S_IFREG) {
+                    return null;
+                }
+            } catch (UnsupportedOperationException excp) {
+                BasicFileAttributes attrs = Files.readAttributes(path,
+                        BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                if (!attrs.isRegularFile()) {
+                    return null;
+                }
+                entry._size = attrs.size();
+                entry._mtime = nanos(attrs.lastModifiedTime());
+                entry._ctime = nanos(attrs.creationTime());
+                Object key = attrs.fileKey();
+                entry._inode = key == null ? 0 : key.hashCode();
+            }
+            return entry;
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns TIME in nanoseconds since the epoch.
+     */
+    private static long nanos(FileTime time) {
+        return time.to(TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * An entry of the index.
+     */
+    static class Entry {
+        /**
+         * The mode bits of the file.
+         */
+        private int _mode;
+        /**
+         * The size of the file in bytes.
+         */
+        private long _size;
+        /**
+         * The modification time of the file, in nanoseconds.
+         */
+        private long _mtime;
+        /**
+         * The status change time of the file, in nanoseconds.
+         */
+        private long _ctime;
+        /**
+         * The inode number of the file.
+         */
+        private long _inode;
+        /**
+         * The id of the blob of the file.
+         */
+        private String _id;
+        /**
+         * Whether the entry is CLEAN, ADDED or REMOVED.
+         */
+        private int _state;
+        /**
+         * True if the stat data was taken since the index was read.
+         */
+        private boolean _fresh;
+
+        /**
+         * An entry without stat data, which never matches a file.
+         */
+        Entry() {
+            _size = -1;
+        }
+
+        /**
+         * An entry for blob ID in STATE with stat data MODE, SIZE, MTIME,
+         * CTIME and INODE.
+         */
+        Entry(String id, int state, int mode, long size, long mtime,
+              long ctime, long inode) {
+            _id = id;
+            _state = state;
+            _mode = mode;
+            _size = size;
+            _mtime = mtime;
+            _ctime = ctime;
+            _inode = inode;
+        }
+
+        /**
+         * Returns true if this entry has the same stat data as OTHER.
+         */
+        boolean sameStat(Entry other) {
+            return _size >= 0 && _mode == other._mode
+                    && _size == other._size && _mtime == other._mtime
+                    && _ctime == other._ctime && _inode == other._inode;
+        }
+
+        /**
+         * Returns the id of the blob of this entry.
+         */
+        String id() {
+            return _id;
+        }
+
+        /**
+         * Returns the state of this entry.
+         */
+        int state() {
+            return _state;
+        }
+
+        /**
+         * Returns the mode bits of the file.
+         */
+        int mode() {
+            return _mode;
+        }
+
+        /**
+         * Returns the size of the file.
+         */
+        long size() {
+            return _size;
+        }
+
+        /**
+         * Returns the modification time of the file.
+         */
+        long mtime() {
+            return _mtime;
+        }
+
+        /**
+         * Returns the status change time of the file.
+         */
+        long ctime() {
+            return _ctime;
+        }
+
+        /**
+         * Returns the inode number of the file.
+         */
+        long inode() {
+            return _inode;
+        }
+    }
+
+}
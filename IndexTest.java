@@ -0,0 +1,105 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static gitlet.GitletProcess.*;
+import static org.junit.Assert.*;
+
+/** Trusts the stat data of the entries of the index only when they were
+ *  taken before the index was written. Each test commits f.txt, then
+ *  rewrites it with other contents of the same size, and writes an index
+ *  whose entry for f.txt holds its old blob with its new stat data, as if
+ *  it had changed again after being hashed, within the resolution of its
+ *  timestamp.
+ *  @author Shreyansh Loharuka
+ */
+public class IndexTest {
+
+    /** Line of status listing f.txt as modified. */
+    private static final String MODIFIED = "\nf.txt (modified)\n";
+
+    /** The working directory of the processes. */
+    private File _dir;
+
+    /** The index of the repository. */
+    private File _index;
+
+    /** Time, in milliseconds, at which f.txt was last modified. */
+    private long _mtime;
+
+    /** Create a repository tracking f.txt, then change f.txt behind the
+     *  back of its entry. */
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        _dir = Files.createTempDirectory("gitlet-index").toFile();
+        _index = new File(_dir, ".gitlet/index");
+        run(_dir, "init");
+        File f = new File(_dir, "f.txt");
+        Utils.writeContents(f, "aaaa\n");
+        String old = Utils.sha1(f);
+        run(_dir, "add", "f.txt");
+        run(_dir, "commit", "first");
+        Utils.writeContents(f, "bbbb\n");
+        _mtime = System.currentTimeMillis() - 100000;
+        Files.setLastModifiedTime(f.toPath(), FileTime.fromMillis(_mtime));
+        Index index = Codec.readIndex(_index);
+        Index.Entry stat = Index.stat(f);
+        index.entries().put("f.txt", new Index.Entry(old, Index.CLEAN,
+                stat.mode(), stat.size(), stat.mtime(), stat.ctime(),
+                stat.inode()));
+        Utils.writeContents(_index, (Object) Codec.encode(index));
+    }
+
+    /** Remove the repository. */
+    @After
+    public void tearDown() {
+        delete(_dir);
+    }
+
+    /** An entry whose file was modified before the index was written is
+     *  trusted without reading the file. */
+    @Test
+    public void trustedTest() throws IOException, InterruptedException {
+        setIndexTime(_mtime + 1000);
+        assertFalse(run(_dir, "status").contains(MODIFIED));
+    }
+
+    /** A racy entry, whose file was modified when the index was written,
+     *  is not trusted, and its file is hashed again. */
+    @Test
+    public void racyTest() throws IOException, InterruptedException {
+        setIndexTime(_mtime);
+        String status = run(_dir, "status");
+        assertTrue(status, status.contains(MODIFIED));
+    }
+
+    /** A racy entry whose file no longer holds its blob is not trusted
+     *  once the index is rewritten later than the file was modified. */
+    @Test
+    public void rewrittenTest() throws IOException, InterruptedException {
+        setIndexTime(_mtime);
+        Utils.writeContents(new File(_dir, "g.txt"), "g\n");
+        run(_dir, "add", "g.txt");
+        assertTrue(_index.lastModified() > _mtime);
+        String status = run(_dir, "status");
+        assertTrue(status, status.contains(MODIFIED));
+        run(_dir, "add", "f.txt");
+        run(_dir, "commit", "second");
+        run(_dir, "checkout", "--", "f.txt");
+        assertEquals("bbbb\n",
+                Utils.readContentsAsString(new File(_dir, "f.txt")));
+    }
+
+    /** Set the modification time of the index to MILLIS. */
+    private void setIndexTime(long millis) throws IOException {
+        Files.setLastModifiedTime(_index.toPath(),
+                FileTime.fromMillis(millis));
+    }
+
+}
@@ -0,0 +1,365 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Crash-safe writes to the repository. No file of the repository is
+ * ever rewritten in place: each is written whole to a temporary file in
+ * .gitlet/tmp, then renamed over its target, so that a crash leaves
+ * either the old contents or the new ones.
+ *
+ * Objects and layers of the commit graph, whose names never change
+ * once written, are renamed into place at once and only recorded as
+ * written. Files whose contents change, such as .gitlet/pointers, the
+ * index and the chain of the commit graph, are held in memory by write
+ * until commit, which makes the changes of a command durable together:
+ *
+ * 1. the held files are written to temporary files and, if there are
+ *    several, to the journal, .gitlet/journal, along with a checksum;
+ * 2. the temporary files, the journal and every file recorded as written
+ *    since the last commit are synced, all at once, then their
+ *    directories;
+ * 3. the temporary files are renamed over their targets, their
+ *    directories are synced, the files whose deletion was deferred are
+ *    deleted, and the journal is removed.
+ *
+ * A crash before the journal is whole leaves every target as it was,
+ * and a torn journal is discarded. A crash after it is whole is made
+ * good by recover, which replays the journal when the next command
+ * starts, so that a commit, merge or reset never leaves the head moved
+ * without the index, or the other way round. Syncs are issued concurrently, so
+ * that they are grouped into as few flushes of the file system as it
+ * allows, and cost a few round trips per command rather than one per
+ * file.
+ *
+ * @author Shreyansh Loharuka
+ */
+class Journal {
+
+    /**
+     * The journal of the multi-file commit in progress.
+     */
+    static final File FILE = new File(".gitlet/journal");
+
+    /**
+     * Directory of temporary files.
+     */
+    static final File TMP = new File(".gitlet/tmp");
+
+    /**
+     * True if writes are synced to disk. It may be set to false with the
+     * gitlet.fsync system property, to trade durability for speed.
+     */
+    static final boolean FSYNC = !"false".equals(
+            System.getProperty("gitlet.fsync"));
+
+    /**
+     * Magic number of a journal.
+     */
+    private static final int MAGIC = 0x676c6a31;
+
+    /**
+     * Age after which a temporary file is known to be left by a crash.
+     */
+    private static final long STALE = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Contents of the files whose writes are held, by file.
+     */
+    private static final LinkedHashMap<File, byte[]> PENDING =
+            new LinkedHashMap<>();
+
+    /**
+     * Files written since the last commit, to be synced by the next.
+     */
+    private static final LinkedHashSet<File> WRITTEN = new LinkedHashSet<>();
+
+    /**
+     * Files to be deleted once the next commit is durable.
+     */
+    private static final List<File> DELETES = new ArrayList<>();
+
+    /**
+     * True if commits are held until flush, as in batch mode.
+     */
+    private static boolean _holding;
+
+    /**
+     * Holds CONTENTS for FILE until the next commit.
+     */
+    static synchronized void write(File file, byte[] contents) {
+        PENDING.put(file.getAbsoluteFile(), contents);
+    }
+
+    /**
+     * Returns the contents held for FILE, or null if there are none.
+     */
+    static synchronized byte[] pending(File file) {
+        return PENDING.get(file.getAbsoluteFile());
+    }
+
+    /**
+     * Records that FILE was written, to be synced by the next commit.
+     */
+    static synchronized void written(File file) {
+        if (FSYNC) {
+            WRITTEN.add(file);
+        }
+    }
+
+    /**
+     * Records that FROM, if written since the last commit, was renamed
+     * TO, which is then synced in its place.
+     */
+    static synchronized void renamed(File from, File to) {
+        if (WRITTEN.remove(from)) {
+            WRITTEN.add(to);
+        }
+    }
+
+    /**
+     * Defers the deletion of FILE until the next commit is durable.
+     */
+    static synchronized void delete(File file) {
+        DELETES.add(file);
+    }
+
+    /**
+     * Holds commits until flush if HOLDING, or lets them through.
+     */
+    static synchronized void hold(boolean holding) {
+        _holding = holding;
+    }
+
+    /**
+     * Makes the changes held so far durable, unless commits are held.
+     */
+    static synchronized void commit() {
+        if (!_holding) {
+            flush();
+        }
+    }
+
+    /**
+     * Makes the changes held so far durable, as described above.
+     */
+    static synchronized void flush() {
+        if (PENDING.isEmpty() && WRITTEN.isEmpty() && DELETES.isEmpty()) {
+            return;
+        }
+        try {
+            LinkedHashMap<File, File> temps = new LinkedHashMap<>();
+            for (Map.Entry<File, byte[]> held : PENDING.entrySet()) {
+                File temp = temp(held.getKey().getName());
+                Files.write(temp.toPath(), held.getValue());
+                temps.put(held.getKey(), temp);
+            }
+            List<File> written = new ArrayList<>(WRITTEN);
+            written.addAll(temps.values());
+            boolean journaled = PENDING.size() > 1;
+            if (journaled) {
+                writeJournal(PENDING);
+                written.add(FILE);
+            }
+            sync(written);
+            for (Map.Entry<File, File> temp : temps.entrySet()) {
+                move(temp.getValue(), temp.getKey());
+            }
+            syncDirectories(new ArrayList<>(temps.keySet()));
+            for (File file : DELETES) {
+                file.delete();
+            }
+            if (journaled) {
+                FILE.delete();
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            PENDING.clear();
+            WRITTEN.clear();
+            DELETES.clear();
+        }
+    }
+
+    /**
+     * Returns true if a crash interrupted a commit, which recover must
+     * complete or discard before the repository is read.
+     */
+    static synchronized boolean needsRecovery() {
+        return FILE.exists();
+    }
+
+    /**
+     * Completes the commit a crash interrupted, if its journal is whole,
+     * or discards it, and removes temporary files left by crashes.
+     */
+    static synchronized void recover() {
+        if (FILE.exists()) {
+            LinkedHashMap<File, byte[]> entries = readJournal();
+            if (entries != null) {
+                for (Map.Entry<File, byte[]> entry : entries.entrySet()) {
+                    write(entry.getKey(), entry.getValue());
+                }
+                flush();
+            }
+            FILE.delete();
+        }
+        File[] temps = TMP.listFiles();
+        if (temps != null) {
+            long now = System.currentTimeMillis();
+            for (File temp : temps) {
+                if (now - temp.lastModified() > STALE) {
+                    temp.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a new, empty temporary file whose name starts with PREFIX.
+     */
+    static File temp(String prefix) {
+        TMP.mkdirs();
+        try {
+            return File.createTempFile(prefix + "-", ".tmp", TMP);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * Renames FROM to TO, replacing it, in a single step.
+     */
+    static void move(File from, File to) {
+        try {
+            Files.move(from.toPath(), to.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * Syncs FILES to disk, then the directories holding them, each group
+     * concurrently.
+     */
+    static void sync(List<File> files) {
+        if (FSYNC) {
+            files.parallelStream().forEach(Journal::force);
+            syncDirectories(files);
+        }
+    }
+
+    /**
+     * Syncs the directories holding FILES to disk, concurrently, so that
+     * the files are found under their names after a crash.
+     */
+    static void syncDirectories(List<File> files) {
+        if (!FSYNC) {
+            return;
+        }
+        LinkedHashSet<File> dirs = new LinkedHashSet<>();
+        for (File file : files) {
+            dirs.add(file.getAbsoluteFile().getParentFile());
+        }
+        dirs.parallelStream().forEach(Journal::force);
+    }
+
+    /**
+     * Syncs FILE, a file or a directory, to disk. Directories that cannot
+     * be synced on this system are skipped.
+     */
+    private static void force(File file) {
+        boolean dir = file.isDirectory();
+        try (FileChannel channel = FileChannel.open(file.toPath(), dir
+                ? StandardOpenOption.READ : StandardOpenOption.WRITE)) {
+            channel.force(true);
+        } catch (IOException excp) {
+            if (!dir) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Writes ENTRIES, with a checksum, to the journal.
+     */
+    private static void writeJournal(Map<File, byte[]> entries)
+            throws IOException {
+        Path workingDir = Paths.get(System.getProperty("user.dir"));
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(FILE)))) {
+            DataOutputStream checked = new DataOutputStream(
+                    new CheckedOutputStream(out, crc));
+            checked.writeInt(MAGIC);
+            checked.writeInt(entries.size());
+            for (Map.Entry<File, byte[]> entry : entries.entrySet()) {
+                checked.writeUTF(workingDir.relativize(
+                        entry.getKey().toPath()).toString());
+                checked.writeInt(entry.getValue().length);
+                checked.write(entry.getValue());
+            }
+            checked.flush();
+            out.writeLong(crc.getValue());
+        }
+    }
+
+    /**
+     * Returns the files and contents in the journal, or null if it is
+     * torn.
+     */
+    private static LinkedHashMap<File, byte[]> readJournal() {
+        File workingDir = new File(System.getProperty("user.dir"));
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(FILE)))) {
+            DataInputStream checked = new DataInputStream(
+                    new CheckedInputStream(in, crc));
+            if (checked.readInt() != MAGIC) {
+                return null;
+            }
+            LinkedHashMap<File, byte[]> entries = new LinkedHashMap<>();
+            for (int n = checked.readInt(); n > 0; n -= 1) {
+                File file = new File(workingDir, checked.readUTF());
+                int length = checked.readInt();
+                if (length < 0 || length > FILE.length()) {
+                    return null;
+                }
+                byte[] contents = new byte[length];
+                checked.readFully(contents);
+                entries.put(file, contents);
+            }
+            return in.readLong() == crc.getValue() ? entries : null;
+        } catch (EOFException excp) {
+            return null;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+}
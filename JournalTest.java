@@ -0,0 +1,126 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static gitlet.GitletProcess.*;
+import static org.junit.Assert.*;
+
+/** Recovers from commits interrupted by a crash: a journal left whole
+ *  is replayed by the next command, and one torn or corrupt is
+ *  discarded, along with stale temporary files.
+ *  @author Shreyansh Loharuka
+ */
+public class JournalTest {
+
+    /** Magic number of a journal. */
+    private static final int MAGIC = 0x676c6a31;
+
+    /** The working directory of the processes. */
+    private File _dir;
+
+    /** The pointers of the repository, with a.txt staged and before it
+     *  was committed. */
+    private byte[] _pointers;
+
+    /** The index of the repository, with a.txt staged. */
+    private byte[] _index;
+
+    /** The journal of a commit restoring _pointers and _index. */
+    private byte[] _journal;
+
+    /** Create a repository with a.txt committed, keeping its pointers
+     *  and index from before the commit, and a journal of them. */
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        _dir = Files.createTempDirectory("gitlet-journal").toFile();
+        run(_dir, "init");
+        Utils.writeContents(new File(_dir, "a.txt"), "a\n");
+        run(_dir, "add", "a.txt");
+        _pointers = Utils.readContents(new File(_dir, ".gitlet/pointers"));
+        _index = Utils.readContents(new File(_dir, ".gitlet/index"));
+        run(_dir, "commit", "first");
+        _journal = journal();
+    }
+
+    /** Remove the repository. */
+    @After
+    public void tearDown() {
+        delete(_dir);
+    }
+
+    /** A whole journal is replayed by the next command, even one that
+     *  only reads, moving back the head and index together, and is then
+     *  removed with the temporary files older than an hour. */
+    @Test
+    public void replayTest() throws IOException, InterruptedException {
+        File tmp = new File(_dir, ".gitlet/tmp");
+        tmp.mkdirs();
+        File stale = new File(tmp, "pointers-1.tmp");
+        File fresh = new File(tmp, "pointers-2.tmp");
+        Utils.writeContents(stale, "left by a crash");
+        Utils.writeContents(fresh, "being written");
+        assertTrue(stale.setLastModified(System.currentTimeMillis()
+                - TimeUnit.HOURS.toMillis(2)));
+        Utils.writeContents(new File(_dir, ".gitlet/journal"), _journal);
+
+        assertTrue(run(_dir, "status").contains(
+                "=== Staged Files ===\na.txt\n"));
+        assertFalse(new File(_dir, ".gitlet/journal").exists());
+        assertArrayEquals(_pointers,
+                Utils.readContents(new File(_dir, ".gitlet/pointers")));
+        assertArrayEquals(_index,
+                Utils.readContents(new File(_dir, ".gitlet/index")));
+        assertFalse(run(_dir, "log").contains("first"));
+        assertFalse(stale.exists());
+        assertTrue(fresh.exists());
+    }
+
+    /** A journal cut short or whose checksum does not match is discarded,
+     *  leaving the repository as the last commit left it. */
+    @Test
+    public void tornTest() throws IOException, InterruptedException {
+        byte[] corrupt = _journal.clone();
+        corrupt[corrupt.length - 1] ^= 1;
+        byte[][] journals = {
+            Arrays.copyOf(_journal, _journal.length - 3),
+            Arrays.copyOf(_journal, 12), corrupt,
+        };
+        for (byte[] journal : journals) {
+            Utils.writeContents(new File(_dir, ".gitlet/journal"), journal);
+            assertTrue(run(_dir, "status").contains(
+                    "=== Staged Files ===\n\n"));
+            assertFalse(new File(_dir, ".gitlet/journal").exists());
+            assertTrue(run(_dir, "log").contains("\nfirst\n"));
+        }
+    }
+
+    /** Returns the journal of a commit of _pointers and _index, with
+     *  their paths from the working directory and a checksum. */
+    private byte[] journal() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(2);
+        out.writeUTF(".gitlet/pointers");
+        out.writeInt(_pointers.length);
+        out.write(_pointers);
+        out.writeUTF(".gitlet/index");
+        out.writeInt(_index.length);
+        out.write(_index);
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        return bytes.toByteArray();
+    }
+
+}
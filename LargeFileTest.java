@@ -0,0 +1,170 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static gitlet.GitletProcess.*;
+import static org.junit.Assert.*;
+
+/** Commits, checks out and merges files larger than the heap of the
+ *  Gitlet processes, which succeeds only if their contents are streamed.
+ *  @author Shreyansh Loharuka
+ */
+public class LargeFileTest {
+
+    /** Heap of the Gitlet processes, in megabytes. */
+    private static final int HEAP = 32;
+
+    /** Size of the large file, in bytes. */
+    private static final long SIZE = 3L * HEAP * 1024 * 1024;
+
+    /** Size of the merged text file, in bytes, which is under the limit
+     *  of merges by lines but could not be merged by lines in the heap. */
+    private static final long TEXT_SIZE = HEAP * 1024 * 1024;
+
+    /** Size of each version of the repacked file, in bytes, of which
+     *  the window of delta bases could hold more than the heap. */
+    private static final int VERSION_SIZE = 3 * 1024 * 1024;
+
+    /** Number of versions of the repacked file. */
+    private static final int VERSIONS = 12;
+
+    /** The working directory of the processes. */
+    private File _dir;
+
+    /** Create a repository to work in. */
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        _dir = Files.createTempDirectory("gitlet-large").toFile();
+        gitlet("init");
+    }
+
+    /** Remove the repository. */
+    @After
+    public void tearDown() {
+        delete(_dir);
+    }
+
+    /** A file three times the heap is added, committed, checked out
+     *  after being removed and restored by reset, byte for byte. */
+    @Test
+    public void largeFileTest() throws IOException, InterruptedException {
+        File big = new File(_dir, "big.bin");
+        write(big, SIZE, 1);
+        String id = Utils.sha1(big);
+        gitlet("add", "big.bin");
+        gitlet("commit", "large file");
+        String first = gitlet("find", "large file").trim();
+        assertTrue(big.delete());
+        gitlet("checkout", "--", "big.bin");
+        assertEquals(SIZE, big.length());
+        assertEquals(id, Utils.sha1(big));
+
+        write(big, SIZE, 2);
+        gitlet("add", "big.bin");
+        gitlet("commit", "another large file");
+        gitlet("reset", first);
+        assertEquals(id, Utils.sha1(big));
+        assertTrue(gitlet("status").contains(
+                "=== Modifications Not Staged For Commit ===\n\n"));
+    }
+
+    /** A text file as large as the heap, changed on both branches, is
+     *  merged, as a whole conflict since it cannot be held in memory. */
+    @Test
+    public void largeMergeTest() throws IOException, InterruptedException {
+        File big = new File(_dir, "big.txt");
+        writeLines(big, TEXT_SIZE, "base");
+        gitlet("add", "big.txt");
+        gitlet("commit", "large text");
+        gitlet("branch", "other");
+        writeLines(big, TEXT_SIZE, "ours");
+        gitlet("add", "big.txt");
+        gitlet("commit", "our change");
+        gitlet("checkout", "other");
+        writeLines(big, TEXT_SIZE, "theirs");
+        gitlet("add", "big.txt");
+        gitlet("commit", "their change");
+        gitlet("checkout", "master");
+        assertTrue(gitlet("merge", "other").contains(
+                "Encountered a merge conflict."));
+        String head = "<<<<<<< HEAD\nours 0\n";
+        try (InputStream in = new FileInputStream(big)) {
+            assertEquals(head, new String(in.readNBytes(head.length()),
+                    StandardCharsets.UTF_8));
+        }
+        assertTrue(big.length() > 2 * TEXT_SIZE);
+    }
+
+    /** Many versions of a file, which together are larger than the heap,
+     *  are repacked as deltas and read back. */
+    @Test
+    public void largeRepackTest() throws IOException, InterruptedException {
+        File file = new File(_dir, "versions.bin");
+        byte[] data = new byte[VERSION_SIZE];
+        new Random(3).nextBytes(data);
+        String[] ids = new String[VERSIONS];
+        for (int v = 0; v < VERSIONS; v += 1) {
+            data[v * (VERSION_SIZE / VERSIONS)] ^= 1;
+            Files.write(file.toPath(), data);
+            ids[v] = Utils.sha1(file);
+            gitlet("add", "versions.bin");
+            gitlet("commit", "version " + v);
+        }
+        gitlet("repack");
+        String first = gitlet("find", "version 0").trim();
+        gitlet("checkout", first, "--", "versions.bin");
+        assertEquals(ids[0], Utils.sha1(file));
+        gitlet("checkout", "--", "versions.bin");
+        assertEquals(ids[VERSIONS - 1], Utils.sha1(file));
+    }
+
+    /** Writes to FILE lines of the form "FIRST N" for N from 0, the
+     *  first being FIRST, until it holds at least SIZE bytes. */
+    private static void writeLines(File file, long size, String first)
+        throws IOException {
+        try (OutputStream out = new BufferedOutputStream(
+                new FileOutputStream(file), 1 << 16)) {
+            long written = 0;
+            for (long n = 0; written < size; n += 1) {
+                byte[] line = ((n == 0 ? first : "line") + " " + n + "\n")
+                    .getBytes(StandardCharsets.UTF_8);
+                out.write(line);
+                written += line.length;
+            }
+        }
+    }
+
+    /** Writes SIZE pseudo-random bytes drawn from SEED to FILE. */
+    private static void write(File file, long size, long seed)
+        throws IOException {
+        Random random = new Random(seed);
+        byte[] buffer = new byte[1 << 16];
+        try (OutputStream out = new FileOutputStream(file)) {
+            for (long left = size; left > 0; left -= buffer.length) {
+                random.nextBytes(buffer);
+                out.write(buffer, 0, (int) Math.min(left, buffer.length));
+            }
+        }
+    }
+
+    /** Runs Gitlet with ARGS in the repository, with a heap of HEAP
+     *  megabytes, and returns its output once it has succeeded. */
+    private String gitlet(String... args)
+        throws IOException, InterruptedException {
+        return run(_dir, List.of("-Xmx" + HEAP + "m"), args);
+    }
+
+}
@@ -0,0 +1,243 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The lock of a repository, shared by the processes and threads that
+ * only read it and held alone by those that change it. Across processes
+ * it is a lock on .gitlet/lock taken with FileChannel.lock, which the
+ * system releases if its process dies; within a process, threads first
+ * take a read-write lock, and the lock on the file is taken by the first
+ * of them and released by the last.
+ *
+ * Two bytes of the file are locked. Byte 0 is the lock proper, shared
+ * or exclusive; byte 1 is a gate that a writer holds alone while it
+ * waits for byte 0, and that readers pass through on their way to byte
+ * 0, so that a writer is not starved by readers that keep overlapping.
+ * Waits are bounded: the lock is tried again after pauses that double,
+ * with some jitter, up to MAX_PAUSE, and a command that could not take
+ * it within TIMEOUT reports that the repository is busy.
+ *
+ * @author Shreyansh Loharuka
+ */
+class LockFile implements AutoCloseable {
+
+    /**
+     * The file locked.
+     */
+    static final File FILE = new File(".gitlet/lock");
+
+    /**
+     * Longest wait for the lock, in milliseconds. It may be set with the
+     * gitlet.lockTimeout system property.
+     */
+    static final long TIMEOUT = Long.getLong("gitlet.lockTimeout", 30000);
+
+    /**
+     * First pause between tries, in milliseconds.
+     */
+    private static final long FIRST_PAUSE = 1;
+
+    /**
+     * Longest pause between tries, in milliseconds.
+     */
+    private static final long MAX_PAUSE = 50;
+
+    /**
+     * Position of the byte locked by readers and writers.
+     */
+    private static final long DATA = 0;
+
+    /**
+     * Position of the byte writers hold while they wait.
+     */
+    private static final long GATE = 1;
+
+    /**
+     * Lock between the threads of this process.
+     */
+    private static final ReentrantReadWriteLock LOCAL =
+            new ReentrantReadWriteLock(true);
+
+    /**
+     * The file locked, while some thread holds the lock.
+     */
+    private static FileChannel _channel;
+
+    /**
+     * The lock on the file, while some thread holds the lock.
+     */
+    private static FileLock _lock;
+
+    /**
+     * Number of holds of the lock on the file by this process.
+     */
+    private static int _holders;
+
+    /**
+     * The thread-local part of a hold, released by close.
+     */
+    private final Lock _local;
+
+    /**
+     * True until closed.
+     */
+    private boolean _held = true;
+
+    /**
+     * Initialise a hold of the lock, part of which is LOCAL.
+     */
+    private LockFile(Lock local) {
+        _local = local;
+    }
+
+    /**
+     * Returns a hold of the lock shared with other readers.
+     */
+    static LockFile shared() {
+        return acquire(true);
+    }
+
+    /**
+     * Returns a hold of the lock alone.
+     */
+    static LockFile exclusive() {
+        return acquire(false);
+    }
+
+    /**
+     * Returns true if the current thread holds the lock alone, and so
+     * may write the repository.
+     */
+    static boolean heldAlone() {
+        return LOCAL.isWriteLockedByCurrentThread();
+    }
+
+    /**
+     * Returns a hold of the lock, shared if SHARED, or reports that the
+     * repository stayed busy.
+     */
+    private static LockFile acquire(boolean shared) {
+        Lock local = shared ? LOCAL.readLock() : LOCAL.writeLock();
+        local.lock();
+        try {
+            lockFile(shared);
+        } catch (RuntimeException excp) {
+            local.unlock();
+            throw excp;
+        }
+        return new LockFile(local);
+    }
+
+    /**
+     * Releases this hold.
+     */
+    @Override
+    public void close() {
+        if (_held) {
+            _held = false;
+            unlockFile();
+            _local.unlock();
+        }
+    }
+
+    /**
+     * Takes the lock on the file, shared if SHARED, unless this process
+     * already holds it.
+     */
+    private static synchronized void lockFile(boolean shared) {
+        if (_holders > 0) {
+            _holders += 1;
+            return;
+        }
+        try {
+            _channel = FileChannel.open(FILE.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            long deadline = System.currentTimeMillis() + TIMEOUT;
+            FileLock gate = tryLock(GATE, shared, deadline);
+            try {
+                _lock = tryLock(DATA, shared, deadline);
+            } finally {
+                gate.release();
+            }
+            _holders = 1;
+        } catch (IOException | RuntimeException excp) {
+            close(_channel);
+            _channel = null;
+            if (excp instanceof RuntimeException) {
+                throw (RuntimeException) excp;
+            }
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * Releases the lock on the file once no thread of this process holds
+     * it.
+     */
+    private static synchronized void unlockFile() {
+        _holders -= 1;
+        if (_holders == 0) {
+            try {
+                _lock.release();
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            } finally {
+                close(_channel);
+                _lock = null;
+                _channel = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the lock of the byte at POS of the file, shared if SHARED,
+     * trying until DEADLINE, or reports that the repository is busy.
+     */
+    private static FileLock tryLock(long pos, boolean shared,
+                                    long deadline) throws IOException {
+        long pause = FIRST_PAUSE;
+        while (true) {
+            FileLock lock = _channel.tryLock(pos, 1, shared);
+            if (lock != null) {
+                return lock;
+            }
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) {
+                throw new GitletException.Refused(
+                        "The repository is locked by another process.");
+            }
+            try {
+                Thread.sleep(Math.min(left, pause
+                        + ThreadLocalRandom.current().nextLong(pause + 1)));
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+                throw new GitletException.Refused(
+                        "The repository is locked by another process.");
+            }
+            pause = Math.min(2 * pause, MAX_PAUSE);
+        }
+    }
+
+    /**
+     * Closes CHANNEL, if not null, ignoring errors.
+     */
+    private static void close(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException excp) {
+                return;
+            }
+        }
+    }
+
+}
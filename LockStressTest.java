@@ -0,0 +1,180 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static gitlet.GitletProcess.*;
+import static org.junit.Assert.*;
+
+/** Runs many Gitlet processes at once on one repository and checks that
+ *  none of their updates is lost.
+ *  @author Shreyansh Loharuka
+ */
+public class LockStressTest {
+
+    /** Number of processes started by each test. */
+    private static final int PROCESSES = 32;
+
+    /** Longest wait for all the processes, in seconds. */
+    private static final int WAIT = 120;
+
+    /** Longest wait for the lock of the repository in tests where it
+     *  is held, in milliseconds. */
+    private static final long LOCK_TIMEOUT = 2000;
+
+    /** The working directory of the processes. */
+    private File _dir;
+
+    /** Create a repository to work in, with one file for each process. */
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        _dir = Files.createTempDirectory("gitlet-lock").toFile();
+        assertEquals(0, gitlet("init").waitFor());
+        for (int i = 0; i < PROCESSES; i += 1) {
+            Utils.writeContents(new File(_dir, "f" + i + ".txt"),
+                    "contents " + i + "\n");
+        }
+    }
+
+    /** Remove the repository. */
+    @After
+    public void tearDown() {
+        delete(_dir);
+    }
+
+    /** Concurrent adds and branches, interleaved with status and log,
+     *  all reach the repository. */
+    @Test
+    public void concurrentUpdatesTest()
+        throws IOException, InterruptedException {
+        List<Process> running = new ArrayList<>();
+        for (int i = 0; i < PROCESSES; i += 1) {
+            running.add(gitlet("add", "f" + i + ".txt"));
+            running.add(gitlet("branch", "b" + i));
+            running.add(gitlet(i % 2 == 0 ? "status" : "log"));
+        }
+        for (Process process : running) {
+            assertTrue(process.waitFor(WAIT, TimeUnit.SECONDS));
+            assertEquals(0, process.exitValue());
+        }
+        String status = output(gitlet("status"));
+        for (int i = 0; i < PROCESSES; i += 1) {
+            assertTrue(status.contains("\nf" + i + ".txt\n"));
+            assertTrue(status.contains("\nb" + i + "\n"));
+        }
+    }
+
+    /** Concurrent commits on one branch each land on top of the last. */
+    @Test
+    public void concurrentCommitsTest()
+        throws IOException, InterruptedException {
+        List<Process> running = new ArrayList<>();
+        for (int i = 0; i < PROCESSES; i += 1) {
+            running.add(gitlet("add", "f" + i + ".txt"));
+        }
+        for (Process process : running) {
+            assertTrue(process.waitFor(WAIT, TimeUnit.SECONDS));
+        }
+        running.clear();
+        for (int i = 0; i < PROCESSES; i += 1) {
+            running.add(gitlet("commit", "commit " + i));
+        }
+        for (Process process : running) {
+            assertTrue(process.waitFor(WAIT, TimeUnit.SECONDS));
+        }
+        String log = output(gitlet("log"));
+        int commits = log.split("===", -1).length - 1;
+        assertEquals(2, commits);
+    }
+
+    /** Readers run while another reader holds the lock, and writers
+     *  wait for it. */
+    @Test
+    public void overlappingReadersTest()
+        throws IOException, InterruptedException {
+        assertEquals(0, gitlet("add", "f0.txt").waitFor());
+        assertEquals(0, gitlet("commit", "first").waitFor());
+        File file = new File(_dir, ".gitlet/lock");
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+             FileLock held = channel.lock(0, 1, true)) {
+            List<Process> running = new ArrayList<>();
+            running.add(gitlet(LOCK_TIMEOUT, "log"));
+            running.add(gitlet(LOCK_TIMEOUT, "global-log"));
+            running.add(gitlet(LOCK_TIMEOUT, "status"));
+            running.add(gitlet(LOCK_TIMEOUT, "find", "first"));
+            for (Process process : running) {
+                String out = output(process);
+                assertEquals(out, 0, process.exitValue());
+                assertFalse(out, out.contains("locked by another process"));
+            }
+            Process writer = gitlet(LOCK_TIMEOUT, "add", "f1.txt");
+            String out = output(writer);
+            assertTrue(out, out.contains("locked by another process"));
+        }
+    }
+
+    /** Commands that read leave every file of the repository as it was,
+     *  even when status finds the stat data of the index out of date. */
+    @Test
+    public void readersWriteNothingTest()
+        throws IOException, InterruptedException {
+        assertEquals(0, gitlet("add", "f0.txt").waitFor());
+        assertEquals(0, gitlet("commit", "first").waitFor());
+        File tracked = new File(_dir, "f0.txt");
+        assertTrue(tracked.setLastModified(tracked.lastModified() - 10000));
+        Map<String, String> before = snapshot();
+        for (String[] args : new String[][] {{"status"}, {"log"},
+                {"global-log"}, {"find", "first"}, {"count-objects"}}) {
+            output(gitlet(args));
+        }
+        assertEquals(before, snapshot());
+        assertTrue(output(gitlet("status")).contains(
+                "=== Modifications Not Staged For Commit ===\n\n"));
+    }
+
+    /** Returns the length and time of last change of each file of the
+     *  repository but its lock, by path. */
+    private Map<String, String> snapshot() throws IOException {
+        Map<String, String> files = new TreeMap<>();
+        Path gitlet = new File(_dir, ".gitlet").toPath();
+        try (Stream<Path> paths = Files.walk(gitlet)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                File file = path.toFile();
+                if (file.isFile() && !file.getName().equals("lock")) {
+                    files.put(gitlet.relativize(path).toString(),
+                            file.length() + " " + file.lastModified());
+                }
+            }
+        }
+        return files;
+    }
+
+    /** Returns a process running Gitlet with ARGS in the repository. */
+    private Process gitlet(String... args) throws IOException {
+        return gitlet(LockFile.TIMEOUT, args);
+    }
+
+    /** Returns a process running Gitlet with ARGS in the repository,
+     *  which waits at most TIMEOUT milliseconds for its lock. */
+    private Process gitlet(long timeout, String... args)
+        throws IOException {
+        return start(_dir, List.of("-Dgitlet.lockTimeout=" + timeout), args);
+    }
+
+}
@@ -3,6 +3,7 @@ package gitlet;
 import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Set;
 
 /**
  * Driver class for Gitlet, the tiny stupid version-control system.
@@ -25,69 +26,185 @@ public class Main {
      */
     private static String[] commands3 = new String[]{"status", "checkout",
         "branch",
-        "rm-branch", "reset", "merge"};
+        "rm-branch", "reset", "merge", "count-objects",
+        "repack"};
+
+    /**
+     * Commands that only read the repository, and so share its lock.
+     */
+    static final Set<String> READS = Set.of("log", "global-log", "find",
+            "status", "count-objects");
 
     /**
      * Usage: java gitlet.Main ARGS, where ARGS contains
-     * <COMMAND> <OPERAND> ....
+     * <COMMAND> <OPERAND> .... The command daemon serves the commands
+     * of clients instead, as described in Daemon, and --batch runs the
+     * commands read from the standard input, as described in Batch.
      */
     public static void main(String... args) {
         try {
-            int pos = 0;
-            if (args.length == 0) {
-                Utils.message("Please enter a command.");
-                throw new GitletException();
-            } else if (args[0].equals("java")
-                    && args[1].equals("gitlet.Main")) {
-                if (args.length == 2) {
-                    Utils.message("Please enter a command.");
-                    throw new GitletException();
-                }
-                pos = 2;
-            }
-            if (Arrays.asList(commands1).contains(args[pos])
-                    || Arrays.asList(commands2).contains(args[pos])
-                    || Arrays.asList(commands3).contains(args[pos])) {
-                String action = args[pos];
-                Commands cmd = new Commands();
-                if (!action.equals("init") && !initialised()) {
-                    Utils.message("Not in an initialized Gitlet directory.");
-                    throw new GitletException();
-                }
+            if (args.length > 0 && args[0].equals("daemon")) {
+                Daemon.main(args);
+            } else if (args.length == 1 && args[0].equals("--batch")) {
+                Batch.run();
+            } else {
+                run(true, args);
+            }
+        } catch (GitletException excep) {
+            report(excep);
+            System.exit(0);
+        } catch (IOException excep) {
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Prints the message of the error EXCP, if it has one.
+     */
+    static void report(GitletException excp) {
+        if (excp.getMessage() != null) {
+            System.out.println(excp.getMessage());
+        }
+    }
+
+    /**
+     * Runs the command in ARGS, as parsed by main, first bringing the
+     * repository up to date with this version if UPGRADE. The command
+     * holds the lock of the repository, shared if it only reads it, and
+     * sees it as last written by any process. Errors are thrown as
+     * GitletExceptions carrying the message to report, and leave the
+     * branches, head and index as they were.
+     */
+    static void run(boolean upgrade, String... args) throws IOException {
+        int pos = 0;
+        if (args.length == 0) {
+            throw Utils.error("Please enter a command.");
+        } else if (args[0].equals("java")
+                && args[1].equals("gitlet.Main")) {
+            if (args.length == 2) {
+                throw Utils.error("Please enter a command.");
+            }
+            pos = 2;
+        }
+        if (Arrays.asList(commands1).contains(args[pos])
+                || Arrays.asList(commands2).contains(args[pos])
+                || Arrays.asList(commands3).contains(args[pos])) {
+            String action = args[pos];
+            Commands cmd = new Commands();
+            if (!action.equals("init") && !initialised()) {
+                throw new GitletException.NotFound(
+                        "Not in an initialized Gitlet directory.");
+            }
+            if (action.equals("init")) {
+                firstSetOfCommands(action, cmd, args, pos);
+                cmd.save();
+                return;
+            }
+            try (LockFile lock = lock(READS.contains(action), upgrade)) {
+                CommitGraph.reload();
+                Pack.reload();
                 if (Arrays.asList(commands2).contains(args[pos])) {
                     secondSetOfCommands(action, cmd, args, pos);
-                    return;
-                }
-                if (Arrays.asList(commands3).contains(args[pos])) {
+                } else if (Arrays.asList(commands3).contains(args[pos])) {
                     thirdSetOfCommands(action, cmd, args, pos);
-                    return;
+                } else {
+                    firstSetOfCommands(action, cmd, args, pos);
                 }
-                switch (action) {
-                case "init":
-                    if (args.length != pos + 1) {
-                        Utils.message("Incorrect operands.");
-                        throw new GitletException();
-                    }
-                    cmd.init();
-                    break;
-                case "add":
-                    if (args.length != pos + 2) {
-                        Utils.message("Incorrect operands.");
-                        throw new GitletException();
-                    }
-                    cmd.add(args[pos + 1]);
-                    break;
-
-                default:
-                    secondSetOfCommands(action, cmd, args, pos);
+                cmd.save();
+            }
+        } else {
+            throw Utils.error("No command with that name exists.");
+        }
+    }
+
+    /**
+     * Takes in an ACTION,CMD,ARGS,POS and performs it.
+     */
+    public static void firstSetOfCommands(String action, Commands cmd,
+                                          String[] args,
+                                          int pos) throws IOException {
+        switch (action) {
+        case "init":
+            if (args.length != pos + 1) {
+                throw Utils.error("Incorrect operands.");
+            }
+            cmd.init();
+            break;
+        case "add":
+            if (args.length < pos + 2) {
+                throw Utils.error("Incorrect operands.");
+            }
+            cmd.add(Arrays.asList(
+                    Arrays.copyOfRange(args, pos + 1, args.length)));
+            break;
+
+        default:
+            secondSetOfCommands(action, cmd, args, pos);
+        }
+    }
+
+    /**
+     * Returns the lock of the repository for a command, shared if SHARED,
+     * once the repository is up to date with this version if UPGRADE.
+     * A command that writes upgrades under its own exclusive lock. One
+     * that reads checks under its shared lock whether anything is to be
+     * done, and only then gives it up for the exclusive lock while it
+     * upgrades, so that the readers of an up to date repository do not
+     * wait for one another.
+     */
+    static LockFile lock(boolean shared, boolean upgrade) {
+        if (!shared) {
+            LockFile lock = LockFile.exclusive();
+            if (upgrade) {
+                try {
+                    upgrade();
+                } catch (RuntimeException excp) {
+                    lock.close();
+                    throw excp;
                 }
-            } else {
-                Utils.message("No command with that name exists.");
-                throw new GitletException();
             }
-        } catch (GitletException | IOException excep) {
-            System.exit(0);
+            return lock;
+        }
+        LockFile lock = LockFile.shared();
+        if (!upgrade || !upgradeNeeded()) {
+            return lock;
+        }
+        lock.close();
+        try (LockFile exclusive = LockFile.exclusive()) {
+            upgrade();
         }
+        return LockFile.shared();
+    }
+
+    /**
+     * Returns true if upgrade has anything to do: a commit to recover,
+     * blobs stored uncompressed or metadata in an earlier format.
+     * Temporary files left by crashes are not counted, since they are
+     * removed by the next command that writes.
+     */
+    static boolean upgradeNeeded() {
+        return Journal.needsRecovery() || ObjectStore.needsCompression()
+            || Codec.needsMigration()
+            || ObjectStore.blobs().needsUpgrade()
+            || ObjectStore.commits().needsUpgrade()
+            || ObjectStore.trees().needsUpgrade()
+            || Index.needsUpgrade() || CommitGraph.needsUpgrade();
+    }
+
+    /**
+     * Completes or discards the writes a crash interrupted, then brings
+     * the repository up to date with this version.
+     */
+    static void upgrade() {
+        Journal.recover();
+        ObjectStore.compressLegacy();
+        Codec.migrate();
+        ObjectStore.blobs().upgrade();
+        ObjectStore.commits().upgrade();
+        ObjectStore.trees().upgrade();
+        Index.upgrade();
+        CommitGraph.upgrade();
+        Journal.commit();
     }
 
     /**
@@ -111,47 +228,45 @@ public class Main {
         switch (action) {
         case "commit":
             if (args.length != pos + 2) {
-                Utils.message("Incorrect operands.");
-                throw new GitletException();
+                throw Utils.error("Incorrect operands.");
             }
             if (args[pos + 1].trim().equals("")) {
-                Utils.message("Please enter a commit message.");
-                throw new GitletException();
+                throw Utils.error("Please enter a commit message.");
             }
             cmd.commit(args[pos + 1], "");
             break;
         case "rm":
             if (args.length != pos + 2) {
-                Utils.message("Incorrect operands.");
-                throw new GitletException();
+                throw Utils.error("Incorrect operands.");
             }
             cmd.rm(args[pos + 1]);
             break;
         case "log":
-            if (args.length != pos + 1) {
-                Utils.message("Incorrect operands.");
-                throw new GitletException();
+            if (args.length != pos + 1 && (args.length != pos + 2
+                    || !args[pos + 1].equals("--abbrev"))) {
+                throw Utils.error("Incorrect operands.");
             }
-            cmd.log();
+            cmd.log(args.length == pos + 2);
             break;
         case "global-log":
             if (args.length != pos + 1) {
-                Utils.message("Incorrect operands.");
-                throw new GitletException();
+                throw Utils.error("Incorrect operands.");
             }
             cmd.globalLog();
             break;
         case "find":
+            if (args.length == pos + 3) {
+                cmd.find(args[pos + 1], args[pos + 2]);
+                break;
+            }
             if (args.length != pos + 2) {
-                Utils.message("Incorrect operands.");
-                throw new GitletException();
+                throw Utils.error("Incorrect operands.");
             }
             cmd.find(args[pos + 1]);
             break;
 
         default:
-            Utils.message("No command with that name exists.");
-            throw new GitletException();
+            throw Utils.error("No command with that name exists.");
         }
     }
 
@@ -164,8 +279,7 @@ public class Main {
         switch (action) {
         case "status":
             if (args.length != pos + 1) {
-                Utils.message("Incorrect operands.");
-                throw new GitletException();
+                throw Utils.error("Incorrect operands.");
             }
             cmd.status();
             break;
@@ -175,41 +289,47 @@ public class Main {
             } else if (args.length - 1 - pos == 1) {
                 cmd.checkoutBranch(args[pos + 1]);
             } else {
-                Utils.message("Incorrect operands.");
-                throw new GitletException();
+                throw Utils.error("Incorrect operands.");
             }
             break;
         case "branch":
             if (args.length - 1 - pos != 1) {
-                Utils.message("Incorrect operands.");
-                throw new GitletException();
+                throw Utils.error("Incorrect operands.");
             }
             cmd.branch(args[pos + 1]);
             break;
         case "rm-branch":
             if (args.length != pos + 2) {
-                Utils.message("Incorrect operands.");
-                throw new GitletException();
+                throw Utils.error("Incorrect operands.");
             }
             cmd.rmbranch(args[pos + 1]);
             break;
         case "reset":
             if (args.length != pos + 2) {
-                Utils.message("Incorrect operands.");
-                throw new GitletException();
+                throw Utils.error("Incorrect operands.");
             }
             cmd.reset(args[pos + 1]);
             break;
         case "merge":
             if (args.length != pos + 2) {
-                Utils.message("Incorrect operands.");
-                throw new GitletException();
+                throw Utils.error("Incorrect operands.");
             }
             cmd.merge(args[pos + 1]);
             break;
+        case "count-objects":
+            if (args.length != pos + 1) {
+                throw Utils.error("Incorrect operands.");
+            }
+            cmd.countObjects();
+            break;
+        case "repack":
+            if (args.length != pos + 1) {
+                throw Utils.error("Incorrect operands.");
+            }
+            cmd.repack();
+            break;
         default:
-            Utils.message("No command with that name exists.");
-            throw new GitletException();
+            throw Utils.error("No command with that name exists.");
         }
     }
 }
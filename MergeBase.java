@@ -0,0 +1,174 @@
+package gitlet;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Finds the best common ancestors of commits in a commit graph. Both
+ * commits are walked at once from a single priority queue ordered by
+ * generation number, then timestamp. Each commit is painted with the
+ * sides it is reachable from; a commit reached from both is a common
+ * ancestor, and its own ancestors are painted stale, since they cannot
+ * be best. The walk stops as soon as only stale commits are left in the
+ * queue, rather than running to the roots.
+ *
+ * A parent has a lower generation than any of its children, so every
+ * commit is popped after all the commits of the walk that reach it, with
+ * its paint final. Each commit is thus queued once, and a common ancestor
+ * of another common ancestor is always stale by the time it is popped:
+ * unlike with timestamps alone, no redundant candidates need removing.
+ * After a criss-cross merge two commits may have several best common
+ * ancestors, none an ancestor of another; all of them are returned.
+ *
+ * @author Shreyansh Loharuka
+ */
+class MergeBase {
+
+    /**
+     * Paint of commits reachable from the first commit.
+     */
+    private static final int ONE = 1;
+
+    /**
+     * Paint of commits reachable from the second commit.
+     */
+    private static final int TWO = 2;
+
+    /**
+     * Paint of the ancestors of a common ancestor.
+     */
+    private static final int STALE = 4;
+
+    /**
+     * The graph walked.
+     */
+    private final CommitGraph _graph;
+
+    /**
+     * Paints of the commits walked so far, by position.
+     */
+    private byte[] _paint;
+
+    /**
+     * Number of commits visited by the last query.
+     */
+    private int _visited;
+
+    /**
+     * Initialise an engine walking GRAPH.
+     */
+    MergeBase(CommitGraph graph) {
+        _graph = graph;
+    }
+
+    /**
+     * Returns the number of commits visited by the last query.
+     */
+    int visited() {
+        return _visited;
+    }
+
+    /**
+     * Returns the positions of the best common ancestors of the commits
+     * at ONE and TWO, latest first by generation and then by timestamp.
+     */
+    List<Integer> bases(int one, int two) {
+        _visited = 0;
+        List<Integer> result = new ArrayList<>();
+        if (one == two) {
+            result.add(one);
+            return result;
+        }
+        _paint = new byte[_graph.count()];
+        PriorityQueue<Integer> queue = new PriorityQueue<>(latestFirst());
+        _paint[one] = ONE;
+        _paint[two] = TWO;
+        queue.add(one);
+        queue.add(two);
+        int live = 2;
+        while (live > 0) {
+            int pos = queue.poll();
+            int flags = _paint[pos];
+            _visited += 1;
+            if ((flags & STALE) == 0) {
+                live -= 1;
+                if ((flags & (ONE | TWO)) == (ONE | TWO)) {
+                    result.add(pos);
+                    flags |= STALE;
+                }
+            }
+            for (int k = 0; k < 2; k += 1) {
+                int parent = _graph.parent(pos, k);
+                if (parent == CommitGraph.NONE) {
+                    continue;
+                }
+                int old = _paint[parent];
+                if ((old & flags) == flags) {
+                    continue;
+                }
+                _paint[parent] |= flags;
+                if (old == 0) {
+                    queue.add(parent);
+                    if ((flags & STALE) == 0) {
+                        live += 1;
+                    }
+                } else if ((old & STALE) == 0 && (flags & STALE) != 0) {
+                    live -= 1;
+                }
+            }
+        }
+        result.sort(latestFirst());
+        return result;
+    }
+
+    /**
+     * Returns true if the commit at ANCESTOR is the commit at POS or one
+     * of its ancestors. Commits of generation lower than ANCESTOR's are
+     * not walked.
+     */
+    boolean isAncestor(int ancestor, int pos) {
+        _visited = 0;
+        int floor = _graph.generation(ancestor);
+        BitSet seen = new BitSet();
+        ArrayDeque<Integer> stack = new ArrayDeque<>();
+        stack.push(pos);
+        while (!stack.isEmpty()) {
+            int next = stack.pop();
+            if (next == ancestor) {
+                return true;
+            }
+            if (seen.get(next) || _graph.generation(next) <= floor) {
+                continue;
+            }
+            seen.set(next);
+            _visited += 1;
+            for (int k = 0; k < 2; k += 1) {
+                int parent = _graph.parent(next, k);
+                if (parent != CommitGraph.NONE) {
+                    stack.push(parent);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns an order of positions putting the latest commits first, by
+     * generation and then by timestamp.
+     */
+    private Comparator<Integer> latestFirst() {
+        return (a, b) -> {
+            int c = Integer.compare(_graph.generation(b),
+                    _graph.generation(a));
+            if (c != 0) {
+                return c;
+            }
+            return Long.compare(_graph.timestamp(b), _graph.timestamp(a));
+        };
+    }
+
+}
@@ -0,0 +1,134 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static gitlet.GitletProcess.*;
+import static org.junit.Assert.*;
+
+/** Finds the best common ancestors of the commits of a criss-cross merge
+ *  history, and merges across it.
+ *  @author Shreyansh Loharuka
+ */
+public class MergeBaseTest {
+
+    /** The working directory of the processes. */
+    private File _dir;
+
+    /** The commit graph of the repository. */
+    private CommitGraph _graph;
+
+    /** Positions of the initial commit, the base commit, the commits
+     *  made after it on master and on other, and the merges of master
+     *  into other and of other into master. */
+    private int _initial, _base, _m1, _o1, _x1, _x2;
+
+    /** Create a repository whose master and other were each merged into
+     *  the other after one commit on each, so that the heads of both have
+     *  those two commits as best common ancestors. */
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        _dir = Files.createTempDirectory("gitlet-mergebase").toFile();
+        run(_dir, "init");
+        write("base.txt", "base\n");
+        run(_dir, "add", "base.txt");
+        run(_dir, "commit", "base");
+        run(_dir, "branch", "other");
+        write("m.txt", "m\n");
+        run(_dir, "add", "m.txt");
+        run(_dir, "commit", "m1");
+        run(_dir, "checkout", "other");
+        write("o.txt", "o\n");
+        run(_dir, "add", "o.txt");
+        run(_dir, "commit", "o1");
+        run(_dir, "branch", "o1");
+        run(_dir, "merge", "master");
+        run(_dir, "checkout", "master");
+        run(_dir, "merge", "o1");
+        _graph = CommitGraph.open(new File(_dir, ".gitlet/graph"));
+        _initial = position("initial commit");
+        _base = position("base");
+        _m1 = position("m1");
+        _o1 = position("o1");
+        _x1 = position("Merged master into other.");
+        _x2 = position("Merged o1 into master.");
+    }
+
+    /** Remove the repository. */
+    @After
+    public void tearDown() {
+        delete(_dir);
+    }
+
+    /** The heads of a criss-cross have both commits it merged as best
+     *  common ancestors, latest first, and neither of their ancestors. */
+    @Test
+    public void basesTest() {
+        MergeBase merge = new MergeBase(_graph);
+        assertEquals(List.of(_o1, _m1), merge.bases(_x2, _x1));
+        assertEquals(List.of(_o1, _m1), merge.bases(_x1, _x2));
+        assertEquals(List.of(_base), merge.bases(_m1, _o1));
+        assertEquals(List.of(_m1), merge.bases(_x1, _m1));
+        assertEquals(List.of(_x2), merge.bases(_x2, _x2));
+        assertEquals(List.of(_initial), merge.bases(_initial, _x1));
+    }
+
+    /** A commit is an ancestor of itself and of the commits that reach
+     *  it through either parent, and of no other. */
+    @Test
+    public void isAncestorTest() {
+        MergeBase merge = new MergeBase(_graph);
+        assertTrue(merge.isAncestor(_x2, _x2));
+        assertTrue(merge.isAncestor(_m1, _x1));
+        assertTrue(merge.isAncestor(_o1, _x2));
+        assertTrue(merge.isAncestor(_initial, _x1));
+        assertFalse(merge.isAncestor(_m1, _o1));
+        assertFalse(merge.isAncestor(_x1, _x2));
+        assertFalse(merge.isAncestor(_x2, _base));
+    }
+
+    /** Branches that changed different files after a criss-cross merge
+     *  merge without conflict. */
+    @Test
+    public void mergeTest() throws IOException, InterruptedException {
+        write("base.txt", "changed on master\n");
+        run(_dir, "add", "base.txt");
+        run(_dir, "commit", "m2");
+        run(_dir, "checkout", "other");
+        write("p.txt", "p\n");
+        run(_dir, "add", "p.txt");
+        run(_dir, "commit", "o2");
+        run(_dir, "checkout", "master");
+        String out = run(_dir, "merge", "other");
+        assertFalse(out, out.contains("conflict"));
+        assertEquals("changed on master\n", read("base.txt"));
+        assertEquals("p\n", read("p.txt"));
+        assertEquals("m\n", read("m.txt"));
+        assertEquals("o\n", read("o.txt"));
+        assertTrue(run(_dir, "log").contains("\nMerged other into master.\n"));
+        assertTrue(run(_dir, "status").contains(
+                "=== Modifications Not Staged For Commit ===\n\n"));
+    }
+
+    /** Returns the position of the one commit with message MESSAGE. */
+    private int position(String message)
+        throws IOException, InterruptedException {
+        return _graph.position(run(_dir, "find", message).trim());
+    }
+
+    /** Writes CONTENTS to the file at PATH in the repository. */
+    private void write(String path, String contents) {
+        Utils.writeContents(new File(_dir, path), contents);
+    }
+
+    /** Returns the contents of the file at PATH in the repository. */
+    private String read(String path) {
+        return Utils.readContentsAsString(new File(_dir, path));
+    }
+
+}
@@ -0,0 +1,624 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+/**
+ * An index of the messages of the commits, so that find decodes no
+ * commit. It is made of a memory-mapped base and a journal of the
+ * commits made since. The base holds each distinct message once, in a
+ * hash table whose buckets are runs of messages sorted by bucket, with
+ * the ids of its commits; an exact message is found by hashing it and
+ * comparing the few messages of its bucket. The base also maps every
+ * trigram of the lower-cased messages to the sorted numbers of the
+ * messages containing it, so that a substring or token is looked for
+ * only among the messages holding all its trigrams.
+ *
+ * Each commit is appended to the journal, which is folded into a new
+ * base once it grows past a fraction of it. The index covers as many
+ * commits as the commit graph; if it is missing or covers any other
+ * number, it is rebuilt from the commits of the graph.
+ *
+ * @author Shreyansh Loharuka
+ */
+class MessageIndex {
+
+    /**
+     * Directory holding the index.
+     */
+    static final File DIR = new File(".gitlet/find");
+
+    /**
+     * File holding the base of the index.
+     */
+    static final File BASE = new File(DIR, "index");
+
+    /**
+     * File holding the journal of the index.
+     */
+    static final File JOURNAL = new File(DIR, "journal");
+
+    /**
+     * Magic number starting the base.
+     */
+    static final int MAGIC = 0x474c544d;
+
+    /**
+     * Current format version of the base.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Length of the header of the base.
+     */
+    private static final int HEADER = 28;
+
+    /**
+     * Length of the record of a message: its hash, and the offsets of
+     * its text and of its first commit id.
+     */
+    private static final int MESSAGE = 12;
+
+    /**
+     * Length of the record of a trigram: its key and the offset of its
+     * first posting.
+     */
+    private static final int TRIGRAM = 8;
+
+    /**
+     * Fewest journal entries worth folding into the base.
+     */
+    private static final int JOURNAL_MIN = 256;
+
+    /**
+     * The journal is folded into the base once it holds more than this
+     * fraction of the commits of the base.
+     */
+    private static final int JOURNAL_RATIO = 16;
+
+    /**
+     * Contents of the base, or null if there is none.
+     */
+    private MappedByteBuffer _buf;
+
+    /**
+     * Number of commits in the base.
+     */
+    private int _commits;
+
+    /**
+     * Number of distinct messages in the base.
+     */
+    private int _messages;
+
+    /**
+     * Number of buckets of the hash table of the base.
+     */
+    private int _buckets;
+
+    /**
+     * Number of distinct trigrams in the base.
+     */
+    private int _trigrams;
+
+    /**
+     * Number of postings of the trigrams of the base.
+     */
+    private int _postings;
+
+    /**
+     * Commits of the journal, as pairs of id and message.
+     */
+    private List<String[]> _journal;
+
+    /**
+     * Length of the well-formed part of the journal.
+     */
+    private long _journalLength;
+
+    /**
+     * Initialise an index from the files in DIR.
+     */
+    private MessageIndex() {
+        _journal = new ArrayList<>();
+        if (BASE.exists()) {
+            try (RandomAccessFile raf = new RandomAccessFile(BASE, "r")) {
+                _buf = raf.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                        0, raf.length());
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            if (_buf.capacity() < HEADER || _buf.getInt(0) != MAGIC
+                    || _buf.getInt(4) != VERSION) {
+                _buf = null;
+            } else {
+                _commits = _buf.getInt(8);
+                _messages = _buf.getInt(12);
+                _buckets = _buf.getInt(16);
+                _trigrams = _buf.getInt(20);
+                _postings = _buf.getInt(24);
+            }
+        }
+        readJournal();
+    }
+
+    /**
+     * Returns the index of the repository, rebuilding it first if it is
+     * missing or stale.
+     */
+    static synchronized MessageIndex get() {
+        MessageIndex index = new MessageIndex();
+        if (index.covered() != CommitGraph.get().count()) {
+            rebuild();
+            index = new MessageIndex();
+        }
+        return index;
+    }
+
+    /**
+     * Adds COMMIT, just added to the commit graph, to the index, unless
+     * the index is stale and left to be rebuilt.
+     */
+    static synchronized void add(Commit commit) {
+        MessageIndex index = new MessageIndex();
+        if (index.covered() != CommitGraph.get().count() - 1) {
+            return;
+        }
+        index.append(commit.uID(), commit.logMessage());
+        if (index._journal.size()
+                > Math.max(JOURNAL_MIN, index._commits / JOURNAL_RATIO)) {
+            write(index.all());
+        }
+    }
+
+    /**
+     * Rebuilds the index from the commits of the commit graph.
+     */
+    static synchronized void rebuild() {
+        CommitGraph graph = CommitGraph.get();
+        List<String[]> entries = new ArrayList<>(graph.count());
+        for (int pos = 0; pos < graph.count(); pos += 1) {
+            String id = graph.id(pos);
+            entries.add(new String[] {id,
+                CommitCache.get().header(id).logMessage()});
+        }
+        write(entries);
+    }
+
+    /**
+     * Returns the number of commits in the index.
+     */
+    int covered() {
+        return _commits + _journal.size();
+    }
+
+    /**
+     * Returns the ids of the commits with message MSG, in order.
+     */
+    List<String> exact(String msg) {
+        List<String> ids = new ArrayList<>();
+        if (_buf != null) {
+            int hash = msg.hashCode();
+            int bucket = bucket(hash, _buckets);
+            int end = _buf.getInt(HEADER + (bucket + 1) * 4);
+            for (int m = _buf.getInt(HEADER + bucket * 4); m < end; m += 1) {
+                if (_buf.getInt(message(m)) == hash && text(m).equals(msg)) {
+                    ids(m, ids);
+                }
+            }
+        }
+        for (String[] entry : _journal) {
+            if (entry[1].equals(msg)) {
+                ids.add(entry[0]);
+            }
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Returns the ids of the commits whose messages contain TEXT,
+     * ignoring case, in order.
+     */
+    List<String> substring(String text) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        return search(lower, msg -> msg.toLowerCase(Locale.ROOT)
+                .contains(lower));
+    }
+
+    /**
+     * Returns the ids of the commits whose messages hold the word WORD,
+     * ignoring case, in order. Words are the runs of letters and digits.
+     */
+    List<String> token(String word) {
+        String lower = word.toLowerCase(Locale.ROOT);
+        return search(lower, msg -> Arrays.asList(msg.toLowerCase(
+                Locale.ROOT).split("[^\\p{L}\\p{N}]+")).contains(lower));
+    }
+
+    /**
+     * Returns the ids of the commits whose messages pass TEST, which
+     * only messages containing the lower-case text LOWER, ignoring case,
+     * can pass, in order.
+     */
+    private List<String> search(String lower, Predicate<String> test) {
+        List<String> ids = new ArrayList<>();
+        if (_buf != null) {
+            int[] candidates = candidates(lower);
+            if (candidates == null) {
+                candidates = new int[_messages];
+                Arrays.setAll(candidates, m -> m);
+            }
+            for (int m : candidates) {
+                if (test.test(text(m))) {
+                    ids(m, ids);
+                }
+            }
+        }
+        for (String[] entry : _journal) {
+            if (test.test(entry[1])) {
+                ids.add(entry[0]);
+            }
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Returns the numbers of the messages of the base holding every
+     * trigram of the lower-case text LOWER, in order, or null if LOWER
+     * has no trigram.
+     */
+    private int[] candidates(String lower) {
+        long[] keys = trigrams(lower.getBytes(StandardCharsets.UTF_8), 0);
+        if (keys.length == 0) {
+            return null;
+        }
+        int[] result = null;
+        for (long key : keys) {
+            int t = findTrigram((int) (key >>> 32));
+            if (t < 0) {
+                return new int[0];
+            }
+            int start = _buf.getInt(trigram(t) + 4);
+            int end = _buf.getInt(trigram(t + 1) + 4);
+            int[] postings = new int[end - start];
+            for (int i = 0; i < postings.length; i += 1) {
+                postings[i] = _buf.getInt(postingsStart()
+                        + (start + i) * 4);
+            }
+            result = result == null ? postings : intersect(result, postings);
+            if (result.length == 0) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of the trigram KEY in the base, or -1.
+     */
+    private int findTrigram(int key) {
+        int lo = 0, hi = _trigrams - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int k = _buf.getInt(trigram(mid));
+            if (k < key) {
+                lo = mid + 1;
+            } else if (k > key) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the numbers found in both of the sorted arrays A and B.
+     */
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length;) {
+            if (a[i] < b[j]) {
+                i += 1;
+            } else if (a[i] > b[j]) {
+                j += 1;
+            } else {
+                result[n++] = a[i];
+                i += 1;
+                j += 1;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /**
+     * Adds the ids of the commits with message number M of the base to
+     * IDS.
+     */
+    private void ids(int m, List<String> ids) {
+        int end = _buf.getInt(message(m + 1) + 8);
+        for (int i = _buf.getInt(message(m) + 8); i < end; i += 1) {
+            byte[] id = new byte[Utils.UID_BYTES];
+            _buf.get(idsStart() + i * Utils.UID_BYTES, id);
+            ids.add(Utils.hex(id, 0));
+        }
+    }
+
+    /**
+     * Returns the text of message number M of the base.
+     */
+    private String text(int m) {
+        int start = _buf.getInt(message(m) + 4);
+        byte[] bytes = new byte[_buf.getInt(message(m + 1) + 4) - start];
+        _buf.get(stringsStart() + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the offset of the record of message number M.
+     */
+    private int message(int m) {
+        return HEADER + (_buckets + 1) * 4 + m * MESSAGE;
+    }
+
+    /**
+     * Returns the offset of the first commit id.
+     */
+    private int idsStart() {
+        return message(_messages + 1);
+    }
+
+    /**
+     * Returns the offset of the record of trigram number T.
+     */
+    private int trigram(int t) {
+        return idsStart() + _commits * Pack.ID_BYTES + t * TRIGRAM;
+    }
+
+    /**
+     * Returns the offset of the first posting.
+     */
+    private int postingsStart() {
+        return trigram(_trigrams + 1);
+    }
+
+    /**
+     * Returns the offset of the text of the first message.
+     */
+    private int stringsStart() {
+        return postingsStart() + _postings * 4;
+    }
+
+    /**
+     * Returns every commit of the index, as pairs of id and message.
+     */
+    private List<String[]> all() {
+        List<String[]> entries = new ArrayList<>(covered());
+        for (int m = 0; _buf != null && m < _messages; m += 1) {
+            String text = text(m);
+            List<String> ids = new ArrayList<>();
+            ids(m, ids);
+            for (String id : ids) {
+                entries.add(new String[] {id, text});
+            }
+        }
+        entries.addAll(_journal);
+        return entries;
+    }
+
+    /**
+     * Reads the well-formed entries of the journal.
+     */
+    private void readJournal() {
+        if (!JOURNAL.exists()) {
+            return;
+        }
+        byte[] contents = Utils.readContents(JOURNAL);
+        ByteBuffer buf = ByteBuffer.wrap(contents);
+        while (buf.remaining() >= Utils.UID_BYTES + 4) {
+            String id = Utils.hex(contents, buf.position());
+            buf.position(buf.position() + Utils.UID_BYTES);
+            int length = buf.getInt();
+            if (length < 0 || length > buf.remaining()) {
+                break;
+            }
+            byte[] text = new byte[length];
+            buf.get(text);
+            _journal.add(new String[] {id,
+                new String(text, StandardCharsets.UTF_8)});
+            _journalLength = buf.position();
+        }
+    }
+
+    /**
+     * Appends the commit with id ID and message MSG to the journal,
+     * dropping any torn entry left at its end first.
+     */
+    private void append(String id, String msg) {
+        DIR.mkdirs();
+        byte[] text = msg.getBytes(StandardCharsets.UTF_8);
+        try {
+            if (JOURNAL.length() > _journalLength) {
+                try (RandomAccessFile raf
+                        = new RandomAccessFile(JOURNAL, "rw")) {
+                    raf.setLength(_journalLength);
+                }
+            }
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(
+                            new FileOutputStream(JOURNAL, true)))) {
+                out.write(Utils.toBytes(id));
+                out.writeInt(text.length);
+                out.write(text);
+            }
+            Journal.written(JOURNAL);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _journal.add(new String[] {id, msg});
+        _journalLength += Pack.ID_BYTES + 4 + text.length;
+    }
+
+    /**
+     * Writes a base holding ENTRIES, pairs of commit id and message, and
+     * empties the journal.
+     */
+    private static void write(List<String[]> entries) {
+        HashMap<String, List<String>> byMessage = new HashMap<>();
+        for (String[] entry : entries) {
+            byMessage.computeIfAbsent(entry[1], k -> new ArrayList<>())
+                    .add(entry[0]);
+        }
+        int buckets = 1;
+        while (buckets < byMessage.size()) {
+            buckets <<= 1;
+        }
+        final int size = buckets;
+        List<String> messages = new ArrayList<>(byMessage.keySet());
+        messages.sort((a, b) -> {
+            int c = Integer.compare(bucket(a.hashCode(), size),
+                    bucket(b.hashCode(), size));
+            return c != 0 ? c : a.compareTo(b);
+        });
+        int[] bucketStarts = new int[buckets + 1];
+        for (String msg : messages) {
+            bucketStarts[bucket(msg.hashCode(), size) + 1] += 1;
+        }
+        for (int i = 1; i <= buckets; i += 1) {
+            bucketStarts[i] += bucketStarts[i - 1];
+        }
+        List<byte[]> texts = new ArrayList<>(messages.size());
+        long[] keys = new long[0];
+        int count = 0;
+        for (int m = 0; m < messages.size(); m += 1) {
+            String msg = messages.get(m);
+            texts.add(msg.getBytes(StandardCharsets.UTF_8));
+            long[] found = trigrams(msg.toLowerCase(Locale.ROOT)
+                    .getBytes(StandardCharsets.UTF_8), m);
+            if (count + found.length > keys.length) {
+                keys = Arrays.copyOf(keys,
+                        Math.max(2 * keys.length, count + found.length));
+            }
+            System.arraycopy(found, 0, keys, count, found.length);
+            count += found.length;
+        }
+        Arrays.sort(keys, 0, count);
+        int trigrams = 0;
+        for (int i = 0; i < count; i += 1) {
+            if (i == 0 || keys[i] >>> 32 != keys[i - 1] >>> 32) {
+                trigrams += 1;
+            }
+        }
+        DIR.mkdirs();
+        File tmp = Journal.temp("find");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            out.writeInt(messages.size());
+            out.writeInt(buckets);
+            out.writeInt(trigrams);
+            out.writeInt(count);
+            for (int start : bucketStarts) {
+                out.writeInt(start);
+            }
+            int text = 0, id = 0;
+            for (int m = 0; m < messages.size(); m += 1) {
+                out.writeInt(messages.get(m).hashCode());
+                out.writeInt(text);
+                out.writeInt(id);
+                text += texts.get(m).length;
+                id += byMessage.get(messages.get(m)).size();
+            }
+            out.writeInt(0);
+            out.writeInt(text);
+            out.writeInt(id);
+            for (String msg : messages) {
+                List<String> ids = byMessage.get(msg);
+                Collections.sort(ids);
+                for (String commit : ids) {
+                    out.write(Utils.toBytes(commit));
+                }
+            }
+            for (int i = 0; i < count; i += 1) {
+                if (i == 0 || keys[i] >>> 32 != keys[i - 1] >>> 32) {
+                    out.writeInt((int) (keys[i] >>> 32));
+                    out.writeInt(i);
+                }
+            }
+            out.writeInt(Integer.MAX_VALUE);
+            out.writeInt(count);
+            for (int i = 0; i < count; i += 1) {
+                out.writeInt((int) keys[i]);
+            }
+            for (byte[] bytes : texts) {
+                out.write(bytes);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        try {
+            Files.move(tmp.toPath(), BASE.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Journal.written(BASE);
+        JOURNAL.delete();
+    }
+
+    /**
+     * Returns the distinct trigrams of BYTES, each shifted into the high
+     * half of a long whose low half is M, in order.
+     */
+    private static long[] trigrams(byte[] bytes, int m) {
+        if (bytes.length < 3) {
+            return new long[0];
+        }
+        long[] keys = new long[bytes.length - 2];
+        for (int i = 0; i < keys.length; i += 1) {
+            long key = (bytes[i] & 0xff) << 16 | (bytes[i + 1] & 0xff) << 8
+                    | bytes[i + 2] & 0xff;
+            keys[i] = key << 32 | m;
+        }
+        Arrays.sort(keys);
+        int n = 0;
+        for (int i = 0; i < keys.length; i += 1) {
+            if (n == 0 || keys[i] != keys[n - 1]) {
+                keys[n++] = keys[i];
+            }
+        }
+        return Arrays.copyOf(keys, n);
+    }
+
+    /**
+     * Returns the bucket of a message with hash code HASH among BUCKETS,
+     * a power of two.
+     */
+    private static int bucket(int hash, int buckets) {
+        return (hash ^ hash >>> 16) & (buckets - 1);
+    }
+
+}
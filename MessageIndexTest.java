@@ -0,0 +1,143 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static gitlet.GitletProcess.*;
+import static org.junit.Assert.*;
+
+/** Finds commits by exact message, substring and token through the
+ *  message index, once its journal has been folded into a base, for
+ *  commits made since, and after the index is rebuilt.
+ *  @author Shreyansh Loharuka
+ */
+public class MessageIndexTest {
+
+    /** Number of commits made in one batch, more than the journal of the
+     *  index holds before it is folded into a base. */
+    private static final int COMMITS = 300;
+
+    /** Last words of the messages of the commits. */
+    private static final String[] WORDS = {
+        "parser", "lexer", "index", "graph", "merge",
+    };
+
+    /** Messages of the commits made after the batch. */
+    private static final String[] NEWEST = {
+        "Newest change to the graph", "Fix bug 3 in parser",
+    };
+
+    /** Queries of find, as its arguments. */
+    private static final String[][] QUERIES = {
+        {"initial commit"}, {"Fix bug 3 in parser"},
+        {"fix bug 3 in parser"}, {"Refactor bug 6 in merge"},
+        {"Newest change to the graph"},
+        {"--substring", "BUG 3 IN"}, {"--substring", "in lex"},
+        {"--substring", "ex"}, {"--substring", "newest"},
+        {"--substring", "no such text"},
+        {"--token", "LEXER"}, {"--token", "lex"}, {"--token", "3"},
+        {"--token", "newest"},
+    };
+
+    /** Commits and their messages in a log. */
+    private static final Pattern COMMIT = Pattern.compile(
+            "^commit ([0-9a-f]{40})\nDate: .*\n(.*)$", Pattern.MULTILINE);
+
+    /** The working directory of the processes. */
+    private File _dir;
+
+    /** Create a repository of COMMITS commits after the initial one. */
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        _dir = Files.createTempDirectory("gitlet-find").toFile();
+        run(_dir, "init");
+        StringBuilder commands = new StringBuilder();
+        for (int i = 0; i < COMMITS; i += 1) {
+            Utils.writeContents(new File(_dir, "f" + i + ".txt"), i + "\n");
+            commands.append("add f").append(i).append(".txt\n")
+                .append("commit \"").append(message(i)).append("\"\n");
+        }
+        batch(_dir, commands.toString());
+    }
+
+    /** Remove the repository. */
+    @After
+    public void tearDown() {
+        delete(_dir);
+    }
+
+    /** Every query finds the commits whose messages match it, from the
+     *  base, from the journal of the commits made since, and from an
+     *  index rebuilt from the commits. */
+    @Test
+    public void findTest() throws IOException, InterruptedException {
+        File base = new File(_dir, ".gitlet/find/index");
+        assertTrue(base.exists());
+        check();
+        for (int i = 0; i < NEWEST.length; i += 1) {
+            Utils.writeContents(new File(_dir, "new" + i + ".txt"), "new\n");
+            run(_dir, "add", "new" + i + ".txt");
+            run(_dir, "commit", NEWEST[i]);
+        }
+        check();
+        delete(new File(_dir, ".gitlet/find"));
+        check();
+        assertTrue(base.exists());
+    }
+
+    /** Checks the answer of find to each of QUERIES against the messages
+     *  of the log. */
+    private void check() throws IOException, InterruptedException {
+        List<String[]> commits = new ArrayList<>();
+        Matcher matcher = COMMIT.matcher(run(_dir, "log"));
+        while (matcher.find()) {
+            commits.add(new String[] {matcher.group(1), matcher.group(2)});
+        }
+        for (String[] query : QUERIES) {
+            String text = query[query.length - 1];
+            String lower = text.toLowerCase(Locale.ROOT);
+            Predicate<String> test;
+            if (query.length == 1) {
+                test = msg -> msg.equals(text);
+            } else if (query[0].equals("--substring")) {
+                test = msg -> msg.toLowerCase(Locale.ROOT).contains(lower);
+            } else {
+                test = msg -> Arrays.asList(msg.toLowerCase(Locale.ROOT)
+                        .split("[^\\p{L}\\p{N}]+")).contains(lower);
+            }
+            List<String> ids = new ArrayList<>();
+            for (String[] commit : commits) {
+                if (test.test(commit[1])) {
+                    ids.add(commit[0]);
+                }
+            }
+            Collections.sort(ids);
+            String expected = ids.isEmpty()
+                ? "Found no commit with that message.\n"
+                : String.join("\n", ids) + "\n";
+            String[] args = new String[query.length + 1];
+            args[0] = "find";
+            System.arraycopy(query, 0, args, 1, query.length);
+            assertEquals(String.join(" ", args), expected, run(_dir, args));
+        }
+    }
+
+    /** Returns the message of commit I of the batch. */
+    private static String message(int i) {
+        return (i % 3 == 0 ? "Fix" : "Refactor") + " bug " + i % 7 + " in "
+            + WORDS[i % WORDS.length];
+    }
+
+}
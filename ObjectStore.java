@@ -0,0 +1,915 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A content-addressed store of objects, each kept once in a directory
+ * under the name of the SHA-1 of its contents. Objects are compressed
+ * with Deflate and streamed in and out, so that they are never held in
+ * memory whole. A compressed object starts with a four byte magic number
+ * and its uncompressed size. Large blobs may instead be stored, when
+ * Chunker is enabled, as a magic number, their size and the list of
+ * their chunks, which are kept once in a store of their own. The blobs
+ * that versions before compression stored as they are are compressed
+ * once by compressLegacy, so that the format of an object is always
+ * given by its header rather than guessed from its contents; only the
+ * metadata read by Codec, whose encodings start with magic numbers of
+ * their own, may still be stored as it is. Commits, blobs and chunks
+ * may also have been consolidated into packs, which are searched before
+ * the loose objects. Their loose objects are sharded into subdirectories
+ * named after the first two hex digits of their ids, so that no
+ * directory grows too large to scan.
+ *
+ * @author Shreyansh Loharuka
+ */
+public class ObjectStore {
+
+    /**
+     * Directory holding the blobs of every tracked file.
+     */
+    static final File BLOBS = new File(".gitlet/objects");
+
+    /**
+     * Directory holding the trees of the commits.
+     */
+    static final File TREES = new File(".gitlet/trees");
+
+    /**
+     * Directory holding the commits.
+     */
+    static final File COMMITS = new File(".gitlet/commits");
+
+    /**
+     * Directory holding the chunks of chunked blobs.
+     */
+    static final File CHUNKS = new File(".gitlet/chunks");
+
+    /**
+     * Directory in which older versions kept the blobs staged for
+     * addition, before the index.
+     */
+    static final File STAGING = new File(".gitlet/stagingToAdd");
+
+    /**
+     * File marking a repository whose blobs and staged files are all
+     * compressed, as every one written since objects were compressed
+     * is. Those of a repository without it may be stored as they are.
+     */
+    static final File COMPRESSED = new File(".gitlet/compressed");
+
+    /**
+     * Magic number starting a compressed object.
+     */
+    static final int MAGIC = 0x474c545a;
+
+    /**
+     * Magic number starting a blob stored as a list of chunks. It must
+     * differ from those of Codec, since commits written before objects
+     * were compressed start with theirs.
+     */
+    static final int CHUNKED = 0x474c544c;
+
+    /**
+     * Length of the header of a compressed object, or of a chunked blob
+     * up to its number of chunks.
+     */
+    static final int HEADER_LENGTH = 12;
+
+    /**
+     * Size of the buffers used to stream objects and to hash files, which
+     * bounds the memory a file takes whatever its size. It may be set
+     * with the gitlet.bufferSize system property.
+     */
+    static final int BUFFER_SIZE = Integer.getInteger("gitlet.bufferSize",
+            64 * 1024);
+
+    /**
+     * Size of the buffers used to stream the smallest objects.
+     */
+    static final int MIN_BUFFER_SIZE = 512;
+
+    /**
+     * Compression level used for new objects. It may be set with the
+     * gitlet.compression system property, from 0 (none) to 9 (best).
+     */
+    static final int LEVEL = Integer.getInteger("gitlet.compression",
+            Deflater.DEFAULT_COMPRESSION);
+
+    /**
+     * Directory holding the objects of this store.
+     */
+    private File _dir;
+
+    /**
+     * Kind of the objects of this store in packs, or 0 if they are
+     * never packed.
+     */
+    private int _kind;
+
+    /**
+     * Uncompressed bytes written to this store.
+     */
+    private long _rawBytes;
+
+    /**
+     * Compressed bytes written to this store.
+     */
+    private long _storedBytes;
+
+    /**
+     * Initialise a store keeping its loose objects in DIR and looking
+     * for objects of KIND in packs.
+     */
+    public ObjectStore(File dir, int kind) {
+        _dir = dir;
+        _kind = kind;
+    }
+
+    /**
+     * Returns the store of file contents in the current repository.
+     */
+    public static ObjectStore blobs() {
+        return new ObjectStore(BLOBS, Pack.BLOB);
+    }
+
+    /**
+     * Returns the store of trees in the current repository.
+     */
+    public static ObjectStore trees() {
+        return new ObjectStore(TREES, Pack.TREE);
+    }
+
+    /**
+     * Returns the store of commits in the current repository.
+     */
+    public static ObjectStore commits() {
+        return new ObjectStore(COMMITS, Pack.COMMIT);
+    }
+
+    /**
+     * Returns the store of the chunks of chunked blobs in the current
+     * repository.
+     */
+    public static ObjectStore chunks() {
+        return new ObjectStore(CHUNKS, Pack.CHUNK);
+    }
+
+    /**
+     * Returns the store of files staged for addition by older versions.
+     */
+    public static ObjectStore staging() {
+        return new ObjectStore(STAGING, 0);
+    }
+
+    /**
+     * Returns true if the loose objects of this store are sharded.
+     */
+    private boolean sharded() {
+        return _kind != 0;
+    }
+
+    /**
+     * Returns true if the objects of this store are encodings of Codec,
+     * which older versions stored as they are, as they may still be.
+     */
+    private boolean encoded() {
+        return _kind == Pack.COMMIT || _kind == Pack.TREE;
+    }
+
+    /**
+     * Returns the file in which the loose object with id ID is kept.
+     */
+    public File file(String id) {
+        if (sharded() && id.length() > 2) {
+            return new File(new File(_dir, id.substring(0, 2)),
+                    id.substring(2));
+        }
+        return new File(_dir, id);
+    }
+
+    /**
+     * Returns the pack holding the object with id ID, or null.
+     */
+    private Pack pack(String id) {
+        if (_kind == 0) {
+            return null;
+        }
+        Pack pack = Pack.find(id, _kind);
+        if (pack == null && _kind == Pack.BLOB) {
+            pack = Pack.find(id, Pack.CHUNK);
+        } else if (pack == null && _kind == Pack.CHUNK) {
+            pack = Pack.find(id, Pack.BLOB);
+        }
+        return pack;
+    }
+
+    /**
+     * Returns true if an object with id ID is present.
+     */
+    public boolean contains(String id) {
+        return pack(id) != null || file(id).exists();
+    }
+
+    /**
+     * Returns the ids of every object in this store, packed ones first.
+     */
+    public List<String> ids() {
+        return ids("");
+    }
+
+    /**
+     * Returns the ids starting with PREFIX of the objects in this store,
+     * packed ones first. Only one shard is listed when PREFIX has at
+     * least two digits.
+     */
+    public List<String> ids(String prefix) {
+        List<String> ids = new ArrayList<>();
+        if (_kind != 0) {
+            for (Pack pack : Pack.all()) {
+                for (String id : pack.ids(_kind)) {
+                    if (id.startsWith(prefix)) {
+                        ids.add(id);
+                    }
+                }
+            }
+        }
+        if (!sharded()) {
+            List<String> loose = Utils.plainFilenamesIn(_dir);
+            if (loose != null) {
+                for (String id : loose) {
+                    if (id.startsWith(prefix)) {
+                        ids.add(id);
+                    }
+                }
+            }
+            return ids;
+        }
+        List<String> shards;
+        if (prefix.length() >= 2) {
+            shards = List.of(prefix.substring(0, 2));
+        } else {
+            String[] names = _dir.list();
+            if (names == null) {
+                return ids;
+            }
+            Arrays.sort(names);
+            shards = Arrays.asList(names);
+        }
+        for (String shard : shards) {
+            List<String> loose = Utils.plainFilenamesIn(new File(_dir, shard));
+            if (loose == null) {
+                continue;
+            }
+            for (String rest : loose) {
+                String id = shard + rest;
+                if (id.startsWith(prefix)) {
+                    ids.add(id);
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Returns true if some objects are still stored directly in the
+     * directory of this store rather than in its subdirectories.
+     */
+    boolean needsUpgrade() {
+        if (!sharded()) {
+            return false;
+        }
+        List<String> flat = Utils.plainFilenamesIn(_dir);
+        return flat != null && !flat.isEmpty();
+    }
+
+    /**
+     * Moves the loose objects left directly in the directory of this
+     * store by older versions into their shards, where those just
+     * written are synced by the next commit of Journal.
+     */
+    public void upgrade() {
+        if (!needsUpgrade()) {
+            return;
+        }
+        for (String id : Utils.plainFilenamesIn(_dir)) {
+            File target = file(id);
+            File flat = new File(_dir, id);
+            target.getParentFile().mkdirs();
+            if (!flat.renameTo(target)) {
+                throw Utils.error("Could not move object %s.", id);
+            }
+            Journal.renamed(flat, target);
+        }
+    }
+
+    /**
+     * Returns true if the repository has not been marked as having only
+     * compressed blobs and staged files.
+     */
+    static boolean needsCompression() {
+        return !COMPRESSED.exists() && Journal.pending(COMPRESSED) == null;
+    }
+
+    /**
+     * Marks the repository as having only compressed blobs and staged
+     * files, at the next commit of Journal.
+     */
+    static void markCompressed() {
+        Journal.write(COMPRESSED, new byte[0]);
+    }
+
+    /**
+     * Compresses the blobs and staged files that versions before objects
+     * were compressed stored as they are, then marks the repository so
+     * that they are never looked for again. Such a file is told by its
+     * contents hashing to its id, which those of a compressed object
+     * never do, so that an upgrade interrupted half way is resumed
+     * without compressing any object twice.
+     */
+    static void compressLegacy() {
+        if (!needsCompression()) {
+            return;
+        }
+        blobs().compressLegacyObjects();
+        staging().compressLegacyObjects();
+        markCompressed();
+    }
+
+    /**
+     * Compresses the loose objects of this store, flat or in shards,
+     * that are stored as they are.
+     */
+    private void compressLegacyObjects() {
+        String[] names = _dir.list();
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            File file = new File(_dir, name);
+            if (!file.isDirectory()) {
+                compressLegacy(file, name);
+                continue;
+            }
+            for (String rest : Utils.plainFilenamesIn(file)) {
+                compressLegacy(new File(file, rest), name + rest);
+            }
+        }
+    }
+
+    /**
+     * Compresses FILE, the loose object with id ID, in place if it is
+     * stored as it is.
+     */
+    private static void compressLegacy(File file, String id) {
+        if (!Utils.sha1(file).equals(id)) {
+            return;
+        }
+        File temp = Journal.temp(id);
+        try (InputStream in = new FileInputStream(file)) {
+            write(temp, in, file.length());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Journal.move(temp, file);
+        Journal.written(file);
+    }
+
+    /**
+     * Returns the uncompressed size of the object with id ID.
+     */
+    public long size(String id) {
+        Pack pack = pack(id);
+        if (pack != null) {
+            return pack.size(id);
+        }
+        return size(file(id), encoded());
+    }
+
+    /**
+     * Deletes the loose copies of the objects with ids IDS.
+     */
+    public void removeLoose(List<String> ids) {
+        for (String id : ids) {
+            File file = file(id);
+            if (file.delete() && sharded()) {
+                file.getParentFile().delete();
+            }
+        }
+    }
+
+    /**
+     * Stores CONTENTS, unless already present, and returns its id.
+     */
+    public String put(byte[] contents) {
+        String id = Utils.sha1(contents);
+        put(id, contents);
+        return id;
+    }
+
+    /**
+     * Stores CONTENTS under the id ID unless it is already present.
+     */
+    public void put(String id, byte[] contents) {
+        put(id, new ByteArrayInputStream(contents), contents.length);
+    }
+
+    /**
+     * Stores the contents of SOURCE under the id ID unless it is already
+     * present.
+     */
+    public void put(String id, File source) {
+        if (_kind == Pack.BLOB && Chunker.ENABLED
+                && source.length() >= Chunker.THRESHOLD) {
+            putChunked(id, source);
+            return;
+        }
+        try (InputStream in = new FileInputStream(source)) {
+            put(id, in, source.length());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * Compresses the rest of IN into the object with id ID unless it is
+     * already present.
+     */
+    public void put(String id, InputStream in) {
+        put(id, in, BUFFER_SIZE);
+    }
+
+    /**
+     * Compresses the rest of IN, of about EXPECTED bytes, into the object
+     * with id ID unless it is already present.
+     */
+    private void put(String id, InputStream in, long expected) {
+        if (contains(id)) {
+            return;
+        }
+        File file = file(id);
+        file.getParentFile().mkdirs();
+        File temp = Journal.temp(id);
+        long size = write(temp, in, expected);
+        Journal.move(temp, file);
+        Journal.written(file);
+        _rawBytes += size;
+        _storedBytes += file.length();
+    }
+
+    /**
+     * Stores the contents of SOURCE under the id ID as a list of chunks,
+     * unless it is already present. Each chunk, cut by Chunker, is stored
+     * in the chunk store under its own id, once for all the blobs holding
+     * it, so that a new version of a large file costs only the chunks
+     * around its changes. A file that is a single chunk is stored whole.
+     */
+    private void putChunked(String id, File source) {
+        if (contains(id)) {
+            return;
+        }
+        ObjectStore chunks = chunks();
+        ByteArrayOutputStream list = new ByteArrayOutputStream();
+        long size = 0;
+        int count = 0;
+        try (InputStream in = new FileInputStream(source)) {
+            Chunker chunker = new Chunker(in);
+            byte[] chunk = chunker.next(), next = chunker.next();
+            if (next == null) {
+                byte[] whole = chunk == null ? new byte[0] : chunk;
+                put(id, new ByteArrayInputStream(whole), whole.length);
+                return;
+            }
+            DataOutputStream entries = new DataOutputStream(list);
+            for (; chunk != null; chunk = next, next = chunker.next()) {
+                String chunkId = Utils.sha1(chunk);
+                chunks.put(chunkId, chunk);
+                entries.write(Utils.toBytes(chunkId));
+                entries.writeInt(chunk.length);
+                size += chunk.length;
+                count += 1;
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        File file = file(id);
+        file.getParentFile().mkdirs();
+        File temp = Journal.temp(id);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(CHUNKED);
+            out.writeLong(size);
+            out.writeInt(count);
+            list.writeTo(out);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Journal.move(temp, file);
+        Journal.written(file);
+        _rawBytes += size;
+        _storedBytes += file.length() + chunks.storedBytes();
+    }
+
+    /**
+     * Returns true if the object with id ID is a loose blob stored as a
+     * list of chunks.
+     */
+    public boolean chunked(String id) {
+        File file = file(id);
+        if (file.length() < HEADER_LENGTH) {
+            return false;
+        }
+        try (DataInputStream in =
+                     new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == CHUNKED;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * Returns the ids of the chunks of the chunked blob with id ID, in
+     * order, or null if it is not chunked.
+     */
+    public List<String> chunkIds(String id) {
+        if (!chunked(id)) {
+            return null;
+        }
+        try (InputStream in = new FileInputStream(file(id))) {
+            in.skipNBytes(HEADER_LENGTH);
+            return chunkIds(in);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * Copies the object with id ID from OTHER into this store as it is,
+     * unless already present.
+     */
+    public void copyFrom(ObjectStore other, String id) {
+        if (contains(id)) {
+            return;
+        }
+        file(id).getParentFile().mkdirs();
+        File temp = Journal.temp(id);
+        try (InputStream in = new FileInputStream(other.file(id));
+             OutputStream out = new FileOutputStream(temp)) {
+            in.transferTo(out);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Journal.move(temp, file(id));
+        Journal.written(file(id));
+    }
+
+    /**
+     * Returns the contents of the object with id ID.
+     */
+    public byte[] get(String id) {
+        try (InputStream in = open(id)) {
+            return in.readAllBytes();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * Returns a stream over the contents of the object with id ID.
+     */
+    public InputStream open(String id) {
+        Pack pack = pack(id);
+        if (pack != null) {
+            return pack.open(id);
+        }
+        File file = file(id);
+        if (!file.exists()) {
+            throw Utils.error("Missing object %s.", id);
+        }
+        return open(file, encoded());
+    }
+
+    /**
+     * Writes the contents of the object with id ID to TARGET.
+     */
+    public void copyTo(String id, File target) {
+        try (FileChannel out = FileChannel.open(target.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            copyTo(id, out);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * Writes the contents of the object with id ID to OUT, from its
+     * position. Loose objects go from file to file through channels, as
+     * copyTo(File, FileChannel) does; objects in packs, which may be
+     * deltas, are streamed.
+     */
+    void copyTo(String id, FileChannel out) throws IOException {
+        Pack pack = pack(id);
+        if (pack == null) {
+            File file = file(id);
+            if (!file.exists()) {
+                throw Utils.error("Missing object %s.", id);
+            }
+            copyTo(file, out);
+            return;
+        }
+        try (InputStream in = pack.open(id)) {
+            in.transferTo(Channels.newOutputStream(out));
+        }
+    }
+
+    /**
+     * Removes the object with id ID, if present.
+     */
+    public void remove(String id) {
+        file(id).delete();
+    }
+
+    /**
+     * Returns the number of uncompressed bytes written to this store.
+     */
+    public long rawBytes() {
+        return _rawBytes;
+    }
+
+    /**
+     * Returns the number of compressed bytes written to this store.
+     */
+    public long storedBytes() {
+        return _storedBytes;
+    }
+
+    /**
+     * Returns the ratio of uncompressed to compressed bytes written to
+     * this store, or 1 if nothing was written.
+     */
+    public double ratio() {
+        if (_storedBytes == 0) {
+            return 1.0;
+        }
+        return (double) _rawBytes / _storedBytes;
+    }
+
+    /* COMPRESSED FILES */
+
+    /**
+     * Compresses CONTENTS into FILE.
+     */
+    static void write(File file, byte[] contents) {
+        write(file, new ByteArrayInputStream(contents), contents.length);
+    }
+
+    /**
+     * Compresses the rest of IN into FILE, returning the number of
+     * uncompressed bytes written.
+     */
+    static long write(File file, InputStream in) {
+        return write(file, in, BUFFER_SIZE);
+    }
+
+    /**
+     * Compresses the rest of IN, of about EXPECTED bytes, into FILE,
+     * returning the number of uncompressed bytes written.
+     */
+    static long write(File file, InputStream in, long expected) {
+        int bufferSize = bufferFor(expected);
+        Deflater deflater = new Deflater(LEVEL);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            header.putInt(MAGIC).putLong(0);
+            out.write(header.array());
+            DeflaterOutputStream deflated =
+                    new DeflaterOutputStream(out, deflater, bufferSize);
+            byte[] buffer = new byte[bufferSize];
+            long size = 0;
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                deflated.write(buffer, 0, n);
+                size += n;
+            }
+            deflated.finish();
+            header.clear();
+            header.putLong(size).flip();
+            out.getChannel().write(header, 4);
+            return size;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Returns the size of the buffers with which to stream SIZE bytes:
+     * BUFFER_SIZE, or less for a small object, so that small objects do
+     * not pay for buffers sized for large ones.
+     */
+    static int bufferFor(long size) {
+        return (int) Math.max(MIN_BUFFER_SIZE, Math.min(BUFFER_SIZE, size));
+    }
+
+    /**
+     * Returns a stream over the uncompressed contents of FILE, an
+     * object.
+     */
+    static InputStream open(File file) {
+        return open(file, false);
+    }
+
+    /**
+     * Returns a stream over the uncompressed contents of FILE, which
+     * may also be stored as it is if RAW. Only files known not to start
+     * with MAGIC or CHUNKED when stored as they are, such as the
+     * encodings of Codec, may be read with RAW.
+     */
+    static InputStream open(File file, boolean raw) {
+        try {
+            BufferedInputStream in = new BufferedInputStream(
+                    new FileInputStream(file), BUFFER_SIZE);
+            in.mark(HEADER_LENGTH);
+            byte[] header = in.readNBytes(HEADER_LENGTH);
+            int magic = header.length == HEADER_LENGTH
+                    ? ByteBuffer.wrap(header).getInt() : 0;
+            if (magic == MAGIC) {
+                return new InflaterInputStream(in);
+            } else if (magic == CHUNKED) {
+                try (in) {
+                    return openChunks(chunkIds(in));
+                }
+            } else if (!raw) {
+                in.close();
+                throw new IOException("corrupt object");
+            }
+            in.reset();
+            return in;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * Writes the uncompressed contents of FILE, an object, to OUT, from
+     * its position. A compressed object is inflated from one direct
+     * buffer into another, both outside the heap; a chunked one is
+     * written chunk by chunk.
+     */
+    static void copyTo(File file, FileChannel out) throws IOException {
+        try (FileChannel in = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            while (header.hasRemaining() && in.read(header) >= 0) {
+                continue;
+            }
+            header.flip();
+            int magic = header.remaining() == HEADER_LENGTH
+                    ? header.getInt() : 0;
+            if (magic == MAGIC) {
+                inflate(in, out, header.getLong());
+                return;
+            } else if (magic == CHUNKED) {
+                ObjectStore chunks = chunks();
+                for (String id : chunkIds(Channels.newInputStream(in))) {
+                    chunks.copyTo(id, out);
+                }
+                return;
+            }
+            throw new IOException("corrupt object");
+        }
+    }
+
+    /**
+     * Returns the ids of the chunks listed in IN, a chunked blob read up
+     * to the end of its header.
+     */
+    private static List<String> chunkIds(InputStream in) throws IOException {
+        DataInputStream list = new DataInputStream(
+                new BufferedInputStream(in, BUFFER_SIZE));
+        int count = list.readInt();
+        List<String> ids = new ArrayList<>(count);
+        byte[] id = new byte[Pack.ID_BYTES];
+        for (int k = 0; k < count; k += 1) {
+            list.readFully(id);
+            list.readInt();
+            ids.add(Utils.hex(id, 0));
+        }
+        return ids;
+    }
+
+    /**
+     * Returns a stream over the contents of the chunks with ids IDS, in
+     * order, each opened only once the one before is read.
+     */
+    private static InputStream openChunks(List<String> ids) {
+        ObjectStore chunks = chunks();
+        Iterator<String> next = ids.iterator();
+        return new SequenceInputStream(new Enumeration<InputStream>() {
+            @Override
+            public boolean hasMoreElements() {
+                return next.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                return chunks.open(next.next());
+            }
+        });
+    }
+
+    /**
+     * Inflates the rest of IN into OUT, SIZE bytes.
+     */
+    private static void inflate(FileChannel in, FileChannel out, long size)
+            throws IOException {
+        Inflater inflater = new Inflater();
+        ByteBuffer input = ByteBuffer.allocateDirect(
+                bufferFor(in.size() - in.position()));
+        ByteBuffer output = ByteBuffer.allocateDirect(bufferFor(size));
+        input.flip();
+        try {
+            while (!inflater.finished()) {
+                if (inflater.needsInput()) {
+                    input.clear();
+                    if (in.read(input) < 0) {
+                        throw new EOFException("truncated object");
+                    }
+                    input.flip();
+                    inflater.setInput(input);
+                }
+                output.clear();
+                if (inflater.inflate(output) == 0
+                        && inflater.needsDictionary()) {
+                    throw new IOException("corrupt object");
+                }
+                output.flip();
+                while (output.hasRemaining()) {
+                    out.write(output);
+                }
+            }
+        } catch (DataFormatException excp) {
+            throw new IOException("corrupt object");
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Returns the uncompressed size of the object in FILE, which may
+     * also be stored as it is if RAW, as open does.
+     */
+    static long size(File file, boolean raw) {
+        try (DataInputStream in =
+                     new DataInputStream(new FileInputStream(file))) {
+            int magic = file.length() < HEADER_LENGTH ? 0 : in.readInt();
+            if (magic == MAGIC || magic == CHUNKED) {
+                return in.readLong();
+            } else if (!raw) {
+                throw new IOException("corrupt object");
+            }
+            return file.length();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * Returns the uncompressed contents of FILE.
+     */
+    static byte[] read(File file) {
+        try (InputStream in = open(file)) {
+            return in.readAllBytes();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+}
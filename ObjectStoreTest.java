@@ -0,0 +1,64 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Lists the loose objects of sharded stores.
+ *  @author Shreyansh Loharuka
+ */
+public class ObjectStoreTest {
+
+    /** Directory holding the stores of the tests. */
+    private File _dir;
+
+    /** Create the directory of the stores. */
+    @Before
+    public void setUp() throws IOException {
+        _dir = Files.createTempDirectory("gitlet-store").toFile();
+    }
+
+    /** Remove the directory of the stores. */
+    @After
+    public void tearDown() {
+        for (File shard : _dir.listFiles()) {
+            for (File object : shard.listFiles()) {
+                object.delete();
+            }
+            shard.delete();
+        }
+        _dir.delete();
+    }
+
+    /** A store whose directory was never made has no objects. */
+    @Test
+    public void missingStoreTest() {
+        ObjectStore store = new ObjectStore(new File(_dir, "missing"),
+                Pack.CHUNK);
+        assertEquals(List.of(), store.ids());
+        assertEquals(List.of(), store.ids("ab"));
+    }
+
+    /** The ids of a sharded store are listed in order, and those with a
+     *  prefix from its shard alone. */
+    @Test
+    public void idsTest() throws IOException {
+        ObjectStore store = new ObjectStore(_dir, Pack.BLOB);
+        String[] ids = {"ff01", "0a02", "7c03", "0a04"};
+        for (String id : ids) {
+            File file = store.file(id);
+            file.getParentFile().mkdirs();
+            assertTrue(file.createNewFile());
+        }
+        assertEquals(List.of("0a02", "0a04", "7c03", "ff01"), store.ids());
+        assertEquals(List.of("0a02", "0a04"), store.ids("0a"));
+        assertEquals(List.of("7c03"), store.ids("7c0"));
+    }
+
+}
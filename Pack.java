@@ -0,0 +1,703 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A pack consolidating many commits, trees, blobs and chunks into a
+ * single file, next to an index of the ids it holds. Each entry of the
+ * pack is either the whole object or a delta against an earlier entry,
+ * compressed with Deflate. The index lists the ids in sorted order
+ * behind a 256-way fan-out table on their first byte; it is
+ * memory-mapped and binary-searched.
+ *
+ * @author Shreyansh Loharuka
+ */
+class Pack {
+
+    /**
+     * Directory holding the packs of the repository.
+     */
+    static final File PACKS = new File(".gitlet/packs");
+
+    /**
+     * Magic number starting a pack.
+     */
+    static final int PACK_MAGIC = 0x474c5450;
+
+    /**
+     * Magic number starting a pack index.
+     */
+    static final int INDEX_MAGIC = 0x474c5449;
+
+    /**
+     * Current format version of packs and their indices.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Kind of an entry holding a commit.
+     */
+    static final int COMMIT = 1;
+
+    /**
+     * Kind of an entry holding a blob.
+     */
+    static final int BLOB = 2;
+
+    /**
+     * Kind of an entry holding a tree.
+     */
+    static final int TREE = 3;
+
+    /**
+     * Kind of an entry holding a chunk of a chunked blob.
+     */
+    static final int CHUNK = 4;
+
+    /**
+     * Type of an entry holding a whole object.
+     */
+    static final int FULL = 0;
+
+    /**
+     * Type of an entry holding a delta against another entry.
+     */
+    static final int DELTA = 1;
+
+    /**
+     * Number of recent objects of a group tried as delta bases.
+     */
+    static final int WINDOW = 10;
+
+    /**
+     * Longest chain of deltas allowed.
+     */
+    static final int MAX_DEPTH = 50;
+
+    /**
+     * Size above which objects are stored whole, without trying deltas.
+     */
+    static final long DELTA_LIMIT = 16 * 1024 * 1024;
+
+    /**
+     * Most bytes of blobs held at once as delta bases, an eighth of the
+     * largest heap. Blobs larger than this are stored whole too.
+     */
+    static final long WINDOW_BYTES = Runtime.getRuntime().maxMemory() / 8;
+
+    /**
+     * Number of bytes in a binary id.
+     */
+    static final int ID_BYTES = 20;
+
+    /**
+     * Number of slots in the fan-out table.
+     */
+    static final int FANOUT = 256;
+
+    /**
+     * Length of the header of an index.
+     */
+    private static final int INDEX_HEADER = 12;
+
+    /**
+     * The packs of the repository, loaded when first needed.
+     */
+    private static List<Pack> _packs;
+
+    /**
+     * The pack file.
+     */
+    private File _file;
+
+    /**
+     * The memory-mapped index of the pack.
+     */
+    private MappedByteBuffer _index;
+
+    /**
+     * Number of objects in the pack.
+     */
+    private int _count;
+
+    /**
+     * Initialise the pack whose index is the file INDEX.
+     */
+    Pack(File index) {
+        String name = index.getName();
+        _file = new File(index.getParentFile(),
+                name.substring(0, name.length() - ".idx".length()) + ".pack");
+        try (RandomAccessFile raf = new RandomAccessFile(index, "r")) {
+            _index = raf.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                    0, raf.length());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (_index.getInt(0) != INDEX_MAGIC
+                || _index.getInt(4) > VERSION) {
+            throw new IllegalArgumentException("bad pack index " + name);
+        }
+        _count = _index.getInt(8);
+    }
+
+    /**
+     * Returns the packs of the repository.
+     */
+    static synchronized List<Pack> all() {
+        if (_packs == null) {
+            List<Pack> packs = new ArrayList<>();
+            File[] files = PACKS.listFiles();
+            if (files != null) {
+                Arrays.sort(files);
+                for (File file : files) {
+                    if (file.getName().endsWith(".idx")) {
+                        packs.add(new Pack(file));
+                    }
+                }
+            }
+            _packs = packs;
+        }
+        return _packs;
+    }
+
+    /**
+     * Forgets the packs loaded so far, so that they are found again.
+     */
+    static synchronized void reload() {
+        _packs = null;
+    }
+
+    /**
+     * Returns the pack holding an object of KIND with id ID, or null.
+     */
+    static Pack find(String id, int kind) {
+        for (Pack pack : all()) {
+            int pos = pack.position(id);
+            if (pos >= 0 && pack.kind(pos) == kind) {
+                return pack;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of objects in this pack.
+     */
+    int count() {
+        return _count;
+    }
+
+    /**
+     * Returns the pack file.
+     */
+    File file() {
+        return _file;
+    }
+
+    /**
+     * Returns the position of ID in the index, or -1 if absent.
+     */
+    int position(String id) {
+        if (id.length() != Utils.UID_LENGTH) {
+            return -1;
+        }
+        byte[] key = Utils.toBytes(id);
+        int first = key[0] & 0xff;
+        int lo = first == 0 ? 0 : fanout(first - 1);
+        int hi = fanout(first) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = compare(mid, key);
+            if (c < 0) {
+                lo = mid + 1;
+            } else if (c > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the id at position POS of the index.
+     */
+    String id(int pos) {
+        byte[] id = new byte[ID_BYTES];
+        _index.get(idsStart() + pos * ID_BYTES, id);
+        return Utils.hex(id, 0);
+    }
+
+    /**
+     * Returns the offset in the pack of the entry at position POS.
+     */
+    long offset(int pos) {
+        return _index.getLong(idsStart() + _count * ID_BYTES + pos * 8);
+    }
+
+    /**
+     * Returns the kind of the object at position POS.
+     */
+    int kind(int pos) {
+        return _index.get(idsStart() + _count * (ID_BYTES + 8) + pos);
+    }
+
+    /**
+     * Returns the ids of the objects of KIND in this pack, in order.
+     */
+    List<String> ids(int kind) {
+        List<String> ids = new ArrayList<>();
+        for (int pos = 0; pos < _count; pos += 1) {
+            if (kind(pos) == kind) {
+                ids.add(id(pos));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the uncompressed size of the object with id ID.
+     */
+    long size(String id) {
+        try (DataInputStream in = entry(offset(position(id)))) {
+            in.readUnsignedByte();
+            in.readUnsignedByte();
+            return in.readLong();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * Returns a stream over the contents of the object with id ID.
+     */
+    InputStream open(String id) {
+        long offset = offset(position(id));
+        try {
+            DataInputStream in = entry(offset);
+            in.readUnsignedByte();
+            if (in.readUnsignedByte() == FULL) {
+                in.readLong();
+                return new InflaterInputStream(in);
+            }
+            in.close();
+            return new ByteArrayInputStream(read(offset));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * Returns the contents of the entry at OFFSET, resolving its chain
+     * of deltas.
+     */
+    private byte[] read(long offset) throws IOException {
+        try (DataInputStream in = entry(offset)) {
+            in.readUnsignedByte();
+            int type = in.readUnsignedByte();
+            in.readLong();
+            if (type == FULL) {
+                return new InflaterInputStream(in).readAllBytes();
+            }
+            long base = in.readLong();
+            byte[] delta = new InflaterInputStream(in).readAllBytes();
+            return Delta.apply(read(base), delta);
+        }
+    }
+
+    /**
+     * Returns a stream over the pack starting at OFFSET.
+     */
+    private DataInputStream entry(long offset) throws IOException {
+        FileInputStream in = new FileInputStream(_file);
+        in.getChannel().position(offset);
+        return new DataInputStream(
+                new BufferedInputStream(in, ObjectStore.BUFFER_SIZE));
+    }
+
+    /**
+     * Returns the number of ids whose first byte is at most FIRST.
+     */
+    private int fanout(int first) {
+        return _index.getInt(INDEX_HEADER + first * 4);
+    }
+
+    /**
+     * Returns the position in the index of the first id.
+     */
+    private int idsStart() {
+        return INDEX_HEADER + FANOUT * 4;
+    }
+
+    /**
+     * Compares the id at position POS with KEY.
+     */
+    private int compare(int pos, byte[] key) {
+        int start = idsStart() + pos * ID_BYTES;
+        for (int i = 0; i < ID_BYTES; i += 1) {
+            int c = (_index.get(start + i) & 0xff) - (key[i] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    /* REPACKING */
+
+    /**
+     * Consolidates every commit, tree, blob and chunk of the repository,
+     * loose or packed, into one new pack, then deletes the loose objects
+     * and old packs it replaces. Blobs are grouped by the name of a file
+     * they were committed as, and each is stored as a delta against one
+     * of the WINDOW larger blobs before it in its group when that saves
+     * at least half its size; the window holds no more than WINDOW_BYTES
+     * of them, dropping the oldest first. Chunks, already shared between
+     * the blobs they make up, are stored whole, and the lists of chunks
+     * of chunked blobs stay loose. The new pack is synced and in place
+     * before anything it replaces is deleted. Returns the new pack.
+     */
+    static Pack repack() {
+        ObjectStore commits = ObjectStore.commits();
+        ObjectStore trees = ObjectStore.trees();
+        ObjectStore blobs = ObjectStore.blobs();
+        ObjectStore chunks = ObjectStore.chunks();
+        List<Pack> old = new ArrayList<>(all());
+        List<String> commitIds = commits.ids();
+        List<String> treeIds = trees.ids();
+        List<String> chunkIds = chunks.ids();
+        HashSet<String> chunked = new HashSet<>(chunkIds);
+        TreeMap<String, LinkedHashSet<String>> groups = new TreeMap<>();
+        HashMap<String, String> names = new HashMap<>();
+        for (String id : commitIds) {
+            Commit commit = Codec.readCommit(commits.open(id));
+            if (!commit.hasTree() && commit.fileNames() != null) {
+                for (Map.Entry<String, String> file
+                        : commit.fileNames().entrySet()) {
+                    names.putIfAbsent(file.getValue(), file.getKey());
+                }
+            }
+        }
+        for (String id : treeIds) {
+            for (Map.Entry<String, Tree.Entry> entry
+                    : Codec.readTree(trees.open(id)).entries().entrySet()) {
+                if (entry.getValue().type() == Tree.FILE) {
+                    names.putIfAbsent(entry.getValue().id(), entry.getKey());
+                }
+            }
+        }
+        for (String id : blobs.ids()) {
+            if (blobs.chunked(id) || chunked.contains(id)) {
+                continue;
+            }
+            String name = names.containsKey(id) ? names.get(id) : "";
+            if (!groups.containsKey(name)) {
+                groups.put(name, new LinkedHashSet<>());
+            }
+            groups.get(name).add(id);
+        }
+        PACKS.mkdirs();
+        File tmp = new File(PACKS, "tmp.pack");
+        HashMap<String, Long> offsets = new HashMap<>();
+        HashMap<String, Integer> kinds = new HashMap<>();
+        try (Writer out = new Writer(tmp)) {
+            for (String id : commitIds) {
+                offsets.put(id, out.offset());
+                kinds.put(id, COMMIT);
+                out.full(COMMIT, commits.size(id), commits.open(id));
+            }
+            for (String id : treeIds) {
+                offsets.put(id, out.offset());
+                kinds.put(id, TREE);
+                out.full(TREE, trees.size(id), trees.open(id));
+            }
+            for (String id : chunkIds) {
+                if (offsets.containsKey(id)) {
+                    continue;
+                }
+                offsets.put(id, out.offset());
+                kinds.put(id, CHUNK);
+                out.full(CHUNK, chunks.size(id), chunks.open(id));
+            }
+            for (LinkedHashSet<String> group : groups.values()) {
+                List<String> ids = new ArrayList<>(group);
+                HashMap<String, Long> sizes = new HashMap<>();
+                for (String id : ids) {
+                    sizes.put(id, blobs.size(id));
+                }
+                ids.sort((a, b) -> Long.compare(sizes.get(b), sizes.get(a)));
+                ArrayDeque<Base> window = new ArrayDeque<>();
+                long windowBytes = 0;
+                for (String id : ids) {
+                    offsets.put(id, out.offset());
+                    kinds.put(id, BLOB);
+                    if (sizes.get(id) > Math.min(DELTA_LIMIT, WINDOW_BYTES)) {
+                        out.full(BLOB, sizes.get(id), blobs.open(id));
+                        continue;
+                    }
+                    byte[] data = blobs.get(id);
+                    Base best = null;
+                    byte[] bestDelta = null;
+                    for (Base base : window) {
+                        if (base._depth >= MAX_DEPTH) {
+                            continue;
+                        }
+                        byte[] delta = Delta.create(base._data, data);
+                        if (delta.length < data.length / 2
+                                && (bestDelta == null
+                                || delta.length < bestDelta.length)) {
+                            best = base;
+                            bestDelta = delta;
+                        }
+                    }
+                    long offset = out.offset();
+                    int depth = 0;
+                    if (best == null) {
+                        out.full(BLOB, data.length,
+                                new ByteArrayInputStream(data));
+                    } else {
+                        out.delta(BLOB, data.length, best._offset, bestDelta);
+                        depth = best._depth + 1;
+                    }
+                    window.addFirst(new Base(data, offset, depth));
+                    windowBytes += data.length;
+                    while (window.size() > WINDOW
+                           || windowBytes > WINDOW_BYTES) {
+                        windowBytes -= window.removeLast()._data.length;
+                    }
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        List<String> sorted = new ArrayList<>(offsets.keySet());
+        Collections.sort(sorted);
+        String name = "pack-" + Utils.sha1(String.join("", sorted));
+        File index = new File(PACKS, name + ".idx");
+        File pack = new File(PACKS, name + ".pack");
+        File tmpIndex = new File(PACKS, "tmp.idx");
+        writeIndex(tmpIndex, sorted, offsets, kinds);
+        Journal.sync(List.of(tmp, tmpIndex));
+        Journal.move(tmp, pack);
+        Journal.move(tmpIndex, index);
+        Journal.syncDirectories(List.of(pack));
+        for (Pack p : old) {
+            if (!p._file.equals(pack)) {
+                p._file.delete();
+                new File(PACKS, p._file.getName().replace(".pack", ".idx"))
+                        .delete();
+            }
+        }
+        reload();
+        commits.removeLoose(sorted);
+        trees.removeLoose(sorted);
+        blobs.removeLoose(sorted);
+        chunks.removeLoose(sorted);
+        return new Pack(index);
+    }
+
+    /**
+     * Writes to FILE an index of the objects with the sorted ids IDS,
+     * whose offsets and kinds are in OFFSETS and KINDS.
+     */
+    private static void writeIndex(File file, List<String> ids,
+                                   Map<String, Long> offsets,
+                                   Map<String, Integer> kinds) {
+        int[] fanout = new int[FANOUT];
+        for (String id : ids) {
+            fanout[Integer.parseInt(id.substring(0, 2), 16)] += 1;
+        }
+        for (int i = 1; i < FANOUT; i += 1) {
+            fanout[i] += fanout[i - 1];
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(ids.size());
+            for (int count : fanout) {
+                out.writeInt(count);
+            }
+            for (String id : ids) {
+                out.write(Utils.toBytes(id));
+            }
+            for (String id : ids) {
+                out.writeLong(offsets.get(id));
+            }
+            for (String id : ids) {
+                out.writeByte(kinds.get(id));
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * A recently packed blob that later blobs may be stored against.
+     */
+    private static class Base {
+        /**
+         * The contents of the blob.
+         */
+        private byte[] _data;
+        /**
+         * The offset of its entry.
+         */
+        private long _offset;
+        /**
+         * The length of the delta chain leading to it.
+         */
+        private int _depth;
+
+        /**
+         * A base with contents DATA at OFFSET with chain length DEPTH.
+         */
+        Base(byte[] data, long offset, int depth) {
+            _data = data;
+            _offset = offset;
+            _depth = depth;
+        }
+    }
+
+    /**
+     * Writes the entries of a new pack, keeping track of their offsets.
+     */
+    private static class Writer implements AutoCloseable {
+        /**
+         * The stream of the pack.
+         */
+        private DataOutputStream _out;
+        /**
+         * Number of bytes written so far.
+         */
+        private long _offset;
+
+        /**
+         * A writer of a pack into FILE.
+         */
+        Writer(File file) throws IOException {
+            _out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(file),
+                            ObjectStore.BUFFER_SIZE));
+            _out.writeInt(PACK_MAGIC);
+            _out.writeInt(VERSION);
+            _offset = 8;
+        }
+
+        /**
+         * Returns the offset of the next entry.
+         */
+        long offset() {
+            return _offset;
+        }
+
+        /**
+         * Writes an entry of KIND holding the SIZE bytes read from IN.
+         */
+        void full(int kind, long size, InputStream in) throws IOException {
+            _out.writeByte(kind);
+            _out.writeByte(FULL);
+            _out.writeLong(size);
+            _offset += 10;
+            try (InputStream data = in) {
+                deflate(data);
+            }
+        }
+
+        /**
+         * Writes an entry of KIND and uncompressed SIZE holding DELTA
+         * against the entry at BASE.
+         */
+        void delta(int kind, long size, long base,
+                   byte[] delta) throws IOException {
+            _out.writeByte(kind);
+            _out.writeByte(DELTA);
+            _out.writeLong(size);
+            _out.writeLong(base);
+            _offset += 18;
+            deflate(new ByteArrayInputStream(delta));
+        }
+
+        /**
+         * Writes the rest of IN compressed.
+         */
+        private void deflate(InputStream in) throws IOException {
+            Deflater deflater = new Deflater(ObjectStore.LEVEL);
+            try {
+                Counter counter = new Counter(_out);
+                DeflaterOutputStream out = new DeflaterOutputStream(counter,
+                        deflater, ObjectStore.BUFFER_SIZE);
+                in.transferTo(out);
+                out.finish();
+                _offset += counter._count;
+            } finally {
+                deflater.end();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            _out.close();
+        }
+    }
+
+    /**
+     * A stream passing bytes on while counting them.
+     */
+    private static class Counter extends OutputStream {
+        /**
+         * Where the bytes go.
+         */
+        private OutputStream _out;
+        /**
+         * Number of bytes passed on.
+         */
+        private long _count;
+
+        /**
+         * A counter passing bytes on to OUT.
+         */
+        Counter(OutputStream out) {
+            _out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            _out.write(b);
+            _count += 1;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            _out.write(b, off, len);
+            _count += len;
+        }
+    }
+
+}
@@ -0,0 +1,183 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static gitlet.GitletProcess.*;
+import static org.junit.Assert.*;
+
+/** Rebuilds objects from the deltas of Delta, and reads back every
+ *  version of a file from the chains of deltas of a pack.
+ *  @author Shreyansh Loharuka
+ */
+public class PackTest {
+
+    /** Number of versions of the file packed. */
+    private static final int VERSIONS = 8;
+
+    /** Number of lines of the first version. */
+    private static final int LINES = 2000;
+
+    /** The working directory of the processes. */
+    private File _dir;
+
+    /** Create a repository to work in. */
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        _dir = Files.createTempDirectory("gitlet-pack").toFile();
+        run(_dir, "init");
+    }
+
+    /** Remove the repository. */
+    @After
+    public void tearDown() {
+        delete(_dir);
+    }
+
+    /** A delta rebuilds its target from its base after random edits, and
+     *  from bases that are empty, equal or unrelated; a delta between
+     *  versions that differ little is much smaller than the target. */
+    @Test
+    public void deltaRoundTripTest() {
+        Random random = new Random(0);
+        for (int t = 0; t < 200; t += 1) {
+            byte[] base = new byte[random.nextInt(4000)];
+            random.nextBytes(base);
+            byte[] target = edit(base, random);
+            byte[] delta = Delta.create(base, target);
+            assertArrayEquals(target, Delta.apply(base, delta));
+        }
+        byte[] data = new byte[10000];
+        random.nextBytes(data);
+        byte[] other = new byte[5000];
+        random.nextBytes(other);
+        byte[][][] pairs = {
+            {new byte[0], data}, {data, new byte[0]}, {data, data},
+            {data, other}, {new byte[0], new byte[0]},
+        };
+        for (byte[][] pair : pairs) {
+            assertArrayEquals(pair[1],
+                    Delta.apply(pair[0], Delta.create(pair[0], pair[1])));
+        }
+        byte[] edited = data.clone();
+        edited[5000] ^= 1;
+        assertTrue(Delta.create(data, edited).length < data.length / 20);
+    }
+
+    /** Versions of a file that each change a line of the one before are
+     *  packed as a chain of deltas against deltas, and every version is
+     *  read back from the pack by the id of its commit, also after a
+     *  second repack reads the chains it rewrites from the first. */
+    @Test
+    public void deltaChainTest() throws IOException, InterruptedException {
+        File file = new File(_dir, "versions.txt");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < LINES; i += 1) {
+            lines.add("line " + i + " of the file");
+        }
+        Random random = new Random(1);
+        String[] commits = new String[VERSIONS];
+        String[] ids = new String[VERSIONS];
+        for (int v = 0; v < VERSIONS; v += 1) {
+            lines.set(random.nextInt(LINES - VERSIONS), "version " + v);
+            lines.remove(lines.size() - 1);
+            Files.write(file.toPath(), lines);
+            ids[v] = Utils.sha1(file);
+            run(_dir, "add", "versions.txt");
+            run(_dir, "commit", "version " + v);
+            commits[v] = run(_dir, "find", "version " + v).trim();
+        }
+        for (int round = 0; round < 2; round += 1) {
+            run(_dir, "repack");
+            assertTrue(maxDepth() >= 2);
+            for (int v = 0; v < VERSIONS; v += 1) {
+                run(_dir, "checkout", commits[v], "--", "versions.txt");
+                assertEquals(ids[v], Utils.sha1(file));
+            }
+        }
+        assertTrue(run(_dir, "count-objects").contains("packs: 1 packs"));
+    }
+
+    /** Returns DATA with a few random bytes replaced, inserted, removed
+     *  or moved, drawn from RANDOM. */
+    private static byte[] edit(byte[] data, Random random) {
+        byte[] result = data;
+        for (int e = random.nextInt(6); e > 0; e -= 1) {
+            int at = random.nextInt(result.length + 1);
+            int length = random.nextInt(100);
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            byte[] next;
+            switch (random.nextInt(3)) {
+            case 0:
+                next = new byte[result.length + length];
+                System.arraycopy(result, 0, next, 0, at);
+                System.arraycopy(bytes, 0, next, at, length);
+                System.arraycopy(result, at, next, at + length,
+                        result.length - at);
+                break;
+            case 1:
+                length = Math.min(length, result.length - at);
+                next = new byte[result.length - length];
+                System.arraycopy(result, 0, next, 0, at);
+                System.arraycopy(result, at + length, next, at,
+                        result.length - at - length);
+                break;
+            default:
+                next = result.clone();
+                int from = random.nextInt(result.length + 1);
+                length = Math.min(length, Math.min(result.length - from,
+                        result.length - at));
+                System.arraycopy(result, from, next, at, length);
+                break;
+            }
+            result = next;
+        }
+        return result;
+    }
+
+    /** Returns the length of the longest chain of deltas of the one pack
+     *  of the repository, read from the entries of its blobs. */
+    private int maxDepth() throws IOException {
+        File[] indices = new File(_dir, ".gitlet/packs").listFiles(
+            (dir, name) -> name.endsWith(".idx"));
+        assertEquals(1, indices.length);
+        Pack pack = new Pack(indices[0]);
+        Map<Long, Long> bases = new HashMap<>();
+        try (RandomAccessFile in = new RandomAccessFile(pack.file(), "r")) {
+            for (int pos = 0; pos < pack.count(); pos += 1) {
+                if (pack.kind(pos) != Pack.BLOB) {
+                    continue;
+                }
+                in.seek(pack.offset(pos));
+                in.readUnsignedByte();
+                int type = in.readUnsignedByte();
+                in.readLong();
+                if (type == Pack.DELTA) {
+                    bases.put(pack.offset(pos), in.readLong());
+                }
+            }
+        }
+        int max = 0;
+        for (long offset : bases.keySet()) {
+            int depth = 0;
+            for (Long at = offset; bases.containsKey(at);
+                 at = bases.get(at)) {
+                depth += 1;
+            }
+            max = Math.max(max, depth);
+        }
+        return max;
+    }
+
+}
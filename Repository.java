@@ -10,6 +10,11 @@ import java.util.HashMap;
  * @author Shreyansh Loharuka
  */
 public class Repository implements Serializable {
+    /**
+     * Serialization id of the class, kept so that repositories written
+     * before the binary codec can still be migrated.
+     */
+    private static final long serialVersionUID = 1440819968620131048L;
 
     /**
      * Hashmap of branches with their branch names mapped to their sha's.
@@ -22,17 +27,20 @@ public class Repository implements Serializable {
     private String _head;
 
     /**
-     * Hashmap of staged files with their sha mapped to their name.
+     * Hashmap of staged files with their sha mapped to their name, as
+     * kept before the index. Only read to upgrade older repositories.
      */
     private HashMap<String, String> _stageFiles;
 
     /**
-     * Hashmap of staged files with their names mapped to their sha.
+     * Hashmap of staged files with their names mapped to their sha, as
+     * kept before the index. Only read to upgrade older repositories.
      */
     private HashMap<String, String> _stageFilesNames;
 
     /**
-     * Hashmap of removed files with their name mapped to their sha.
+     * Hashmap of removed files with their name mapped to their sha, as
+     * kept before the index. Only read to upgrade older repositories.
      */
     private HashMap<String, String> _removedFiles;
 
@@ -101,13 +109,6 @@ public class Repository implements Serializable {
         return _stageFiles;
     }
 
-    /**
-     * Add pair to filenames with id SHA and name NAME.
-     */
-    public void addFile(String sha, String name) {
-        _stageFiles.put(sha, name);
-    }
-
     /**
      * Return the filenames that are staged.
      */
@@ -115,13 +116,6 @@ public class Repository implements Serializable {
         return _stageFilesNames;
     }
 
-    /**
-     * Add pair to filenames with id SHA and name NAME.
-     */
-    public void addFileName(String name, String sha) {
-        _stageFilesNames.put(name, sha);
-    }
-
     /**
      * Return the filenames that have been removed.
      */
@@ -129,12 +123,4 @@ public class Repository implements Serializable {
         return _removedFiles;
     }
 
-    /**
-     * Add NODE to tree with name NAME and id SHA.
-     */
-    public void addRemovedFile(String name, String sha) {
-        _removedFiles.put(name, sha);
-    }
-
-
 }
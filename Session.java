@@ -0,0 +1,112 @@
+package gitlet;
+
+import java.io.File;
+
+/**
+ * The metadata of a repository as one command sees it: its branches and
+ * head, read from .gitlet/pointers, and its index. Each is read at most
+ * once, when first asked for, and shared by all the steps of the
+ * command, so that merge and the commit it makes, or reset and the
+ * checkout it does, see each other's changes without going through the
+ * disk. Steps that change either mark it changed, and save writes what
+ * changed once, at the end of the command. A command that fails before
+ * then leaves the metadata as it found it.
+ *
+ * @author Shreyansh Loharuka
+ */
+class Session {
+
+    /**
+     * File holding the branches and head.
+     */
+    static final File POINTERS = new File(".gitlet/pointers");
+
+    /**
+     * The branches and head, or null until read.
+     */
+    private Repository _repository;
+
+    /**
+     * The index, or null until read.
+     */
+    private Index _index;
+
+    /**
+     * True if the branches or head were changed since read.
+     */
+    private boolean _repositoryChanged;
+
+    /**
+     * True if the index was changed since read.
+     */
+    private boolean _indexChanged;
+
+    /**
+     * Returns the branches and head, reading them on first use.
+     */
+    Repository repository() {
+        if (_repository == null) {
+            _repository = Codec.readRepository(POINTERS);
+        }
+        return _repository;
+    }
+
+    /**
+     * Returns the id of the head commit.
+     */
+    String head() {
+        return repository().head();
+    }
+
+    /**
+     * Returns the index, reading it on first use.
+     */
+    Index index() {
+        if (_index == null) {
+            _index = Index.read();
+        }
+        return _index;
+    }
+
+    /**
+     * Replaces the branches and head by REPOSITORY, as for a new
+     * repository, and marks them changed.
+     */
+    void create(Repository repository) {
+        _repository = repository;
+        _index = new Index();
+        _repositoryChanged = true;
+        _indexChanged = true;
+    }
+
+    /**
+     * Marks the branches or head as changed.
+     */
+    void repositoryChanged() {
+        _repositoryChanged = true;
+    }
+
+    /**
+     * Marks the index as changed.
+     */
+    void indexChanged() {
+        _indexChanged = true;
+    }
+
+    /**
+     * Writes what was changed, the index first, and commits it with the
+     * objects written by the command through Journal.
+     */
+    void save() {
+        if (_indexChanged) {
+            _index.write();
+            _indexChanged = false;
+        }
+        if (_repositoryChanged) {
+            Codec.writeRepository(POINTERS, _repository);
+            _repositoryChanged = false;
+        }
+        Journal.commit();
+    }
+
+}
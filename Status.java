@@ -0,0 +1,217 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * The state of the working directory against the index. Since every
+ * file of the head commit has an entry in the index, the head commit
+ * itself is not read. The tracked files are stat'ed straight from the
+ * entries of the index, over a pool of threads, and only those whose
+ * stat data no longer matches are hashed; the entries of those found
+ * unchanged are refreshed so that the next status trusts them. The
+ * working directory is walked only for the untracked files, names
+ * tracked in the index being passed over without a stat, so that each
+ * tracked file costs one lookup and one stat.
+ *
+ * @author Shreyansh Loharuka
+ */
+class Status {
+
+    /**
+     * Number of threads checking and hashing the files of the working
+     * directory. It may be set with the gitlet.threads system property.
+     */
+    static final int THREADS = Integer.getInteger("gitlet.threads",
+            Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Paths of the modifications not staged for commit, hashed to
+     * "modified" or "deleted", in path order.
+     */
+    private TreeMap<String, String> _modified;
+
+    /**
+     * Paths of the untracked files, in path order.
+     */
+    private TreeSet<String> _untracked;
+
+    /**
+     * True if entries of the index were refreshed.
+     */
+    private boolean _refreshed;
+
+    /**
+     * Initialise an empty status.
+     */
+    private Status() {
+        _modified = new TreeMap<>();
+        _untracked = new TreeSet<>();
+    }
+
+    /**
+     * Returns the modifications not staged for commit, hashed from path
+     * to "modified" or "deleted", in path order.
+     */
+    TreeMap<String, String> modified() {
+        return _modified;
+    }
+
+    /**
+     * Returns the untracked files, in path order.
+     */
+    TreeSet<String> untracked() {
+        return _untracked;
+    }
+
+    /**
+     * Returns true if entries of the index were refreshed, in which case
+     * it is worth writing.
+     */
+    boolean refreshed() {
+        return _refreshed;
+    }
+
+    /**
+     * Returns the status of the working directory against INDEX,
+     * refreshing the stat data of its unchanged entries.
+     */
+    static Status of(Index index) {
+        Status status = new Status();
+        File workingDir = new File(System.getProperty("user.dir"));
+        walk(workingDir, "", index, status._untracked, false);
+        List<String> tracked = new ArrayList<>(index.entries().keySet());
+        List<Index.Entry> entries =
+            new ArrayList<>(index.entries().values());
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Index.Entry> stats = run(pool, tracked,
+                path -> Index.stat(new File(workingDir, path)));
+            List<String> dirty = new ArrayList<>();
+            List<Index.Entry> dirtyStats = new ArrayList<>();
+            for (int i = 0; i < tracked.size(); i += 1) {
+                String path = tracked.get(i);
+                Index.Entry stat = stats.get(i);
+                Index.Entry entry = entries.get(i);
+                boolean removed = entry.state() == Index.REMOVED;
+                if (stat == null) {
+                    if (!removed) {
+                        status._modified.put(path, "deleted");
+                    }
+                    File dir = new File(workingDir, path);
+                    if (dir.isDirectory()) {
+                        walk(dir, path + "/", index, status._untracked,
+                                false);
+                    }
+                } else if (removed) {
+                    status._untracked.add(path);
+                } else if (index.cached(entry, stat) == null) {
+                    dirty.add(path);
+                    dirtyStats.add(stat);
+                }
+            }
+            List<String> ids = run(pool, dirty,
+                path -> Utils.sha1(new File(workingDir, path)));
+            for (int i = 0; i < dirty.size(); i += 1) {
+                String path = dirty.get(i);
+                if (ids.get(i).equals(index.get(path).id())) {
+                    index.refresh(path, dirtyStats.get(i));
+                    status._refreshed = true;
+                } else {
+                    status._modified.put(path, "modified");
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return status;
+    }
+
+    /**
+     * Adds to FILES the paths, prefixed by PREFIX, of the files in DIR
+     * and its subdirectories, leaving out the .gitlet directory. Names
+     * tracked in INDEX are taken to be files without being checked, so
+     * that only untracked names and directories are looked at.
+     */
+    static void walk(File dir, String prefix, Index index,
+                     Set<String> files) {
+        walk(dir, prefix, index, files, true);
+    }
+
+    /**
+     * Adds to FILES the paths, prefixed by PREFIX, of the files in DIR
+     * and its subdirectories, as walk does, leaving out the names
+     * tracked in INDEX unless TRACKED.
+     */
+    private static void walk(File dir, String prefix, Index index,
+                             Set<String> files, boolean tracked) {
+        String[] names = dir.list();
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            String path = prefix + name;
+            if (prefix.isEmpty() && name.equals(".gitlet")) {
+                continue;
+            }
+            if (index.get(path) != null) {
+                if (tracked) {
+                    files.add(path);
+                }
+                continue;
+            }
+            File file = new File(dir, name);
+            if (file.isDirectory()) {
+                walk(file, path + "/", index, files, tracked);
+            } else if (file.isFile()) {
+                files.add(path);
+            }
+        }
+    }
+
+    /**
+     * Returns the results of applying TASK to each of ITEMS, in the same
+     * order, spread over POOL in one batch per thread.
+     */
+    static <T, R> List<R> run(ExecutorService pool, List<T> items,
+                              Function<T, R> task) {
+        List<R> results = new ArrayList<>(items.size());
+        if (items.size() <= 1 || THREADS <= 1) {
+            for (T item : items) {
+                results.add(task.apply(item));
+            }
+            return results;
+        }
+        int batch = (items.size() + THREADS - 1) / THREADS;
+        List<Future<List<R>>> batches = new ArrayList<>();
+        for (int start = 0; start < items.size(); start += batch) {
+            List<T> part = items.subList(start,
+                    Math.min(start + batch, items.size()));
+            batches.add(pool.submit(() -> {
+                List<R> done = new ArrayList<>(part.size());
+                for (T item : part) {
+                    done.add(task.apply(item));
+                }
+                return done;
+            }));
+        }
+        try {
+            for (Future<List<R>> done : batches) {
+                results.addAll(done.get());
+            }
+            return results;
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+}
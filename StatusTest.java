@@ -0,0 +1,111 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static gitlet.GitletProcess.*;
+import static org.junit.Assert.*;
+
+/** Reports the staged, removed, modified, deleted and untracked files of
+ *  a working directory with nested directories.
+ *  @author Shreyansh Loharuka
+ */
+public class StatusTest {
+
+    /** Files of the commit, as pairs of a path and its contents. */
+    private static final String[][] FILES = {
+        {"a.txt", "a\n"},
+        {"d.txt", "d\n"},
+        {"e.txt", "e\n"},
+        {"f.txt", "f\n"},
+        {"r.txt", "r\n"},
+        {"dir/b.txt", "b\n"},
+        {"dir/sub/c.txt", "c\n"},
+    };
+
+    /** The working directory of the processes. */
+    private File _dir;
+
+    /** Create a repository whose master commits FILES, with a branch
+     *  other. */
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        _dir = Files.createTempDirectory("gitlet-status").toFile();
+        run(_dir, "init");
+        for (String[] file : FILES) {
+            write(file[0], file[1]);
+            run(_dir, "add", file[0]);
+        }
+        run(_dir, "commit", "files");
+        run(_dir, "branch", "other");
+    }
+
+    /** Remove the repository. */
+    @After
+    public void tearDown() {
+        delete(_dir);
+    }
+
+    /** A working directory matching the head commit has nothing to
+     *  report, even where a file was touched without being changed. */
+    @Test
+    public void cleanTest() throws IOException, InterruptedException {
+        Files.setLastModifiedTime(new File(_dir, "e.txt").toPath(),
+                FileTime.fromMillis(System.currentTimeMillis() - 100000));
+        String clean = "=== Branches ===\n*master\nother\n\n"
+            + "=== Staged Files ===\n\n"
+            + "=== Removed Files ===\n\n"
+            + "=== Modifications Not Staged For Commit ===\n\n"
+            + "=== Untracked Files ===\n\n";
+        assertEquals(clean, run(_dir, "status"));
+        assertEquals(clean, run(_dir, "status"));
+    }
+
+    /** Every kind of change is listed in its section, in path order,
+     *  including those in directories and a tracked file replaced by a
+     *  directory. */
+    @Test
+    public void changesTest() throws IOException, InterruptedException {
+        write("a.txt", "changed\n");
+        write("dir/sub/c.txt", "C\n");
+        assertTrue(new File(_dir, "dir/b.txt").delete());
+        Files.setLastModifiedTime(new File(_dir, "e.txt").toPath(),
+                FileTime.fromMillis(System.currentTimeMillis() - 100000));
+        assertTrue(new File(_dir, "f.txt").delete());
+        write("f.txt/inner.txt", "inner\n");
+        run(_dir, "rm", "d.txt");
+        run(_dir, "rm", "r.txt");
+        write("r.txt", "r again\n");
+        for (String name : new String[] {"s1.txt", "s2.txt", "s3.txt"}) {
+            write(name, name + "\n");
+            run(_dir, "add", name);
+        }
+        write("s2.txt", "s2 changed\n");
+        assertTrue(new File(_dir, "s3.txt").delete());
+        write("new.txt", "new\n");
+        write("newdir/x/y.txt", "y\n");
+        assertEquals("=== Branches ===\n*master\nother\n\n"
+                + "=== Staged Files ===\ns1.txt\ns2.txt\ns3.txt\n\n"
+                + "=== Removed Files ===\nd.txt\nr.txt\n\n"
+                + "=== Modifications Not Staged For Commit ===\n"
+                + "a.txt (modified)\ndir/b.txt (deleted)\n"
+                + "dir/sub/c.txt (modified)\nf.txt (deleted)\n"
+                + "s2.txt (modified)\ns3.txt (deleted)\n\n"
+                + "=== Untracked Files ===\nf.txt/inner.txt\nnew.txt\n"
+                + "newdir/x/y.txt\nr.txt\n\n", run(_dir, "status"));
+    }
+
+    /** Writes CONTENTS to the file at PATH in the repository, making its
+     *  directories. */
+    private void write(String path, String contents) {
+        File file = new File(_dir, path);
+        file.getParentFile().mkdirs();
+        Utils.writeContents(file, contents);
+    }
+
+}
@@ -0,0 +1,265 @@
+package gitlet;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A directory of a commit, mapping the names of its entries to the ids of
+ * blobs and of the trees of its subdirectories. Trees are stored by the
+ * SHA-1 of their encoding, so two commits whose directories are equal
+ * share the same tree, and comparing two directories only needs their
+ * ids. Paths in a commit are relative to the working directory and use
+ * '/' as separator.
+ *
+ * @author Shreyansh Loharuka
+ */
+class Tree {
+
+    /**
+     * Type of an entry naming a blob.
+     */
+    static final int FILE = 0;
+
+    /**
+     * Type of an entry naming a subtree.
+     */
+    static final int TREE = 1;
+
+    /**
+     * Entries of this tree hashed from name to entry, in name order.
+     */
+    private TreeMap<String, Entry> _entries;
+
+    /**
+     * Initialise an empty tree.
+     */
+    Tree() {
+        _entries = new TreeMap<>();
+    }
+
+    /**
+     * Returns the entries of this tree, in name order.
+     */
+    TreeMap<String, Entry> entries() {
+        return _entries;
+    }
+
+    /**
+     * Adds an entry of TYPE named NAME with id ID.
+     */
+    void put(String name, int type, String id) {
+        _entries.put(name, new Entry(type, id));
+    }
+
+    /**
+     * Stores this tree and returns its id.
+     */
+    String write() {
+        byte[] data = Codec.encode(this);
+        String id = Utils.sha1(data);
+        ObjectStore.trees().put(id, data);
+        return id;
+    }
+
+    /**
+     * Returns the tree with id ID, which is empty if ID is null.
+     */
+    static Tree read(String id) {
+        if (id == null) {
+            return new Tree();
+        }
+        return Codec.readTree(ObjectStore.trees().open(id));
+    }
+
+    /**
+     * Stores the trees holding FILES, hashed from path to blob id, and
+     * returns the id of the root.
+     */
+    static String write(Map<String, String> files) {
+        return update(null, files);
+    }
+
+    /**
+     * Returns the id of the tree obtained by applying CHANGES, hashed from
+     * path to new blob id or to null for a removal, to the tree with id
+     * ROOT. Only the trees on the paths of CHANGES are read and written;
+     * all other subtrees are shared with ROOT.
+     */
+    static String update(String root, Map<String, String> changes) {
+        return apply(root, changes).write();
+    }
+
+    /**
+     * Returns the tree with id ROOT with CHANGES applied, after storing
+     * the subtrees it changes.
+     */
+    private static Tree apply(String root, Map<String, String> changes) {
+        Tree tree = read(root);
+        HashMap<String, Map<String, String>> below = new HashMap<>();
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            String path = change.getKey();
+            int slash = path.indexOf('/');
+            if (slash < 0) {
+                if (change.getValue() == null) {
+                    tree._entries.remove(path);
+                } else {
+                    tree.put(path, FILE, change.getValue());
+                }
+            } else {
+                String dir = path.substring(0, slash);
+                if (!below.containsKey(dir)) {
+                    below.put(dir, new HashMap<>());
+                }
+                below.get(dir).put(path.substring(slash + 1),
+                        change.getValue());
+            }
+        }
+        for (Map.Entry<String, Map<String, String>> dir : below.entrySet()) {
+            Entry old = tree._entries.get(dir.getKey());
+            String sub = old != null && old._type == TREE ? old._id : null;
+            Tree subtree = apply(sub, dir.getValue());
+            if (subtree._entries.isEmpty()) {
+                tree._entries.remove(dir.getKey());
+            } else {
+                tree.put(dir.getKey(), TREE, subtree.write());
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Returns the id of the blob at PATH in the tree with id ROOT, or null
+     * if there is none. Only the trees along PATH are read.
+     */
+    static String find(String root, String path) {
+        if (root == null) {
+            return null;
+        }
+        Tree tree = read(root);
+        int slash = path.indexOf('/');
+        String name = slash < 0 ? path : path.substring(0, slash);
+        Entry entry = tree._entries.get(name);
+        if (entry == null) {
+            return null;
+        } else if (slash < 0) {
+            return entry._type == FILE ? entry._id : null;
+        } else if (entry._type != TREE) {
+            return null;
+        }
+        return find(entry._id, path.substring(slash + 1));
+    }
+
+    /**
+     * Adds to FILES every blob of the tree with id ROOT, hashed from its
+     * path, prefixed by PREFIX, to its id.
+     */
+    static void flatten(String root, String prefix, Map<String, String> files) {
+        if (root == null) {
+            return;
+        }
+        for (Map.Entry<String, Entry> e : read(root)._entries.entrySet()) {
+            Entry entry = e.getValue();
+            if (entry._type == TREE) {
+                flatten(entry._id, prefix + e.getKey() + "/", files);
+            } else {
+                files.put(prefix + e.getKey(), entry._id);
+            }
+        }
+    }
+
+    /**
+     * Returns the paths whose blobs differ between the trees with ids FROM
+     * and TO, either of which may be null for an empty tree, hashed to a
+     * pair of the blob ids in FROM and TO, null where a path is absent.
+     * Subtrees with the same id are skipped without being read.
+     */
+    static TreeMap<String, String[]> diff(String from, String to) {
+        TreeMap<String, String[]> changes = new TreeMap<>();
+        diff(from, to, "", changes);
+        return changes;
+    }
+
+    /**
+     * Adds to CHANGES the differences between the trees with ids FROM and
+     * TO, whose paths are prefixed with PREFIX.
+     */
+    private static void diff(String from, String to, String prefix,
+                             Map<String, String[]> changes) {
+        if (from != null && from.equals(to)) {
+            return;
+        }
+        Tree a = read(from), b = read(to);
+        TreeSet<String> names = new TreeSet<>(a._entries.keySet());
+        names.addAll(b._entries.keySet());
+        for (String name : names) {
+            Entry x = a._entries.get(name), y = b._entries.get(name);
+            if (x != null && x.equals(y)) {
+                continue;
+            }
+            String path = prefix + name;
+            String xTree = x != null && x._type == TREE ? x._id : null;
+            String yTree = y != null && y._type == TREE ? y._id : null;
+            String xFile = x != null && x._type == FILE ? x._id : null;
+            String yFile = y != null && y._type == FILE ? y._id : null;
+            if (xTree != null || yTree != null) {
+                diff(xTree, yTree, path + "/", changes);
+            }
+            if (xFile != null || yFile != null) {
+                changes.put(path, new String[]{xFile, yFile});
+            }
+        }
+    }
+
+    /**
+     * An entry of a tree.
+     */
+    static class Entry {
+        /**
+         * Whether the entry is a FILE or a TREE.
+         */
+        private int _type;
+        /**
+         * The id of the blob or tree.
+         */
+        private String _id;
+
+        /**
+         * An entry of TYPE with id ID.
+         */
+        Entry(int type, String id) {
+            _type = type;
+            _id = id;
+        }
+
+        /**
+         * Returns the type of this entry.
+         */
+        int type() {
+            return _type;
+        }
+
+        /**
+         * Returns the id of this entry.
+         */
+        String id() {
+            return _id;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Entry)) {
+                return false;
+            }
+            Entry other = (Entry) obj;
+            return _type == other._type && _id.equals(other._id);
+        }
+
+        @Override
+        public int hashCode() {
+            return _id.hashCode() * 2 + _type;
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static gitlet.GitletProcess.*;
+import static org.junit.Assert.*;
+
+/** Commits files in nested directories as trees, and checks out the
+ *  differences between the trees of two commits.
+ *  @author Shreyansh Loharuka
+ */
+public class TreeTest {
+
+    /** Files of the first commit, as pairs of a path and its contents. */
+    private static final String[][] FILES = {
+        {"root.txt", "root\n"},
+        {"a/top.txt", "top\n"},
+        {"a/b/side.txt", "side\n"},
+        {"a/b/c/deep.txt", "deep\n"},
+        {"x/other.txt", "other\n"},
+    };
+
+    /** The working directory of the processes. */
+    private File _dir;
+
+    /** Create a repository whose master holds FILES in a second commit,
+     *  with a branch old at it. */
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        _dir = Files.createTempDirectory("gitlet-tree").toFile();
+        run(_dir, "init");
+        for (String[] file : FILES) {
+            write(file[0], file[1]);
+            run(_dir, "add", file[0]);
+        }
+        run(_dir, "commit", "first");
+        run(_dir, "branch", "old");
+    }
+
+    /** Remove the repository. */
+    @After
+    public void tearDown() {
+        delete(_dir);
+    }
+
+    /** A commit writes new trees only for the directories on the paths
+     *  of its changes, and shares every other tree with its parent. */
+    @Test
+    public void updateTest() throws IOException, InterruptedException {
+        int trees = countTrees();
+        write("a/b/c/deep.txt", "deeper\n");
+        run(_dir, "add", "a/b/c/deep.txt");
+        run(_dir, "commit", "deep");
+        assertEquals(trees + 4, countTrees());
+        write("root.txt", "new root\n");
+        run(_dir, "add", "root.txt");
+        run(_dir, "commit", "root");
+        assertEquals(trees + 5, countTrees());
+        write("y/z/new.txt", "new\n");
+        run(_dir, "add", "y/z/new.txt");
+        run(_dir, "commit", "new");
+        assertEquals(trees + 8, countTrees());
+        write("a/top.txt", "top\n");
+        write("x/other.txt", "other\n");
+        run(_dir, "add", "a/top.txt");
+        run(_dir, "rm", "x/other.txt");
+        run(_dir, "commit", "removed");
+        assertEquals(trees + 9, countTrees());
+    }
+
+    /** Checking out a branch changes, adds and removes exactly the files
+     *  whose trees differ, prunes directories left empty, and refuses to
+     *  overwrite an untracked file the branch would add. */
+    @Test
+    public void checkoutTest() throws IOException, InterruptedException {
+        write("a/b/c/deep.txt", "deeper\n");
+        write("y/z/new.txt", "new\n");
+        run(_dir, "add", "a/b/c/deep.txt");
+        run(_dir, "add", "y/z/new.txt");
+        run(_dir, "rm", "x/other.txt");
+        run(_dir, "commit", "second");
+        assertFalse(new File(_dir, "x").exists());
+
+        run(_dir, "checkout", "old");
+        assertEquals("deep\n", read("a/b/c/deep.txt"));
+        assertEquals("other\n", read("x/other.txt"));
+        assertFalse(new File(_dir, "y").exists());
+        for (String[] file : FILES) {
+            assertEquals(file[1], read(file[0]));
+        }
+        assertTrue(run(_dir, "status").contains(
+                "=== Untracked Files ===\n\n"));
+
+        write("y/z/new.txt", "in the way\n");
+        String out = run(_dir, "checkout", "master");
+        assertTrue(out, out.contains("There is an untracked file in the way"));
+        assertEquals("deep\n", read("a/b/c/deep.txt"));
+        assertEquals("in the way\n", read("y/z/new.txt"));
+        assertTrue(new File(_dir, "y/z/new.txt").delete());
+
+        run(_dir, "checkout", "master");
+        assertEquals("deeper\n", read("a/b/c/deep.txt"));
+        assertEquals("new\n", read("y/z/new.txt"));
+        assertFalse(new File(_dir, "x").exists());
+        assertEquals("root\n", read("root.txt"));
+        assertEquals("side\n", read("a/b/side.txt"));
+    }
+
+    /** Returns the number of loose trees in the repository. */
+    private int countTrees() {
+        int count = 0;
+        File[] shards = new File(_dir, ".gitlet/trees").listFiles();
+        if (shards != null) {
+            for (File shard : shards) {
+                File[] files = shard.listFiles();
+                count += files == null ? 0 : files.length;
+            }
+        }
+        return count;
+    }
+
+    /** Writes CONTENTS to the file at PATH in the repository, making its
+     *  directories. */
+    private void write(String path, String contents) {
+        File file = new File(_dir, path);
+        file.getParentFile().mkdirs();
+        Utils.writeContents(file, contents);
+    }
+
+    /** Returns the contents of the file at PATH in the repository. */
+    private String read(String path) {
+        return Utils.readContentsAsString(new File(_dir, path));
+    }
+
+}
@@ -12,7 +12,16 @@ public class UnitTest {
     /** Run the JUnit tests in the loa package. Add xxxTest.class entries to
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
-        textui.runClasses(UnitTest.class);
+        textui.runClasses(UnitTest.class, CodecTest.class, PackTest.class,
+                ObjectStoreTest.class, TreeTest.class, IndexTest.class,
+                StatusTest.class, CommitGraphTest.class,
+                MergeBaseTest.class, AbbrevTest.class,
+                MessageIndexTest.class, LockStressTest.class,
+                LargeFileTest.class, UpgradeTest.class, ChunkTest.class,
+                Diff3Test.class, DaemonTest.class, BatchTest.class,
+                GitletRepositoryTest.class, JournalTest.class,
+                CheckoutTest.class, CommitCacheTest.class, AddTest.class,
+                WorkingTreeTest.class);
     }
 
     /** A dummy test to avoid complaint. */
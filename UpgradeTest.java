@@ -0,0 +1,182 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static gitlet.GitletProcess.*;
+import static org.junit.Assert.*;
+
+/** Opens a repository as written by the first binary codec, with flat
+ *  directories of uncompressed commits and blobs, and works in it.
+ *  @author Shreyansh Loharuka
+ */
+public class UpgradeTest {
+
+    /** Format version of the first binary codec. */
+    private static final int OLD_VERSION = 1;
+
+    /** Tag of a SHA-1 id in the first binary codec. */
+    private static final int SHA_ID = 1;
+
+    /** Tracked files of the second commit and their contents, two of
+     *  which start as compressed and chunked objects do. */
+    private static final Map<String, String> FILES = Map.of(
+            "a.txt", "old contents\n",
+            "z.txt", "GLTZ\0\0\0\0\0\0\0\5 not compressed\n",
+            "l.txt", "GLTL\0\0\0\0\0\0\0\7\0\0\0\1 not chunked\n");
+
+    /** The working directory of the processes. */
+    private File _dir;
+
+    /** Id of the first commit. */
+    private String _first;
+
+    /** Id of the second commit. */
+    private String _second;
+
+    /** Write a repository of two commits, the second tracking FILES, on
+     *  branch master, with a branch other at the first. */
+    @Before
+    public void setUp() throws IOException {
+        _dir = Files.createTempDirectory("gitlet-upgrade").toFile();
+        File gitlet = new File(_dir, ".gitlet");
+        File commits = new File(gitlet, "commits");
+        File objects = new File(gitlet, "objects");
+        commits.mkdirs();
+        objects.mkdirs();
+        Map<String, String> blobs = new LinkedHashMap<>();
+        for (Map.Entry<String, String> file : FILES.entrySet()) {
+            byte[] contents = file.getValue().getBytes(
+                    StandardCharsets.UTF_8);
+            String blob = Utils.sha1(contents);
+            Files.write(new File(objects, blob).toPath(), contents);
+            Files.write(new File(_dir, file.getKey()).toPath(), contents);
+            blobs.put(file.getKey(), blob);
+        }
+        _first = Utils.sha1("first");
+        _second = Utils.sha1("second");
+        Files.write(new File(commits, _first).toPath(),
+                commit(_first, 0, "initial commit", null, Map.of()));
+        Files.write(new File(commits, _second).toPath(),
+                commit(_second, 1000, "second", _first, blobs));
+        Map<String, String> branches = new LinkedHashMap<>();
+        branches.put("master", _second);
+        branches.put("other", _first);
+        Files.write(new File(gitlet, "pointers").toPath(),
+                repository(_second, "master", branches));
+    }
+
+    /** Remove the repository. */
+    @After
+    public void tearDown() {
+        delete(_dir);
+    }
+
+    /** Log, status, checkout and commit work on the old repository,
+     *  whose blobs are read as they were stored whatever they start
+     *  with. */
+    @Test
+    public void upgradeTest() throws IOException, InterruptedException {
+        String log = run(_dir, "log");
+        assertTrue(log, log.contains("commit " + _second + "\n"));
+        assertTrue(log.contains("\nsecond\n"));
+        assertTrue(log.contains("\ninitial commit\n"));
+        assertTrue(run(_dir, "status").contains(
+                "=== Modifications Not Staged For Commit ===\n\n"));
+        File a = new File(_dir, "a.txt");
+        assertTrue(a.delete());
+        run(_dir, "checkout", "--", "a.txt");
+        assertEquals("old contents\n", Utils.readContentsAsString(a));
+        for (String name : new String[] {"z.txt", "l.txt"}) {
+            File file = new File(_dir, name);
+            assertTrue(file.delete());
+            run(_dir, "checkout", "--", name);
+            assertEquals(FILES.get(name), Utils.readContentsAsString(file));
+        }
+        Utils.writeContents(a, "new contents\n");
+        run(_dir, "add", "a.txt");
+        run(_dir, "commit", "third");
+        assertEquals(3, run(_dir, "log").split("===", -1).length - 1);
+        run(_dir, "checkout", "other");
+        assertFalse(a.exists());
+        run(_dir, "checkout", "master");
+        assertEquals("new contents\n", Utils.readContentsAsString(a));
+        assertEquals(FILES.get("z.txt"),
+                Utils.readContentsAsString(new File(_dir, "z.txt")));
+    }
+
+    /** Returns commit UID, made at TIME with MESSAGE on PARENT, or none
+     *  if null, tracking FILES, encoded as by the first binary codec. */
+    private static byte[] commit(String uid, long time, String message,
+                                 String parent, Map<String, String> files)
+        throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(Codec.COMMIT_MAGIC);
+        out.writeByte(OLD_VERSION);
+        writeId(out, uid);
+        out.writeLong(time);
+        writeString(out, message);
+        if (parent == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(1);
+            writeId(out, parent);
+        }
+        out.writeInt(files.size());
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            writeString(out, file.getKey());
+            writeId(out, file.getValue());
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Returns a repository with HEAD on CURRENT, with BRANCHES and
+     *  nothing staged, encoded as by the first binary codec. */
+    private static byte[] repository(String head, String current,
+                                     Map<String, String> branches)
+        throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(Codec.REPOSITORY_MAGIC);
+        out.writeByte(OLD_VERSION);
+        writeId(out, head);
+        writeString(out, current);
+        out.writeInt(branches.size());
+        for (Map.Entry<String, String> branch : branches.entrySet()) {
+            writeString(out, branch.getKey());
+            writeId(out, branch.getValue());
+        }
+        for (int map = 0; map < 3; map += 1) {
+            out.writeInt(0);
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Writes the id ID to OUT as the first binary codec did. */
+    private static void writeId(DataOutputStream out, String id)
+        throws IOException {
+        out.writeByte(SHA_ID);
+        for (int i = 0; i < id.length(); i += 2) {
+            out.writeByte(Integer.parseInt(id.substring(i, i + 2), 16));
+        }
+    }
+
+    /** Writes the string S to OUT as the first binary codec did. */
+    private static void writeString(DataOutputStream out, String s)
+        throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+}
@@ -10,13 +10,15 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
-import java.util.Formatter;
 import java.util.List;
 
 
@@ -34,6 +36,17 @@ class Utils {
      */
     static final int UID_LENGTH = 40;
 
+    /**
+     * The length of a complete SHA-1 UID in bytes.
+     */
+    static final int UID_BYTES = UID_LENGTH / 2;
+
+    /**
+     * The hexadecimal digits, by value.
+     */
+    private static final char[] HEX_DIGITS =
+        "0123456789abcdef".toCharArray();
+
     /**
      * Returns the SHA-1 hash of the concatenation of VALS, which may
      * be any mixture of byte arrays and Strings.
@@ -50,16 +63,67 @@ class Utils {
                     throw new IllegalArgumentException("improper type to sha1");
                 }
             }
-            Formatter result = new Formatter();
-            for (byte b : md.digest()) {
-                result.format("%02x", b);
+            return hex(md.digest(), 0);
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    }
+
+    /**
+     * Returns the SHA-1 hash of the contents of FILE, read in chunks of
+     * at most ObjectStore.BUFFER_SIZE bytes, so that files of any size
+     * are hashed in the same memory. It is the hash of the contents as a
+     * byte array.  FILE must be a normal file.
+     */
+    static String sha1(File file) {
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("must be a normal file");
+        }
+        try (FileChannel in = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            ByteBuffer buffer = ByteBuffer.allocate(
+                    ObjectStore.bufferFor(in.size()));
+            while (in.read(buffer) >= 0) {
+                buffer.flip();
+                md.update(buffer);
+                buffer.clear();
             }
-            return result.toString();
+            return hex(md.digest(), 0);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
         } catch (NoSuchAlgorithmException excp) {
             throw new IllegalArgumentException("System does not support SHA-1");
         }
     }
 
+    /**
+     * Returns the hexadecimal numeral of the UID_BYTES bytes of a UID
+     * starting at OFFSET in BYTES.
+     */
+    static String hex(byte[] bytes, int offset) {
+        char[] result = new char[UID_LENGTH];
+        for (int i = 0; i < UID_BYTES; i += 1) {
+            int b = bytes[offset + i];
+            result[2 * i] = HEX_DIGITS[(b >> 4) & 0xf];
+            result[2 * i + 1] = HEX_DIGITS[b & 0xf];
+        }
+        return new String(result);
+    }
+
+    /**
+     * Returns the UID_BYTES bytes of the UID whose hexadecimal numeral
+     * is ID, in either case.
+     */
+    static byte[] toBytes(String id) {
+        byte[] bytes = new byte[UID_BYTES];
+        for (int i = 0; i < UID_BYTES; i += 1) {
+            bytes[i] = (byte) (Character.digit(id.charAt(2 * i), 16) << 4
+                    | Character.digit(id.charAt(2 * i + 1), 16));
+        }
+        return bytes;
+    }
+
     /**
      * Returns the SHA-1 hash of the concatenation of the strings in
      * VALS.
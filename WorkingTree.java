@@ -0,0 +1,98 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes blobs to the working directory over a bounded pool of threads,
+ * for checkout, reset and merge. Writing files is bound by the latency
+ * of the file system rather than by the processor, so more writes are
+ * kept in flight than there are processors, which lets fast disks and
+ * network file systems overlap them. Each file is copied from the object
+ * store by ObjectStore.copyTo without passing through a byte array.
+ *
+ * All the writes are waited for, even once one has failed, so that none
+ * is left running when the command ends. The failure reported is then
+ * that of the first path, in the order given, whatever the order in
+ * which the writes ended.
+ *
+ * @author Shreyansh Loharuka
+ */
+class WorkingTree {
+
+    /**
+     * Largest number of files written at once. It may be set with the
+     * gitlet.writers system property.
+     */
+    static final int WRITERS = Integer.getInteger("gitlet.writers",
+            4 * Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Writes the blob with id IDS[k] to the file at PATHS[k], relative to
+     * the working directory, for each k, creating directories as needed.
+     */
+    static void write(List<String> paths, List<String> ids) {
+        File workingDir = new File(System.getProperty("user.dir"));
+        if (paths.size() <= 1 || WRITERS <= 1) {
+            for (int k = 0; k < paths.size(); k += 1) {
+                write(new File(workingDir, paths.get(k)), ids.get(k));
+            }
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(
+                Math.min(WRITERS, paths.size()));
+        try {
+            List<Future<?>> writes = new ArrayList<>(paths.size());
+            for (int k = 0; k < paths.size(); k += 1) {
+                File file = new File(workingDir, paths.get(k));
+                String id = ids.get(k);
+                writes.add(pool.submit(() -> write(file, id)));
+            }
+            Throwable first = null;
+            for (Future<?> done : writes) {
+                try {
+                    done.get();
+                } catch (ExecutionException excp) {
+                    if (first == null) {
+                        first = excp.getCause();
+                    }
+                }
+            }
+            rethrow(first);
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(excp);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Writes the blob with id ID to FILE, creating its directories.
+     */
+    private static void write(File file, String id) {
+        file.getParentFile().mkdirs();
+        ObjectStore.blobs().copyTo(id, file);
+    }
+
+    /**
+     * Throws FAILURE, the failure of a write, unless it is null. Writes
+     * throw only unchecked exceptions and errors, which are thrown as
+     * they are.
+     */
+    private static void rethrow(Throwable failure) {
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new IllegalStateException(failure);
+        }
+    }
+
+}
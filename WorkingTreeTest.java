@@ -0,0 +1,196 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static gitlet.GitletProcess.*;
+import static org.junit.Assert.*;
+
+/** Writes many blobs to the working directory at once, from loose
+ *  objects and from packs, over one writer or many, and reports the
+ *  failure of the first path whatever the order the writes end in.
+ *  Since blobs are read from the repository in the current directory,
+ *  the tests are run by Writer in a process of its own.
+ *  @author Shreyansh Loharuka
+ */
+public class WorkingTreeTest {
+
+    /** Number of small files committed. */
+    private static final int FILES = 200;
+
+    /** Size of the large file committed, over several buffers but under
+     *  the size of files stored as chunks. */
+    private static final int LARGE = 300 * 1024;
+
+    /** Positions, among the paths in order, of those given missing blobs
+     *  by the failure test. */
+    private static final int[] MISSING = {180, 50, 120};
+
+    /** The working directory of the processes. */
+    private File _dir;
+
+    /** Create a repository of a commit of FILES small files, spread over
+     *  directories, and one large file of random bytes. */
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        _dir = Files.createTempDirectory("gitlet-tree").toFile();
+        run(_dir, "init");
+        for (int i = 0; i < FILES; i += 1) {
+            File file = new File(_dir, "t/" + i % 8 + "/f" + i + ".txt");
+            file.getParentFile().mkdirs();
+            Utils.writeContents(file, ("file " + i + "\n").repeat(i + 1));
+        }
+        byte[] large = new byte[LARGE];
+        new Random(22).nextBytes(large);
+        Utils.writeContents(new File(_dir, "t/large.bin"), large);
+        run(_dir, "add", "t");
+        run(_dir, "commit", "files");
+    }
+
+    /** Remove the repository. */
+    @After
+    public void tearDown() {
+        delete(_dir);
+    }
+
+    /** Loose blobs are written whole over many writers, creating the
+     *  directories and replacing what the files held. */
+    @Test
+    public void looseTest() throws IOException, InterruptedException {
+        write(List.of("-Dgitlet.writers=16"), "write");
+    }
+
+    /** Blobs in a pack are written alike. */
+    @Test
+    public void packedTest() throws IOException, InterruptedException {
+        run(_dir, "repack");
+        write(List.of("-Dgitlet.writers=16"), "write");
+    }
+
+    /** A single writer writes the files one at a time. */
+    @Test
+    public void oneWriterTest() throws IOException, InterruptedException {
+        write(List.of("-Dgitlet.writers=1"), "write");
+    }
+
+    /** Every write is done even when some fail, and the failure
+     *  reported is that of the first of the paths. */
+    @Test
+    public void failureTest() throws IOException, InterruptedException {
+        write(List.of("-Dgitlet.writers=16"), "fail");
+    }
+
+    /** Runs the test NAME of Writer in _dir with the JVM options
+     *  OPTIONS, checking that it printed nothing, neither output nor the
+     *  trace of a failure. */
+    private void write(List<String> options, String name)
+        throws IOException, InterruptedException {
+        Process process = start(_dir, Writer.class.getName(), options,
+                name);
+        String out = output(process);
+        assertEquals(out, "", out);
+        assertEquals(0, process.exitValue());
+    }
+
+    /** The tests of WorkingTree, run on the files under t in the
+     *  repository of the current directory. */
+    static class Writer {
+
+        /** Runs the test named ARGS[0]. */
+        public static void main(String[] args) {
+            List<String> paths = new ArrayList<>(files(new File("t"), "t/"));
+            List<String> ids = new ArrayList<>();
+            List<byte[]> contents = new ArrayList<>();
+            for (String path : paths) {
+                ids.add(Utils.sha1(new File(path)));
+                contents.add(Utils.readContents(new File(path)));
+            }
+            assertEquals(FILES + 1, paths.size());
+            switch (args[0]) {
+            case "write":
+                write(paths, ids, contents);
+                break;
+            case "fail":
+                failures(paths, ids, contents);
+                break;
+            default:
+                throw new IllegalArgumentException(args[0]);
+            }
+        }
+
+        /** Checks that PATHS are written with their blobs IDS, holding
+         *  CONTENTS, where some are missing and others hold more. */
+        static void write(List<String> paths, List<String> ids,
+                          List<byte[]> contents) {
+            for (int k = 0; k < paths.size(); k += 1) {
+                File file = new File(paths.get(k));
+                if (k % 3 == 0) {
+                    Utils.writeContents(file, "longer than it was\n"
+                            .repeat(k + 2));
+                } else {
+                    assertTrue(file.delete());
+                }
+            }
+            delete(new File("t/1"));
+            WorkingTree.write(paths, ids);
+            for (int k = 0; k < paths.size(); k += 1) {
+                assertArrayEquals(paths.get(k), contents.get(k),
+                        Utils.readContents(new File(paths.get(k))));
+            }
+        }
+
+        /** Checks that with the blobs of the paths at MISSING missing,
+         *  the others of PATHS are written with their blobs IDS, holding
+         *  CONTENTS, and the first missing one is reported. */
+        static void failures(List<String> paths, List<String> ids,
+                             List<byte[]> contents) {
+            ids = new ArrayList<>(ids);
+            int first = paths.size();
+            for (int k : MISSING) {
+                ids.set(k, String.format("%040x", k));
+                first = Math.min(first, k);
+            }
+            delete(new File("t"));
+            try {
+                WorkingTree.write(paths, ids);
+                fail("wrote missing blobs");
+            } catch (GitletException excp) {
+                assertEquals("Missing object " + ids.get(first) + ".",
+                        excp.getMessage());
+            }
+            TreeSet<Integer> missing = new TreeSet<>();
+            for (int k : MISSING) {
+                missing.add(k);
+            }
+            for (int k = 0; k < paths.size(); k += 1) {
+                if (!missing.contains(k)) {
+                    assertArrayEquals(paths.get(k), contents.get(k),
+                            Utils.readContents(new File(paths.get(k))));
+                }
+            }
+        }
+
+        /** Returns the paths, prefixed by PREFIX, of the files under DIR,
+         *  in order. */
+        static TreeSet<String> files(File dir, String prefix) {
+            TreeSet<String> files = new TreeSet<>();
+            for (File file : dir.listFiles()) {
+                if (file.isDirectory()) {
+                    files.addAll(files(file, prefix + file.getName() + "/"));
+                } else {
+                    files.add(prefix + file.getName());
+                }
+            }
+            return files;
+        }
+    }
+
+}